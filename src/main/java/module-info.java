@@ -2,6 +2,7 @@ module se.uu.ub.cora.alvin.mixedstorage {
 	requires transitive se.uu.ub.cora.sqldatabase;
 	requires transitive se.uu.ub.cora.httphandler;
 	requires transitive java.xml;
+	requires java.net.http;
 	requires transitive se.uu.ub.cora.gatekeeper;
 	requires se.uu.ub.cora.logger;
 	requires se.uu.ub.cora.basicstorage;
@@ -13,6 +14,7 @@ module se.uu.ub.cora.alvin.mixedstorage {
 	exports se.uu.ub.cora.alvin.mixedstorage.db;
 	exports se.uu.ub.cora.alvin.mixedstorage.fedora;
 	exports se.uu.ub.cora.alvin.mixedstorage.id;
+	exports se.uu.ub.cora.alvin.mixedstorage.journal;
 	exports se.uu.ub.cora.alvin.mixedstorage.parse;
 	exports se.uu.ub.cora.alvin.mixedstorage.user;
 
@@ -20,12 +20,17 @@ package se.uu.ub.cora.alvin.mixedstorage;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import se.uu.ub.cora.alvin.mixedstorage.fedora.IndexMessageInfo;
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry;
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry.Operation;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindConfig;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindWriter;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
-import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
 import se.uu.ub.cora.messaging.MessageRoutingInfo;
 import se.uu.ub.cora.messaging.MessagingInitializationException;
 import se.uu.ub.cora.searchstorage.SearchStorage;
@@ -35,9 +40,6 @@ import se.uu.ub.cora.storage.StorageReadResult;
 
 public final class AlvinMixedRecordStorage implements RecordStorage, SearchStorage {
 
-	private static final String ROUTING_KEY_PREFIX = "alvin.updates.";
-	private static final String EXCHANGE = "index";
-	private static final String VIRTUAL_HOST = "alvin";
 	private static final String PLACE = "place";
 	private RecordStorage basicStorage;
 	private RecordStorage alvinFedoraToCoraStorage;
@@ -45,6 +47,8 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 	private RecordStorage alvinDbToCoraStorage;
 	private IndexMessageInfo indexMessageInfo;
 	private RecordIndexerFactory recordIndexFactory;
+	private WriteBehindWriter writeBehindWriter;
+	private Map<String, RecordIndexer> recordIndexers = new ConcurrentHashMap<>();
 
 	private Logger log = LoggerProvider.getLoggerForClass(AlvinMixedRecordStorage.class);
 
@@ -56,6 +60,18 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 				alvinDbToCoraStorage, recordIndexFactory, indexMessageInfo);
 	}
 
+	public static RecordStorage usingBasicAndFedoraAndDbStorageAndRecordIndexerFactoryAndIndexMessageInfoAndWriteBehindConfig(
+			RecordStorage basicStorage, RecordStorage alvinFedoraToCoraStorage,
+			RecordStorage alvinDbToCoraStorage, RecordIndexerFactory recordIndexFactory,
+			IndexMessageInfo indexMessageInfo, WriteBehindConfig writeBehindConfig) {
+		AlvinMixedRecordStorage mixedRecordStorage = new AlvinMixedRecordStorage(basicStorage,
+				alvinFedoraToCoraStorage, alvinDbToCoraStorage, recordIndexFactory,
+				indexMessageInfo);
+		mixedRecordStorage.writeBehindWriter = WriteBehindWriter.startUsingConfigAndApplier(
+				writeBehindConfig, mixedRecordStorage::applyJournaledPlaceWrite);
+		return mixedRecordStorage;
+	}
+
 	private AlvinMixedRecordStorage(RecordStorage basicStorage,
 			RecordStorage alvinFedoraToCoraStorage, RecordStorage alvinDbToCoraStorage,
 			RecordIndexerFactory recordIndexFactory, IndexMessageInfo indexMessageInfo) {
@@ -69,7 +85,7 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 	@Override
 	public DataGroup read(String type, String id) {
 		if (PLACE.equals(type)) {
-			return alvinFedoraToCoraStorage.read(type, id);
+			return readPlace(type, id);
 		}
 		if ("user".equals(type)) {
 			return handleUser(type, id);
@@ -77,6 +93,16 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 		return basicStorage.read(type, id);
 	}
 
+	private DataGroup readPlace(String type, String id) {
+		if (writeBehindWriter != null) {
+			DataGroup pendingPlace = writeBehindWriter.readPendingUsingTypeAndId(type, id);
+			if (pendingPlace != null) {
+				return pendingPlace;
+			}
+		}
+		return alvinFedoraToCoraStorage.read(type, id);
+	}
+
 	private DataGroup handleUser(String type, String id) {
 		try {
 			return alvinDbToCoraStorage.read(type, id);
@@ -90,17 +116,82 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 	public void create(String type, String id, DataGroup dataRecord, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
 		if (PLACE.equals(type)) {
-			alvinFedoraToCoraStorage.create(type, id, dataRecord, collectedTerms, linkList,
-					dataDivider);
+			writePlace(JournalEntry.forCreate(type, id, dataRecord, collectedTerms, linkList,
+					dataDivider));
 		} else {
 			basicStorage.create(type, id, dataRecord, collectedTerms, linkList, dataDivider);
 		}
 	}
 
+	private void writePlace(JournalEntry entry) {
+		if (writeBehindWriter != null) {
+			writeBehindWriter.write(entry);
+		} else {
+			applyPlaceWrite(entry);
+		}
+	}
+
+	private void applyJournaledPlaceWrite(JournalEntry entry) {
+		if (Operation.CREATE == entry.operation) {
+			createPlaceUnlessCreatedBeforeReplay(entry);
+		} else {
+			applyPlaceWrite(entry);
+		}
+	}
+
+	private void createPlaceUnlessCreatedBeforeReplay(JournalEntry entry) {
+		try {
+			applyPlaceWrite(entry);
+		} catch (RuntimeException e) {
+			if (!placeExistsInFedora(entry.type, entry.id)) {
+				throw e;
+			}
+			log.logInfoUsingMessage("Place with id: " + entry.id
+					+ " already exists in fedora, treating journaled create as applied");
+		}
+	}
+
+	private boolean placeExistsInFedora(String type, String id) {
+		try {
+			alvinFedoraToCoraStorage.read(type, id);
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	private void applyPlaceWrite(JournalEntry entry) {
+		if (Operation.CREATE == entry.operation) {
+			alvinFedoraToCoraStorage.create(entry.type, entry.id, entry.dataRecord,
+					entry.collectedTerms, entry.linkList, entry.dataDivider);
+		} else if (Operation.UPDATE == entry.operation) {
+			updatePlaceAndSendIndexMessageIfChanged(entry);
+		} else {
+			alvinFedoraToCoraStorage.deleteByTypeAndId(entry.type, entry.id);
+		}
+	}
+
+	private void updatePlaceAndSendIndexMessageIfChanged(JournalEntry entry) {
+		if (updatePlaceAndReportIfChanged(entry)) {
+			tryToSendIndexMessageToClassic(entry.type, entry.id);
+		}
+	}
+
+	private boolean updatePlaceAndReportIfChanged(JournalEntry entry) {
+		if (alvinFedoraToCoraStorage instanceof ChangeDetectingStorage) {
+			return ((ChangeDetectingStorage) alvinFedoraToCoraStorage).updateIfChanged(entry.type,
+					entry.id, entry.dataRecord, entry.collectedTerms, entry.linkList,
+					entry.dataDivider);
+		}
+		alvinFedoraToCoraStorage.update(entry.type, entry.id, entry.dataRecord,
+				entry.collectedTerms, entry.linkList, entry.dataDivider);
+		return true;
+	}
+
 	@Override
 	public void deleteByTypeAndId(String type, String id) {
 		if (PLACE.equals(type)) {
-			alvinFedoraToCoraStorage.deleteByTypeAndId(type, id);
+			writePlace(JournalEntry.forDelete(type, id));
 		} else {
 			basicStorage.deleteByTypeAndId(type, id);
 		}
@@ -115,9 +206,8 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 	public void update(String type, String id, DataGroup dataRecord, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
 		if (PLACE.equals(type)) {
-			alvinFedoraToCoraStorage.update(type, id, dataRecord, collectedTerms, linkList,
-					dataDivider);
-			tryToSendIndexMessageToClassic(type, id);
+			writePlace(JournalEntry.forUpdate(type, id, dataRecord, collectedTerms, linkList,
+					dataDivider));
 		} else {
 			basicStorage.update(type, id, dataRecord, collectedTerms, linkList, dataDivider);
 		}
@@ -135,13 +225,19 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 	}
 
 	private void sendIndexMessage(String type, String id) {
-		MessageRoutingInfo messageRoutingInfo = new AmqpMessageRoutingInfo(
-				indexMessageInfo.messageServerHostname, indexMessageInfo.messageServerPort,
-				VIRTUAL_HOST, EXCHANGE, ROUTING_KEY_PREFIX + type);
-		RecordIndexer indexer = recordIndexFactory.factor(messageRoutingInfo);
+		RecordIndexer indexer = recordIndexers.computeIfAbsent(type,
+				this::factorRecordIndexerForType);
 		indexer.index(type, id);
 	}
 
+	private RecordIndexer factorRecordIndexerForType(String type) {
+		MessageRoutingInfo messageRoutingInfo = IndexMessageRouting
+				.createRoutingInfoUsingHostnameAndPortAndType(
+						indexMessageInfo.messageServerHostname,
+						indexMessageInfo.messageServerPort, type);
+		return recordIndexFactory.factor(messageRoutingInfo);
+	}
+
 	@Override
 	public StorageReadResult readList(String type, DataGroup filter) {
 		if (PLACE.equals(type)) {
@@ -226,6 +322,11 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 		return recordIndexFactory;
 	}
 
+	public WriteBehindWriter getWriteBehindWriter() {
+		// needed for test
+		return writeBehindWriter;
+	}
+
 	@Override
 	public long getTotalNumberOfRecordsForAbstractType(String abstractType,
 			List<String> implementingTypes, DataGroup filter) {
@@ -235,6 +336,9 @@ public final class AlvinMixedRecordStorage implements RecordStorage, SearchStora
 
 	@Override
 	public long getTotalNumberOfRecordsForType(String type, DataGroup filter) {
+		if (PLACE.equals(type)) {
+			return alvinFedoraToCoraStorage.getTotalNumberOfRecordsForType(type, filter);
+		}
 		return basicStorage.getTotalNumberOfRecordsForType(type, filter);
 	}
 
@@ -18,6 +18,8 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.naming.InitialContext;
@@ -27,8 +29,25 @@ import se.uu.ub.cora.alvin.mixedstorage.db.AlvinDbToCoraRecordStorage;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.AlvinFedoraConverterFactory;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.AlvinFedoraToCoraConverterFactoryImp;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig.CreateMode;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraPlaceStorageConfig;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraRecordStorage;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.IndexMessageInfo;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.MissingPlaceCache;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceCache;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+import se.uu.ub.cora.alvin.mixedstorage.index.AsyncIndexPublisher;
+import se.uu.ub.cora.alvin.mixedstorage.index.CoalescingRecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexOutboxConfig;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexOutboxRelay;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig.FullQueuePolicy;
+import se.uu.ub.cora.alvin.mixedstorage.index.OutboxRecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindConfig;
 import se.uu.ub.cora.basicstorage.DataStorageException;
 import se.uu.ub.cora.basicstorage.RecordStorageInMemoryReadFromDisk;
 import se.uu.ub.cora.basicstorage.RecordStorageInstance;
@@ -36,7 +55,6 @@ import se.uu.ub.cora.basicstorage.RecordStorageOnDisk;
 import se.uu.ub.cora.connection.ContextConnectionProviderImp;
 import se.uu.ub.cora.connection.SqlConnectionProvider;
 import se.uu.ub.cora.httphandler.HttpHandlerFactory;
-import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.sqldatabase.DataReaderImp;
@@ -51,6 +69,7 @@ public class AlvinMixedRecordStorageProvider
 		implements RecordStorageProvider, MetadataStorageProvider {
 	private Logger log = LoggerProvider.getLoggerForClass(AlvinMixedRecordStorageProvider.class);
 	private Map<String, String> initInfo;
+	private List<AutoCloseable> startedResources = new ArrayList<>();
 
 	@Override
 	public int getOrderToSelectImplementionsBy() {
@@ -83,11 +102,116 @@ public class AlvinMixedRecordStorageProvider
 		FedoraRecordStorage fedoraStorage = createFedoraStorage();
 		AlvinDbToCoraRecordStorage dbStorage = createDbStorage();
 		IndexMessageInfo indexMessageInfo = createIndexMessageInfo();
-		AlvinRecordIndexerFactory indexerFactory = new AlvinRecordIndexerFactory();
-		RecordStorage alvinMixedRecordStorage = AlvinMixedRecordStorage
+		RecordIndexerFactory indexerFactory = createRecordIndexerFactory();
+		RecordStorage alvinMixedRecordStorage = createMixedRecordStorage(basicStorage,
+				fedoraStorage, dbStorage, indexMessageInfo, indexerFactory);
+		setStaticInstance(alvinMixedRecordStorage);
+		closeStartedResourcesOnShutdown();
+	}
+
+	private void closeStartedResourcesOnShutdown() {
+		Runtime.getRuntime().addShutdownHook(
+				new Thread(this::closeStartedResources, "alvin-mixed-storage-shutdown"));
+	}
+
+	void closeStartedResources() {
+		for (int i = startedResources.size() - 1; i >= 0; i--) {
+			closeResource(startedResources.get(i));
+		}
+		startedResources.clear();
+	}
+
+	private void closeResource(AutoCloseable resource) {
+		try {
+			resource.close();
+		} catch (Exception e) {
+			log.logErrorUsingMessageAndException(
+					"Error closing resource on shutdown: " + e.getMessage(), e);
+		}
+	}
+
+	private RecordStorage createMixedRecordStorage(RecordStorage basicStorage,
+			FedoraRecordStorage fedoraStorage, AlvinDbToCoraRecordStorage dbStorage,
+			IndexMessageInfo indexMessageInfo, RecordIndexerFactory indexerFactory) {
+		if (initInfo.containsKey("fedoraWriteBehindJournalPath")) {
+			AlvinMixedRecordStorage mixedRecordStorage = (AlvinMixedRecordStorage) AlvinMixedRecordStorage
+					.usingBasicAndFedoraAndDbStorageAndRecordIndexerFactoryAndIndexMessageInfoAndWriteBehindConfig(
+							basicStorage, fedoraStorage, dbStorage, indexerFactory,
+							indexMessageInfo, createWriteBehindConfig());
+			startedResources.add(mixedRecordStorage.getWriteBehindWriter()::close);
+			return mixedRecordStorage;
+		}
+		return AlvinMixedRecordStorage
 				.usingBasicAndFedoraAndDbStorageAndRecordIndexerFactoryAndIndexMessageInfo(
 						basicStorage, fedoraStorage, dbStorage, indexerFactory, indexMessageInfo);
-		setStaticInstance(alvinMixedRecordStorage);
+	}
+
+	private RecordIndexerFactory createRecordIndexerFactory() {
+		AlvinRecordIndexerFactory indexerFactory = new AlvinRecordIndexerFactory();
+		if (initInfo.containsKey("indexOutboxPath")) {
+			IndexOutboxRelay outboxRelay = IndexOutboxRelay
+					.startUsingConfigAndRecordIndexerFactory(createIndexOutboxConfig(),
+							indexerFactory);
+			startedResources.add(outboxRelay);
+			return OutboxRecordIndexerFactory.usingIndexOutboxRelay(outboxRelay);
+		}
+		if (initInfo.containsKey("indexPublishCoalesceWindow")) {
+			AsyncIndexPublisher indexPublisher = AsyncIndexPublisher
+					.startUsingConfig(createIndexPublisherConfig());
+			startedResources.add(indexPublisher);
+			return CoalescingRecordIndexerFactory
+					.usingRecordIndexerFactoryAndIndexPublisher(indexerFactory, indexPublisher);
+		}
+		return indexerFactory;
+	}
+
+	private IndexOutboxConfig createIndexOutboxConfig() {
+		String outboxPath = tryToGetInitParameterLogIfFound("indexOutboxPath");
+		String outboxSize = getInitParameterOrDefaultLogIfFound("indexOutboxSize", "16777216");
+		String retryDelay = getInitParameterOrDefaultLogIfFound("indexOutboxRetryDelay", "1000");
+		String batchSize = getInitParameterOrDefaultLogIfFound("indexPublishBatchSize", "100");
+		return new IndexOutboxConfig(outboxPath, parsePositiveInt("indexOutboxSize", outboxSize),
+				parsePositiveInt("indexOutboxRetryDelay", retryDelay),
+				getOutboxCoalesceWindow(), parsePositiveInt("indexPublishBatchSize", batchSize));
+	}
+
+	private long getOutboxCoalesceWindow() {
+		if (initInfo.containsKey("indexPublishCoalesceWindow")) {
+			String coalesceWindow = tryToGetInitParameterLogIfFound("indexPublishCoalesceWindow");
+			return parsePositiveInt("indexPublishCoalesceWindow", coalesceWindow);
+		}
+		return 0;
+	}
+
+	private IndexPublisherConfig createIndexPublisherConfig() {
+		String coalesceWindow = tryToGetInitParameterLogIfFound("indexPublishCoalesceWindow");
+		String queueCapacity = getInitParameterOrDefaultLogIfFound("indexPublishQueueCapacity",
+				"10000");
+		String batchSize = getInitParameterOrDefaultLogIfFound("indexPublishBatchSize", "100");
+		String fullQueuePolicy = getInitParameterOrDefaultLogIfFound(
+				"indexPublishFullQueuePolicy", "block");
+		String fullQueueTimeout = getInitParameterOrDefaultLogIfFound(
+				"indexPublishFullQueueTimeout", "5000");
+		return new IndexPublisherConfig(
+				parsePositiveInt("indexPublishQueueCapacity", queueCapacity),
+				parsePositiveInt("indexPublishCoalesceWindow", coalesceWindow),
+				parsePositiveInt("indexPublishBatchSize", batchSize),
+				parseEnum(FullQueuePolicy.class, "indexPublishFullQueuePolicy", fullQueuePolicy),
+				parsePositiveInt("indexPublishFullQueueTimeout", fullQueueTimeout));
+	}
+
+	private WriteBehindConfig createWriteBehindConfig() {
+		String journalPath = tryToGetInitParameterLogIfFound("fedoraWriteBehindJournalPath");
+		String journalSize = getInitParameterOrDefaultLogIfFound("fedoraWriteBehindJournalSize",
+				"67108864");
+		String retryDelay = getInitParameterOrDefaultLogIfFound("fedoraWriteBehindRetryDelay",
+				"1000");
+		String maxAttempts = getInitParameterOrDefaultLogIfFound("fedoraWriteBehindMaxAttempts",
+				"10");
+		return new WriteBehindConfig(journalPath,
+				parsePositiveInt("fedoraWriteBehindJournalSize", journalSize),
+				parsePositiveInt("fedoraWriteBehindRetryDelay", retryDelay),
+				parsePositiveInt("fedoraWriteBehindMaxAttempts", maxAttempts));
 	}
 
 	private RecordStorage createBasicStorage() {
@@ -108,19 +232,104 @@ public class AlvinMixedRecordStorageProvider
 
 	private FedoraRecordStorage createFedoraStorage() {
 		FedoraConfig fedoraConfig = createFedoraConfig();
-		HttpHandlerFactory httpHandlerFactory = new HttpHandlerFactoryImp();
+		HttpHandlerFactory httpHandlerFactory = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig(fedoraConfig.userName,
+						fedoraConfig.password, createTransportConfig());
 		AlvinFedoraConverterFactory converterFactory = AlvinFedoraToCoraConverterFactoryImp
-				.usingFedoraURL(fedoraConfig.baseUrl);
+				.usingFedoraURLAndHttpHandlerFactory(fedoraConfig.baseUrl, httpHandlerFactory);
+
+		FedoraPlaceStorageConfig placeStorageConfig = new FedoraPlaceStorageConfig(
+				createPlaceListFetchConfig(), createPlaceCache(), createMissingPlaceCache());
+		FedoraRecordStorage fedoraStorage = FedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndPlaceStorageConfig(
+						httpHandlerFactory, converterFactory, fedoraConfig, placeStorageConfig);
+		startedResources.add(fedoraStorage::close);
+		return fedoraStorage;
+	}
+
+	private FedoraTransportConfig createTransportConfig() {
+		String poolSize = getInitParameterOrDefaultLogIfFound("fedoraConnectionPoolSize", "20");
+		String connectTimeout = getInitParameterOrDefaultLogIfFound("fedoraConnectTimeout",
+				"5000");
+		String readTimeout = getInitParameterOrDefaultLogIfFound("fedoraReadTimeout", "30000");
+		return new FedoraTransportConfig(parsePositiveInt("fedoraConnectionPoolSize", poolSize),
+				parsePositiveInt("fedoraConnectTimeout", connectTimeout),
+				parsePositiveInt("fedoraReadTimeout", readTimeout));
+	}
+
+	private PlaceCache createPlaceCache() {
+		String maxSize = getInitParameterOrDefaultLogIfFound("fedoraPlaceCacheSize", "1000");
+		return PlaceCache.withMaxSize(parsePositiveInt("fedoraPlaceCacheSize", maxSize));
+	}
+
+	private MissingPlaceCache createMissingPlaceCache() {
+		String timeToLive = getInitParameterOrDefaultLogIfFound(
+				"fedoraMissingPlaceCacheTimeToLive", "60000");
+		String maxSize = getInitParameterOrDefaultLogIfFound("fedoraMissingPlaceCacheSize",
+				"10000");
+		return MissingPlaceCache.withTimeToLiveMillisAndMaxSize(
+				parsePositiveInt("fedoraMissingPlaceCacheTimeToLive", timeToLive),
+				parsePositiveInt("fedoraMissingPlaceCacheSize", maxSize));
+	}
+
+	private PlaceListFetchConfig createPlaceListFetchConfig() {
+		String mode = getInitParameterOrDefaultLogIfFound("fedoraListFetchMode", "sequential");
+		String maxConcurrency = getInitParameterOrDefaultLogIfFound(
+				"fedoraListFetchMaxConcurrency", "1");
+		String errorPolicy = getInitParameterOrDefaultLogIfFound("fedoraListFetchErrorPolicy",
+				"fail");
+		String pageSize = getInitParameterOrDefaultLogIfFound("fedoraListPageSize", "100");
+		return new PlaceListFetchConfig(parseEnum(Mode.class, "fedoraListFetchMode", mode),
+				parsePositiveInt("fedoraListFetchMaxConcurrency", maxConcurrency),
+				parseEnum(ErrorPolicy.class, "fedoraListFetchErrorPolicy", errorPolicy),
+				parsePositiveInt("fedoraListPageSize", pageSize));
+	}
 
-		return FedoraRecordStorage.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfig(
-				httpHandlerFactory, converterFactory, fedoraConfig);
+	private String getInitParameterOrDefaultLogIfFound(String parameterName,
+			String defaultValue) {
+		if (initInfo.containsKey(parameterName)) {
+			return tryToGetInitParameterLogIfFound(parameterName);
+		}
+		return defaultValue;
+	}
+
+	private int parsePositiveInt(String parameterName, String value) {
+		try {
+			int parsedValue = Integer.parseInt(value);
+			if (parsedValue > 0) {
+				return parsedValue;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		throw createErrorForInvalidParameterValue(parameterName, value);
+	}
+
+	private <T extends Enum<T>> T parseEnum(Class<T> enumType, String parameterName,
+			String value) {
+		try {
+			return Enum.valueOf(enumType, value.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw createErrorForInvalidParameterValue(parameterName, value);
+		}
+	}
+
+	private DataStorageException createErrorForInvalidParameterValue(String parameterName,
+			String value) {
+		String errorMessage = "InitInfo contains invalid value " + value + " for "
+				+ parameterName;
+		log.logFatalUsingMessage(errorMessage);
+		return DataStorageException.withMessage(errorMessage);
 	}
 
 	private FedoraConfig createFedoraConfig() {
 		String fedoraURL = tryToGetInitParameterLogIfFound("fedoraURL");
 		String fedoraUsername = tryToGetInitParameter("fedoraUsername");
 		String fedoraPassword = tryToGetInitParameter("fedoraPassword");
-		return new FedoraConfig(fedoraUsername, fedoraPassword, fedoraURL);
+		String createMode = getInitParameterOrDefaultLogIfFound("fedoraCreateMode",
+				FedoraConfig.DEFAULT_CREATE_MODE.name().toLowerCase());
+		return new FedoraConfig(fedoraUsername, fedoraPassword, fedoraURL,
+				parseEnum(CreateMode.class, "fedoraCreateMode", createMode));
 	}
 
 	private IndexMessageInfo createIndexMessageInfo() {
@@ -172,6 +381,11 @@ public class AlvinMixedRecordStorageProvider
 		}
 	}
 
+	List<AutoCloseable> getStartedResources() {
+		// needed for test
+		return startedResources;
+	}
+
 	@Override
 	public RecordStorage getRecordStorage() {
 		return RecordStorageInstance.getInstance();
@@ -18,45 +18,47 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import se.uu.ub.cora.alvin.mixedstorage.MessageSenderPool.OutgoingMessage;
 import se.uu.ub.cora.messaging.MessageRoutingInfo;
-import se.uu.ub.cora.messaging.MessageSender;
-import se.uu.ub.cora.messaging.MessagingProvider;
 
 public class AlvinRecordIndexer implements RecordIndexer {
+	private static final IndexMessageEncoder UPDATE_MESSAGE_ENCODER = IndexMessageEncoder
+			.forAction("UPDATE");
 
 	private MessageRoutingInfo messageRoutingInfo;
-	private String type;
-	private String pid;
+	private MessageSenderPool messageSenderPool;
 
 	public AlvinRecordIndexer(MessageRoutingInfo messageRoutingInfo) {
-		this.messageRoutingInfo = messageRoutingInfo;
+		this(messageRoutingInfo, MessageSenderPool.create());
 	}
 
-	public void index(String type, String pid) {
-		this.type = type;
-		this.pid = pid;
-		Map<String, Object> headers = createHeaders();
-		String message = createMessage();
-
-		MessageSender messageSender = MessagingProvider.getTopicMessageSender(messageRoutingInfo);
-		messageSender.sendMessage(headers, message);
+	public AlvinRecordIndexer(MessageRoutingInfo messageRoutingInfo,
+			MessageSenderPool messageSenderPool) {
+		this.messageRoutingInfo = messageRoutingInfo;
+		this.messageSenderPool = messageSenderPool;
 	}
 
-	private Map<String, Object> createHeaders() {
-		Map<String, Object> headers = new HashMap<>();
-		headers.put("__TypeId__", "epc.messaging.amqp.EPCFedoraMessage");
-		headers.put("ACTION", "UPDATE");
-		headers.put("PID", pid);
-		headers.put("messageSentFrom", "Cora");
-		return headers;
+	@Override
+	public void index(String type, String pid) {
+		Map<String, Object> headers = IndexMessageHeaders.usingPid(pid);
+		String message = UPDATE_MESSAGE_ENCODER.encode(pid,
+				IndexMessageRouting.getRoutingKeyForType(type));
+		messageSenderPool.sendMessageUsingRoutingInfo(messageRoutingInfo, headers, message);
 	}
 
-	private String createMessage() {
-		IndexMessageCreator indexMessageCreator = IndexMessageCreator.usingId(pid);
-		return indexMessageCreator.createMessage("alvin.updates." + type, "UPDATE");
+	@Override
+	public void indexBatch(String type, List<String> pids) {
+		String routingKey = IndexMessageRouting.getRoutingKeyForType(type);
+		List<OutgoingMessage> messages = new ArrayList<>(pids.size());
+		for (String pid : pids) {
+			messages.add(new OutgoingMessage(IndexMessageHeaders.usingPid(pid),
+					UPDATE_MESSAGE_ENCODER.encode(pid, routingKey)));
+		}
+		messageSenderPool.sendMessagesUsingRoutingInfo(messageRoutingInfo, messages);
 	}
 
 	MessageRoutingInfo getMessageRoutingInfo() {
@@ -64,4 +66,9 @@ public class AlvinRecordIndexer implements RecordIndexer {
 		return messageRoutingInfo;
 	}
 
+	MessageSenderPool getMessageSenderPool() {
+		// needed for test
+		return messageSenderPool;
+	}
+
 }
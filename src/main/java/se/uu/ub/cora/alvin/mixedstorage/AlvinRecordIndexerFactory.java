@@ -21,10 +21,15 @@ package se.uu.ub.cora.alvin.mixedstorage;
 import se.uu.ub.cora.messaging.MessageRoutingInfo;
 
 public class AlvinRecordIndexerFactory implements RecordIndexerFactory {
+	private MessageSenderPool messageSenderPool = MessageSenderPool.create();
 
 	@Override
 	public RecordIndexer factor(MessageRoutingInfo messageRoutingInfo) {
-		return new AlvinRecordIndexer(messageRoutingInfo);
+		return new AlvinRecordIndexer(messageRoutingInfo, messageSenderPool);
+	}
+
+	public MessageSenderPool getMessageSenderPool() {
+		return messageSenderPool;
 	}
 
 }
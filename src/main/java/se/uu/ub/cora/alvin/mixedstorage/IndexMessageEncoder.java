@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+public final class IndexMessageEncoder {
+	private static final int INITIAL_BUFFER_SIZE = 256;
+	private static final int MAX_KEPT_BUFFER_SIZE = 4096;
+	private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal
+			.withInitial(() -> new StringBuilder(INITIAL_BUFFER_SIZE));
+	private static final String BEFORE_ROUTING_KEY = ",\"routingKey\":";
+	private final String beforeHeaderPid;
+	private final String beforePid;
+
+	public static IndexMessageEncoder forAction(String action) {
+		return new IndexMessageEncoder(action);
+	}
+
+	private IndexMessageEncoder(String action) {
+		StringBuilder quotedAction = new StringBuilder();
+		appendQuoted(quotedAction, action);
+		beforeHeaderPid = "{\"headers\":{\"ACTION\":" + quotedAction + ",\"PID\":";
+		beforePid = "},\"action\":" + quotedAction + ",\"pid\":";
+	}
+
+	public String encode(String pid, String routingKey) {
+		StringBuilder buffer = getEmptyBuffer();
+		buffer.append(beforeHeaderPid);
+		appendQuoted(buffer, pid);
+		buffer.append(beforePid);
+		appendQuoted(buffer, pid);
+		buffer.append(BEFORE_ROUTING_KEY);
+		appendQuoted(buffer, routingKey);
+		buffer.append('}');
+		return buffer.toString();
+	}
+
+	private StringBuilder getEmptyBuffer() {
+		StringBuilder buffer = BUFFERS.get();
+		if (buffer.capacity() > MAX_KEPT_BUFFER_SIZE) {
+			buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+			BUFFERS.set(buffer);
+		}
+		buffer.setLength(0);
+		return buffer;
+	}
+
+	private static void appendQuoted(StringBuilder buffer, String value) {
+		buffer.append('"');
+		if (needsEscaping(value)) {
+			appendEscaped(buffer, value);
+		} else {
+			buffer.append(value);
+		}
+		buffer.append('"');
+	}
+
+	private static boolean needsEscaping(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < ' ' || c == '"' || c == '\\' || c == '/' || c >= '\u0080') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void appendEscaped(StringBuilder buffer, String value) {
+		char previous;
+		char c = 0;
+		for (int i = 0; i < value.length(); i++) {
+			previous = c;
+			c = value.charAt(i);
+			appendEscapedChar(buffer, previous, c);
+		}
+	}
+
+	private static void appendEscapedChar(StringBuilder buffer, char previous, char c) {
+		switch (c) {
+		case '\\':
+		case '"':
+			buffer.append('\\').append(c);
+			break;
+		case '/':
+			if (previous == '<') {
+				buffer.append('\\');
+			}
+			buffer.append(c);
+			break;
+		case '\b':
+			buffer.append("\\b");
+			break;
+		case '\t':
+			buffer.append("\\t");
+			break;
+		case '\n':
+			buffer.append("\\n");
+			break;
+		case '\f':
+			buffer.append("\\f");
+			break;
+		case '\r':
+			buffer.append("\\r");
+			break;
+		default:
+			appendUnicodeEscapedIfNeeded(buffer, c);
+		}
+	}
+
+	private static void appendUnicodeEscapedIfNeeded(StringBuilder buffer, char c) {
+		if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+			String hex = Integer.toHexString(c);
+			buffer.append("\\u").append("0000", 0, 4 - hex.length()).append(hex);
+		} else {
+			buffer.append(c);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+final class IndexMessageHeaders extends AbstractMap<String, Object> {
+	private static final String PID = "PID";
+	private static final Map<String, Object> HEADER_TEMPLATE = Map.of("__TypeId__",
+			"epc.messaging.amqp.EPCFedoraMessage", "ACTION", "UPDATE", "messageSentFrom", "Cora");
+	private final String pid;
+
+	static Map<String, Object> usingPid(String pid) {
+		return new IndexMessageHeaders(pid);
+	}
+
+	private IndexMessageHeaders(String pid) {
+		this.pid = pid;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (PID.equals(key)) {
+			return pid;
+		}
+		return HEADER_TEMPLATE.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return PID.equals(key) || HEADER_TEMPLATE.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return HEADER_TEMPLATE.size() + 1;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new HeaderIterator();
+			}
+
+			@Override
+			public int size() {
+				return IndexMessageHeaders.this.size();
+			}
+		};
+	}
+
+	private final class HeaderIterator implements Iterator<Entry<String, Object>> {
+		private final Iterator<Entry<String, Object>> templateIterator = HEADER_TEMPLATE
+				.entrySet().iterator();
+		private boolean pidReturned = false;
+
+		@Override
+		public boolean hasNext() {
+			return templateIterator.hasNext() || !pidReturned;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (templateIterator.hasNext()) {
+				return templateIterator.next();
+			}
+			if (pidReturned) {
+				throw new NoSuchElementException();
+			}
+			pidReturned = true;
+			return new SimpleImmutableEntry<>(PID, pid);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public final class IndexMessageRouting {
+	private static final String VIRTUAL_HOST = "alvin";
+	private static final String EXCHANGE = "index";
+	private static final String ROUTING_KEY_PREFIX = "alvin.updates.";
+	private static final Map<String, String> ROUTING_KEYS = new ConcurrentHashMap<>();
+
+	private IndexMessageRouting() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static AmqpMessageRoutingInfo createRoutingInfoUsingHostnameAndPortAndType(
+			String hostname, String port, String type) {
+		return new AmqpMessageRoutingInfo(hostname, port, VIRTUAL_HOST, EXCHANGE,
+				getRoutingKeyForType(type));
+	}
+
+	public static String getRoutingKeyForType(String type) {
+		return ROUTING_KEYS.computeIfAbsent(type, t -> ROUTING_KEY_PREFIX + t);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingProvider;
+
+public final class MessageSenderPool {
+	private Logger log = LoggerProvider.getLoggerForClass(MessageSenderPool.class);
+	private final Map<Object, PooledMessageSender> senders = new ConcurrentHashMap<>();
+	private final LongAdder factoredSenders = new LongAdder();
+	private final LongAdder reconnects = new LongAdder();
+
+	public static MessageSenderPool create() {
+		return new MessageSenderPool();
+	}
+
+	private MessageSenderPool() {
+	}
+
+	public void sendMessageUsingRoutingInfo(MessageRoutingInfo messageRoutingInfo,
+			Map<String, Object> headers, String message) {
+		getOrCreatePooledSender(messageRoutingInfo).sendMessage(headers, message);
+	}
+
+	public void sendMessagesUsingRoutingInfo(MessageRoutingInfo messageRoutingInfo,
+			List<OutgoingMessage> messages) {
+		getOrCreatePooledSender(messageRoutingInfo).sendMessages(messages);
+	}
+
+	private PooledMessageSender getOrCreatePooledSender(MessageRoutingInfo messageRoutingInfo) {
+		return senders.computeIfAbsent(createKey(messageRoutingInfo),
+				key -> new PooledMessageSender(messageRoutingInfo));
+	}
+
+	private static Object createKey(MessageRoutingInfo messageRoutingInfo) {
+		if (messageRoutingInfo instanceof AmqpMessageRoutingInfo) {
+			AmqpMessageRoutingInfo amqpInfo = (AmqpMessageRoutingInfo) messageRoutingInfo;
+			return String.join("|", amqpInfo.hostname, amqpInfo.port, amqpInfo.virtualHost,
+					amqpInfo.exchange, amqpInfo.routingKey);
+		}
+		return messageRoutingInfo;
+	}
+
+	public int getNumberOfSenders() {
+		return senders.size();
+	}
+
+	public long getNumberOfFactoredSenders() {
+		return factoredSenders.sum();
+	}
+
+	public long getNumberOfReconnects() {
+		return reconnects.sum();
+	}
+
+	private final class PooledMessageSender {
+		private final MessageRoutingInfo messageRoutingInfo;
+		private MessageSender sender;
+
+		private PooledMessageSender(MessageRoutingInfo messageRoutingInfo) {
+			this.messageRoutingInfo = messageRoutingInfo;
+		}
+
+		private synchronized void sendMessage(Map<String, Object> headers, String message) {
+			MessageSender currentSender = getOrFactorSender();
+			try {
+				currentSender.sendMessage(headers, message);
+			} catch (RuntimeException e) {
+				sender = null;
+				reconnectAndSendMessage(headers, message, e);
+			}
+		}
+
+		private synchronized void sendMessages(List<OutgoingMessage> messages) {
+			for (OutgoingMessage message : messages) {
+				sendMessage(message.headers, message.message);
+			}
+		}
+
+		private MessageSender getOrFactorSender() {
+			if (sender == null) {
+				sender = MessagingProvider.getTopicMessageSender(messageRoutingInfo);
+				factoredSenders.increment();
+			}
+			return sender;
+		}
+
+		private void reconnectAndSendMessage(Map<String, Object> headers, String message,
+				RuntimeException sendException) {
+			log.logWarnUsingMessage(
+					"Sending message failed, reconnecting: " + sendException.getMessage());
+			reconnects.increment();
+			MessageSender newSender = getOrFactorSender();
+			try {
+				newSender.sendMessage(headers, message);
+			} catch (RuntimeException e) {
+				sender = null;
+				throw e;
+			}
+		}
+	}
+
+	public static final class OutgoingMessage {
+		public final Map<String, Object> headers;
+		public final String message;
+
+		public OutgoingMessage(Map<String, Object> headers, String message) {
+			this.headers = headers;
+			this.message = message;
+		}
+	}
+}
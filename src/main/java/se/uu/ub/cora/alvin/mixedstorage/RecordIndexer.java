@@ -18,8 +18,16 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
+import java.util.List;
+
 public interface RecordIndexer {
 
 	void index(String type, String pid);
 
+	default void indexBatch(String type, List<String> pids) {
+		for (String pid : pids) {
+			index(type, pid);
+		}
+	}
+
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+final class CommandArguments {
+
+	private CommandArguments() {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getPositiveIntOrDefault(String[] args, int position, String name,
+			int defaultValue) {
+		if (args.length <= position) {
+			return defaultValue;
+		}
+		int value = parseIntOrZero(args[position]);
+		if (value <= 0) {
+			throw CommandArgumentException
+					.withMessage(name + " must be a positive number, was: " + args[position]);
+		}
+		return value;
+	}
+
+	private static int parseIntOrZero(String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+final class FedoraPasswordReader {
+	static final String PASSWORD_VARIABLE = "FEDORA_PASSWORD";
+	static final String PASSWORD_FILE_VARIABLE = "FEDORA_PASSWORD_FILE";
+	static final String PASSWORD_USAGE = "The fedora password is read from the environment"
+			+ " variable " + PASSWORD_VARIABLE + ", or from the file named in "
+			+ PASSWORD_FILE_VARIABLE + ".";
+
+	private FedoraPasswordReader() {
+		throw new UnsupportedOperationException();
+	}
+
+	static String readPasswordUsingEnvironment(Map<String, String> environment) {
+		String password = environment.get(PASSWORD_VARIABLE);
+		if (password != null) {
+			return password;
+		}
+		String passwordFile = environment.get(PASSWORD_FILE_VARIABLE);
+		if (passwordFile == null) {
+			throw CommandArgumentException.withMessage("No fedora password set in "
+					+ PASSWORD_VARIABLE + " or " + PASSWORD_FILE_VARIABLE);
+		}
+		return readPasswordFromFile(passwordFile);
+	}
+
+	private static String readPasswordFromFile(String passwordFile) {
+		try {
+			String content = new String(Files.readAllBytes(Paths.get(passwordFile)),
+					StandardCharsets.UTF_8);
+			return removeTrailingLineBreaks(content);
+		} catch (IOException e) {
+			throw CommandArgumentException.withMessageAndException(
+					"Error reading fedora password from " + passwordFile + ": " + e.getMessage(),
+					e);
+		}
+	}
+
+	private static String removeTrailingLineBreaks(String content) {
+		int end = content.length();
+		while (end > 0 && (content.charAt(end - 1) == '\n' || content.charAt(end - 1) == '\r')) {
+			end--;
+		}
+		return content.substring(0, end);
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.AlvinFedoraConverterFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.AlvinFedoraToCoraConverterFactoryImp;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig.CreateMode;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult.Failure;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportSource;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImporter;
+import se.uu.ub.cora.converter.Converter;
+import se.uu.ub.cora.converter.ConverterProvider;
+import se.uu.ub.cora.data.DataGroup;
+
+public final class PlaceImportCommand {
+	private static final int EXIT_OK = 0;
+	private static final int EXIT_FAILURES = 1;
+	private static final int EXIT_USAGE = 2;
+	private static final int MIN_NUMBER_OF_ARGUMENTS = 4;
+	private static final int MAX_NUMBER_OF_ARGUMENTS = 7;
+	private static final String USAGE = "Usage: PlaceImportCommand fedoraURL fedoraUsername"
+			+ " inputDirectory checkpointFile"
+			+ " [pidBlockSize [conversionThreads [maxConcurrentIngests]]]";
+	private PrintStream out;
+	private Converter xmlConverter;
+	private Map<String, String> environment;
+
+	PlaceImportCommand(PrintStream out, Converter xmlConverter,
+			Map<String, String> environment) {
+		this.out = out;
+		this.xmlConverter = xmlConverter;
+		this.environment = environment;
+	}
+
+	public static void main(String[] args) {
+		PlaceImportCommand command = new PlaceImportCommand(System.out,
+				ConverterProvider.getConverter("xml"), System.getenv());
+		System.exit(command.run(args));
+	}
+
+	int run(String[] args) {
+		if (args.length < MIN_NUMBER_OF_ARGUMENTS || args.length > MAX_NUMBER_OF_ARGUMENTS) {
+			printUsage();
+			return EXIT_USAGE;
+		}
+		PlaceImporter importer;
+		try {
+			importer = createImporter(args, createImportConfig(args));
+		} catch (CommandArgumentException e) {
+			out.println(e.getMessage());
+			printUsage();
+			return EXIT_USAGE;
+		}
+		PlaceImportResult result = importer
+				.importPlaces(createPlaceSourcesUsingDirectory(Paths.get(args[2])));
+		out.print(createReport(result));
+		return result.failures.isEmpty() ? EXIT_OK : EXIT_FAILURES;
+	}
+
+	private void printUsage() {
+		out.println(USAGE);
+		out.println(FedoraPasswordReader.PASSWORD_USAGE);
+	}
+
+	private PlaceImportConfig createImportConfig(String[] args) {
+		PlaceImportConfig defaults = PlaceImportConfig
+				.withCheckpointPathAndDefaultValues(args[3]);
+		return new PlaceImportConfig(
+				CommandArguments.getPositiveIntOrDefault(args, 4, "pidBlockSize",
+						defaults.pidBlockSize),
+				CommandArguments.getPositiveIntOrDefault(args, 5, "conversionThreads",
+						defaults.conversionThreads),
+				CommandArguments.getPositiveIntOrDefault(args, 6, "maxConcurrentIngests",
+						defaults.maxConcurrentIngests),
+				args[3]);
+	}
+
+	private PlaceImporter createImporter(String[] args, PlaceImportConfig importConfig) {
+		String fedoraPassword = FedoraPasswordReader.readPasswordUsingEnvironment(environment);
+		FedoraConfig fedoraConfig = new FedoraConfig(args[1], fedoraPassword, args[0],
+				CreateMode.INGEST);
+		FedoraTransportConfig defaultTransport = FedoraTransportConfig.withDefaultValues();
+		FedoraTransportConfig transportConfig = new FedoraTransportConfig(
+				Math.max(defaultTransport.poolSize, importConfig.maxConcurrentIngests + 1),
+				defaultTransport.connectTimeoutMillis, defaultTransport.readTimeoutMillis);
+		FedoraHttpHandlerFactory httpHandlerFactory = FedoraHttpHandlerFactory
+				.usingUsernameAndPasswordAndTransportConfig(args[1], fedoraPassword,
+						transportConfig);
+		AlvinFedoraConverterFactory converterFactory = AlvinFedoraToCoraConverterFactoryImp
+				.usingFedoraURLAndHttpHandlerFactory(args[0], httpHandlerFactory);
+		return PlaceImporter.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndImportConfig(
+				httpHandlerFactory, converterFactory, fedoraConfig, importConfig);
+	}
+
+	List<PlaceImportSource> createPlaceSourcesUsingDirectory(Path inputDirectory) {
+		List<Path> files = listXmlFilesInNameOrder(inputDirectory);
+		return files.stream().map(this::createPlaceSourceUsingFile)
+				.collect(Collectors.toList());
+	}
+
+	private List<Path> listXmlFilesInNameOrder(Path inputDirectory) {
+		try (Stream<Path> files = Files.list(inputDirectory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".xml")).sorted()
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error listing places to import in " + inputDirectory + ": " + e.getMessage(),
+					e);
+		}
+	}
+
+	private PlaceImportSource createPlaceSourceUsingFile(Path file) {
+		return new PlaceImportSource(file.getFileName().toString(),
+				() -> readPlaceFromFile(file));
+	}
+
+	private DataGroup readPlaceFromFile(Path file) {
+		try {
+			String xml = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+			return (DataGroup) xmlConverter.convert(xml);
+		} catch (Exception e) {
+			throw FedoraException.withMessageAndException(
+					"Error reading place from " + file.getFileName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	String createReport(PlaceImportResult result) {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT,
+				"Imported: %d, skipped: %d, failed: %d, time: %d ms, %.1f places/s%n",
+				result.numberOfImported, result.numberOfSkipped, result.failures.size(),
+				result.elapsedMillis, result.getPlacesPerSecond()));
+		for (Failure failure : result.failures) {
+			report.append(String.format(Locale.ROOT,
+					"Failed file: %s, index: %d, pid: %s, message: %s%n", failure.sourceName,
+					failure.index, failure.pid, failure.message));
+		}
+		return report.toString();
+	}
+}
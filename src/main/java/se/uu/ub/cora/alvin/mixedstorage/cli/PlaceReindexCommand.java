@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+
+import se.uu.ub.cora.alvin.mixedstorage.AlvinRecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.IndexMessageRouting;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceReindexConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceReindexResult;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceReindexer;
+
+public final class PlaceReindexCommand {
+	private static final int EXIT_OK = 0;
+	private static final int EXIT_STOPPED = 1;
+	private static final int EXIT_USAGE = 2;
+	private static final int MIN_NUMBER_OF_ARGUMENTS = 5;
+	private static final int MAX_NUMBER_OF_ARGUMENTS = 7;
+	private static final String PLACE = "place";
+	private static final String USAGE = "Usage: PlaceReindexCommand fedoraURL fedoraUsername"
+			+ " messageServerHostname messageServerPort checkpointFile"
+			+ " [messagesPerSecond [maxAttempts]]";
+	private PrintStream out;
+	private RecordIndexerFactory recordIndexerFactory;
+	private Map<String, String> environment;
+
+	PlaceReindexCommand(PrintStream out, RecordIndexerFactory recordIndexerFactory,
+			Map<String, String> environment) {
+		this.out = out;
+		this.recordIndexerFactory = recordIndexerFactory;
+		this.environment = environment;
+	}
+
+	public static void main(String[] args) {
+		PlaceReindexCommand command = new PlaceReindexCommand(System.out,
+				new AlvinRecordIndexerFactory(), System.getenv());
+		System.exit(command.run(args));
+	}
+
+	int run(String[] args) {
+		if (args.length < MIN_NUMBER_OF_ARGUMENTS || args.length > MAX_NUMBER_OF_ARGUMENTS) {
+			printUsage();
+			return EXIT_USAGE;
+		}
+		PlaceReindexer reindexer;
+		try {
+			reindexer = createReindexer(args, createReindexConfig(args));
+		} catch (CommandArgumentException e) {
+			out.println(e.getMessage());
+			printUsage();
+			return EXIT_USAGE;
+		}
+		try {
+			out.print(createReport(reindexer.reindexAllPlaces()));
+			return EXIT_OK;
+		} catch (FedoraException e) {
+			out.println("Reindex stopped, rerun to resume: " + e.getMessage());
+			return EXIT_STOPPED;
+		}
+	}
+
+	private void printUsage() {
+		out.println(USAGE);
+		out.println(FedoraPasswordReader.PASSWORD_USAGE);
+	}
+
+	private PlaceReindexConfig createReindexConfig(String[] args) {
+		PlaceReindexConfig defaults = PlaceReindexConfig
+				.withCheckpointPathAndDefaultValues(args[4]);
+		return new PlaceReindexConfig(
+				CommandArguments.getPositiveIntOrDefault(args, 5, "messagesPerSecond",
+						defaults.messagesPerSecond),
+				CommandArguments.getPositiveIntOrDefault(args, 6, "maxAttempts",
+						defaults.maxAttempts),
+				defaults.retryDelayMillis, defaults.pageSize, args[4]);
+	}
+
+	private PlaceReindexer createReindexer(String[] args, PlaceReindexConfig reindexConfig) {
+		String fedoraPassword = FedoraPasswordReader.readPasswordUsingEnvironment(environment);
+		FedoraHttpHandlerFactory httpHandlerFactory = FedoraHttpHandlerFactory
+				.usingUsernameAndPasswordAndTransportConfig(args[1], fedoraPassword,
+						FedoraTransportConfig.withDefaultValues());
+		RecordIndexer recordIndexer = recordIndexerFactory.factor(IndexMessageRouting
+				.createRoutingInfoUsingHostnameAndPortAndType(args[2], args[3], PLACE));
+		return PlaceReindexer.usingHttpHandlerFactoryAndBaseUrlAndRecordIndexerAndReindexConfig(
+				httpHandlerFactory, args[0], recordIndexer, reindexConfig);
+	}
+
+	String createReport(PlaceReindexResult result) {
+		return String.format(Locale.ROOT,
+				"Reindexed: %d, skipped: %d, retries: %d, time: %d ms, %.1f messages/s%n",
+				result.numberOfReindexed, result.numberOfSkipped, result.numberOfRetries,
+				result.elapsedMillis, result.getMessagesPerSecond());
+	}
+}
@@ -19,11 +19,15 @@
 
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
+import java.io.InputStream;
+
 import se.uu.ub.cora.data.DataGroup;
 
 public interface AlvinCoraToFedoraConverter {
 	public String toXML(DataGroup dataRecord);
 
+	public String toXMLUsingCurrentFedoraXML(DataGroup dataRecord, InputStream currentFedoraXML);
+
 	public String toNewXML(DataGroup dataRecord);
 
 }
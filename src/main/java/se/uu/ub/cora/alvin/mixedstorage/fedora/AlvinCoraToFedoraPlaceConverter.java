@@ -19,6 +19,7 @@
 
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
+import java.io.InputStream;
 import java.util.Collection;
 
 import se.uu.ub.cora.alvin.mixedstorage.parse.XMLXPathParser;
@@ -54,6 +55,13 @@ public class AlvinCoraToFedoraPlaceConverter implements AlvinCoraToFedoraConvert
 		return parser.getDocumentAsString("/");
 	}
 
+	@Override
+	public String toXMLUsingCurrentFedoraXML(DataGroup dataRecord, InputStream currentFedoraXML) {
+		parser = XMLXPathParser.forXML(currentFedoraXML);
+		convertDefaultName(dataRecord);
+		return parser.getDocumentAsString("/");
+	}
+
 	private String getXMLForRecordFromFedora(String recordId) {
 		String url = fedoraURL + "objects/" + recordId + "/datastreams/METADATA/content";
 		HttpHandler httpHandler = httpHandlerFactory.factor(url);
@@ -75,7 +83,7 @@ public class AlvinCoraToFedoraPlaceConverter implements AlvinCoraToFedoraConvert
 		parser.setStringInDocumentUsingXPath(xpathString, newValue);
 	}
 
-	private String getDefaultNameFromPlaceRecord(DataGroup dataRecord) {
+	static String getDefaultNameFromPlaceRecord(DataGroup dataRecord) {
 		Collection<DataGroup> nameGroups = dataRecord.getAllGroupsWithNameInDataAndAttributes("name",
 				DataAttributeProvider.getDataAttributeUsingNameInDataAndValue("type",
 						"authorized"));
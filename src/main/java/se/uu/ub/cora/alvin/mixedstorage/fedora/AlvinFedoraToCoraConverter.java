@@ -18,10 +18,14 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
+import java.io.InputStream;
+
 import se.uu.ub.cora.data.DataGroup;
 
 public interface AlvinFedoraToCoraConverter {
 
 	DataGroup fromXML(String xml);
 
+	DataGroup fromXML(InputStream xml);
+
 }
@@ -19,18 +19,27 @@
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
 import se.uu.ub.cora.alvin.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
 import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
 
 public class AlvinFedoraToCoraConverterFactoryImp implements AlvinFedoraConverterFactory {
 
 	private String fedoraURL;
+	private HttpHandlerFactory httpHandlerFactory;
 
 	public static AlvinFedoraToCoraConverterFactoryImp usingFedoraURL(String fedoraURL) {
-		return new AlvinFedoraToCoraConverterFactoryImp(fedoraURL);
+		return new AlvinFedoraToCoraConverterFactoryImp(fedoraURL, new HttpHandlerFactoryImp());
 	}
 
-	private AlvinFedoraToCoraConverterFactoryImp(String fedoraURL) {
+	public static AlvinFedoraToCoraConverterFactoryImp usingFedoraURLAndHttpHandlerFactory(
+			String fedoraURL, HttpHandlerFactory httpHandlerFactory) {
+		return new AlvinFedoraToCoraConverterFactoryImp(fedoraURL, httpHandlerFactory);
+	}
+
+	private AlvinFedoraToCoraConverterFactoryImp(String fedoraURL,
+			HttpHandlerFactory httpHandlerFactory) {
 		this.fedoraURL = fedoraURL;
+		this.httpHandlerFactory = httpHandlerFactory;
 	}
 
 	@Override
@@ -51,7 +60,6 @@ public class AlvinFedoraToCoraConverterFactoryImp implements AlvinFedoraConverte
 	}
 
 	private AlvinCoraToFedoraConverter createCoraToFedoraConverter() {
-		HttpHandlerFactoryImp httpHandlerFactory = new HttpHandlerFactoryImp();
 		return AlvinCoraToFedoraPlaceConverter
 				.usingHttpHandlerFactoryAndFedoraUrl(httpHandlerFactory, fedoraURL);
 	}
@@ -60,4 +68,9 @@ public class AlvinFedoraToCoraConverterFactoryImp implements AlvinFedoraConverte
 		// needed for tests
 		return fedoraURL;
 	}
+
+	public HttpHandlerFactory getHttpHandlerFactory() {
+		// needed for tests
+		return httpHandlerFactory;
+	}
 }
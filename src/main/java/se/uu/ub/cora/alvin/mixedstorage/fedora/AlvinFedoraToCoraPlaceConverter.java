@@ -18,9 +18,9 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
+import java.io.InputStream;
+
 import se.uu.ub.cora.alvin.mixedstorage.xslt.XsltTransformation;
-import se.uu.ub.cora.converter.Converter;
-import se.uu.ub.cora.converter.ConverterProvider;
 import se.uu.ub.cora.data.DataGroup;
 
 public class AlvinFedoraToCoraPlaceConverter implements AlvinFedoraToCoraConverter {
@@ -30,12 +30,12 @@ public class AlvinFedoraToCoraPlaceConverter implements AlvinFedoraToCoraConvert
 	@Override
 	public DataGroup fromXML(String xmlToTransform) {
 		XsltTransformation xsltTransformation = new XsltTransformation(XSLT_PATH);
-		String coraXml = xsltTransformation.transform(xmlToTransform);
-		return convertXMLToDataElement(coraXml);
+		return xsltTransformation.transformToDataGroup(xmlToTransform);
 	}
 
-	private DataGroup convertXMLToDataElement(String xmlString) {
-		Converter converter = ConverterProvider.getConverter("xml");
-		return (DataGroup) converter.convert(xmlString);
+	@Override
+	public DataGroup fromXML(InputStream xmlToTransform) {
+		XsltTransformation xsltTransformation = new XsltTransformation(XSLT_PATH);
+		return xsltTransformation.transformToDataGroup(xmlToTransform);
 	}
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+
+final class CanonicalXmlHash {
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+	private static final byte START_ELEMENT = '<';
+	private static final byte END_ELEMENT = '>';
+	private static final byte ATTRIBUTE = '@';
+	private static final byte TEXT = '"';
+	private static final byte SEPARATOR = 0;
+
+	private CanonicalXmlHash() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		return inputFactory;
+	}
+
+	static byte[] hashXML(String xml) {
+		return hashXMLStream(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	static byte[] hashXMLStream(InputStream xml) {
+		try {
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(xml);
+			try {
+				return hashUsingStreamReader(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw ParseException.withMessageAndException("Can not read xml: " + e.getMessage(), e);
+		}
+	}
+
+	private static byte[] hashUsingStreamReader(XMLStreamReader reader)
+			throws XMLStreamException {
+		MessageDigest digest = createDigest();
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (XMLStreamConstants.START_ELEMENT == event) {
+				updateWithStartElement(digest, reader);
+			} else if (XMLStreamConstants.END_ELEMENT == event) {
+				digest.update(END_ELEMENT);
+			} else if (isText(event)) {
+				updateWithTextIfNotOnlyWhitespace(digest, reader.getText());
+			}
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw ParseException.withMessageAndException(
+					"Can not create digest for xml: " + e.getMessage(), e);
+		}
+	}
+
+	private static void updateWithStartElement(MessageDigest digest, XMLStreamReader reader) {
+		updateWithToken(digest, START_ELEMENT,
+				createQualifiedName(reader.getNamespaceURI(), reader.getLocalName()));
+		for (Entry<String, String> attribute : getAttributesSortedByName(reader).entrySet()) {
+			updateWithToken(digest, ATTRIBUTE, attribute.getKey());
+			updateWithToken(digest, TEXT, attribute.getValue());
+		}
+	}
+
+	private static String createQualifiedName(String namespaceURI, String localName) {
+		if (namespaceURI == null || namespaceURI.isEmpty()) {
+			return localName;
+		}
+		return "{" + namespaceURI + "}" + localName;
+	}
+
+	private static Map<String, String> getAttributesSortedByName(XMLStreamReader reader) {
+		Map<String, String> attributes = new TreeMap<>();
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			attributes.put(createQualifiedName(reader.getAttributeNamespace(i),
+					reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+		}
+		return attributes;
+	}
+
+	private static boolean isText(int event) {
+		return XMLStreamConstants.CHARACTERS == event || XMLStreamConstants.CDATA == event
+				|| XMLStreamConstants.SPACE == event;
+	}
+
+	private static void updateWithTextIfNotOnlyWhitespace(MessageDigest digest, String text) {
+		if (!text.isBlank()) {
+			updateWithToken(digest, TEXT, text);
+		}
+	}
+
+	private static void updateWithToken(MessageDigest digest, byte tokenType, String value) {
+		digest.update(tokenType);
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update(SEPARATOR);
+	}
+}
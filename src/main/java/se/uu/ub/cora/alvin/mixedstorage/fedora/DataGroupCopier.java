@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataAttribute;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+final class DataGroupCopier {
+
+	private DataGroupCopier() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	static DataGroup copyDataGroup(DataGroup dataGroup) {
+		DataGroup copy = DataGroupProvider.getDataGroupUsingNameInData(dataGroup.getNameInData());
+		copy.setRepeatId(dataGroup.getRepeatId());
+		for (DataAttribute attribute : dataGroup.getAttributes()) {
+			copy.addAttributeByIdWithValue(attribute.getNameInData(), attribute.getValue());
+		}
+		for (DataElement child : dataGroup.getChildren()) {
+			copy.addChild(copyDataElement(child));
+		}
+		return copy;
+	}
+
+	private static DataElement copyDataElement(DataElement dataElement) {
+		if (dataElement instanceof DataGroup) {
+			return copyDataGroup((DataGroup) dataElement);
+		}
+		return copyDataAtomic((DataAtomic) dataElement);
+	}
+
+	private static DataAtomic copyDataAtomic(DataAtomic dataAtomic) {
+		DataAtomic copy = DataAtomicProvider.getDataAtomicUsingNameInDataAndValue(
+				dataAtomic.getNameInData(), dataAtomic.getValue());
+		copy.setRepeatId(dataAtomic.getRepeatId());
+		return copy;
+	}
+}
@@ -20,14 +20,26 @@ package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
 public class FedoraConfig {
 
+	public enum CreateMode {
+		INGEST, MULTI_CALL
+	}
+
+	public static final CreateMode DEFAULT_CREATE_MODE = CreateMode.INGEST;
 	public final String userName;
 	public final String password;
 	public final String baseUrl;
+	public final CreateMode createMode;
 
 	public FedoraConfig(String userName, String password, String baseUrl) {
+		this(userName, password, baseUrl, DEFAULT_CREATE_MODE);
+	}
+
+	public FedoraConfig(String userName, String password, String baseUrl,
+			CreateMode createMode) {
 		this.userName = userName;
 		this.password = password;
 		this.baseUrl = baseUrl;
+		this.createMode = createMode;
 	}
 
 }
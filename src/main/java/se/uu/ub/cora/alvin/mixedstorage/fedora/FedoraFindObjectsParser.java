@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+
+final class FedoraFindObjectsParser {
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+	private Consumer<FedoraObjectFields> objectFieldsConsumer;
+	private String sessionToken = "";
+	private String completeListSize = "";
+	private String pid;
+	private String label;
+	private String lastModifiedDate;
+
+	static FedoraFindObjectsParser usingObjectFieldsConsumer(
+			Consumer<FedoraObjectFields> objectFieldsConsumer) {
+		return new FedoraFindObjectsParser(objectFieldsConsumer);
+	}
+
+	private FedoraFindObjectsParser(Consumer<FedoraObjectFields> objectFieldsConsumer) {
+		this.objectFieldsConsumer = objectFieldsConsumer;
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return inputFactory;
+	}
+
+	void parse(Reader findObjectsResult) {
+		try {
+			parseUsingStreamReader(INPUT_FACTORY.createXMLStreamReader(findObjectsResult));
+		} catch (XMLStreamException e) {
+			throw ParseException.withMessageAndException("Can not read xml: " + e.getMessage(), e);
+		}
+	}
+
+	void parse(InputStream findObjectsResult) {
+		try {
+			parseUsingStreamReader(INPUT_FACTORY.createXMLStreamReader(findObjectsResult));
+		} catch (XMLStreamException e) {
+			throw ParseException.withMessageAndException("Can not read xml: " + e.getMessage(), e);
+		}
+	}
+
+	private void parseUsingStreamReader(XMLStreamReader reader) throws XMLStreamException {
+		tryToParse(reader);
+		reader.close();
+	}
+
+	private void tryToParse(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (XMLStreamConstants.START_ELEMENT == event) {
+				handleStartElement(reader);
+			} else if (XMLStreamConstants.END_ELEMENT == event
+					&& "objectFields".equals(reader.getLocalName())) {
+				objectFieldsConsumer.accept(new FedoraObjectFields(pid, label, lastModifiedDate));
+			}
+		}
+	}
+
+	private void handleStartElement(XMLStreamReader reader) throws XMLStreamException {
+		switch (reader.getLocalName()) {
+		case "objectFields":
+			pid = "";
+			label = "";
+			lastModifiedDate = "";
+			break;
+		case "pid":
+			pid = reader.getElementText();
+			break;
+		case "label":
+			label = reader.getElementText();
+			break;
+		case "mDate":
+			lastModifiedDate = reader.getElementText();
+			break;
+		case "token":
+			sessionToken = reader.getElementText();
+			break;
+		case "completeListSize":
+			completeListSize = reader.getElementText();
+			break;
+		default:
+			break;
+		}
+	}
+
+	String getSessionToken() {
+		return sessionToken;
+	}
+
+	String getCompleteListSize() {
+		return completeListSize;
+	}
+}
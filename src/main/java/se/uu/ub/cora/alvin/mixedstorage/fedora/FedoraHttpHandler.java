@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import se.uu.ub.cora.httphandler.HttpHandler;
+
+final class FedoraHttpHandler implements HttpHandler {
+	private static final int FIRST_ERROR_CODE = 400;
+	private FedoraHttpHandlerFactory transport;
+	private String url;
+	private String requestMethod = "GET";
+	private Map<String, String> requestProperties = new LinkedHashMap<>();
+	private BodyPublisher body = BodyPublishers.noBody();
+	private HttpResponse<String> response;
+	private boolean responseAsStream = false;
+	private HttpResponse<InputStream> streamResponse;
+	private String streamResponseText;
+
+	FedoraHttpHandler(FedoraHttpHandlerFactory transport, String url) {
+		this.transport = transport;
+		this.url = url;
+	}
+
+	@Override
+	public void setRequestMethod(String requestMethod) {
+		this.requestMethod = requestMethod;
+	}
+
+	@Override
+	public void setRequestProperty(String key, String value) {
+		requestProperties.put(key, value);
+	}
+
+	@Override
+	public void setBasicAuthorization(String username, String password) {
+		requestProperties.put("Authorization",
+				FedoraHttpHandlerFactory.createBasicAuthorizationHeader(username, password));
+	}
+
+	@Override
+	public void setOutput(String outputString) {
+		requestProperties.putIfAbsent("Content-Type", "text/xml; charset=UTF-8");
+		body = BodyPublishers.ofString(outputString, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void setStreamOutput(InputStream stream) {
+		requestProperties.putIfAbsent("Content-Type", "application/octet-stream");
+		body = BodyPublishers.ofInputStream(() -> stream);
+	}
+
+	void setResponseAsStream() {
+		responseAsStream = true;
+	}
+
+	InputStream getResponseStream() {
+		if (responseAsStream) {
+			return getStreamResponse().body();
+		}
+		return new ByteArrayInputStream(getResponseText().getBytes(StandardCharsets.UTF_8));
+	}
+
+	void closeResponseStream() {
+		if (streamResponse != null) {
+			closeStreamUsingUrl(streamResponse.body());
+		}
+	}
+
+	private void closeStreamUsingUrl(InputStream stream) {
+		try {
+			stream.close();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error closing response from fedora using url: " + url + ": " + e.getMessage(),
+					e);
+		}
+	}
+
+	private HttpResponse<InputStream> getStreamResponse() {
+		if (streamResponse == null) {
+			streamResponse = transport.sendForStream(url, requestMethod, requestProperties, body);
+		}
+		return streamResponse;
+	}
+
+	@Override
+	public int getResponseCode() {
+		if (responseAsStream) {
+			return getStreamResponse().statusCode();
+		}
+		return getResponse().statusCode();
+	}
+
+	private HttpResponse<String> getResponse() {
+		if (response == null) {
+			response = transport.send(url, requestMethod, requestProperties, body);
+		}
+		return response;
+	}
+
+	@Override
+	public String getResponseText() {
+		if (responseAsStream) {
+			return readStreamResponseText();
+		}
+		return getResponse().body();
+	}
+
+	private String readStreamResponseText() {
+		if (streamResponseText == null) {
+			streamResponseText = readAndCloseStream(getStreamResponse().body());
+		}
+		return streamResponseText;
+	}
+
+	private String readAndCloseStream(InputStream stream) {
+		try (InputStream in = stream) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error reading response from fedora using url: " + url + ": " + e.getMessage(),
+					e);
+		}
+	}
+
+	@Override
+	public String getErrorText() {
+		if (getResponseCode() >= FIRST_ERROR_CODE) {
+			return getResponseText();
+		}
+		return "";
+	}
+
+	@Override
+	public String getHeaderField(String name) {
+		if (responseAsStream) {
+			return getStreamResponse().headers().firstValue(name).orElse(null);
+		}
+		return getResponse().headers().firstValue(name).orElse(null);
+	}
+
+	String getUrl() {
+		// needed for test
+		return url;
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import se.uu.ub.cora.alvin.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+import se.uu.ub.cora.httphandler.HttpMultiPartUploader;
+
+public final class FedoraHttpHandlerFactory implements HttpHandlerFactory {
+	private static final ConcurrentMap<String, FedoraHttpHandlerFactory> sharedFactories = new ConcurrentHashMap<>();
+	private FedoraTransportConfig transportConfig;
+	private String authorizationHeader;
+	private HttpClient httpClient;
+	private Semaphore connectionPermits;
+
+	public static FedoraHttpHandlerFactory usingUsernameAndPasswordAndTransportConfig(
+			String username, String password, FedoraTransportConfig transportConfig) {
+		return new FedoraHttpHandlerFactory(username, password, transportConfig);
+	}
+
+	public static FedoraHttpHandlerFactory getSharedUsingUsernameAndPasswordAndTransportConfig(
+			String username, String password, FedoraTransportConfig transportConfig) {
+		String key = username + "\n" + hashPassword(password) + "\n" + transportConfig.poolSize
+				+ "\n" + transportConfig.connectTimeoutMillis + "\n"
+				+ transportConfig.readTimeoutMillis;
+		return sharedFactories.computeIfAbsent(key,
+				k -> usingUsernameAndPasswordAndTransportConfig(username, password,
+						transportConfig));
+	}
+
+	private static String hashPassword(String password) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder()
+					.encodeToString(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw FedoraException.withMessageAndException(
+					"Error hashing fedora password: " + e.getMessage(), e);
+		}
+	}
+
+	static String createBasicAuthorizationHeader(String username, String password) {
+		return "Basic " + Base64.getEncoder()
+				.encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private FedoraHttpHandlerFactory(String username, String password,
+			FedoraTransportConfig transportConfig) {
+		this.transportConfig = transportConfig;
+		authorizationHeader = createBasicAuthorizationHeader(username, password);
+		httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofMillis(transportConfig.connectTimeoutMillis)).build();
+		connectionPermits = new Semaphore(transportConfig.poolSize, true);
+	}
+
+	@Override
+	public HttpHandler factor(String url) {
+		return new FedoraHttpHandler(this, url);
+	}
+
+	@Override
+	public HttpMultiPartUploader factorHttpMultiPartUploader(String url) {
+		throw NotImplementedException
+				.withMessage("factorHttpMultiPartUploader is not implemented for fedora");
+	}
+
+	HttpResponse<String> send(String url, String requestMethod, Map<String, String> headers,
+			HttpRequest.BodyPublisher body) {
+		HttpRequest request = createRequest(url, requestMethod, headers, body);
+		acquireConnectionPermit(url);
+		try {
+			return sendRequestUsingBodyHandler(url, request,
+					BodyHandlers.ofString(StandardCharsets.UTF_8));
+		} finally {
+			connectionPermits.release();
+		}
+	}
+
+	HttpResponse<InputStream> sendForStream(String url, String requestMethod,
+			Map<String, String> headers, HttpRequest.BodyPublisher body) {
+		HttpRequest request = createRequest(url, requestMethod, headers, body);
+		acquireConnectionPermit(url);
+		AtomicBoolean permitReleased = new AtomicBoolean();
+		try {
+			return sendRequestUsingBodyHandler(url, request,
+					createPermitReleasingStreamBodyHandler(permitReleased));
+		} catch (RuntimeException e) {
+			releasePermitOnce(permitReleased);
+			throw e;
+		}
+	}
+
+	private BodyHandler<InputStream> createPermitReleasingStreamBodyHandler(
+			AtomicBoolean permitReleased) {
+		return responseInfo -> BodySubscribers.mapping(BodySubscribers.ofInputStream(),
+				stream -> new PermitReleasingInputStream(stream, permitReleased));
+	}
+
+	private void releasePermitOnce(AtomicBoolean permitReleased) {
+		if (permitReleased.compareAndSet(false, true)) {
+			connectionPermits.release();
+		}
+	}
+
+	private <T> HttpResponse<T> sendRequestUsingBodyHandler(String url, HttpRequest request,
+			BodyHandler<T> bodyHandler) {
+		try {
+			return httpClient.send(request, bodyHandler);
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error communicating with fedora using url: " + url + ": " + e.getMessage(),
+					e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw FedoraException.withMessageAndException(
+					"Interrupted while communicating with fedora using url: " + url, e);
+		}
+	}
+
+	private HttpRequest createRequest(String url, String requestMethod,
+			Map<String, String> headers, HttpRequest.BodyPublisher body) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+				.timeout(Duration.ofMillis(transportConfig.readTimeoutMillis))
+				.method(requestMethod, body);
+		builder.setHeader("Authorization", authorizationHeader);
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			builder.setHeader(header.getKey(), header.getValue());
+		}
+		return builder.build();
+	}
+
+	private void acquireConnectionPermit(String url) {
+		try {
+			tryToAcquireConnectionPermitWithinReadTimeout(url);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw FedoraException.withMessageAndException(
+					"Interrupted while waiting for a connection to fedora for url: " + url, e);
+		}
+	}
+
+	private void tryToAcquireConnectionPermitWithinReadTimeout(String url)
+			throws InterruptedException {
+		if (!connectionPermits.tryAcquire(transportConfig.readTimeoutMillis,
+				TimeUnit.MILLISECONDS)) {
+			throw FedoraException.withMessage("Timed out after "
+					+ transportConfig.readTimeoutMillis
+					+ " ms waiting for a connection to fedora for url: " + url);
+		}
+	}
+
+	public FedoraTransportConfig getTransportConfig() {
+		return transportConfig;
+	}
+
+	String getAuthorizationHeader() {
+		// needed for test
+		return authorizationHeader;
+	}
+
+	HttpClient getHttpClient() {
+		// needed for test
+		return httpClient;
+	}
+
+	static Set<String> getSharedFactoryKeys() {
+		// needed for test
+		return sharedFactories.keySet();
+	}
+
+	int getNumberOfAvailableConnections() {
+		// needed for test
+		return connectionPermits.availablePermits();
+	}
+
+	private final class PermitReleasingInputStream extends FilterInputStream {
+		private AtomicBoolean permitReleased;
+
+		private PermitReleasingInputStream(InputStream in, AtomicBoolean permitReleased) {
+			super(in);
+			this.permitReleased = permitReleased;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				releasePermitOnce(permitReleased);
+			}
+		}
+	}
+}
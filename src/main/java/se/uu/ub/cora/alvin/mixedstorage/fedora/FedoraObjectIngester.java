@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import se.uu.ub.cora.alvin.mixedstorage.util.URLEncoder;
+import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+
+final class FedoraObjectIngester {
+	private static final int OK = 200;
+	private static final int CREATED = 201;
+	private static final int NOT_FOUND = 404;
+	private HttpHandlerFactory httpHandlerFactory;
+	private String baseURL;
+
+	static FedoraObjectIngester usingHttpHandlerFactoryAndFedoraConfig(
+			HttpHandlerFactory httpHandlerFactory, FedoraConfig fedoraConfig) {
+		return new FedoraObjectIngester(httpHandlerFactory, fedoraConfig);
+	}
+
+	private FedoraObjectIngester(HttpHandlerFactory httpHandlerFactory,
+			FedoraConfig fedoraConfig) {
+		this.httpHandlerFactory = httpHandlerFactory;
+		this.baseURL = fedoraConfig.baseUrl;
+	}
+
+	void ingestPlace(String pid, String recordLabel, String metadataXML) {
+		ingestFoxml(pid,
+				PlaceFoxml.createUsingPidAndLabelAndMetadataXml(pid, recordLabel, metadataXML));
+	}
+
+	void ingestFoxml(String pid, String foxml) {
+		String url = baseURL + "objects/" + pid + "?format="
+				+ URLEncoder.encode("info:fedora/fedora-system:FOXML-1.1")
+				+ "&logMessage=coraWritten";
+		HttpHandler httpHandler = httpHandlerFactory.factor(url);
+		httpHandler.setRequestMethod("POST");
+		httpHandler.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+		httpHandler.setOutput(foxml);
+		throwErrorIfNotCreated(httpHandler.getResponseCode());
+	}
+
+	boolean objectExists(String pid) {
+		HttpHandler httpHandler = httpHandlerFactory
+				.factor(baseURL + "objects/" + pid + "?format=xml");
+		httpHandler.setRequestMethod("GET");
+		int responseCode = httpHandler.getResponseCode();
+		if (responseCode == NOT_FOUND) {
+			return false;
+		}
+		if (responseCode != OK) {
+			throw FedoraException.withMessage(
+					"checking if object exists in fedora failed, with response code: "
+							+ responseCode);
+		}
+		return true;
+	}
+
+	private void throwErrorIfNotCreated(int responseCode) {
+		if (responseCode != CREATED) {
+			throw FedoraException.withMessage(
+					"ingesting object in fedora failed, with response code: " + responseCode);
+		}
+	}
+}
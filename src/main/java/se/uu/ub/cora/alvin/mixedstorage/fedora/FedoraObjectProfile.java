@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.InputStream;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.XMLXPathParser;
+
+public final class FedoraObjectProfile {
+	private static final String ACTIVE = "A";
+	public final String pid;
+	public final String state;
+	public final String lastModifiedDate;
+
+	private FedoraObjectProfile(String pid, String state, String lastModifiedDate) {
+		this.pid = pid;
+		this.state = state;
+		this.lastModifiedDate = lastModifiedDate;
+	}
+
+	public static FedoraObjectProfile fromXML(String objectProfileXML) {
+		return fromParser(XMLXPathParser.forXML(objectProfileXML));
+	}
+
+	public static FedoraObjectProfile fromXML(InputStream objectProfileXML) {
+		return fromParser(XMLXPathParser.forXML(objectProfileXML));
+	}
+
+	private static FedoraObjectProfile fromParser(XMLXPathParser parser) {
+		String pid = parser.getStringFromDocumentUsingXPath("/objectProfile/@pid");
+		String state = parser.getStringFromDocumentUsingXPath("/objectProfile/objState/text()");
+		String lastModifiedDate = parser
+				.getStringFromDocumentUsingXPath("/objectProfile/objLastModDate/text()");
+		return new FedoraObjectProfile(pid, state, lastModifiedDate);
+	}
+
+	public boolean isActive() {
+		return ACTIVE.equals(state);
+	}
+
+}
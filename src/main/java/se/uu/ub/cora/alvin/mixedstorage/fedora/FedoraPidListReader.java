@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import se.uu.ub.cora.alvin.mixedstorage.util.URLEncoder;
+import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+
+final class FedoraPidListReader {
+	private static final int OK = 200;
+	private static final long UNKNOWN = -1;
+	private HttpHandlerFactory httpHandlerFactory;
+	private String baseURL;
+	private int pageSize;
+
+	static FedoraPidListReader usingHttpHandlerFactoryAndBaseUrlAndPageSize(
+			HttpHandlerFactory httpHandlerFactory, String baseURL, int pageSize) {
+		return new FedoraPidListReader(httpHandlerFactory, baseURL, pageSize);
+	}
+
+	private FedoraPidListReader(HttpHandlerFactory httpHandlerFactory, String baseURL,
+			int pageSize) {
+		this.httpHandlerFactory = httpHandlerFactory;
+		this.baseURL = baseURL;
+		this.pageSize = pageSize;
+	}
+
+	FedoraPidList readPidsUsingQueryFromNoAndToNo(String query, long fromNo, long toNo) {
+		return readPidsUsingQueryAndFilterFromNoAndToNo(query, objectFields -> true, false,
+				fromNo, toNo, objectFields -> {
+				});
+	}
+
+	FedoraPidList readPidsUsingPlaceListFilterFromNoAndToNo(PlaceListFilter placeListFilter,
+			long fromNo, long toNo) {
+		return readPidsUsingPlaceListFilterFromNoAndToNoAndWindowConsumer(placeListFilter, fromNo,
+				toNo, objectFields -> {
+				});
+	}
+
+	FedoraPidList readPidsUsingPlaceListFilterFromNoAndToNoAndWindowConsumer(
+			PlaceListFilter placeListFilter, long fromNo, long toNo,
+			Consumer<FedoraObjectFields> windowConsumer) {
+		return readPidsUsingQueryAndFilterFromNoAndToNo(placeListFilter.getQuery(),
+				placeListFilter.getObjectFieldsFilter(), placeListFilter.hasObjectFieldsFilter(),
+				fromNo, toNo, windowConsumer);
+	}
+
+	private FedoraPidList readPidsUsingQueryAndFilterFromNoAndToNo(String query,
+			Predicate<FedoraObjectFields> objectFieldsFilter, boolean listIsFiltered, long fromNo,
+			long toNo, Consumer<FedoraObjectFields> windowConsumer) {
+		ListWindow window = new ListWindow(fromNo, toNo, windowConsumer);
+		String sessionToken = "";
+		do {
+			FedoraFindObjectsParser page = readPageFromFedora(createListUrl(query, sessionToken),
+					objectFields -> addToWindowIfMatching(window, objectFieldsFilter,
+							objectFields));
+			long completeListSize = listIsFiltered ? UNKNOWN
+					: parseCompleteListSize(page.getCompleteListSize());
+			if (windowIsPassedAndTotalIsKnown(window.position, toNo, completeListSize)) {
+				return window.toPidListWithTotalNumberOfMatches(completeListSize);
+			}
+			sessionToken = page.getSessionToken();
+		} while (!sessionToken.isEmpty());
+		return window.toPidListWithTotalNumberOfMatches(window.position);
+	}
+
+	private void addToWindowIfMatching(ListWindow window,
+			Predicate<FedoraObjectFields> objectFieldsFilter, FedoraObjectFields objectFields) {
+		if (objectFieldsFilter.test(objectFields)) {
+			window.addIfInWindow(objectFields);
+		}
+	}
+
+	FedoraPidPage readPidPageUsingQueryAndSessionToken(String query, String sessionToken) {
+		List<String> pids = new ArrayList<>();
+		FedoraFindObjectsParser page = readPageFromFedora(createListUrl(query, sessionToken),
+				objectFields -> pids.add(objectFields.pid));
+		return new FedoraPidPage(pids, page.getSessionToken());
+	}
+
+	long countPidsUsingQuery(String query) {
+		AtomicLong numberOfListedPids = new AtomicLong();
+		FedoraFindObjectsParser page = readPageFromFedora(createCountUrl(query),
+				objectFields -> numberOfListedPids.incrementAndGet());
+		long completeListSize = parseCompleteListSize(page.getCompleteListSize());
+		if (completeListSize == UNKNOWN) {
+			return numberOfListedPids.get();
+		}
+		return completeListSize;
+	}
+
+	private FedoraFindObjectsParser readPageFromFedora(String url,
+			Consumer<FedoraObjectFields> objectFieldsConsumer) {
+		HttpHandler httpHandler = httpHandlerFactory.factor(url);
+		httpHandler.setRequestMethod("GET");
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try {
+			return parsePageUsingHttpHandler(httpHandler, objectFieldsConsumer);
+		} finally {
+			FedoraResponseStream.closeResponseStream(httpHandler);
+		}
+	}
+
+	private FedoraFindObjectsParser parsePageUsingHttpHandler(HttpHandler httpHandler,
+			Consumer<FedoraObjectFields> objectFieldsConsumer) {
+		int responseCode = httpHandler.getResponseCode();
+		if (OK != responseCode) {
+			throw FedoraException.withMessage(
+					"reading list from fedora failed, with response code: " + responseCode);
+		}
+		FedoraFindObjectsParser parser = FedoraFindObjectsParser
+				.usingObjectFieldsConsumer(objectFieldsConsumer);
+		parser.parse(FedoraResponseStream.getResponseStream(httpHandler));
+		return parser;
+	}
+
+	private String createCountUrl(String query) {
+		return baseURL + "objects?pid=true&maxResults=1&resultFormat=xml&query="
+				+ URLEncoder.encode(query);
+	}
+
+	private String createListUrl(String query, String sessionToken) {
+		String url = baseURL + "objects?pid=true&mDate=true&maxResults=" + pageSize
+				+ "&resultFormat=xml&query=" + URLEncoder.encode(query);
+		if (sessionToken.isEmpty()) {
+			return url;
+		}
+		return url + "&sessionToken=" + URLEncoder.encode(sessionToken);
+	}
+
+	private long parseCompleteListSize(String completeListSize) {
+		if (completeListSize.isEmpty()) {
+			return UNKNOWN;
+		}
+		return Long.parseLong(completeListSize);
+	}
+
+	private boolean windowIsPassedAndTotalIsKnown(long position, long toNo,
+			long completeListSize) {
+		return completeListSize != UNKNOWN && position >= Math.min(toNo, completeListSize);
+	}
+
+	private static final class ListWindow {
+		private final long fromNo;
+		private final long toNo;
+		private final Consumer<FedoraObjectFields> windowConsumer;
+		private final List<String> pids = new ArrayList<>();
+		private final Map<String, String> lastModifiedDates = new HashMap<>();
+		private long position = 0;
+
+		private ListWindow(long fromNo, long toNo,
+				Consumer<FedoraObjectFields> windowConsumer) {
+			this.fromNo = fromNo;
+			this.toNo = toNo;
+			this.windowConsumer = windowConsumer;
+		}
+
+		private void addIfInWindow(FedoraObjectFields objectFields) {
+			position++;
+			if (position >= fromNo && position <= toNo) {
+				pids.add(objectFields.pid);
+				lastModifiedDates.put(objectFields.pid, objectFields.lastModifiedDate);
+				windowConsumer.accept(objectFields);
+			}
+		}
+
+		private FedoraPidList toPidListWithTotalNumberOfMatches(long totalNumberOfMatches) {
+			return new FedoraPidList(pids, lastModifiedDates, totalNumberOfMatches);
+		}
+	}
+
+	int getPageSize() {
+		// needed for test
+		return pageSize;
+	}
+}
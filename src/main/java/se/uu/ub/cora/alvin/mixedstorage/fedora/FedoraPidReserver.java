@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+
+public final class FedoraPidReserver {
+	private static final int OK = 200;
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+	private HttpHandlerFactory httpHandlerFactory;
+	private FedoraConfig fedoraConfig;
+
+	public static FedoraPidReserver usingHttpHandlerFactoryAndFedoraConfig(
+			HttpHandlerFactory httpHandlerFactory, FedoraConfig fedoraConfig) {
+		return new FedoraPidReserver(httpHandlerFactory, fedoraConfig);
+	}
+
+	private FedoraPidReserver(HttpHandlerFactory httpHandlerFactory, FedoraConfig fedoraConfig) {
+		this.httpHandlerFactory = httpHandlerFactory;
+		this.fedoraConfig = fedoraConfig;
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return inputFactory;
+	}
+
+	public List<String> reservePlacePids(int numberOfPids) {
+		HttpHandler httpHandler = createHttpHandlerForReservingPids(numberOfPids);
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try {
+			throwErrorIfPidsCouldNotBeReserved(httpHandler.getResponseCode());
+			List<String> pids = parsePids(FedoraResponseStream.getResponseStream(httpHandler));
+			throwErrorIfWrongNumberOfPids(numberOfPids, pids);
+			return pids;
+		} finally {
+			FedoraResponseStream.closeResponseStream(httpHandler);
+		}
+	}
+
+	private HttpHandler createHttpHandlerForReservingPids(int numberOfPids) {
+		String url = fedoraConfig.baseUrl + "objects/nextPID?namespace=alvin-place&numPIDs="
+				+ numberOfPids + "&format=xml";
+		HttpHandler httpHandler = httpHandlerFactory.factor(url);
+		httpHandler.setRequestMethod("POST");
+		return httpHandler;
+	}
+
+	private void throwErrorIfPidsCouldNotBeReserved(int responseCode) {
+		if (responseCode != OK) {
+			throw FedoraException.withMessage(
+					"getting next pid from fedora failed, with response code: " + responseCode);
+		}
+	}
+
+	private List<String> parsePids(InputStream pidListXML) {
+		try {
+			return parsePidsUsingStreamReader(INPUT_FACTORY.createXMLStreamReader(pidListXML));
+		} catch (XMLStreamException e) {
+			throw ParseException.withMessageAndException("Can not read xml: " + e.getMessage(), e);
+		}
+	}
+
+	private List<String> parsePidsUsingStreamReader(XMLStreamReader reader)
+			throws XMLStreamException {
+		List<String> pids = new ArrayList<>();
+		while (reader.hasNext()) {
+			if (XMLStreamConstants.START_ELEMENT == reader.next()
+					&& "pid".equals(reader.getLocalName())) {
+				pids.add(reader.getElementText().trim());
+			}
+		}
+		reader.close();
+		return pids;
+	}
+
+	private void throwErrorIfWrongNumberOfPids(int numberOfPids, List<String> pids) {
+		if (pids.size() != numberOfPids) {
+			throw FedoraException.withMessage("getting next pid from fedora failed, expected "
+					+ numberOfPids + " pids but got " + pids.size());
+		}
+	}
+
+	FedoraConfig getFedoraConfig() {
+		// needed for test
+		return fedoraConfig;
+	}
+}
@@ -16,19 +16,24 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
+import se.uu.ub.cora.alvin.mixedstorage.ChangeDetectingStorage;
 import se.uu.ub.cora.alvin.mixedstorage.NotImplementedException;
-import se.uu.ub.cora.alvin.mixedstorage.parse.XMLXPathParser;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig.CreateMode;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceCache.CachedMetadata;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetcher.PlaceFetch;
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
 import se.uu.ub.cora.alvin.mixedstorage.util.URLEncoder;
 import se.uu.ub.cora.data.DataGroup;
 import se.uu.ub.cora.httphandler.HttpHandler;
@@ -37,11 +42,12 @@ import se.uu.ub.cora.storage.RecordNotFoundException;
 import se.uu.ub.cora.storage.RecordStorage;
 import se.uu.ub.cora.storage.StorageReadResult;
 
-public final class FedoraRecordStorage implements RecordStorage {
+public final class FedoraRecordStorage implements RecordStorage, ChangeDetectingStorage {
 
 	private static final int CREATED = 201;
 	private static final int OK = 200;
 	private static final int NOT_FOUND = 404;
+	private static final int CONFLICT = 409;
 	private static final String WITH_RESPONSE_CODE_MESSAGE_PART = ", with response code: ";
 	private static final String OBJECTS_PART_OF_URL = "objects/";
 	private static final String PLACE = "place";
@@ -50,52 +56,173 @@ public final class FedoraRecordStorage implements RecordStorage {
 	private AlvinFedoraConverterFactory converterFactory;
 	private String fedoraUsername;
 	private String fedoraPassword;
+	private CreateMode createMode;
+	private PlaceListFetcher placeListFetcher;
+	private FedoraPidListReader pidListReader;
+	private PlaceCache placeCache;
+	private PlaceReadCoalescer placeReadCoalescer = PlaceReadCoalescer.create();
+	private MissingPlaceCache missingPlaceCache;
+	private FedoraObjectIngester objectIngester;
+	private LongAdder staleWrites = new LongAdder();
+	private LongAdder skippedWrites = new LongAdder();
 
 	private FedoraRecordStorage(HttpHandlerFactory httpHandlerFactory,
-			AlvinFedoraConverterFactory converterFactory, FedoraConfig fedoraConfig) {
+			AlvinFedoraConverterFactory converterFactory, FedoraConfig fedoraConfig,
+			FedoraPlaceStorageConfig placeStorageConfig) {
 		this.httpHandlerFactory = httpHandlerFactory;
 		this.converterFactory = converterFactory;
 		this.baseURL = fedoraConfig.baseUrl;
 		this.fedoraUsername = fedoraConfig.userName;
 		this.fedoraPassword = fedoraConfig.password;
+		this.createMode = fedoraConfig.createMode;
+		this.objectIngester = FedoraObjectIngester
+				.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory, fedoraConfig);
+		this.placeListFetcher = PlaceListFetcher
+				.usingConfig(placeStorageConfig.placeListFetchConfig);
+		this.pidListReader = FedoraPidListReader.usingHttpHandlerFactoryAndBaseUrlAndPageSize(
+				httpHandlerFactory, baseURL, placeStorageConfig.placeListFetchConfig.pageSize);
+		this.placeCache = placeStorageConfig.placeCache;
+		this.missingPlaceCache = placeStorageConfig.missingPlaceCache;
 	}
 
 	public static FedoraRecordStorage usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfig(
 			HttpHandlerFactory httpHandlerFactory, AlvinFedoraConverterFactory converterFactory,
 			FedoraConfig fedoraConfig) {
-		return new FedoraRecordStorage(httpHandlerFactory, converterFactory, fedoraConfig);
+		return new FedoraRecordStorage(httpHandlerFactory, converterFactory, fedoraConfig,
+				FedoraPlaceStorageConfig.withDefaultValues());
+	}
+
+	public static FedoraRecordStorage usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndPlaceStorageConfig(
+			HttpHandlerFactory httpHandlerFactory, AlvinFedoraConverterFactory converterFactory,
+			FedoraConfig fedoraConfig, FedoraPlaceStorageConfig placeStorageConfig) {
+		return new FedoraRecordStorage(httpHandlerFactory, converterFactory, fedoraConfig,
+				placeStorageConfig);
 	}
 
 	@Override
 	public DataGroup read(String type, String id) {
 		if (PLACE.equals(type)) {
-			ensurePlaceIsNotDeleted(id);
-			return readAndConvertPlaceFromFedora(id);
+			throwErrorIfKnownToBeMissing(id);
+			return placeReadCoalescer.readUsingPidAndPlaceReader(id,
+					this::readPlaceUsingCacheIfUnchanged);
 		}
 		throw NotImplementedException.withMessage("read is not implemented for type: " + type);
 	}
 
+	private void throwErrorIfKnownToBeMissing(String id) {
+		if (missingPlaceCache.isKnownMissing(id)) {
+			throw createRecordNotFoundForPlace(id);
+		}
+	}
+
+	private DataGroup readPlaceUsingCacheIfUnchanged(String id) {
+		String lastModifiedDate = readLastModifiedDateForActivePlace(id);
+		return readPlaceUsingCacheAndLastModifiedDate(id, lastModifiedDate);
+	}
+
+	private DataGroup readPlaceUsingCacheAndLastModifiedDate(String id, String lastModifiedDate) {
+		if (lastModifiedDate == null || lastModifiedDate.isEmpty()) {
+			return readAndConvertPlaceFromFedora(id);
+		}
+		DataGroup cachedPlace = placeCache.getUsingPidAndLastModifiedDate(id, lastModifiedDate);
+		if (cachedPlace != null) {
+			return cachedPlace;
+		}
+		if (!placeCache.isEnabled()) {
+			return readAndConvertPlaceFromFedora(id);
+		}
+		return readConvertAndCachePlaceFromFedora(id, lastModifiedDate);
+	}
+
 	private DataGroup readAndConvertPlaceFromFedora(String id) {
 		HttpHandler httpHandler = createHttpHandlerForReadingPlace(id);
-		int responseCode = httpHandler.getResponseCode();
-		throwErrorIfRecordNotFound(id, responseCode);
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try {
+			throwErrorIfRecordNotFound(id, httpHandler.getResponseCode());
+			return convertPlaceUsingStream(FedoraResponseStream.getResponseStream(httpHandler));
+		} finally {
+			FedoraResponseStream.closeResponseStream(httpHandler);
+		}
+	}
+
+	private DataGroup convertPlaceUsingStream(InputStream metadata) {
 		AlvinFedoraToCoraConverter toCoraConverter = converterFactory.factorToCoraConverter(PLACE);
-		String responseText = httpHandler.getResponseText();
-		return toCoraConverter.fromXML(responseText);
+		return toCoraConverter.fromXML(metadata);
+	}
+
+	private DataGroup readConvertAndCachePlaceFromFedora(String id, String lastModifiedDate) {
+		HttpHandler httpHandler = createHttpHandlerForReadingPlace(id);
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try {
+			throwErrorIfRecordNotFound(id, httpHandler.getResponseCode());
+			CopyingInputStream metadata = new CopyingInputStream(
+					FedoraResponseStream.getResponseStream(httpHandler));
+			DataGroup place = convertPlaceUsingStream(metadata);
+			closeStream(metadata);
+			placeCache.putUsingPidAndLastModifiedDateAndMetadata(id, lastModifiedDate, place,
+					metadata.getCopy());
+			return place;
+		} finally {
+			FedoraResponseStream.closeResponseStream(httpHandler);
+		}
+	}
+
+	private void closeStream(InputStream stream) {
+		try {
+			stream.close();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error reading place from fedora: " + e.getMessage(), e);
+		}
 	}
 
 	private void throwErrorIfRecordNotFound(String id, int responseCode) {
 		if (NOT_FOUND == responseCode) {
-			throw new RecordNotFoundException("Record not found for type: place and id: " + id);
+			throw createRecordNotFoundForPlace(id);
 		}
 	}
 
-	private void ensurePlaceIsNotDeleted(String id) {
-		String query = "state=A pid=" + id;
-		String placeListXML = getRecordListXMLFromFedora(query);
-		NodeList list = extractNodeListWithPidsFromXML(placeListXML);
-		if (0 == list.getLength()) {
-			throw new RecordNotFoundException("Record not found for type: place and id: " + id);
+	private RecordNotFoundException createRecordNotFoundForPlace(String id) {
+		return new RecordNotFoundException("Record not found for type: place and id: " + id);
+	}
+
+	private String readLastModifiedDateForActivePlace(String id) {
+		FedoraObjectProfile objectProfile = readObjectProfileFromFedora(id);
+		if (!objectProfile.isActive()) {
+			placeCache.invalidate(id);
+			missingPlaceCache.markMissing(id);
+			throw createRecordNotFoundForPlace(id);
+		}
+		return objectProfile.lastModifiedDate;
+	}
+
+	private FedoraObjectProfile readObjectProfileFromFedora(String id) {
+		String url = baseURL + OBJECTS_PART_OF_URL + id + "?format=xml";
+		HttpHandler httpHandler = createHttpHandlerForWritingUsingUrlAndRequestMethod(url, "GET");
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try {
+			return readObjectProfileUsingHttpHandler(id, httpHandler);
+		} finally {
+			FedoraResponseStream.closeResponseStream(httpHandler);
+		}
+	}
+
+	private FedoraObjectProfile readObjectProfileUsingHttpHandler(String id,
+			HttpHandler httpHandler) {
+		int responseCode = httpHandler.getResponseCode();
+		if (NOT_FOUND == responseCode) {
+			missingPlaceCache.markMissing(id);
+			throw createRecordNotFoundForPlace(id);
+		}
+		throwErrorIfObjectProfileNotOk(id, responseCode);
+		return FedoraObjectProfile.fromXML(FedoraResponseStream.getResponseStream(httpHandler));
+	}
+
+	private void throwErrorIfObjectProfileNotOk(String id, int responseCode) {
+		if (OK != responseCode) {
+			throw FedoraException
+					.withMessage("reading object profile from fedora failed for place: " + id
+							+ WITH_RESPONSE_CODE_MESSAGE_PART + responseCode);
 		}
 	}
 
@@ -110,6 +237,8 @@ public final class FedoraRecordStorage implements RecordStorage {
 	public void create(String type, String id, DataGroup dataRecord, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
 		if (PLACE.equals(type)) {
+			placeCache.invalidate(id);
+			missingPlaceCache.clear(id);
 			createPlaceInFedora(type, id, dataRecord, collectedTerms);
 		} else {
 			throw NotImplementedException.withMessage("create is not implemented");
@@ -129,10 +258,15 @@ public final class FedoraRecordStorage implements RecordStorage {
 	private void tryToConvertAndCreatePlaceInFedora(String type, String id, DataGroup dataRecord,
 			DataGroup collectedTerms) {
 		String recordLabel = getRecordLabelValueFromStorageTerms(collectedTerms);
-		createObjectForPlace(id, recordLabel);
-		createRelationToModelForPlace(id);
-		String newXML = convertRecordToXML(type, dataRecord);
-		createDatastreamForPlace(id, recordLabel, newXML);
+		if (CreateMode.INGEST == createMode) {
+			String newXML = convertRecordToXML(type, dataRecord);
+			objectIngester.ingestPlace(id, recordLabel, newXML);
+		} else {
+			createObjectForPlace(id, recordLabel);
+			createRelationToModelForPlace(id);
+			String newXML = convertRecordToXML(type, dataRecord);
+			createDatastreamForPlace(id, recordLabel, newXML);
+		}
 	}
 
 	private void createObjectForPlace(String nextPidFromFedora, String recordLabel) {
@@ -146,7 +280,6 @@ public final class FedoraRecordStorage implements RecordStorage {
 			String requestMethod) {
 		HttpHandler httpHandler = httpHandlerFactory.factor(url);
 		httpHandler.setRequestMethod(requestMethod);
-		setAuthorizationInHttpHandler(httpHandler);
 		return httpHandler;
 	}
 
@@ -186,12 +319,6 @@ public final class FedoraRecordStorage implements RecordStorage {
 		return url.toString();
 	}
 
-	private void setAuthorizationInHttpHandler(HttpHandler httpHandler) {
-		String encoded = Base64.getEncoder().encodeToString(
-				(fedoraUsername + ":" + fedoraPassword).getBytes(StandardCharsets.UTF_8));
-		httpHandler.setRequestProperty("Authorization", "Basic " + encoded);
-	}
-
 	private void throwErrorIfUnableToCreate(int responseCode, String messagePart) {
 		if (responseCode != CREATED) {
 			throw FedoraException
@@ -225,10 +352,12 @@ public final class FedoraRecordStorage implements RecordStorage {
 	@Override
 	public void deleteByTypeAndId(String type, String id) {
 		throwErrorIfDeleteForTypeNotImplemented(type);
+		placeCache.invalidate(id);
 		String url = baseURL + OBJECTS_PART_OF_URL + id + "?state=D";
 		HttpHandler httpHandler = createHttpHandlerForWritingUsingUrlAndRequestMethod(url, "PUT");
 		int responseCode = httpHandler.getResponseCode();
 		throwErrorIfUnableToUpdateStateToDeleted(id, responseCode);
+		missingPlaceCache.markMissing(id);
 	}
 
 	private void throwErrorIfDeleteForTypeNotImplemented(String type) {
@@ -252,33 +381,138 @@ public final class FedoraRecordStorage implements RecordStorage {
 	@Override
 	public void update(String type, String id, DataGroup dataRecord, DataGroup collectedTerms,
 			DataGroup linkList, String dataDivider) {
+		updateIfChanged(type, id, dataRecord, collectedTerms, linkList, dataDivider);
+	}
+
+	@Override
+	public boolean updateIfChanged(String type, String id, DataGroup dataRecord,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
 		if (PLACE.equals(type)) {
-			convertAndWritePlaceToFedora(type, id, dataRecord, collectedTerms);
-		} else {
-			throw NotImplementedException
-					.withMessage("update is not implemented for type: " + type);
+			CachedMetadata cachedMetadata = placeCache.getMetadataUsingPid(id);
+			placeCache.invalidate(id);
+			return convertAndWritePlaceToFedora(type, id, dataRecord, collectedTerms,
+					cachedMetadata);
 		}
+		throw NotImplementedException.withMessage("update is not implemented for type: " + type);
 	}
 
-	private void convertAndWritePlaceToFedora(String type, String id, DataGroup dataRecord,
-			DataGroup collectedTerms) {
+	private boolean convertAndWritePlaceToFedora(String type, String id, DataGroup dataRecord,
+			DataGroup collectedTerms, CachedMetadata cachedMetadata) {
 		try {
-			tryToConvertAndWritePlaceToFedora(type, id, dataRecord, collectedTerms);
+			return tryToConvertAndWritePlaceToFedora(type, id, dataRecord, collectedTerms,
+					cachedMetadata);
 		} catch (Exception e) {
 			throw FedoraException
 					.withMessageAndException("update to fedora failed for dataRecord: " + id, e);
 		}
 	}
 
-	private void tryToConvertAndWritePlaceToFedora(String type, String id, DataGroup dataRecord,
-			DataGroup collectedTerms) {
+	private boolean tryToConvertAndWritePlaceToFedora(String type, String id,
+			DataGroup dataRecord, DataGroup collectedTerms, CachedMetadata cachedMetadata) {
 		String url = createUrlForWritingMetadataStreamToFedora(id, collectedTerms);
-		HttpHandler httpHandler = createHttpHandlerForWritingUsingUrlAndRequestMethod(url, "PUT");
+		AlvinCoraToFedoraConverter converter = converterFactory.factorToFedoraConverter(type);
+		if (cachedMetadata != null) {
+			return writeUsingCachedMetadataIfChanged(id, url, converter, dataRecord,
+					cachedMetadata);
+		}
+		return writeUsingCurrentFedoraXMLIfChanged(id, url, converter, dataRecord);
+	}
 
-		String fedoraXML = convertRecordToFedoraXML(type, dataRecord);
-		httpHandler.setOutput(fedoraXML);
-		int responseCode = httpHandler.getResponseCode();
+	private boolean writeUsingCachedMetadataIfChanged(String id, String url,
+			AlvinCoraToFedoraConverter converter, DataGroup dataRecord,
+			CachedMetadata cachedMetadata) {
+		String fedoraXML = converter.toXMLUsingCurrentFedoraXML(dataRecord,
+				cachedMetadata.getMetadataAsStream());
+		byte[] hash = hashXMLOrNullIfNotReadable(fedoraXML);
+		if (isSameAsCurrentMetadata(hash, cachedMetadata.getMetadataAsStream())) {
+			return skipWriteOfUnchangedPlace();
+		}
+		int responseCode = writeFedoraXMLUsingUrl(
+				createUrlWithLastModifiedDate(url, cachedMetadata.lastModifiedDate), fedoraXML);
+		if (CONFLICT == responseCode) {
+			staleWrites.increment();
+			return writeUsingRefetchedFedoraXMLIfChanged(id, url, converter, dataRecord);
+		}
+		throwErrorIfNotOkFromFedora(id, responseCode);
+		return true;
+	}
+
+	private String createUrlWithLastModifiedDate(String url, String lastModifiedDate) {
+		return url + "&lastModifiedDate=" + URLEncoder.encode(lastModifiedDate);
+	}
+
+	private boolean writeUsingRefetchedFedoraXMLIfChanged(String id, String url,
+			AlvinCoraToFedoraConverter converter, DataGroup dataRecord) {
+		String lastModifiedDate = readLastModifiedDateForActivePlace(id);
+		return writeUsingCurrentFedoraXMLIfChanged(id,
+				createUrlWithLastModifiedDate(url, lastModifiedDate), converter, dataRecord);
+	}
+
+	private boolean writeUsingCurrentFedoraXMLIfChanged(String id, String url,
+			AlvinCoraToFedoraConverter converter, DataGroup dataRecord) {
+		byte[] currentMetadata = readCurrentMetadataFromFedora(id);
+		String fedoraXML = converter.toXMLUsingCurrentFedoraXML(dataRecord,
+				new ByteArrayInputStream(currentMetadata));
+		byte[] hash = hashXMLOrNullIfNotReadable(fedoraXML);
+		if (isSameAsCurrentMetadata(hash, new ByteArrayInputStream(currentMetadata))) {
+			return skipWriteOfUnchangedPlace();
+		}
+		int responseCode = writeFedoraXMLUsingUrl(url, fedoraXML);
 		throwErrorIfNotOkFromFedora(id, responseCode);
+		return true;
+	}
+
+	private byte[] readCurrentMetadataFromFedora(String id) {
+		HttpHandler httpHandler = createHttpHandlerForReadingPlace(id);
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try {
+			throwErrorIfCurrentMetadataNotOk(id, httpHandler.getResponseCode());
+			return FedoraResponseStream.getResponseStream(httpHandler).readAllBytes();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error reading place from fedora: " + e.getMessage(), e);
+		} finally {
+			FedoraResponseStream.closeResponseStream(httpHandler);
+		}
+	}
+
+	private void throwErrorIfCurrentMetadataNotOk(String id, int responseCode) {
+		throwErrorIfRecordNotFound(id, responseCode);
+		if (OK != responseCode) {
+			throw FedoraException.withMessage("reading metadata from fedora failed for place: "
+					+ id + WITH_RESPONSE_CODE_MESSAGE_PART + responseCode);
+		}
+	}
+
+	private byte[] hashXMLOrNullIfNotReadable(String xml) {
+		try {
+			return CanonicalXmlHash.hashXML(xml);
+		} catch (ParseException e) {
+			return null;
+		}
+	}
+
+	private boolean isSameAsCurrentMetadata(byte[] hash, InputStream currentMetadata) {
+		return hash != null && MessageDigest.isEqual(hash, hashMetadata(currentMetadata));
+	}
+
+	private byte[] hashMetadata(InputStream metadata) {
+		try {
+			return CanonicalXmlHash.hashXMLStream(metadata);
+		} catch (ParseException e) {
+			return new byte[0];
+		}
+	}
+
+	private boolean skipWriteOfUnchangedPlace() {
+		skippedWrites.increment();
+		return false;
+	}
+
+	private int writeFedoraXMLUsingUrl(String url, String fedoraXML) {
+		HttpHandler httpHandler = createHttpHandlerForWritingUsingUrlAndRequestMethod(url, "PUT");
+		httpHandler.setOutput(fedoraXML);
+		return httpHandler.getResponseCode();
 	}
 
 	private void throwErrorIfNotOkFromFedora(String id, int responseCode) {
@@ -323,69 +557,89 @@ public final class FedoraRecordStorage implements RecordStorage {
 		return "recordLabelStorageTerm".equals(collectTermId);
 	}
 
-	private String convertRecordToFedoraXML(String type, DataGroup dataRecord) {
-		AlvinCoraToFedoraConverter converter = converterFactory.factorToFedoraConverter(type);
-		return converter.toXML(dataRecord);
-	}
-
 	@Override
 	public StorageReadResult readList(String type, DataGroup filter) {
 		if (PLACE.equals(type)) {
-			return readAndConvertPlaceListFromFedora();
+			return readAndConvertPlaceListFromFedora(filter);
 		}
 		throw NotImplementedException.withMessage("readList is not implemented for type: " + type);
 	}
 
-	private StorageReadResult readAndConvertPlaceListFromFedora() {
+	private StorageReadResult readAndConvertPlaceListFromFedora(DataGroup filter) {
 		try {
-			return tryCreateStorageReadResultFromReadingAndConvertingPlaceListInFedora();
+			return tryCreateStorageReadResultFromReadingAndConvertingPlaceListInFedora(filter);
 		} catch (Exception e) {
 			throw FedoraException
 					.withMessageAndException("Unable to read list of places: " + e.getMessage(), e);
 		}
 	}
 
-	private StorageReadResult tryCreateStorageReadResultFromReadingAndConvertingPlaceListInFedora() {
-		StorageReadResult storageReadResult = new StorageReadResult();
-		storageReadResult.listOfDataGroups = (List<DataGroup>) tryReadAndConvertPlaceListFromFedora();
-		return storageReadResult;
+	private StorageReadResult tryCreateStorageReadResultFromReadingAndConvertingPlaceListInFedora(
+			DataGroup filter) {
+		long fromNo = getNumberFromFilterOrDefault(filter, "fromNo", 1);
+		long toNo = getNumberFromFilterOrDefault(filter, "toNo", Long.MAX_VALUE);
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		if (placeListFilter.hasPostFilter()) {
+			return readPlaceListUsingPostFilter(placeListFilter, fromNo, toNo);
+		}
+		PlaceFetch placeFetch = placeListFetcher
+				.startFetchUsingPlaceReader(this::readPlaceUsingCacheAndLastModifiedDate);
+		try {
+			FedoraPidList pidList = readPidsInWindowFetchingPlacesAsTheyArrive(placeListFilter,
+					fromNo, toNo, placeFetch);
+			return createStorageReadResult(fromNo, pidList.totalNumberOfMatches,
+					placeFetch.collectPlacesInOrder());
+		} finally {
+			placeFetch.cancelUnfinished();
+		}
 	}
 
-	private Collection<DataGroup> tryReadAndConvertPlaceListFromFedora() {
-		String query = "state=A pid~alvin-place:*";
-		String placeListXML = getRecordListXMLFromFedora(query);
-		NodeList list = extractNodeListWithPidsFromXML(placeListXML);
-		return constructCollectionOfPlacesFromFedora(list);
+	private FedoraPidList readPidsInWindowFetchingPlacesAsTheyArrive(
+			PlaceListFilter placeListFilter, long fromNo, long toNo, PlaceFetch placeFetch) {
+		return pidListReader.readPidsUsingPlaceListFilterFromNoAndToNoAndWindowConsumer(
+				placeListFilter, fromNo, toNo, objectFields -> placeFetch
+						.fetchUsingPidAndLastModifiedDate(objectFields.pid,
+								objectFields.lastModifiedDate));
 	}
 
-	private String getRecordListXMLFromFedora(String query) {
-		HttpHandler httpHandler = createHttpHandlerForRecordList(query);
-		return httpHandler.getResponseText();
+	private StorageReadResult readPlaceListUsingPostFilter(PlaceListFilter placeListFilter,
+			long fromNo, long toNo) {
+		List<DataGroup> matchingPlaces = readAllPlacesInList(placeListFilter).stream()
+				.filter(placeListFilter::placeMatchesPostFilter).collect(Collectors.toList());
+		int size = matchingPlaces.size();
+		int fromIndex = (int) Math.min(fromNo - 1, size);
+		int toIndex = (int) Math.min(toNo, size);
+		return createStorageReadResult(fromNo, size,
+				new ArrayList<>(matchingPlaces.subList(fromIndex, Math.max(fromIndex, toIndex))));
 	}
 
-	private HttpHandler createHttpHandlerForRecordList(String query) {
-		String urlEncodedQuery = URLEncoder.encode(query);
-		String url = baseURL + "objects?pid=true&maxResults=10000&resultFormat=xml&query="
-				+ urlEncodedQuery;
-		HttpHandler httpHandler = httpHandlerFactory.factor(url);
-		httpHandler.setRequestMethod("GET");
-		return httpHandler;
+	private List<DataGroup> readAllPlacesInList(PlaceListFilter placeListFilter) {
+		PlaceFetch placeFetch = placeListFetcher
+				.startFetchUsingPlaceReader(this::readPlaceUsingCacheAndLastModifiedDate);
+		try {
+			readPidsInWindowFetchingPlacesAsTheyArrive(placeListFilter, 1, Long.MAX_VALUE,
+					placeFetch);
+			return placeFetch.collectPlacesInOrder();
+		} finally {
+			placeFetch.cancelUnfinished();
+		}
 	}
 
-	private NodeList extractNodeListWithPidsFromXML(String placeListXML) {
-		XMLXPathParser parser = XMLXPathParser.forXML(placeListXML);
-		return parser
-				.getNodeListFromDocumentUsingXPath("/result/resultList/objectFields/pid/text()");
+	private StorageReadResult createStorageReadResult(long fromNo, long totalNumberOfMatches,
+			List<DataGroup> places) {
+		StorageReadResult storageReadResult = new StorageReadResult();
+		storageReadResult.start = fromNo - 1;
+		storageReadResult.totalNumberOfMatches = totalNumberOfMatches;
+		storageReadResult.listOfDataGroups = places;
+		return storageReadResult;
 	}
 
-	private Collection<DataGroup> constructCollectionOfPlacesFromFedora(NodeList list) {
-		Collection<DataGroup> placeList = new ArrayList<>(list.getLength());
-		for (int i = 0; i < list.getLength(); i++) {
-			Node node = list.item(i);
-			String pid = node.getTextContent();
-			placeList.add(readAndConvertPlaceFromFedora(pid));
+	private long getNumberFromFilterOrDefault(DataGroup filter, String nameInData,
+			long defaultValue) {
+		if (filter != null && filter.containsChildWithNameInData(nameInData)) {
+			return Long.parseLong(filter.getFirstAtomicValueWithNameInData(nameInData));
 		}
-		return placeList;
+		return defaultValue;
 	}
 
 	@Override
@@ -411,6 +665,10 @@ public final class FedoraRecordStorage implements RecordStorage {
 				"recordExistsForAbstractOrImplementingRecordTypeAndRecordId is not implemented");
 	}
 
+	public void close() {
+		placeListFetcher.close();
+	}
+
 	public HttpHandlerFactory getHttpHandlerFactory() {
 		// needed for test
 		return httpHandlerFactory;
@@ -436,11 +694,68 @@ public final class FedoraRecordStorage implements RecordStorage {
 		return fedoraPassword;
 	}
 
+	public PlaceListFetchConfig getPlaceListFetchConfig() {
+		// needed for test
+		return placeListFetcher.getConfig();
+	}
+
+	PlaceListFetcher getPlaceListFetcher() {
+		// needed for test
+		return placeListFetcher;
+	}
+
+	public CreateMode getCreateMode() {
+		// needed for test
+		return createMode;
+	}
+
+	public long getNumberOfStaleWrites() {
+		return staleWrites.sum();
+	}
+
+	public long getNumberOfSkippedWrites() {
+		return skippedWrites.sum();
+	}
+
+	public PlaceReadCoalescer getPlaceReadCoalescer() {
+		return placeReadCoalescer;
+	}
+
+	public PlaceCache getPlaceCache() {
+		return placeCache;
+	}
+
+	public MissingPlaceCache getMissingPlaceCache() {
+		return missingPlaceCache;
+	}
+
 	@Override
 	public long getTotalNumberOfRecordsForType(String type, DataGroup filter) {
+		if (PLACE.equals(type)) {
+			return countPlacesInFedora(PlaceListFilter.fromFilter(filter));
+		}
 		throw NotImplementedException
 				.withMessage("getTotalNumberOfRecordsForType is not implemented for " + type);
+	}
 
+	private long countPlacesInFedora(PlaceListFilter placeListFilter) {
+		try {
+			return tryToCountPlacesInFedora(placeListFilter);
+		} catch (Exception e) {
+			throw FedoraException
+					.withMessageAndException("Unable to count places: " + e.getMessage(), e);
+		}
+	}
+
+	private long tryToCountPlacesInFedora(PlaceListFilter placeListFilter) {
+		if (placeListFilter.hasPostFilter()) {
+			return readPlaceListUsingPostFilter(placeListFilter, 1, 0).totalNumberOfMatches;
+		}
+		if (placeListFilter.hasObjectFieldsFilter()) {
+			return pidListReader.readPidsUsingPlaceListFilterFromNoAndToNo(placeListFilter, 1,
+					0).totalNumberOfMatches;
+		}
+		return pidListReader.countPidsUsingQuery(placeListFilter.getQuery());
 	}
 
 	@Override
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import se.uu.ub.cora.httphandler.HttpHandler;
+
+final class FedoraResponseStream {
+
+	private FedoraResponseStream() {
+		throw new UnsupportedOperationException();
+	}
+
+	static void requestResponseAsStream(HttpHandler httpHandler) {
+		if (httpHandler instanceof FedoraHttpHandler) {
+			((FedoraHttpHandler) httpHandler).setResponseAsStream();
+		}
+	}
+
+	static InputStream getResponseStream(HttpHandler httpHandler) {
+		if (httpHandler instanceof FedoraHttpHandler) {
+			return ((FedoraHttpHandler) httpHandler).getResponseStream();
+		}
+		return new ByteArrayInputStream(
+				httpHandler.getResponseText().getBytes(StandardCharsets.UTF_8));
+	}
+
+	static void closeResponseStream(HttpHandler httpHandler) {
+		if (httpHandler instanceof FedoraHttpHandler) {
+			((FedoraHttpHandler) httpHandler).closeResponseStream();
+		}
+	}
+}
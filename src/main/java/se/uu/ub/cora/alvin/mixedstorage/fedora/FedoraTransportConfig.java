@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+public class FedoraTransportConfig {
+	private static final int DEFAULT_POOL_SIZE = 20;
+	private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+	private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+
+	public final int poolSize;
+	public final int connectTimeoutMillis;
+	public final int readTimeoutMillis;
+
+	public FedoraTransportConfig(int poolSize, int connectTimeoutMillis, int readTimeoutMillis) {
+		this.poolSize = poolSize;
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	public static FedoraTransportConfig withDefaultValues() {
+		return new FedoraTransportConfig(DEFAULT_POOL_SIZE, DEFAULT_CONNECT_TIMEOUT_MILLIS,
+				DEFAULT_READ_TIMEOUT_MILLIS);
+	}
+}
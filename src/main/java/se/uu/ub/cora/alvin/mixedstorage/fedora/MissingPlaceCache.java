@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public final class MissingPlaceCache {
+	private final long timeToLiveMillis;
+	private final int maxSize;
+	private final LongSupplier clock;
+	private final ConcurrentMap<String, Long> expiryTimes = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+
+	public static MissingPlaceCache withTimeToLiveMillisAndMaxSize(long timeToLiveMillis,
+			int maxSize) {
+		return new MissingPlaceCache(timeToLiveMillis, maxSize, System::currentTimeMillis);
+	}
+
+	static MissingPlaceCache withTimeToLiveMillisAndMaxSizeAndClock(long timeToLiveMillis,
+			int maxSize, LongSupplier clock) {
+		return new MissingPlaceCache(timeToLiveMillis, maxSize, clock);
+	}
+
+	private MissingPlaceCache(long timeToLiveMillis, int maxSize, LongSupplier clock) {
+		this.timeToLiveMillis = timeToLiveMillis;
+		this.maxSize = maxSize;
+		this.clock = clock;
+	}
+
+	boolean isKnownMissing(String pid) {
+		Long expiryTime = expiryTimes.get(pid);
+		if (expiryTime == null) {
+			return false;
+		}
+		if (expiryTime <= clock.getAsLong()) {
+			expiryTimes.remove(pid, expiryTime);
+			return false;
+		}
+		hits.increment();
+		return true;
+	}
+
+	void markMissing(String pid) {
+		if (isDisabled()) {
+			return;
+		}
+		if (expiryTimes.size() >= maxSize) {
+			removeExpired();
+		}
+		if (expiryTimes.size() < maxSize || expiryTimes.containsKey(pid)) {
+			expiryTimes.put(pid, clock.getAsLong() + timeToLiveMillis);
+		}
+	}
+
+	private boolean isDisabled() {
+		return maxSize <= 0 || timeToLiveMillis <= 0;
+	}
+
+	private void removeExpired() {
+		long now = clock.getAsLong();
+		expiryTimes.values().removeIf(expiryTime -> expiryTime <= now);
+	}
+
+	void clear(String pid) {
+		expiryTimes.remove(pid);
+	}
+
+	public long getNumberOfHits() {
+		return hits.sum();
+	}
+
+	public int getSize() {
+		return expiryTimes.size();
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public final class PlaceCache {
+	private final int maxSize;
+	private final Map<String, CachedPlace> places;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public static PlaceCache withMaxSize(int maxSize) {
+		return new PlaceCache(maxSize);
+	}
+
+	private PlaceCache(int maxSize) {
+		this.maxSize = maxSize;
+		places = new LinkedHashMap<String, CachedPlace>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, CachedPlace> eldest) {
+				return removeIfTooMany();
+			}
+		};
+	}
+
+	private boolean removeIfTooMany() {
+		if (places.size() > maxSize) {
+			evictions++;
+			return true;
+		}
+		return false;
+	}
+
+	DataGroup getUsingPidAndLastModifiedDate(String pid, String lastModifiedDate) {
+		DataGroup cachedPlace = findPlaceWithLastModifiedDate(pid, lastModifiedDate);
+		if (cachedPlace == null) {
+			return null;
+		}
+		return DataGroupCopier.copyDataGroup(cachedPlace);
+	}
+
+	private synchronized DataGroup findPlaceWithLastModifiedDate(String pid,
+			String lastModifiedDate) {
+		CachedPlace cachedPlace = places.get(pid);
+		if (cachedPlace != null && cachedPlace.lastModifiedDate.equals(lastModifiedDate)) {
+			hits++;
+			return cachedPlace.place;
+		}
+		misses++;
+		return null;
+	}
+
+	void putUsingPidAndLastModifiedDate(String pid, String lastModifiedDate, DataGroup place) {
+		putUsingPidAndLastModifiedDateAndMetadata(pid, lastModifiedDate, place, null);
+	}
+
+	void putUsingPidAndLastModifiedDateAndMetadata(String pid, String lastModifiedDate,
+			DataGroup place, byte[] metadata) {
+		if (isEnabled()) {
+			storePlace(pid, new CachedPlace(lastModifiedDate, DataGroupCopier.copyDataGroup(place),
+					metadata));
+		}
+	}
+
+	boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	synchronized CachedMetadata getMetadataUsingPid(String pid) {
+		CachedPlace cachedPlace = places.get(pid);
+		if (cachedPlace == null || cachedPlace.metadata == null) {
+			return null;
+		}
+		return new CachedMetadata(cachedPlace.lastModifiedDate, cachedPlace.metadata);
+	}
+
+	private synchronized void storePlace(String pid, CachedPlace cachedPlace) {
+		places.put(pid, cachedPlace);
+	}
+
+	synchronized void invalidate(String pid) {
+		places.remove(pid);
+	}
+
+	public synchronized double getHitRatio() {
+		long lookups = hits + misses;
+		if (lookups == 0) {
+			return 0;
+		}
+		return (double) hits / lookups;
+	}
+
+	public synchronized long getNumberOfHits() {
+		return hits;
+	}
+
+	public synchronized long getNumberOfMisses() {
+		return misses;
+	}
+
+	public synchronized long getNumberOfEvictions() {
+		return evictions;
+	}
+
+	public synchronized int getSize() {
+		return places.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	private static final class CachedPlace {
+		private final String lastModifiedDate;
+		private final DataGroup place;
+		private final byte[] metadata;
+
+		private CachedPlace(String lastModifiedDate, DataGroup place, byte[] metadata) {
+			this.lastModifiedDate = lastModifiedDate;
+			this.place = place;
+			this.metadata = metadata;
+		}
+	}
+
+	static final class CachedMetadata {
+		final String lastModifiedDate;
+		private final byte[] metadata;
+
+		private CachedMetadata(String lastModifiedDate, byte[] metadata) {
+			this.lastModifiedDate = lastModifiedDate;
+			this.metadata = metadata;
+		}
+
+		InputStream getMetadataAsStream() {
+			return new ByteArrayInputStream(metadata);
+		}
+	}
+}
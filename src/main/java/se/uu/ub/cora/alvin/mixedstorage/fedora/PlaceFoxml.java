@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+final class PlaceFoxml {
+	private static final String PLACE_MODEL = "info:fedora/alvin-model:place";
+
+	private PlaceFoxml() {
+		throw new UnsupportedOperationException();
+	}
+
+	static String createUsingPidAndLabelAndMetadataXml(String pid, String label,
+			String metadataXml) {
+		StringBuilder foxml = new StringBuilder();
+		foxml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		foxml.append("<foxml:digitalObject VERSION=\"1.1\" PID=\"").append(escape(pid));
+		foxml.append("\" xmlns:foxml=\"info:fedora/fedora-system:def/foxml#\">");
+		appendObjectProperties(foxml, label);
+		appendRelsExt(foxml, pid);
+		appendMetadata(foxml, label, metadataXml);
+		foxml.append("</foxml:digitalObject>");
+		return foxml.toString();
+	}
+
+	private static void appendObjectProperties(StringBuilder foxml, String label) {
+		foxml.append("<foxml:objectProperties>");
+		foxml.append("<foxml:property NAME=\"info:fedora/fedora-system:def/model#state\"");
+		foxml.append(" VALUE=\"A\"/>");
+		foxml.append("<foxml:property NAME=\"info:fedora/fedora-system:def/model#label\"");
+		foxml.append(" VALUE=\"").append(escape(label)).append("\"/>");
+		foxml.append("</foxml:objectProperties>");
+	}
+
+	private static void appendRelsExt(StringBuilder foxml, String pid) {
+		foxml.append("<foxml:datastream ID=\"RELS-EXT\" CONTROL_GROUP=\"X\" STATE=\"A\"");
+		foxml.append(" VERSIONABLE=\"true\">");
+		foxml.append("<foxml:datastreamVersion ID=\"RELS-EXT.0\"");
+		foxml.append(" MIMETYPE=\"application/rdf+xml\" LABEL=\"RDF Statements about this object\">");
+		foxml.append("<foxml:xmlContent>");
+		foxml.append("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"");
+		foxml.append(" xmlns:fedora-model=\"info:fedora/fedora-system:def/model#\">");
+		foxml.append("<rdf:Description rdf:about=\"info:fedora/").append(escape(pid));
+		foxml.append("\"><fedora-model:hasModel rdf:resource=\"").append(PLACE_MODEL);
+		foxml.append("\"/></rdf:Description></rdf:RDF>");
+		foxml.append("</foxml:xmlContent>");
+		foxml.append("</foxml:datastreamVersion>");
+		foxml.append("</foxml:datastream>");
+	}
+
+	private static void appendMetadata(StringBuilder foxml, String label, String metadataXml) {
+		foxml.append("<foxml:datastream ID=\"METADATA\" CONTROL_GROUP=\"M\" STATE=\"A\"");
+		foxml.append(" VERSIONABLE=\"true\">");
+		foxml.append("<foxml:datastreamVersion ID=\"METADATA.0\" MIMETYPE=\"text/xml\"");
+		foxml.append(" LABEL=\"").append(escape(label)).append("\">");
+		foxml.append("<foxml:contentDigest TYPE=\"SHA-512\"/>");
+		foxml.append("<foxml:binaryContent>");
+		foxml.append(Base64.getEncoder()
+				.encodeToString(metadataXml.getBytes(StandardCharsets.UTF_8)));
+		foxml.append("</foxml:binaryContent>");
+		foxml.append("</foxml:datastreamVersion>");
+		foxml.append("</foxml:datastream>");
+	}
+
+	private static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (char character : value.toCharArray()) {
+			appendEscaped(escaped, character);
+		}
+		return escaped.toString();
+	}
+
+	private static void appendEscaped(StringBuilder escaped, char character) {
+		switch (character) {
+		case '&':
+			escaped.append("&amp;");
+			break;
+		case '<':
+			escaped.append("&lt;");
+			break;
+		case '>':
+			escaped.append("&gt;");
+			break;
+		case '"':
+			escaped.append("&quot;");
+			break;
+		case '\'':
+			escaped.append("&apos;");
+			break;
+		default:
+			escaped.append(character);
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class PlaceImportCheckpoint implements AutoCloseable {
+	private static final String SEPARATOR = "\t";
+	private static final String STARTED = "started";
+	private Map<Long, String> importedPids = new ConcurrentHashMap<>();
+	private Map<Long, String> startedPids = new ConcurrentHashMap<>();
+	private Map<Long, String> sourceNames = new ConcurrentHashMap<>();
+	private Path path;
+	private BufferedWriter writer;
+
+	static PlaceImportCheckpoint usingPath(String path) {
+		if (path == null) {
+			return new PlaceImportCheckpoint(null);
+		}
+		return new PlaceImportCheckpoint(Paths.get(path));
+	}
+
+	private PlaceImportCheckpoint(Path path) {
+		this.path = path;
+		if (path != null) {
+			readImportedIfFileExists();
+			writer = openForAppending();
+		}
+	}
+
+	private void readImportedIfFileExists() {
+		if (Files.exists(path)) {
+			tryToReadImported();
+		}
+	}
+
+	private void tryToReadImported() {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			while (line != null) {
+				addImportedUsingLine(line);
+				line = reader.readLine();
+			}
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error reading place import checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	private void addImportedUsingLine(String line) {
+		String[] parts = line.split(SEPARATOR);
+		if (parts.length == 3 && lineStartsWithIndexAndSourceNameAndPid(parts)) {
+			addUsingParts(importedPids, parts);
+		}
+		if (parts.length == 4 && lineStartsWithIndexAndSourceNameAndPid(parts)
+				&& STARTED.equals(parts[3])) {
+			addUsingParts(startedPids, parts);
+		}
+	}
+
+	private boolean lineStartsWithIndexAndSourceNameAndPid(String[] parts) {
+		return isNumber(parts[0]) && !parts[1].isEmpty() && !parts[2].isEmpty();
+	}
+
+	private void addUsingParts(Map<Long, String> pids, String[] parts) {
+		Long index = Long.valueOf(parts[0]);
+		sourceNames.put(index, parts[1]);
+		pids.put(index, parts[2]);
+	}
+
+	private boolean isNumber(String value) {
+		return !value.isEmpty() && value.chars().allMatch(Character::isDigit);
+	}
+
+	private BufferedWriter openForAppending() {
+		try {
+			BufferedWriter appendingWriter = Files.newBufferedWriter(path,
+					StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			endPartiallyWrittenLastLine(appendingWriter);
+			return appendingWriter;
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error opening place import checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	private void endPartiallyWrittenLastLine(BufferedWriter appendingWriter) throws IOException {
+		if (Files.size(path) > 0 && lastByteInFile() != '\n') {
+			appendingWriter.write("\n");
+			appendingWriter.flush();
+		}
+	}
+
+	private int lastByteInFile() throws IOException {
+		try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+			ByteBuffer lastByte = ByteBuffer.allocate(1);
+			channel.position(channel.size() - 1);
+			channel.read(lastByte);
+			return lastByte.get(0);
+		}
+	}
+
+	void ensureSourceNamesMatch(List<String> namesOfSources) {
+		for (Map.Entry<Long, String> entry : sourceNames.entrySet()) {
+			ensureSourceNameMatches(namesOfSources, entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void ensureSourceNameMatches(List<String> namesOfSources, long index,
+			String checkpointedName) {
+		if (index >= namesOfSources.size()) {
+			throw createSourcesHaveChangedException(index, checkpointedName, "is now missing");
+		}
+		String name = namesOfSources.get((int) index);
+		if (!checkpointedName.equals(name)) {
+			throw createSourcesHaveChangedException(index, checkpointedName, "is now " + name);
+		}
+	}
+
+	private FedoraException createSourcesHaveChangedException(long index,
+			String checkpointedName, String change) {
+		return FedoraException.withMessage("Place import checkpoint " + path
+				+ " does not match the places to import, place with index: " + index + " was "
+				+ checkpointedName + " and " + change);
+	}
+
+	boolean isImported(long index) {
+		return importedPids.containsKey(index);
+	}
+
+	String getPidForImported(long index) {
+		return importedPids.get(index);
+	}
+
+	int getNumberOfImported() {
+		return importedPids.size();
+	}
+
+	String getPidForStarted(long index) {
+		return startedPids.get(index);
+	}
+
+	synchronized void markStarted(long index, String sourceName, String pid) {
+		sourceNames.put(index, sourceName);
+		startedPids.put(index, pid);
+		if (writer != null) {
+			writeLine(index + SEPARATOR + sourceName + SEPARATOR + pid + SEPARATOR + STARTED);
+		}
+	}
+
+	synchronized void markImported(long index, String sourceName, String pid) {
+		sourceNames.put(index, sourceName);
+		importedPids.put(index, pid);
+		if (writer != null) {
+			writeLine(index + SEPARATOR + sourceName + SEPARATOR + pid);
+		}
+	}
+
+	private void writeLine(String line) {
+		try {
+			writer.write(line + "\n");
+			writer.flush();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error writing place import checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (writer != null) {
+			tryToClose();
+		}
+	}
+
+	private void tryToClose() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error closing place import checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+}
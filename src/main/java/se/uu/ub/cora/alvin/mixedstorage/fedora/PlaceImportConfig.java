@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+public class PlaceImportConfig {
+	private static final int DEFAULT_PID_BLOCK_SIZE = 100;
+	private static final int DEFAULT_MAX_CONCURRENT_INGESTS = 8;
+
+	public final int pidBlockSize;
+	public final int conversionThreads;
+	public final int maxConcurrentIngests;
+	public final String checkpointPath;
+
+	public PlaceImportConfig(int pidBlockSize, int conversionThreads, int maxConcurrentIngests,
+			String checkpointPath) {
+		this.pidBlockSize = pidBlockSize;
+		this.conversionThreads = conversionThreads;
+		this.maxConcurrentIngests = maxConcurrentIngests;
+		this.checkpointPath = checkpointPath;
+	}
+
+	public static PlaceImportConfig withCheckpointPathAndDefaultValues(String checkpointPath) {
+		return new PlaceImportConfig(DEFAULT_PID_BLOCK_SIZE,
+				Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_CONCURRENT_INGESTS,
+				checkpointPath);
+	}
+
+}
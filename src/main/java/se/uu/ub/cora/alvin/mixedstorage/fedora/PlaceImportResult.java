@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.List;
+
+public final class PlaceImportResult {
+	private static final double MILLIS_PER_SECOND = 1000.0;
+
+	public final long numberOfImported;
+	public final long numberOfSkipped;
+	public final List<Failure> failures;
+	public final long elapsedMillis;
+
+	public PlaceImportResult(long numberOfImported, long numberOfSkipped, List<Failure> failures,
+			long elapsedMillis) {
+		this.numberOfImported = numberOfImported;
+		this.numberOfSkipped = numberOfSkipped;
+		this.failures = List.copyOf(failures);
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public double getPlacesPerSecond() {
+		return calculatePlacesPerSecond(numberOfImported, elapsedMillis);
+	}
+
+	static double calculatePlacesPerSecond(long numberOfImported, long elapsedMillis) {
+		if (elapsedMillis == 0) {
+			return numberOfImported;
+		}
+		return numberOfImported * MILLIS_PER_SECOND / elapsedMillis;
+	}
+
+	public static final class Failure {
+		public final long index;
+		public final String sourceName;
+		public final String pid;
+		public final String message;
+
+		public Failure(long index, String sourceName, String pid, String message) {
+			this.index = index;
+			this.sourceName = sourceName;
+			this.pid = pid;
+			this.message = message;
+		}
+	}
+}
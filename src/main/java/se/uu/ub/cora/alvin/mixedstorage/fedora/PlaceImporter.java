@@ -0,0 +1,311 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult.Failure;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public final class PlaceImporter {
+	private static final String PLACE = "place";
+	private static final int PROGRESS_INTERVAL = 1000;
+	private Logger log = LoggerProvider.getLoggerForClass(PlaceImporter.class);
+	private AlvinFedoraConverterFactory converterFactory;
+	private FedoraPidReserver pidReserver;
+	private FedoraObjectIngester objectIngester;
+	private PlaceImportConfig importConfig;
+
+	public static PlaceImporter usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndImportConfig(
+			HttpHandlerFactory httpHandlerFactory, AlvinFedoraConverterFactory converterFactory,
+			FedoraConfig fedoraConfig, PlaceImportConfig importConfig) {
+		return new PlaceImporter(httpHandlerFactory, converterFactory, fedoraConfig,
+				importConfig);
+	}
+
+	private PlaceImporter(HttpHandlerFactory httpHandlerFactory,
+			AlvinFedoraConverterFactory converterFactory, FedoraConfig fedoraConfig,
+			PlaceImportConfig importConfig) {
+		this.converterFactory = converterFactory;
+		this.importConfig = importConfig;
+		pidReserver = FedoraPidReserver.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory,
+				fedoraConfig);
+		objectIngester = FedoraObjectIngester
+				.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory, fedoraConfig);
+	}
+
+	public PlaceImportResult importPlaces(List<PlaceImportSource> placeSources) {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(importConfig.checkpointPath)) {
+			checkpoint.ensureSourceNamesMatch(getNamesOfSources(placeSources));
+			return new ImportRun(checkpoint).importPlaces(placeSources);
+		}
+	}
+
+	private List<String> getNamesOfSources(List<PlaceImportSource> placeSources) {
+		return placeSources.stream().map(placeSource -> placeSource.name)
+				.collect(Collectors.toList());
+	}
+
+	PlaceImportConfig getImportConfig() {
+		// needed for test
+		return importConfig;
+	}
+
+	private final class ImportRun {
+		private PlaceImportCheckpoint checkpoint;
+		private Deque<String> reservedPids = new ArrayDeque<>();
+		private int maxInFlight = importConfig.conversionThreads
+				+ 2 * importConfig.maxConcurrentIngests;
+		private Semaphore inFlight = new Semaphore(maxInFlight);
+		private LongAdder imported = new LongAdder();
+		private LongAdder skipped = new LongAdder();
+		private AtomicInteger completed = new AtomicInteger();
+		private Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+		private ExecutorService conversionPool;
+		private ExecutorService ingestPool;
+		private long startTime;
+
+		ImportRun(PlaceImportCheckpoint checkpoint) {
+			this.checkpoint = checkpoint;
+		}
+
+		PlaceImportResult importPlaces(List<PlaceImportSource> placeSources) {
+			startTime = System.nanoTime();
+			conversionPool = Executors.newFixedThreadPool(importConfig.conversionThreads,
+					createDaemonThreadFactory("place-import-convert-"));
+			ingestPool = Executors.newFixedThreadPool(importConfig.maxConcurrentIngests,
+					createDaemonThreadFactory("place-import-ingest-"));
+			try {
+				importAllPlaces(placeSources);
+			} finally {
+				waitForPlacesInFlightAndShutDownPools();
+			}
+			PlaceImportResult result = createResult();
+			logResult(result);
+			return result;
+		}
+
+		private ThreadFactory createDaemonThreadFactory(String threadNamePrefix) {
+			AtomicInteger threadNo = new AtomicInteger();
+			return runnable -> {
+				Thread thread = new Thread(runnable, threadNamePrefix + threadNo.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			};
+		}
+
+		private void importAllPlaces(List<PlaceImportSource> placeSources) {
+			long index = 0;
+			for (PlaceImportSource placeSource : placeSources) {
+				importPlaceUsingIndex(placeSource, index);
+				index++;
+			}
+		}
+
+		private void importPlaceUsingIndex(PlaceImportSource placeSource, long index) {
+			if (checkpoint.isImported(index)) {
+				skipped.increment();
+				return;
+			}
+			String sourceName = placeSource.name;
+			String startedPid = checkpoint.getPidForStarted(index);
+			DataGroup place;
+			try {
+				if (startedPid != null && objectIngester.objectExists(startedPid)) {
+					markIngestedBeforeRestart(index, sourceName, startedPid);
+					return;
+				}
+				place = placeSource.placeReader.get();
+			} catch (RuntimeException e) {
+				addFailure(index, sourceName, startedPid, e);
+				return;
+			}
+			String pid = startedPid != null ? startedPid : takeReservedPid();
+			startImportOfPlace(index, sourceName, pid, place);
+		}
+
+		private void markIngestedBeforeRestart(long index, String sourceName, String pid) {
+			checkpoint.markImported(index, sourceName, pid);
+			skipped.increment();
+		}
+
+		private String takeReservedPid() {
+			if (reservedPids.isEmpty()) {
+				reservedPids.addAll(pidReserver.reservePlacePids(importConfig.pidBlockSize));
+			}
+			return reservedPids.removeFirst();
+		}
+
+		private void startImportOfPlace(long index, String sourceName, String pid,
+				DataGroup place) {
+			acquireInFlightPermits(1);
+			try {
+				checkpoint.markStarted(index, sourceName, pid);
+				setIdInPlace(pid, place);
+				AlvinCoraToFedoraConverter converter = converterFactory
+						.factorToFedoraConverter(PLACE);
+				CompletableFuture
+						.supplyAsync(() -> createFoxml(converter, pid, place), conversionPool)
+						.thenAcceptAsync(foxml -> objectIngester.ingestFoxml(pid, foxml),
+								ingestPool)
+						.whenComplete((ingested, exception) -> handleCompleted(index,
+								sourceName, pid, exception));
+			} catch (RuntimeException e) {
+				addFailure(index, sourceName, pid, e);
+				inFlight.release();
+			}
+		}
+
+		private void acquireInFlightPermits(int numberOfPermits) {
+			try {
+				inFlight.acquire(numberOfPermits);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw FedoraException.withMessageAndException("Interrupted while importing places",
+						e);
+			}
+		}
+
+		private void setIdInPlace(String pid, DataGroup place) {
+			DataGroup recordInfo = place.getFirstGroupWithNameInData("recordInfo");
+			if (recordInfo.containsChildWithNameInData("id")) {
+				recordInfo.removeFirstChildWithNameInData("id");
+			}
+			recordInfo.addChild(DataAtomicProvider.getDataAtomicUsingNameInDataAndValue("id", pid));
+		}
+
+		private String createFoxml(AlvinCoraToFedoraConverter converter, String pid,
+				DataGroup place) {
+			String metadataXML = converter.toNewXML(place);
+			String label = AlvinCoraToFedoraPlaceConverter.getDefaultNameFromPlaceRecord(place);
+			return PlaceFoxml.createUsingPidAndLabelAndMetadataXml(pid, label, metadataXML);
+		}
+
+		private void handleCompleted(long index, String sourceName, String pid,
+				Throwable exception) {
+			try {
+				markImportedOrAddFailure(index, sourceName, pid, exception);
+			} finally {
+				inFlight.release();
+			}
+			logProgressIfAtInterval(completed.incrementAndGet());
+		}
+
+		private void markImportedOrAddFailure(long index, String sourceName, String pid,
+				Throwable exception) {
+			if (exception != null) {
+				addFailure(index, sourceName, pid, unwrap(exception));
+				return;
+			}
+			try {
+				checkpoint.markImported(index, sourceName, pid);
+				imported.increment();
+			} catch (RuntimeException e) {
+				addFailure(index, sourceName, pid, e);
+			}
+		}
+
+		private Throwable unwrap(Throwable exception) {
+			if (exception instanceof CompletionException && exception.getCause() != null) {
+				return exception.getCause();
+			}
+			return exception;
+		}
+
+		private void addFailure(long index, String sourceName, String pid,
+				Throwable exception) {
+			String message = getMessageOrExceptionName(exception);
+			failures.add(new Failure(index, sourceName, pid, message));
+			log.logErrorUsingMessage("Import of place with index: " + index + " from: "
+					+ sourceName + " and pid: " + pid + " failed with message: " + message);
+		}
+
+		private String getMessageOrExceptionName(Throwable exception) {
+			if (exception.getMessage() == null) {
+				return exception.getClass().getName();
+			}
+			return exception.getMessage();
+		}
+
+		private void logProgressIfAtInterval(int numberOfCompleted) {
+			if (numberOfCompleted % PROGRESS_INTERVAL == 0) {
+				long elapsedMillis = getElapsedMillis();
+				log.logInfoUsingMessage("Place import progress: " + imported.sum()
+						+ " imported, " + failures.size() + " failed, "
+						+ formatPlacesPerSecond(imported.sum(), elapsedMillis) + " places/s");
+			}
+		}
+
+		private String formatPlacesPerSecond(long numberOfImported, long elapsedMillis) {
+			return String.format(Locale.ROOT, "%.1f", PlaceImportResult
+					.calculatePlacesPerSecond(numberOfImported, elapsedMillis));
+		}
+
+		private void waitForPlacesInFlightAndShutDownPools() {
+			try {
+				acquireInFlightPermits(maxInFlight);
+				inFlight.release(maxInFlight);
+			} finally {
+				conversionPool.shutdownNow();
+				ingestPool.shutdownNow();
+			}
+		}
+
+		private long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		}
+
+		private PlaceImportResult createResult() {
+			List<Failure> failuresInIndexOrder = new ArrayList<>(failures);
+			failuresInIndexOrder.sort(Comparator.comparingLong(failure -> failure.index));
+			return new PlaceImportResult(imported.sum(), skipped.sum(), failuresInIndexOrder,
+					getElapsedMillis());
+		}
+
+		private void logResult(PlaceImportResult result) {
+			log.logInfoUsingMessage("Place import done: " + result.numberOfImported
+					+ " imported, " + result.numberOfSkipped + " skipped, "
+					+ result.failures.size() + " failed in " + result.elapsedMillis + " ms, "
+					+ formatPlacesPerSecond(result.numberOfImported, result.elapsedMillis)
+					+ " places/s");
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+public class PlaceListFetchConfig {
+	private static final int DEFAULT_PAGE_SIZE = 100;
+
+	public enum Mode {
+		SEQUENTIAL, PARALLEL
+	}
+
+	public enum ErrorPolicy {
+		FAIL, SKIP
+	}
+
+	public final Mode mode;
+	public final int maxConcurrency;
+	public final ErrorPolicy errorPolicy;
+	public final int pageSize;
+
+	public PlaceListFetchConfig(Mode mode, int maxConcurrency, ErrorPolicy errorPolicy) {
+		this(mode, maxConcurrency, errorPolicy, DEFAULT_PAGE_SIZE);
+	}
+
+	public PlaceListFetchConfig(Mode mode, int maxConcurrency, ErrorPolicy errorPolicy,
+			int pageSize) {
+		this.mode = mode;
+		this.maxConcurrency = maxConcurrency;
+		this.errorPolicy = errorPolicy;
+		this.pageSize = pageSize;
+	}
+
+	public static PlaceListFetchConfig sequentialFailingOnError() {
+		return new PlaceListFetchConfig(Mode.SEQUENTIAL, 1, ErrorPolicy.FAIL);
+	}
+
+}
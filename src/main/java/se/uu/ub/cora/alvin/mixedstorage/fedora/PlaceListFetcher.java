@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+final class PlaceListFetcher {
+	private Logger log = LoggerProvider.getLoggerForClass(PlaceListFetcher.class);
+	private PlaceListFetchConfig config;
+	private ExecutorService executor;
+
+	static PlaceListFetcher usingConfig(PlaceListFetchConfig config) {
+		return new PlaceListFetcher(config);
+	}
+
+	private PlaceListFetcher(PlaceListFetchConfig config) {
+		this.config = config;
+		if (Mode.PARALLEL == config.mode) {
+			executor = Executors.newFixedThreadPool(config.maxConcurrency,
+					createDaemonThreadFactory());
+		}
+	}
+
+	private ThreadFactory createDaemonThreadFactory() {
+		AtomicInteger threadNo = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable,
+					"fedora-place-list-fetch-" + threadNo.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	List<DataGroup> fetchPlacesUsingPidsAndPlaceReader(List<String> pids,
+			Function<String, DataGroup> placeReader) {
+		PlaceFetch placeFetch = startFetchUsingPlaceReader(
+				(pid, lastModifiedDate) -> placeReader.apply(pid));
+		try {
+			for (String pid : pids) {
+				placeFetch.fetchUsingPidAndLastModifiedDate(pid, null);
+			}
+			return placeFetch.collectPlacesInOrder();
+		} finally {
+			placeFetch.cancelUnfinished();
+		}
+	}
+
+	PlaceFetch startFetchUsingPlaceReader(BiFunction<String, String, DataGroup> placeReader) {
+		return new PlaceFetch(placeReader);
+	}
+
+	private void handleErrorForPid(String pid, RuntimeException e) {
+		if (ErrorPolicy.FAIL == config.errorPolicy) {
+			throw e;
+		}
+		log.logErrorUsingMessageAndException("Skipping place " + pid
+				+ " in list, reading it from fedora failed: " + e.getMessage(), e);
+	}
+
+	final class PlaceFetch {
+		private BiFunction<String, String, DataGroup> placeReader;
+		private List<String> pids = new ArrayList<>();
+		private List<String> lastModifiedDates = new ArrayList<>();
+		private List<Future<DataGroup>> futures = new ArrayList<>();
+
+		private PlaceFetch(BiFunction<String, String, DataGroup> placeReader) {
+			this.placeReader = placeReader;
+		}
+
+		void fetchUsingPidAndLastModifiedDate(String pid, String lastModifiedDate) {
+			pids.add(pid);
+			if (Mode.PARALLEL == config.mode) {
+				futures.add(executor.submit(() -> placeReader.apply(pid, lastModifiedDate)));
+			} else {
+				lastModifiedDates.add(lastModifiedDate);
+			}
+		}
+
+		List<DataGroup> collectPlacesInOrder() {
+			if (Mode.PARALLEL == config.mode) {
+				return collectResultsInOrder();
+			}
+			return fetchPlacesSequentially();
+		}
+
+		private List<DataGroup> fetchPlacesSequentially() {
+			List<DataGroup> places = new ArrayList<>(pids.size());
+			for (int i = 0; i < pids.size(); i++) {
+				try {
+					places.add(placeReader.apply(pids.get(i), lastModifiedDates.get(i)));
+				} catch (RuntimeException e) {
+					handleErrorForPid(pids.get(i), e);
+				}
+			}
+			return places;
+		}
+
+		private List<DataGroup> collectResultsInOrder() {
+			List<DataGroup> places = new ArrayList<>(pids.size());
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					places.add(waitForResult(futures.get(i)));
+				} catch (ExecutionException e) {
+					handleErrorForPid(pids.get(i), unwrapCause(e));
+				}
+			}
+			return places;
+		}
+
+		private DataGroup waitForResult(Future<DataGroup> future) throws ExecutionException {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw FedoraException.withMessageAndException(
+						"Interrupted while reading list of places", e);
+			}
+		}
+
+		private RuntimeException unwrapCause(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				return (RuntimeException) cause;
+			}
+			return FedoraException.withMessageAndException(cause.getMessage(), e);
+		}
+
+		void cancelUnfinished() {
+			for (Future<DataGroup> future : futures) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	void close() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	PlaceListFetchConfig getConfig() {
+		// needed for test
+		return config;
+	}
+
+	ExecutorService getExecutor() {
+		// needed for test
+		return executor;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Predicate;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+
+final class PlaceListFilter {
+	static final String LABEL_PREFIX = "labelStartsWith";
+	static final String PID_FROM = "pidFrom";
+	static final String PID_TO = "pidTo";
+	static final String MODIFIED_SINCE = "modifiedSince";
+	private static final String PLACE_PID_PREFIX = "alvin-place:";
+	static final String ACTIVE_PLACES_QUERY = "state=A pid~" + PLACE_PID_PREFIX + "*";
+	private StringBuilder query = new StringBuilder(ACTIVE_PLACES_QUERY);
+	private long pidFrom = Long.MIN_VALUE;
+	private long pidTo = Long.MAX_VALUE;
+	private boolean hasPidRange = false;
+	private List<Entry<String, String>> postFilterParts = new ArrayList<>();
+
+	static PlaceListFilter fromFilter(DataGroup filter) {
+		return new PlaceListFilter(filter);
+	}
+
+	private PlaceListFilter(DataGroup filter) {
+		if (filter != null) {
+			for (DataGroup part : filter.getAllGroupsWithNameInData("part")) {
+				addPart(part.getFirstAtomicValueWithNameInData("key"),
+						part.getFirstAtomicValueWithNameInData("value"));
+			}
+		}
+	}
+
+	private void addPart(String key, String value) {
+		if (LABEL_PREFIX.equals(key)) {
+			query.append(" label~'").append(escapeQuotes(value)).append("*'");
+		} else if (MODIFIED_SINCE.equals(key)) {
+			query.append(" mDate>=").append(ensureIsIsoDateOrDateTime(key, value));
+		} else if (PID_FROM.equals(key)) {
+			pidFrom = parsePidNumber(key, value);
+			hasPidRange = true;
+		} else if (PID_TO.equals(key)) {
+			pidTo = parsePidNumber(key, value);
+			hasPidRange = true;
+		} else {
+			postFilterParts.add(Map.entry(key, value));
+		}
+	}
+
+	private String ensureIsIsoDateOrDateTime(String key, String value) {
+		if (isParsableAsIsoDateOrDateTime(value)) {
+			return value;
+		}
+		throw createInvalidFilterValueException(key, value);
+	}
+
+	private boolean isParsableAsIsoDateOrDateTime(String value) {
+		try {
+			parseAsIsoDateOrDateTime(value);
+			return true;
+		} catch (DateTimeParseException e) {
+			return false;
+		}
+	}
+
+	private void parseAsIsoDateOrDateTime(String value) {
+		if (value.endsWith("Z")) {
+			Instant.parse(value);
+		} else if (value.contains("T")) {
+			LocalDateTime.parse(value);
+		} else {
+			LocalDate.parse(value);
+		}
+	}
+
+	private long parsePidNumber(String key, String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw createInvalidFilterValueException(key, value);
+		}
+	}
+
+	private FedoraException createInvalidFilterValueException(String key, String value) {
+		return FedoraException
+				.withMessage("Invalid value in place list filter for " + key + ": " + value);
+	}
+
+	private String escapeQuotes(String value) {
+		return value.replace("'", "\\'");
+	}
+
+	String getQuery() {
+		return query.toString();
+	}
+
+	boolean hasObjectFieldsFilter() {
+		return hasPidRange;
+	}
+
+	Predicate<FedoraObjectFields> getObjectFieldsFilter() {
+		if (!hasPidRange) {
+			return objectFields -> true;
+		}
+		return objectFields -> pidNumberIsInRange(objectFields.pid);
+	}
+
+	private boolean pidNumberIsInRange(String pid) {
+		if (!pid.startsWith(PLACE_PID_PREFIX)) {
+			return false;
+		}
+		try {
+			long pidNumber = Long.parseLong(pid.substring(PLACE_PID_PREFIX.length()));
+			return pidNumber >= pidFrom && pidNumber <= pidTo;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	boolean hasPostFilter() {
+		return !postFilterParts.isEmpty();
+	}
+
+	boolean placeMatchesPostFilter(DataGroup place) {
+		for (Entry<String, String> part : postFilterParts) {
+			if (!groupContainsAtomicWithNameInDataAndValue(place, part.getKey(),
+					part.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean groupContainsAtomicWithNameInDataAndValue(DataGroup dataGroup,
+			String nameInData, String value) {
+		for (DataElement child : dataGroup.getChildren()) {
+			if (elementIsAtomicWithNameInDataAndValue(child, nameInData, value)) {
+				return true;
+			}
+			if (child instanceof DataGroup && groupContainsAtomicWithNameInDataAndValue(
+					(DataGroup) child, nameInData, value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean elementIsAtomicWithNameInDataAndValue(DataElement element,
+			String nameInData, String value) {
+		return element instanceof DataAtomic && nameInData.equals(element.getNameInData())
+				&& value.equals(((DataAtomic) element).getValue());
+	}
+}
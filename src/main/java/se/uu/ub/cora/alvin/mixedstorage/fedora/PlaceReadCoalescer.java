@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public final class PlaceReadCoalescer {
+	private final ConcurrentMap<String, InFlightRead> inFlightReads = new ConcurrentHashMap<>();
+	private final LongAdder reads = new LongAdder();
+	private final LongAdder deduplicatedReads = new LongAdder();
+
+	static PlaceReadCoalescer create() {
+		return new PlaceReadCoalescer();
+	}
+
+	private PlaceReadCoalescer() {
+	}
+
+	DataGroup readUsingPidAndPlaceReader(String pid, Function<String, DataGroup> placeReader) {
+		reads.increment();
+		InFlightRead newRead = new InFlightRead();
+		InFlightRead inFlightRead = inFlightReads.compute(pid,
+				(key, existing) -> joinExistingOrUseNew(existing, newRead));
+		if (inFlightRead != newRead) {
+			deduplicatedReads.increment();
+			return DataGroupCopier.copyDataGroup(waitForResult(inFlightRead));
+		}
+		return readAsLeader(pid, inFlightRead, placeReader);
+	}
+
+	private InFlightRead joinExistingOrUseNew(InFlightRead existing, InFlightRead newRead) {
+		if (existing == null) {
+			return newRead;
+		}
+		existing.numberOfFollowers++;
+		return existing;
+	}
+
+	private DataGroup waitForResult(InFlightRead inFlightRead) {
+		try {
+			return inFlightRead.result.join();
+		} catch (CompletionException e) {
+			throw rethrowableCause(e);
+		}
+	}
+
+	private RuntimeException rethrowableCause(CompletionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return (RuntimeException) cause;
+	}
+
+	private DataGroup readAsLeader(String pid, InFlightRead inFlightRead,
+			Function<String, DataGroup> placeReader) {
+		DataGroup place;
+		try {
+			place = placeReader.apply(pid);
+		} catch (RuntimeException | Error e) {
+			inFlightReads.remove(pid, inFlightRead);
+			inFlightRead.result.completeExceptionally(e);
+			throw e;
+		}
+		int numberOfFollowers = removeAndGetNumberOfFollowers(pid, inFlightRead);
+		inFlightRead.result.complete(place);
+		if (numberOfFollowers > 0) {
+			return DataGroupCopier.copyDataGroup(place);
+		}
+		return place;
+	}
+
+	private int removeAndGetNumberOfFollowers(String pid, InFlightRead inFlightRead) {
+		int[] numberOfFollowers = new int[1];
+		inFlightReads.computeIfPresent(pid, (key, current) -> {
+			numberOfFollowers[0] = current.numberOfFollowers;
+			return null;
+		});
+		return numberOfFollowers[0];
+	}
+
+	public long getNumberOfReads() {
+		return reads.sum();
+	}
+
+	public long getNumberOfDeduplicatedReads() {
+		return deduplicatedReads.sum();
+	}
+
+	public int getNumberOfInFlightReads() {
+		return inFlightReads.size();
+	}
+
+	private static final class InFlightRead {
+		private final CompletableFuture<DataGroup> result = new CompletableFuture<>();
+		private int numberOfFollowers = 0;
+	}
+}
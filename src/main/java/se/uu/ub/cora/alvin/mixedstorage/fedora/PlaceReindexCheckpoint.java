@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+final class PlaceReindexCheckpoint implements AutoCloseable {
+	private static final String SEPARATOR = "\t";
+	private static final String RESTARTED = "restarted";
+	private static final String COMPLETED = "completed";
+	private static final String COMPLETED_SUFFIX = ".completed";
+	private Logger log = LoggerProvider.getLoggerForClass(PlaceReindexCheckpoint.class);
+	private Path path;
+	private BufferedWriter writer;
+	private long position = 0;
+	private String lastPid = "";
+
+	static PlaceReindexCheckpoint usingPath(String path) {
+		if (path == null) {
+			return new PlaceReindexCheckpoint(null);
+		}
+		return new PlaceReindexCheckpoint(Paths.get(path));
+	}
+
+	private PlaceReindexCheckpoint(Path path) {
+		this.path = path;
+		if (path != null) {
+			readPositionIfFileExists();
+			writer = openForAppending();
+		}
+	}
+
+	private void readPositionIfFileExists() {
+		if (Files.exists(path)) {
+			readPositionUsingLastLine(tryToReadLastCompleteLine());
+		}
+	}
+
+	private String tryToReadLastCompleteLine() {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			return readLastCompleteLine(reader);
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error reading place reindex checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	private String readLastCompleteLine(BufferedReader reader) throws IOException {
+		String previousLine = "";
+		String lastLine = "";
+		String line = reader.readLine();
+		while (line != null) {
+			if (!line.isEmpty()) {
+				previousLine = lastLine;
+				lastLine = line;
+			}
+			line = reader.readLine();
+		}
+		return fileEndsWithLineBreak() ? lastLine : previousLine;
+	}
+
+	private boolean fileEndsWithLineBreak() throws IOException {
+		return Files.size(path) == 0 || lastByteInFile() == '\n';
+	}
+
+	private void readPositionUsingLastLine(String line) {
+		if (COMPLETED.equals(line)) {
+			moveCompletedCheckpointAside();
+		} else if (!line.isEmpty() && !RESTARTED.equals(line)) {
+			readPositionUsingLine(line);
+		}
+	}
+
+	private void moveCompletedCheckpointAside() {
+		Path completedPath = path.resolveSibling(path.getFileName() + COMPLETED_SUFFIX);
+		try {
+			Files.move(path, completedPath, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException("Error moving completed place reindex"
+					+ " checkpoint " + path + ": " + e.getMessage(), e);
+		}
+		log.logInfoUsingMessage("Place reindex checkpoint " + path
+				+ " is from a completed run, moved it to " + completedPath
+				+ " and starting a new run");
+	}
+
+	private void readPositionUsingLine(String line) {
+		String[] parts = line.split(SEPARATOR, 2);
+		try {
+			position = Long.parseLong(parts[0]);
+			lastPid = parts[1];
+		} catch (RuntimeException e) {
+			throw FedoraException.withMessageAndException(
+					"Invalid place reindex checkpoint " + path + ", last line is: " + line, e);
+		}
+	}
+
+	private BufferedWriter openForAppending() {
+		try {
+			BufferedWriter appendingWriter = Files.newBufferedWriter(path,
+					StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			endPartiallyWrittenLastLine(appendingWriter);
+			return appendingWriter;
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error opening place reindex checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	private void endPartiallyWrittenLastLine(BufferedWriter appendingWriter) throws IOException {
+		if (!fileEndsWithLineBreak()) {
+			appendingWriter.write("\n");
+			appendingWriter.flush();
+		}
+	}
+
+	private int lastByteInFile() throws IOException {
+		try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+			ByteBuffer lastByte = ByteBuffer.allocate(1);
+			channel.position(channel.size() - 1);
+			channel.read(lastByte);
+			return lastByte.get(0);
+		}
+	}
+
+	long getPosition() {
+		return position;
+	}
+
+	String getLastPid() {
+		return lastPid;
+	}
+
+	void markReindexedAtPosition(long position, String pid) {
+		this.position = position;
+		lastPid = pid;
+		writeLine(position + SEPARATOR + pid);
+	}
+
+	void restart() {
+		position = 0;
+		lastPid = "";
+		writeLine(RESTARTED);
+	}
+
+	void markCompleted() {
+		writeLine(COMPLETED);
+	}
+
+	private void writeLine(String line) {
+		if (writer != null) {
+			tryToWriteLine(line);
+		}
+	}
+
+	private void tryToWriteLine(String line) {
+		try {
+			writer.write(line + "\n");
+			writer.flush();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error writing place reindex checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (writer != null) {
+			tryToClose();
+		}
+	}
+
+	private void tryToClose() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw FedoraException.withMessageAndException(
+					"Error closing place reindex checkpoint " + path + ": " + e.getMessage(), e);
+		}
+	}
+}
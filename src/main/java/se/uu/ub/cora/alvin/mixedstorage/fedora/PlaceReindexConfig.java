@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+public class PlaceReindexConfig {
+	private static final int DEFAULT_MESSAGES_PER_SECOND = 100;
+	private static final int DEFAULT_MAX_ATTEMPTS = 10;
+	private static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+	private static final int DEFAULT_PAGE_SIZE = 100;
+
+	public final int messagesPerSecond;
+	public final int maxAttempts;
+	public final long retryDelayMillis;
+	public final int pageSize;
+	public final String checkpointPath;
+
+	public PlaceReindexConfig(int messagesPerSecond, int maxAttempts, long retryDelayMillis,
+			int pageSize, String checkpointPath) {
+		this.messagesPerSecond = messagesPerSecond;
+		this.maxAttempts = maxAttempts;
+		this.retryDelayMillis = retryDelayMillis;
+		this.pageSize = pageSize;
+		this.checkpointPath = checkpointPath;
+	}
+
+	public static PlaceReindexConfig withCheckpointPathAndDefaultValues(String checkpointPath) {
+		return new PlaceReindexConfig(DEFAULT_MESSAGES_PER_SECOND, DEFAULT_MAX_ATTEMPTS,
+				DEFAULT_RETRY_DELAY_MILLIS, DEFAULT_PAGE_SIZE, checkpointPath);
+	}
+}
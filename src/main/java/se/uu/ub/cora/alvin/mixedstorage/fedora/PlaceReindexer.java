@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public final class PlaceReindexer {
+	private static final String PLACE = "place";
+	private static final int PROGRESS_INTERVAL = 1000;
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	private Logger log = LoggerProvider.getLoggerForClass(PlaceReindexer.class);
+	private FedoraPidListReader pidListReader;
+	private RecordIndexer recordIndexer;
+	private PlaceReindexConfig reindexConfig;
+
+	public static PlaceReindexer usingHttpHandlerFactoryAndBaseUrlAndRecordIndexerAndReindexConfig(
+			HttpHandlerFactory httpHandlerFactory, String baseURL, RecordIndexer recordIndexer,
+			PlaceReindexConfig reindexConfig) {
+		return new PlaceReindexer(httpHandlerFactory, baseURL, recordIndexer, reindexConfig);
+	}
+
+	private PlaceReindexer(HttpHandlerFactory httpHandlerFactory, String baseURL,
+			RecordIndexer recordIndexer, PlaceReindexConfig reindexConfig) {
+		throwErrorIfNotPositive(reindexConfig.messagesPerSecond, "messagesPerSecond");
+		throwErrorIfNotPositive(reindexConfig.maxAttempts, "maxAttempts");
+		this.recordIndexer = recordIndexer;
+		this.reindexConfig = reindexConfig;
+		pidListReader = FedoraPidListReader.usingHttpHandlerFactoryAndBaseUrlAndPageSize(
+				httpHandlerFactory, baseURL, reindexConfig.pageSize);
+	}
+
+	private void throwErrorIfNotPositive(int value, String name) {
+		if (value <= 0) {
+			throw FedoraException.withMessage(name + " must be a positive number, was: " + value);
+		}
+	}
+
+	public PlaceReindexResult reindexAllPlaces() {
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(reindexConfig.checkpointPath)) {
+			return new ReindexRun(checkpoint).reindexAllPlaces();
+		}
+	}
+
+	PlaceReindexConfig getReindexConfig() {
+		// needed for test
+		return reindexConfig;
+	}
+
+	private final class ReindexRun {
+		private PlaceReindexCheckpoint checkpoint;
+		private long intervalNanos = NANOS_PER_SECOND / reindexConfig.messagesPerSecond;
+		private long nextSendNanos;
+		private long listPosition;
+		private long reindexed = 0;
+		private long skipped = 0;
+		private long retries = 0;
+		private long startTime;
+
+		ReindexRun(PlaceReindexCheckpoint checkpoint) {
+			this.checkpoint = checkpoint;
+		}
+
+		PlaceReindexResult reindexAllPlaces() {
+			startTime = System.nanoTime();
+			nextSendNanos = startTime;
+			if (!reindexPlacesAfterCheckpointPosition()) {
+				restartAsPlaceListHasChanged();
+				reindexPlacesAfterCheckpointPosition();
+			}
+			checkpoint.markCompleted();
+			PlaceReindexResult result = createResult();
+			logResult(result);
+			return result;
+		}
+
+		private boolean reindexPlacesAfterCheckpointPosition() {
+			listPosition = 0;
+			String sessionToken = "";
+			do {
+				FedoraPidPage page = pidListReader.readPidPageUsingQueryAndSessionToken(
+						PlaceListFilter.ACTIVE_PLACES_QUERY, sessionToken);
+				if (!reindexPlacesInPage(page)) {
+					return false;
+				}
+				sessionToken = page.sessionToken;
+			} while (!sessionToken.isEmpty());
+			return listPosition >= checkpoint.getPosition();
+		}
+
+		private boolean reindexPlacesInPage(FedoraPidPage page) {
+			for (String pid : page.pids) {
+				listPosition++;
+				if (!reindexPlaceUnlessAlreadyReindexed(pid)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean reindexPlaceUnlessAlreadyReindexed(String pid) {
+			if (listPosition < checkpoint.getPosition()) {
+				skipped++;
+				return true;
+			}
+			if (listPosition == checkpoint.getPosition()) {
+				skipped++;
+				return pid.equals(checkpoint.getLastPid());
+			}
+			waitForNextSendSlot();
+			sendIndexMessageWithRetry(pid);
+			checkpoint.markReindexedAtPosition(listPosition, pid);
+			reindexed++;
+			logProgressIfAtInterval();
+			return true;
+		}
+
+		private void restartAsPlaceListHasChanged() {
+			log.logWarnUsingMessage("Place list has changed since checkpoint at position "
+					+ checkpoint.getPosition() + " with pid: " + checkpoint.getLastPid()
+					+ ", reindexing all places again");
+			checkpoint.restart();
+			skipped = 0;
+		}
+
+		private void waitForNextSendSlot() {
+			long now = System.nanoTime();
+			while (now < nextSendNanos) {
+				LockSupport.parkNanos(nextSendNanos - now);
+				throwErrorIfInterrupted();
+				now = System.nanoTime();
+			}
+			nextSendNanos = Math.max(nextSendNanos, now - intervalNanos) + intervalNanos;
+		}
+
+		private void throwErrorIfInterrupted() {
+			if (Thread.currentThread().isInterrupted()) {
+				throw FedoraException.withMessage("Interrupted while reindexing places");
+			}
+		}
+
+		private void sendIndexMessageWithRetry(String pid) {
+			long retryDelay = reindexConfig.retryDelayMillis;
+			for (int attempt = 1;; attempt++) {
+				try {
+					recordIndexer.index(PLACE, pid);
+					return;
+				} catch (RuntimeException e) {
+					throwErrorIfLastAttempt(pid, attempt, e);
+					retries++;
+					log.logWarnUsingMessage("Reindex of place with pid: " + pid
+							+ " failed, retrying in " + retryDelay + " ms: " + e.getMessage());
+					sleepBeforeRetry(retryDelay);
+					retryDelay *= 2;
+				}
+			}
+		}
+
+		private void throwErrorIfLastAttempt(String pid, int attempt, RuntimeException e) {
+			if (attempt >= reindexConfig.maxAttempts) {
+				throw FedoraException.withMessageAndException("Reindex of places stopped at pid: "
+						+ pid + " after " + attempt + " attempts: " + e.getMessage(), e);
+			}
+		}
+
+		private void sleepBeforeRetry(long millis) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw FedoraException.withMessageAndException("Interrupted while reindexing places",
+						e);
+			}
+			nextSendNanos = System.nanoTime();
+		}
+
+		private void logProgressIfAtInterval() {
+			if (reindexed % PROGRESS_INTERVAL == 0) {
+				log.logInfoUsingMessage("Place reindex progress: " + reindexed + " reindexed, "
+						+ skipped + " skipped, " + formatMessagesPerSecond(reindexed,
+								getElapsedMillis())
+						+ " messages/s");
+			}
+		}
+
+		private String formatMessagesPerSecond(long numberOfReindexed, long elapsedMillis) {
+			return String.format(Locale.ROOT, "%.1f", PlaceImportResult
+					.calculatePlacesPerSecond(numberOfReindexed, elapsedMillis));
+		}
+
+		private long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		}
+
+		private PlaceReindexResult createResult() {
+			return new PlaceReindexResult(reindexed, skipped, retries, getElapsedMillis());
+		}
+
+		private void logResult(PlaceReindexResult result) {
+			log.logInfoUsingMessage("Place reindex done: " + result.numberOfReindexed
+					+ " reindexed, " + result.numberOfSkipped + " skipped, "
+					+ result.numberOfRetries + " retries in " + result.elapsedMillis + " ms, "
+					+ formatMessagesPerSecond(result.numberOfReindexed, result.elapsedMillis)
+					+ " messages/s");
+		}
+	}
+}
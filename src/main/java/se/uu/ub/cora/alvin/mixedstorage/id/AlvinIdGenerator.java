@@ -19,65 +19,66 @@
 
 package se.uu.ub.cora.alvin.mixedstorage.id;
 
-import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
-import se.uu.ub.cora.alvin.mixedstorage.parse.XMLXPathParser;
-import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraPidReserver;
 import se.uu.ub.cora.httphandler.HttpHandlerFactory;
 import se.uu.ub.cora.storage.RecordIdGenerator;
 
-public class AlvinIdGenerator implements RecordIdGenerator {
+public class AlvinIdGenerator implements RecordIdGenerator, AutoCloseable {
 
-	private static final int OK = 200;
-	private static final String WITH_RESPONSE_CODE_MESSAGE_PART = ", with response code: ";
 	private HttpHandlerFactory httpHandlerFactory;
 	private IdGeneratorConnectionInfo connectionInfo;
+	private PlacePidPool placePidPool;
+	private TimeOrderedIdGenerator timeOrderedIdGenerator;
+	private int nodeId;
 
 	static AlvinIdGenerator usingHttpHandlerFactoryAndConnectionInfo(
 			HttpHandlerFactory httpHandlerFactory,
 			IdGeneratorConnectionInfo idGeneratorConnectionInfo) {
-		return new AlvinIdGenerator(httpHandlerFactory, idGeneratorConnectionInfo);
+		return new AlvinIdGenerator(httpHandlerFactory, idGeneratorConnectionInfo,
+				PidPoolConfig.oneAtATime(), 0);
+	}
+
+	static AlvinIdGenerator usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfig(
+			HttpHandlerFactory httpHandlerFactory,
+			IdGeneratorConnectionInfo idGeneratorConnectionInfo, PidPoolConfig pidPoolConfig) {
+		return new AlvinIdGenerator(httpHandlerFactory, idGeneratorConnectionInfo,
+				pidPoolConfig, 0);
+	}
+
+	static AlvinIdGenerator usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfigAndNodeId(
+			HttpHandlerFactory httpHandlerFactory,
+			IdGeneratorConnectionInfo idGeneratorConnectionInfo, PidPoolConfig pidPoolConfig,
+			int nodeId) {
+		return new AlvinIdGenerator(httpHandlerFactory, idGeneratorConnectionInfo,
+				pidPoolConfig, nodeId);
 	}
 
 	private AlvinIdGenerator(HttpHandlerFactory httpHandlerFactory,
-			IdGeneratorConnectionInfo idGeneratorConnectionInfo) {
+			IdGeneratorConnectionInfo idGeneratorConnectionInfo, PidPoolConfig pidPoolConfig,
+			int nodeId) {
+		this.nodeId = nodeId;
+		timeOrderedIdGenerator = TimeOrderedIdGenerator.usingNodeId(nodeId);
 		this.httpHandlerFactory = httpHandlerFactory;
 		this.connectionInfo = idGeneratorConnectionInfo;
+		FedoraConfig fedoraConfig = new FedoraConfig(connectionInfo.fedoraUsername,
+				connectionInfo.fedoraPassword, connectionInfo.fedoraURL);
+		FedoraPidReserver pidReserver = FedoraPidReserver
+				.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory, fedoraConfig);
+		placePidPool = PlacePidPool.usingPidReserverAndConfig(pidReserver, pidPoolConfig);
 	}
 
 	@Override
 	public String getIdForType(String type) {
 		if ("place".equals(type)) {
-			return getPidForPlaceFromFedora();
+			return placePidPool.takePid();
 		}
-		return type + ":" + System.nanoTime();
-	}
-
-	private String getPidForPlaceFromFedora() {
-		String nextPidXML = getNextPidFromFedora();
-		return parseXMLAndExtractPid(nextPidXML);
-	}
-
-	private String getNextPidFromFedora() {
-		String urlForNextPid = connectionInfo.fedoraURL
-				+ "objects/nextPID?namespace=alvin-place&format=xml";
-		HttpHandler httpHandlerForPid = httpHandlerFactory.factor(urlForNextPid);
-		httpHandlerForPid.setRequestMethod("POST");
-		httpHandlerForPid.setBasicAuthorization(connectionInfo.fedoraUsername,
-				connectionInfo.fedoraPassword);
-		throwErrorIfPidCouldNotBeFetched(httpHandlerForPid);
-		return httpHandlerForPid.getResponseText();
+		return type + ":" + timeOrderedIdGenerator.nextId();
 	}
 
-	private void throwErrorIfPidCouldNotBeFetched(HttpHandler httpHandlerForPid) {
-		if (httpHandlerForPid.getResponseCode() != OK) {
-			throw FedoraException.withMessage("getting next pid from fedora failed"
-					+ WITH_RESPONSE_CODE_MESSAGE_PART + httpHandlerForPid.getResponseCode());
-		}
-	}
-
-	private String parseXMLAndExtractPid(String nextPidXML) {
-		XMLXPathParser parser = XMLXPathParser.forXML(nextPidXML);
-		return parser.getStringFromDocumentUsingXPath("/pidList/pid/text()");
+	@Override
+	public void close() {
+		placePidPool.close();
 	}
 
 	HttpHandlerFactory getHttpHandlerFactory() {
@@ -90,6 +91,16 @@ public class AlvinIdGenerator implements RecordIdGenerator {
 		return connectionInfo;
 	}
 
+	int getNodeId() {
+		// needed for test
+		return nodeId;
+	}
+
+	PlacePidPool getPlacePidPool() {
+		// needed for test
+		return placePidPool;
+	}
+
 	public String getFedoraURL() {
 		// needed for test
 		return connectionInfo.fedoraURL;
@@ -18,7 +18,9 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.id;
 
-import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
 
 public class AlvinIdGeneratorFactory {
 
@@ -29,8 +31,31 @@ public class AlvinIdGeneratorFactory {
 
 	public static AlvinIdGenerator factorUsingConnectionInfo(
 			IdGeneratorConnectionInfo connectionInfo) {
-		return AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfo(
-				new HttpHandlerFactoryImp(), connectionInfo);
+		HttpHandlerFactory httpHandlerFactory = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig(connectionInfo.fedoraUsername,
+						connectionInfo.fedoraPassword, FedoraTransportConfig.withDefaultValues());
+		return AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfo(httpHandlerFactory,
+				connectionInfo);
+	}
+
+	public static AlvinIdGenerator factorUsingConnectionInfoAndHttpHandlerFactory(
+			IdGeneratorConnectionInfo connectionInfo, HttpHandlerFactory httpHandlerFactory) {
+		return AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfo(httpHandlerFactory,
+				connectionInfo);
+	}
+
+	public static AlvinIdGenerator factorUsingConnectionInfoAndHttpHandlerFactoryAndPidPoolConfig(
+			IdGeneratorConnectionInfo connectionInfo, HttpHandlerFactory httpHandlerFactory,
+			PidPoolConfig pidPoolConfig) {
+		return AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfig(
+				httpHandlerFactory, connectionInfo, pidPoolConfig);
+	}
+
+	public static AlvinIdGenerator factorUsingConnectionInfoAndHttpHandlerFactoryAndPidPoolConfigAndNodeId(
+			IdGeneratorConnectionInfo connectionInfo, HttpHandlerFactory httpHandlerFactory,
+			PidPoolConfig pidPoolConfig, int nodeId) {
+		return AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfigAndNodeId(
+				httpHandlerFactory, connectionInfo, pidPoolConfig, nodeId);
 	}
 
 }
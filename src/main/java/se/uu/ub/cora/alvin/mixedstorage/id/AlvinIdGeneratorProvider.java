@@ -18,9 +18,14 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.id;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.storage.RecordIdGenerator;
@@ -30,6 +35,7 @@ public class AlvinIdGeneratorProvider implements RecordIdGeneratorProvider {
 	private Logger log = LoggerProvider.getLoggerForClass(AlvinIdGeneratorProvider.class);
 	private AlvinIdGenerator idGenerator;
 	private Map<String, String> initInfo;
+	private List<AutoCloseable> startedResources = new ArrayList<>();
 
 	@Override
 	public int getOrderToSelectImplementionsBy() {
@@ -40,13 +46,97 @@ public class AlvinIdGeneratorProvider implements RecordIdGeneratorProvider {
 	public void startUsingInitInfo(Map<String, String> initInfo) {
 		log.logInfoUsingMessage("AlvinIdGeneratorProvider starting AlvinIdGenerator...");
 		createIdGeneratorUsingInitInfo(initInfo);
+		closeStartedResourcesOnShutdown();
 		log.logInfoUsingMessage("AlvinIdGeneratorProvider started AlvinIdGenerator");
 	}
 
+	private void closeStartedResourcesOnShutdown() {
+		Runtime.getRuntime().addShutdownHook(
+				new Thread(this::closeStartedResources, "alvin-id-generator-shutdown"));
+	}
+
+	void closeStartedResources() {
+		for (int i = startedResources.size() - 1; i >= 0; i--) {
+			closeResource(startedResources.get(i));
+		}
+		startedResources.clear();
+	}
+
+	private void closeResource(AutoCloseable resource) {
+		try {
+			resource.close();
+		} catch (Exception e) {
+			log.logErrorUsingMessageAndException(
+					"Error closing resource on shutdown: " + e.getMessage(), e);
+		}
+	}
+
 	private void createIdGeneratorUsingInitInfo(Map<String, String> initInfo) {
 		this.initInfo = initInfo;
 		IdGeneratorConnectionInfo connectionInfo = createConnectionInfoUsingInitInfo();
-		idGenerator = AlvinIdGeneratorFactory.factorUsingConnectionInfo(connectionInfo);
+		HttpHandlerFactory httpHandlerFactory = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig(connectionInfo.fedoraUsername,
+						connectionInfo.fedoraPassword, createTransportConfig());
+		idGenerator = AlvinIdGeneratorFactory
+				.factorUsingConnectionInfoAndHttpHandlerFactoryAndPidPoolConfigAndNodeId(
+						connectionInfo, httpHandlerFactory, createPidPoolConfig(), getNodeId());
+		startedResources.add(idGenerator);
+	}
+
+	private int getNodeId() {
+		String value = tryToGetInitParameter("idGeneratorNodeId");
+		try {
+			int nodeId = Integer.parseInt(value);
+			if (nodeId >= 0 && nodeId <= TimeOrderedIdGenerator.MAX_NODE_ID) {
+				return nodeId;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		String errorMessage = "InitInfo contains invalid value " + value
+				+ " for idGeneratorNodeId, must be between 0 and "
+				+ TimeOrderedIdGenerator.MAX_NODE_ID;
+		log.logFatalUsingMessage(errorMessage);
+		throw FedoraException.withMessage(errorMessage);
+	}
+
+	private PidPoolConfig createPidPoolConfig() {
+		PidPoolConfig defaults = PidPoolConfig.withDefaultValues();
+		int blockSize = getPositiveIntInitParameterOrDefault("fedoraPidBlockSize",
+				defaults.blockSize);
+		int lowWatermark = getPositiveIntInitParameterOrDefault("fedoraPidLowWatermark",
+				defaults.lowWatermark);
+		return new PidPoolConfig(blockSize, lowWatermark);
+	}
+
+	private FedoraTransportConfig createTransportConfig() {
+		FedoraTransportConfig defaults = FedoraTransportConfig.withDefaultValues();
+		int poolSize = getPositiveIntInitParameterOrDefault("fedoraConnectionPoolSize",
+				defaults.poolSize);
+		int connectTimeout = getPositiveIntInitParameterOrDefault("fedoraConnectTimeout",
+				defaults.connectTimeoutMillis);
+		int readTimeout = getPositiveIntInitParameterOrDefault("fedoraReadTimeout",
+				defaults.readTimeoutMillis);
+		return new FedoraTransportConfig(poolSize, connectTimeout, readTimeout);
+	}
+
+	private int getPositiveIntInitParameterOrDefault(String parameterName, int defaultValue) {
+		if (!initInfo.containsKey(parameterName)) {
+			return defaultValue;
+		}
+		String value = initInfo.get(parameterName);
+		try {
+			int parsedValue = Integer.parseInt(value);
+			if (parsedValue > 0) {
+				return parsedValue;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		String errorMessage = "InitInfo contains invalid value " + value + " for "
+				+ parameterName;
+		log.logFatalUsingMessage(errorMessage);
+		throw FedoraException.withMessage(errorMessage);
 	}
 
 	private IdGeneratorConnectionInfo createConnectionInfoUsingInitInfo() {
@@ -70,6 +160,11 @@ public class AlvinIdGeneratorProvider implements RecordIdGeneratorProvider {
 		}
 	}
 
+	List<AutoCloseable> getStartedResources() {
+		// needed for test
+		return startedResources;
+	}
+
 	@Override
 	public RecordIdGenerator getRecordIdGenerator() {
 		return idGenerator;
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+public class PidPoolConfig {
+	private static final int DEFAULT_BLOCK_SIZE = 20;
+	private static final int DEFAULT_LOW_WATERMARK = 5;
+
+	public final int blockSize;
+	public final int lowWatermark;
+
+	public PidPoolConfig(int blockSize, int lowWatermark) {
+		this.blockSize = blockSize;
+		this.lowWatermark = lowWatermark;
+	}
+
+	public static PidPoolConfig withDefaultValues() {
+		return new PidPoolConfig(DEFAULT_BLOCK_SIZE, DEFAULT_LOW_WATERMARK);
+	}
+
+	public static PidPoolConfig oneAtATime() {
+		return new PidPoolConfig(1, 0);
+	}
+
+}
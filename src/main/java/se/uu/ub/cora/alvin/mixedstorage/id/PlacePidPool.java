@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraPidReserver;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+final class PlacePidPool implements AutoCloseable {
+	private Logger log = LoggerProvider.getLoggerForClass(PlacePidPool.class);
+	private FedoraPidReserver pidReserver;
+	private PidPoolConfig config;
+	private Queue<String> reservedPids = new ConcurrentLinkedQueue<>();
+	private AtomicInteger numberOfReservedPids = new AtomicInteger();
+	private AtomicBoolean refilling = new AtomicBoolean();
+	private LongAdder waitingReservations = new LongAdder();
+	private LongAdder refills = new LongAdder();
+	private ExecutorService refillExecutor;
+
+	static PlacePidPool usingPidReserverAndConfig(FedoraPidReserver pidReserver,
+			PidPoolConfig config) {
+		return new PlacePidPool(pidReserver, config);
+	}
+
+	private PlacePidPool(FedoraPidReserver pidReserver, PidPoolConfig config) {
+		this.pidReserver = pidReserver;
+		this.config = config;
+		if (config.lowWatermark > 0) {
+			refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "alvin-place-pid-refill");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	String takePid() {
+		String pid = reservedPids.poll();
+		if (pid == null) {
+			return reserveBlockAndTakeFirstPid();
+		}
+		int numberLeft = numberOfReservedPids.decrementAndGet();
+		startRefillIfBelowLowWatermark(numberLeft);
+		return pid;
+	}
+
+	private String reserveBlockAndTakeFirstPid() {
+		waitingReservations.increment();
+		List<String> pids = pidReserver.reservePlacePids(config.blockSize);
+		addToPool(pids.subList(1, pids.size()));
+		startRefillIfBelowLowWatermark(numberOfReservedPids.get());
+		return pids.get(0);
+	}
+
+	private void addToPool(List<String> pids) {
+		reservedPids.addAll(pids);
+		numberOfReservedPids.addAndGet(pids.size());
+	}
+
+	private void startRefillIfBelowLowWatermark(int numberOfPidsLeft) {
+		if (numberOfPidsLeft < config.lowWatermark && !refillExecutor.isShutdown()
+				&& refilling.compareAndSet(false, true)) {
+			refillExecutor.execute(this::refill);
+		}
+	}
+
+	private void refill() {
+		try {
+			addToPool(pidReserver.reservePlacePids(config.blockSize));
+			refills.increment();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessage(
+					"Refilling pool of place pids failed with message: " + e.getMessage());
+			return;
+		} finally {
+			refilling.set(false);
+		}
+		startRefillIfBelowLowWatermark(numberOfReservedPids.get());
+	}
+
+	@Override
+	public void close() {
+		if (refillExecutor != null) {
+			refillExecutor.shutdownNow();
+		}
+	}
+
+	int getNumberOfReservedPids() {
+		return numberOfReservedPids.get();
+	}
+
+	long getNumberOfWaitingReservations() {
+		return waitingReservations.sum();
+	}
+
+	long getNumberOfRefills() {
+		return refills.sum();
+	}
+
+	boolean isRefilling() {
+		// needed for test
+		return refilling.get();
+	}
+
+	PidPoolConfig getConfig() {
+		// needed for test
+		return config;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+final class TimeOrderedIdGenerator {
+	static final int NODE_ID_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+	static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+	static final long EPOCH_MILLIS = 1546300800000L;
+	private final long nodeIdPart;
+	private final LongSupplier clock;
+	private final AtomicLong lastTimestampAndSequence = new AtomicLong();
+
+	static TimeOrderedIdGenerator usingNodeId(int nodeId) {
+		return usingNodeIdAndClock(nodeId, System::currentTimeMillis);
+	}
+
+	static TimeOrderedIdGenerator usingNodeIdAndClock(int nodeId, LongSupplier clock) {
+		return new TimeOrderedIdGenerator(nodeId, clock);
+	}
+
+	private TimeOrderedIdGenerator(int nodeId, LongSupplier clock) {
+		this.nodeIdPart = (long) (nodeId & MAX_NODE_ID) << SEQUENCE_BITS;
+		this.clock = clock;
+	}
+
+	long nextId() {
+		long next;
+		long current;
+		do {
+			current = lastTimestampAndSequence.get();
+			next = calculateNext(current, clock.getAsLong() - EPOCH_MILLIS);
+		} while (!lastTimestampAndSequence.compareAndSet(current, next));
+		return combineWithNodeId(next);
+	}
+
+	private long calculateNext(long current, long now) {
+		long lastTimestamp = current >>> SEQUENCE_BITS;
+		if (now > lastTimestamp) {
+			return now << SEQUENCE_BITS;
+		}
+		if ((current & SEQUENCE_MASK) == SEQUENCE_MASK) {
+			return (lastTimestamp + 1) << SEQUENCE_BITS;
+		}
+		return current + 1;
+	}
+
+	private long combineWithNodeId(long timestampAndSequence) {
+		long timestamp = timestampAndSequence >>> SEQUENCE_BITS;
+		long sequence = timestampAndSequence & SEQUENCE_MASK;
+		return (timestamp << (NODE_ID_BITS + SEQUENCE_BITS)) | nodeIdPart | sequence;
+	}
+}
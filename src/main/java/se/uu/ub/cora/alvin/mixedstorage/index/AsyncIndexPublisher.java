@@ -0,0 +1,402 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig.FullQueuePolicy;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public final class AsyncIndexPublisher implements Closeable {
+	private static final long CLOSE_TIMEOUT_MILLIS = 60000;
+	private Logger log = LoggerProvider.getLoggerForClass(AsyncIndexPublisher.class);
+	private final IndexPublisherConfig config;
+	private final long coalesceWindowNanos;
+	private final long fullQueueTimeoutNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition messageAdded = lock.newCondition();
+	private final Condition roomAvailable = lock.newCondition();
+	private final Map<IndexerKey, PendingMessage> pendingMessages = new LinkedHashMap<>();
+	private final LongAdder enqueuedMessages = new LongAdder();
+	private final LongAdder coalescedMessages = new LongAdder();
+	private final LongAdder droppedMessages = new LongAdder();
+	private final LongAdder directlySentMessages = new LongAdder();
+	private final LongAdder publishedMessages = new LongAdder();
+	private final LongAdder failedMessages = new LongAdder();
+	private final LongAdder publishedBatches = new LongAdder();
+	private final Thread publisher;
+	private volatile long lastPublishLagMillis;
+	private boolean closed = false;
+
+	public static AsyncIndexPublisher startUsingConfig(IndexPublisherConfig config) {
+		AsyncIndexPublisher indexPublisher = new AsyncIndexPublisher(config);
+		indexPublisher.publisher.start();
+		return indexPublisher;
+	}
+
+	private AsyncIndexPublisher(IndexPublisherConfig config) {
+		this.config = config;
+		coalesceWindowNanos = TimeUnit.MILLISECONDS.toNanos(config.coalesceWindowMillis);
+		fullQueueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.fullQueueTimeoutMillis);
+		publisher = new Thread(this::publishUntilClosed, "alvin-index-publisher");
+		publisher.setDaemon(true);
+	}
+
+	public void publish(RecordIndexer indexer, String type, String pid) {
+		if (!enqueueIfOpen(indexer, type, pid)) {
+			indexer.index(type, pid);
+		}
+	}
+
+	private boolean enqueueIfOpen(RecordIndexer indexer, String type, String pid) {
+		lock.lock();
+		try {
+			return enqueueOrCoalesceIfOpen(indexer, type, pid);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean enqueueOrCoalesceIfOpen(RecordIndexer indexer, String type, String pid) {
+		if (closed) {
+			return false;
+		}
+		IndexerKey key = new IndexerKey(indexer, pid);
+		if (pendingMessages.containsKey(key)) {
+			enqueuedMessages.increment();
+			coalescedMessages.increment();
+			return true;
+		}
+		if (!waitForRoomOrDropOldest()) {
+			sendDirectlyAsQueueIsStillFull(type, pid);
+			return false;
+		}
+		if (closed) {
+			return false;
+		}
+		pendingMessages.put(key, new PendingMessage(indexer, type, pid, System.nanoTime()));
+		enqueuedMessages.increment();
+		messageAdded.signalAll();
+		return true;
+	}
+
+	private boolean waitForRoomOrDropOldest() {
+		long remainingNanos = fullQueueTimeoutNanos;
+		while (!closed && pendingMessages.size() >= config.queueCapacity) {
+			if (FullQueuePolicy.DROP_OLDEST == config.fullQueuePolicy) {
+				dropOldest();
+			} else if (remainingNanos <= 0) {
+				return false;
+			} else {
+				remainingNanos = awaitRoomAtMostNanos(remainingNanos);
+			}
+		}
+		return true;
+	}
+
+	private long awaitRoomAtMostNanos(long nanos) {
+		try {
+			return roomAvailable.awaitNanos(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+	}
+
+	private void sendDirectlyAsQueueIsStillFull(String type, String pid) {
+		directlySentMessages.increment();
+		log.logWarnUsingMessage("Index message queue still full after "
+				+ config.fullQueueTimeoutMillis + " ms, sending index message for recordType:"
+				+ type + " and id:" + pid + " directly");
+	}
+
+	private void dropOldest() {
+		Iterator<PendingMessage> iterator = pendingMessages.values().iterator();
+		PendingMessage oldest = iterator.next();
+		iterator.remove();
+		droppedMessages.increment();
+		log.logWarnUsingMessage("Index message queue full, dropping index message for recordType:"
+				+ oldest.type + " and id:" + oldest.pid);
+	}
+
+	private void publishUntilClosed() {
+		List<PendingMessage> batch = takeNextBatch();
+		while (!batch.isEmpty()) {
+			publishBatch(batch);
+			batch = takeNextBatch();
+		}
+	}
+
+	private List<PendingMessage> takeNextBatch() {
+		lock.lock();
+		try {
+			waitUntilOldestIsDueOrClosed();
+			return removeDueMessages();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void waitUntilOldestIsDueOrClosed() {
+		long waitNanos = nanosUntilOldestIsDue();
+		while (!closed && waitNanos > 0) {
+			try {
+				messageAdded.awaitNanos(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				closed = true;
+			}
+			waitNanos = nanosUntilOldestIsDue();
+		}
+	}
+
+	private long nanosUntilOldestIsDue() {
+		if (pendingMessages.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		PendingMessage oldest = pendingMessages.values().iterator().next();
+		return oldest.enqueuedNanos + coalesceWindowNanos - System.nanoTime();
+	}
+
+	private List<PendingMessage> removeDueMessages() {
+		List<PendingMessage> batch = new ArrayList<>();
+		long now = System.nanoTime();
+		Iterator<PendingMessage> iterator = pendingMessages.values().iterator();
+		while (batch.size() < config.batchSize && iterator.hasNext()) {
+			PendingMessage message = iterator.next();
+			if (!closed && message.enqueuedNanos + coalesceWindowNanos > now) {
+				break;
+			}
+			iterator.remove();
+			batch.add(message);
+		}
+		roomAvailable.signalAll();
+		return batch;
+	}
+
+	private void publishBatch(List<PendingMessage> batch) {
+		for (List<PendingMessage> messages : groupByIndexerAndType(batch)) {
+			publishMessagesUsingSameIndexerAndType(messages);
+		}
+		publishedBatches.increment();
+	}
+
+	private Collection<List<PendingMessage>> groupByIndexerAndType(List<PendingMessage> batch) {
+		Map<IndexerKey, List<PendingMessage>> groups = new LinkedHashMap<>();
+		for (PendingMessage message : batch) {
+			groups.computeIfAbsent(new IndexerKey(message.indexer, message.type),
+					key -> new ArrayList<>()).add(message);
+		}
+		return groups.values();
+	}
+
+	private void publishMessagesUsingSameIndexerAndType(List<PendingMessage> messages) {
+		if (messages.size() == 1) {
+			publishMessage(messages.get(0));
+			return;
+		}
+		PendingMessage first = messages.get(0);
+		try {
+			first.indexer.indexBatch(first.type, collectPids(messages));
+			markPublished(messages);
+		} catch (RuntimeException e) {
+			log.logWarnUsingMessage("Sending batch of " + messages.size()
+					+ " index messages to classic failed, sending them one by one: "
+					+ e.getMessage());
+			publishMessagesOneByOne(messages);
+		}
+	}
+
+	private List<String> collectPids(List<PendingMessage> messages) {
+		List<String> pids = new ArrayList<>(messages.size());
+		for (PendingMessage message : messages) {
+			pids.add(message.pid);
+		}
+		return pids;
+	}
+
+	private void markPublished(List<PendingMessage> messages) {
+		for (PendingMessage message : messages) {
+			markPublished(message);
+		}
+	}
+
+	private void markPublished(PendingMessage message) {
+		publishedMessages.increment();
+		lastPublishLagMillis = TimeUnit.NANOSECONDS
+				.toMillis(System.nanoTime() - message.enqueuedNanos);
+	}
+
+	private void publishMessagesOneByOne(List<PendingMessage> messages) {
+		for (PendingMessage message : messages) {
+			publishMessage(message);
+		}
+	}
+
+	private void publishMessage(PendingMessage message) {
+		try {
+			message.indexer.index(message.type, message.pid);
+			markPublished(message);
+		} catch (RuntimeException e) {
+			failedMessages.increment();
+			log.logErrorUsingMessageAndException(
+					"Error sending index message to classic for recordType:" + message.type
+							+ " and id:" + message.pid,
+					e);
+		}
+	}
+
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			messageAdded.signalAll();
+			roomAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		waitForPublisherToStop();
+	}
+
+	private void waitForPublisherToStop() {
+		try {
+			publisher.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return pendingMessages.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getOldestPendingAgeMillis() {
+		lock.lock();
+		try {
+			if (pendingMessages.isEmpty()) {
+				return 0;
+			}
+			PendingMessage oldest = pendingMessages.values().iterator().next();
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedNanos);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getLastPublishLagMillis() {
+		return lastPublishLagMillis;
+	}
+
+	public double getCoalesceRatio() {
+		long enqueued = enqueuedMessages.sum();
+		if (enqueued == 0) {
+			return 0;
+		}
+		return (double) coalescedMessages.sum() / enqueued;
+	}
+
+	public long getNumberOfEnqueuedMessages() {
+		return enqueuedMessages.sum();
+	}
+
+	public long getNumberOfCoalescedMessages() {
+		return coalescedMessages.sum();
+	}
+
+	public long getNumberOfDroppedMessages() {
+		return droppedMessages.sum();
+	}
+
+	public long getNumberOfDirectlySentMessages() {
+		return directlySentMessages.sum();
+	}
+
+	public long getNumberOfPublishedMessages() {
+		return publishedMessages.sum();
+	}
+
+	public long getNumberOfFailedMessages() {
+		return failedMessages.sum();
+	}
+
+	public long getNumberOfPublishedBatches() {
+		return publishedBatches.sum();
+	}
+
+	public IndexPublisherConfig getConfig() {
+		// needed for test
+		return config;
+	}
+
+	private static final class IndexerKey {
+		private final RecordIndexer indexer;
+		private final String value;
+
+		IndexerKey(RecordIndexer indexer, String value) {
+			this.indexer = indexer;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof IndexerKey)) {
+				return false;
+			}
+			IndexerKey otherKey = (IndexerKey) other;
+			return indexer == otherKey.indexer && value.equals(otherKey.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(indexer) + value.hashCode();
+		}
+	}
+
+	private static final class PendingMessage {
+		private final RecordIndexer indexer;
+		private final String type;
+		private final String pid;
+		private final long enqueuedNanos;
+
+		PendingMessage(RecordIndexer indexer, String type, String pid, long enqueuedNanos) {
+			this.indexer = indexer;
+			this.type = type;
+			this.pid = pid;
+			this.enqueuedNanos = enqueuedNanos;
+		}
+	}
+}
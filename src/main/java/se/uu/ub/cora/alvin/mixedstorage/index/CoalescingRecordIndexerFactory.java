@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactory;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+
+public final class CoalescingRecordIndexerFactory implements RecordIndexerFactory {
+	private RecordIndexerFactory recordIndexerFactory;
+	private AsyncIndexPublisher indexPublisher;
+
+	public static CoalescingRecordIndexerFactory usingRecordIndexerFactoryAndIndexPublisher(
+			RecordIndexerFactory recordIndexerFactory, AsyncIndexPublisher indexPublisher) {
+		return new CoalescingRecordIndexerFactory(recordIndexerFactory, indexPublisher);
+	}
+
+	private CoalescingRecordIndexerFactory(RecordIndexerFactory recordIndexerFactory,
+			AsyncIndexPublisher indexPublisher) {
+		this.recordIndexerFactory = recordIndexerFactory;
+		this.indexPublisher = indexPublisher;
+	}
+
+	@Override
+	public RecordIndexer factor(MessageRoutingInfo messageRoutingInfo) {
+		RecordIndexer recordIndexer = recordIndexerFactory.factor(messageRoutingInfo);
+		return (type, pid) -> indexPublisher.publish(recordIndexer, type, pid);
+	}
+
+	public RecordIndexerFactory getRecordIndexerFactory() {
+		// needed for test
+		return recordIndexerFactory;
+	}
+
+	public AsyncIndexPublisher getIndexPublisher() {
+		return indexPublisher;
+	}
+}
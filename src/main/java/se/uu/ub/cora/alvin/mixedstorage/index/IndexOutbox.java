@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.alvin.mixedstorage.util.MappedRingLog;
+import se.uu.ub.cora.alvin.mixedstorage.util.MappedRingLog.LogRecord;
+
+public final class IndexOutbox implements Closeable {
+	private static final int MAGIC = 0x414C564F;
+	private static final int ENQUEUED_SIZE = Long.BYTES;
+	private final Path path;
+	private final MappedRingLog ringLog;
+	private boolean closed = false;
+
+	public static IndexOutbox openUsingPathAndSize(Path path, int size) {
+		throwErrorIfSizeTooSmall(path, size);
+		try {
+			return new IndexOutbox(path,
+					MappedRingLog.openUsingPathAndSizeAndMagic(path, size, MAGIC));
+		} catch (IOException e) {
+			throw IndexOutboxException.withMessageAndException(
+					"Error opening index outbox " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static void throwErrorIfSizeTooSmall(Path path, int size) {
+		if (size <= MappedRingLog.HEADER_SIZE + MappedRingLog.ENTRY_HEADER_SIZE
+				+ ENQUEUED_SIZE) {
+			throw IndexOutboxException
+					.withMessage("Index outbox size " + size + " is too small for outbox " + path);
+		}
+	}
+
+	private IndexOutbox(Path path, MappedRingLog ringLog) {
+		this.path = path;
+		this.ringLog = ringLog;
+	}
+
+	synchronized long append(byte[] payload) {
+		throwErrorIfClosed();
+		byte[] entry = prefixWithEnqueuedMillis(payload, System.currentTimeMillis());
+		if (!ringLog.hasRoomForPayloadOfLength(entry.length)) {
+			throw IndexOutboxException.withMessage("Index outbox " + path + " is full, "
+					+ getNumberOfUnrelayedEntries() + " entries waiting to be relayed");
+		}
+		long sequence = ringLog.append(entry);
+		ringLog.force();
+		notifyAll();
+		return sequence;
+	}
+
+	private void throwErrorIfClosed() {
+		if (closed) {
+			throw IndexOutboxException.withMessage("Index outbox " + path + " is closed");
+		}
+	}
+
+	private byte[] prefixWithEnqueuedMillis(byte[] payload, long enqueuedMillis) {
+		return ByteBuffer.allocate(ENQUEUED_SIZE + payload.length).putLong(enqueuedMillis)
+				.put(payload).array();
+	}
+
+	synchronized OutboxRecord readFirstUnrelayed() {
+		return toOutboxRecordOrNull(ringLog.readHead());
+	}
+
+	private OutboxRecord toOutboxRecordOrNull(LogRecord logRecord) {
+		if (logRecord == null) {
+			return null;
+		}
+		return new OutboxRecord(logRecord);
+	}
+
+	synchronized List<OutboxRecord> readUnrelayedAtMost(int maxNumberOfEntries) {
+		List<OutboxRecord> records = new ArrayList<>();
+		LogRecord logRecord = ringLog.readHead();
+		while (logRecord != null && records.size() < maxNumberOfEntries) {
+			records.add(new OutboxRecord(logRecord));
+			logRecord = ringLog.readFollowing(logRecord);
+		}
+		return records;
+	}
+
+	synchronized void markRelayed(long sequence) {
+		if (sequence != ringLog.getHeadSequence() || ringLog.isEmpty()) {
+			throw IndexOutboxException.withMessage("Unable to mark entry " + sequence
+					+ " as relayed, next entry to relay is " + ringLog.getHeadSequence());
+		}
+		markRelayedUpTo(sequence);
+	}
+
+	synchronized void markRelayedUpTo(long sequence) {
+		if (sequence < ringLog.getHeadSequence() || sequence >= ringLog.getNextSequence()) {
+			throw IndexOutboxException.withMessage("Unable to mark entries up to " + sequence
+					+ " as relayed, unrelayed entries are " + ringLog.getHeadSequence() + " to "
+					+ (ringLog.getNextSequence() - 1));
+		}
+		while (ringLog.getHeadSequence() <= sequence) {
+			ringLog.removeHead();
+		}
+		ringLog.force();
+	}
+
+	synchronized void awaitUnrelayedAtMost(long millis) {
+		if (ringLog.isEmpty() && !closed) {
+			try {
+				wait(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	synchronized void wakeUpWaiting() {
+		notifyAll();
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+			tryToCloseRingLog();
+		}
+	}
+
+	private void tryToCloseRingLog() {
+		try {
+			ringLog.close();
+		} catch (IOException e) {
+			throw IndexOutboxException.withMessageAndException(
+					"Error closing index outbox " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	public synchronized long getNumberOfUnrelayedEntries() {
+		return ringLog.getNumberOfEntries();
+	}
+
+	public synchronized long getOldestUnrelayedAgeMillis() {
+		OutboxRecord oldest = readFirstUnrelayed();
+		if (oldest == null) {
+			return 0;
+		}
+		return Math.max(0, System.currentTimeMillis() - oldest.enqueuedMillis);
+	}
+
+	public synchronized int getNumberOfUsedBytes() {
+		return ringLog.getNumberOfUsedBytes();
+	}
+
+	public int getSize() {
+		return ringLog.getSize();
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	static final class OutboxRecord {
+		final long sequence;
+		final long enqueuedMillis;
+		final byte[] payload;
+
+		OutboxRecord(LogRecord logRecord) {
+			ByteBuffer entry = ByteBuffer.wrap(logRecord.payload);
+			sequence = logRecord.sequence;
+			enqueuedMillis = entry.getLong();
+			payload = new byte[entry.remaining()];
+			entry.get(payload);
+		}
+	}
+}
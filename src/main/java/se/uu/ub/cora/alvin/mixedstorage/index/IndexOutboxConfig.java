@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+public class IndexOutboxConfig {
+	private static final int DEFAULT_OUTBOX_SIZE = 16 * 1024 * 1024;
+	private static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+	private static final long DEFAULT_COALESCE_WINDOW_MILLIS = 0;
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	public final String outboxPath;
+	public final int outboxSize;
+	public final long retryDelayMillis;
+	public final long coalesceWindowMillis;
+	public final int batchSize;
+
+	public IndexOutboxConfig(String outboxPath, int outboxSize, long retryDelayMillis,
+			long coalesceWindowMillis, int batchSize) {
+		this.outboxPath = outboxPath;
+		this.outboxSize = outboxSize;
+		this.retryDelayMillis = retryDelayMillis;
+		this.coalesceWindowMillis = coalesceWindowMillis;
+		this.batchSize = batchSize;
+	}
+
+	public static IndexOutboxConfig withOutboxPathAndDefaultValues(String outboxPath) {
+		return new IndexOutboxConfig(outboxPath, DEFAULT_OUTBOX_SIZE, DEFAULT_RETRY_DELAY_MILLIS,
+				DEFAULT_COALESCE_WINDOW_MILLIS, DEFAULT_BATCH_SIZE);
+	}
+}
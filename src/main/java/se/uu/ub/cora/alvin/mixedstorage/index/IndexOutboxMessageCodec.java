@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+final class IndexOutboxMessageCodec {
+	private static final int FORMAT_VERSION = 1;
+
+	private IndexOutboxMessageCodec() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	static byte[] encode(IndexOutboxMessage message) {
+		try {
+			return tryToEncode(message);
+		} catch (IOException e) {
+			throw IndexOutboxException.withMessageAndException(
+					"Error encoding index message for id: " + message.pid, e);
+		}
+	}
+
+	private static byte[] tryToEncode(IndexOutboxMessage message) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(FORMAT_VERSION);
+		AmqpMessageRoutingInfo routingInfo = message.messageRoutingInfo;
+		out.writeUTF(routingInfo.hostname);
+		out.writeUTF(routingInfo.port);
+		out.writeUTF(routingInfo.virtualHost);
+		out.writeUTF(routingInfo.exchange);
+		out.writeUTF(routingInfo.routingKey);
+		out.writeUTF(message.type);
+		out.writeUTF(message.pid);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static IndexOutboxMessage decode(byte[] payload) {
+		try {
+			return tryToDecode(payload);
+		} catch (IOException e) {
+			throw IndexOutboxException
+					.withMessageAndException("Error decoding index message: " + e.getMessage(), e);
+		}
+	}
+
+	private static IndexOutboxMessage tryToDecode(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		int formatVersion = in.readUnsignedByte();
+		if (FORMAT_VERSION != formatVersion) {
+			throw IndexOutboxException
+					.withMessage("Unsupported index message format version: " + formatVersion);
+		}
+		AmqpMessageRoutingInfo routingInfo = new AmqpMessageRoutingInfo(in.readUTF(),
+				in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+		return new IndexOutboxMessage(routingInfo, in.readUTF(), in.readUTF());
+	}
+}
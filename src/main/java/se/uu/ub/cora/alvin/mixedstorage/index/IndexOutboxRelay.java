@@ -0,0 +1,313 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import java.io.Closeable;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexOutbox.OutboxRecord;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public final class IndexOutboxRelay implements Closeable {
+	private static final long IDLE_WAIT_MILLIS = 1000;
+	private static final long CLOSE_TIMEOUT_MILLIS = 60000;
+	private static final int MAX_RETRY_DELAY_FACTOR = 32;
+	private Logger log = LoggerProvider.getLoggerForClass(IndexOutboxRelay.class);
+	private final IndexOutbox outbox;
+	private final IndexOutboxConfig config;
+	private final RecordIndexerFactory recordIndexerFactory;
+	private final Map<String, RecordIndexer> recordIndexers = new ConcurrentHashMap<>();
+	private final Object retryLock = new Object();
+	private final LongAdder acceptedMessages = new LongAdder();
+	private final LongAdder relayedMessages = new LongAdder();
+	private final LongAdder retriedMessages = new LongAdder();
+	private final LongAdder coalescedMessages = new LongAdder();
+	private final LongAdder failedMessages = new LongAdder();
+	private final Thread relay;
+	private volatile boolean running = true;
+
+	public static IndexOutboxRelay startUsingConfigAndRecordIndexerFactory(
+			IndexOutboxConfig config, RecordIndexerFactory recordIndexerFactory) {
+		IndexOutbox outbox = IndexOutbox.openUsingPathAndSize(Paths.get(config.outboxPath),
+				config.outboxSize);
+		return startUsingOutboxAndConfigAndRecordIndexerFactory(outbox, config,
+				recordIndexerFactory);
+	}
+
+	static IndexOutboxRelay startUsingOutboxAndConfigAndRecordIndexerFactory(IndexOutbox outbox,
+			IndexOutboxConfig config, RecordIndexerFactory recordIndexerFactory) {
+		IndexOutboxRelay outboxRelay = new IndexOutboxRelay(outbox, config, recordIndexerFactory);
+		outboxRelay.logUnrelayedEntriesFromEarlierRun();
+		outboxRelay.relay.start();
+		return outboxRelay;
+	}
+
+	private IndexOutboxRelay(IndexOutbox outbox, IndexOutboxConfig config,
+			RecordIndexerFactory recordIndexerFactory) {
+		this.outbox = outbox;
+		this.config = config;
+		this.recordIndexerFactory = recordIndexerFactory;
+		relay = new Thread(this::relayEntriesUntilClosed, "alvin-index-outbox-relay");
+		relay.setDaemon(true);
+	}
+
+	private void logUnrelayedEntriesFromEarlierRun() {
+		long numberOfEntries = outbox.getNumberOfUnrelayedEntries();
+		if (numberOfEntries > 0) {
+			log.logInfoUsingMessage("Relaying " + numberOfEntries
+					+ " index messages left in index outbox " + outbox.getPath());
+		}
+	}
+
+	public void add(AmqpMessageRoutingInfo messageRoutingInfo, String type, String pid) {
+		IndexOutboxMessage message = new IndexOutboxMessage(messageRoutingInfo, type, pid);
+		try {
+			outbox.append(IndexOutboxMessageCodec.encode(message));
+			acceptedMessages.increment();
+		} catch (IndexOutboxException e) {
+			log.logErrorUsingMessageAndException("Unable to add index message to outbox for"
+					+ " recordType:" + type + " and id:" + pid + ", sending directly: "
+					+ e.getMessage(), e);
+			getRecordIndexerForRoutingInfo(messageRoutingInfo).index(type, pid);
+		}
+	}
+
+	private RecordIndexer getRecordIndexerForRoutingInfo(
+			AmqpMessageRoutingInfo messageRoutingInfo) {
+		return recordIndexers.computeIfAbsent(createKey(messageRoutingInfo),
+				key -> recordIndexerFactory.factor(messageRoutingInfo));
+	}
+
+	private String createKey(AmqpMessageRoutingInfo info) {
+		return info.hostname + "|" + info.port + "|" + info.virtualHost + "|" + info.exchange
+				+ "|" + info.routingKey;
+	}
+
+	private void relayEntriesUntilClosed() {
+		while (running) {
+			try {
+				relayNextEntriesOrWait();
+			} catch (RuntimeException e) {
+				log.logErrorUsingMessageAndException(
+						"Error in index outbox relay: " + e.getMessage(), e);
+				waitAtMostUnlessClosed(config.retryDelayMillis);
+			}
+		}
+	}
+
+	private void relayNextEntriesOrWait() {
+		OutboxRecord oldestRecord = outbox.readFirstUnrelayed();
+		if (oldestRecord == null) {
+			outbox.awaitUnrelayedAtMost(IDLE_WAIT_MILLIS);
+			return;
+		}
+		long coalesceTimeLeft = calculateCoalesceTimeLeft(oldestRecord);
+		if (coalesceTimeLeft > 0) {
+			waitAtMostUnlessClosed(coalesceTimeLeft);
+			return;
+		}
+		List<OutboxRecord> outboxRecords = outbox.readUnrelayedAtMost(config.batchSize);
+		if (relayAllWithRetry(groupByRoutingInfoAndType(outboxRecords))) {
+			outbox.markRelayedUpTo(outboxRecords.get(outboxRecords.size() - 1).sequence);
+		}
+	}
+
+	private long calculateCoalesceTimeLeft(OutboxRecord oldestRecord) {
+		long timeLeft = oldestRecord.enqueuedMillis + config.coalesceWindowMillis
+				- System.currentTimeMillis();
+		return Math.min(timeLeft, config.coalesceWindowMillis);
+	}
+
+	private Collection<RelayGroup> groupByRoutingInfoAndType(List<OutboxRecord> outboxRecords) {
+		Map<String, RelayGroup> relayGroups = new LinkedHashMap<>();
+		for (OutboxRecord outboxRecord : outboxRecords) {
+			IndexOutboxMessage message = decodeOrNullIfCorrupt(outboxRecord);
+			if (message != null) {
+				addToRelayGroup(relayGroups, message);
+			}
+		}
+		return relayGroups.values();
+	}
+
+	private IndexOutboxMessage decodeOrNullIfCorrupt(OutboxRecord outboxRecord) {
+		try {
+			return IndexOutboxMessageCodec.decode(outboxRecord.payload);
+		} catch (IndexOutboxException e) {
+			failedMessages.increment();
+			log.logErrorUsingMessageAndException("Skipping unreadable index outbox entry "
+					+ outboxRecord.sequence + ": " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private void addToRelayGroup(Map<String, RelayGroup> relayGroups,
+			IndexOutboxMessage message) {
+		String key = createKey(message.messageRoutingInfo) + "|" + message.type;
+		RelayGroup relayGroup = relayGroups.computeIfAbsent(key,
+				k -> new RelayGroup(message.messageRoutingInfo, message.type));
+		if (!relayGroup.pids.add(message.pid)) {
+			coalescedMessages.increment();
+		}
+	}
+
+	private boolean relayAllWithRetry(Collection<RelayGroup> relayGroups) {
+		for (RelayGroup relayGroup : relayGroups) {
+			if (!relayWithRetry(relayGroup)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean relayWithRetry(RelayGroup relayGroup) {
+		long retryDelay = config.retryDelayMillis;
+		while (running) {
+			try {
+				relay(relayGroup);
+				relayedMessages.add(relayGroup.pids.size());
+				return true;
+			} catch (RuntimeException e) {
+				retriedMessages.increment();
+				log.logWarnUsingMessage("Relaying " + describe(relayGroup) + " failed, retrying in "
+						+ retryDelay + " ms: " + e.getMessage());
+				waitAtMostUnlessClosed(retryDelay);
+				retryDelay = Math.min(retryDelay * 2,
+						config.retryDelayMillis * MAX_RETRY_DELAY_FACTOR);
+			}
+		}
+		return false;
+	}
+
+	private void relay(RelayGroup relayGroup) {
+		RecordIndexer recordIndexer = getRecordIndexerForRoutingInfo(relayGroup.routingInfo);
+		List<String> pids = new ArrayList<>(relayGroup.pids);
+		if (pids.size() == 1) {
+			recordIndexer.index(relayGroup.type, pids.get(0));
+		} else {
+			recordIndexer.indexBatch(relayGroup.type, pids);
+		}
+	}
+
+	private String describe(RelayGroup relayGroup) {
+		if (relayGroup.pids.size() == 1) {
+			return "index message for recordType:" + relayGroup.type + " and id:"
+					+ relayGroup.pids.iterator().next();
+		}
+		return relayGroup.pids.size() + " index messages for recordType:" + relayGroup.type;
+	}
+
+	private void waitAtMostUnlessClosed(long millis) {
+		synchronized (retryLock) {
+			if (!running) {
+				return;
+			}
+			try {
+				retryLock.wait(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (retryLock) {
+			running = false;
+			retryLock.notifyAll();
+		}
+		outbox.wakeUpWaiting();
+		waitForRelayToStop();
+		outbox.close();
+	}
+
+	private void waitForRelayToStop() {
+		try {
+			relay.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public long getNumberOfAcceptedMessages() {
+		return acceptedMessages.sum();
+	}
+
+	public long getNumberOfRelayedMessages() {
+		return relayedMessages.sum();
+	}
+
+	public long getNumberOfRetries() {
+		return retriedMessages.sum();
+	}
+
+	public long getNumberOfCoalescedMessages() {
+		return coalescedMessages.sum();
+	}
+
+	public long getNumberOfFailedMessages() {
+		return failedMessages.sum();
+	}
+
+	public long getBacklogSize() {
+		return outbox.getNumberOfUnrelayedEntries();
+	}
+
+	public long getBacklogAgeMillis() {
+		return outbox.getOldestUnrelayedAgeMillis();
+	}
+
+	public RecordIndexerFactory getRecordIndexerFactory() {
+		return recordIndexerFactory;
+	}
+
+	public IndexOutbox getOutbox() {
+		// needed for test
+		return outbox;
+	}
+
+	public IndexOutboxConfig getConfig() {
+		// needed for test
+		return config;
+	}
+
+	private static final class RelayGroup {
+		private final AmqpMessageRoutingInfo routingInfo;
+		private final String type;
+		private final Set<String> pids = new LinkedHashSet<>();
+
+		RelayGroup(AmqpMessageRoutingInfo routingInfo, String type) {
+			this.routingInfo = routingInfo;
+			this.type = type;
+		}
+	}
+}
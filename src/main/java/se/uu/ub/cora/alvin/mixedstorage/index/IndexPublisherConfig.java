@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+public class IndexPublisherConfig {
+	private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+	private static final long DEFAULT_COALESCE_WINDOW_MILLIS = 500;
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	private static final long DEFAULT_FULL_QUEUE_TIMEOUT_MILLIS = 5000;
+
+	public enum FullQueuePolicy {
+		BLOCK, DROP_OLDEST
+	}
+
+	public final int queueCapacity;
+	public final long coalesceWindowMillis;
+	public final int batchSize;
+	public final FullQueuePolicy fullQueuePolicy;
+	public final long fullQueueTimeoutMillis;
+
+	public IndexPublisherConfig(int queueCapacity, long coalesceWindowMillis, int batchSize,
+			FullQueuePolicy fullQueuePolicy, long fullQueueTimeoutMillis) {
+		this.queueCapacity = queueCapacity;
+		this.coalesceWindowMillis = coalesceWindowMillis;
+		this.batchSize = batchSize;
+		this.fullQueuePolicy = fullQueuePolicy;
+		this.fullQueueTimeoutMillis = fullQueueTimeoutMillis;
+	}
+
+	public static IndexPublisherConfig withDefaultValues() {
+		return new IndexPublisherConfig(DEFAULT_QUEUE_CAPACITY, DEFAULT_COALESCE_WINDOW_MILLIS,
+				DEFAULT_BATCH_SIZE, FullQueuePolicy.BLOCK, DEFAULT_FULL_QUEUE_TIMEOUT_MILLIS);
+	}
+}
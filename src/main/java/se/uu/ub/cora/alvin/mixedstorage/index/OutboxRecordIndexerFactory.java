@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactory;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+
+public final class OutboxRecordIndexerFactory implements RecordIndexerFactory {
+	private IndexOutboxRelay outboxRelay;
+
+	public static OutboxRecordIndexerFactory usingIndexOutboxRelay(IndexOutboxRelay outboxRelay) {
+		return new OutboxRecordIndexerFactory(outboxRelay);
+	}
+
+	private OutboxRecordIndexerFactory(IndexOutboxRelay outboxRelay) {
+		this.outboxRelay = outboxRelay;
+	}
+
+	@Override
+	public RecordIndexer factor(MessageRoutingInfo messageRoutingInfo) {
+		if (messageRoutingInfo instanceof AmqpMessageRoutingInfo) {
+			AmqpMessageRoutingInfo amqpInfo = (AmqpMessageRoutingInfo) messageRoutingInfo;
+			return (type, pid) -> outboxRelay.add(amqpInfo, type, pid);
+		}
+		return outboxRelay.getRecordIndexerFactory().factor(messageRoutingInfo);
+	}
+
+	public IndexOutboxRelay getIndexOutboxRelay() {
+		return outboxRelay;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public final class JournalEntry {
+
+	public enum Operation {
+		CREATE, UPDATE, DELETE
+	}
+
+	public final Operation operation;
+	public final String type;
+	public final String id;
+	public final DataGroup dataRecord;
+	public final DataGroup collectedTerms;
+	public final DataGroup linkList;
+	public final String dataDivider;
+
+	public static JournalEntry forCreate(String type, String id, DataGroup dataRecord,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		return new JournalEntry(Operation.CREATE, type, id, dataRecord, collectedTerms, linkList,
+				dataDivider);
+	}
+
+	public static JournalEntry forUpdate(String type, String id, DataGroup dataRecord,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		return new JournalEntry(Operation.UPDATE, type, id, dataRecord, collectedTerms, linkList,
+				dataDivider);
+	}
+
+	public static JournalEntry forDelete(String type, String id) {
+		return new JournalEntry(Operation.DELETE, type, id, null, null, null, null);
+	}
+
+	JournalEntry(Operation operation, String type, String id, DataGroup dataRecord,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		this.operation = operation;
+		this.type = type;
+		this.id = id;
+		this.dataRecord = dataRecord;
+		this.collectedTerms = collectedTerms;
+		this.linkList = linkList;
+		this.dataDivider = dataDivider;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry.Operation;
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataAttribute;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+final class JournalEntryCodec {
+	private static final int FORMAT_VERSION = 1;
+	private static final int NO_VALUE = -1;
+	private static final byte GROUP = 'G';
+	private static final byte ATOMIC = 'A';
+
+	private JournalEntryCodec() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	static byte[] encode(JournalEntry entry) {
+		try {
+			return tryToEncode(entry);
+		} catch (IOException e) {
+			throw JournalException.withMessageAndException(
+					"Error encoding journal entry for id: " + entry.id, e);
+		}
+	}
+
+	private static byte[] tryToEncode(JournalEntry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(FORMAT_VERSION);
+		out.writeByte(entry.operation.ordinal());
+		writeString(out, entry.type);
+		writeString(out, entry.id);
+		writeString(out, entry.dataDivider);
+		writeDataGroup(out, entry.dataRecord);
+		writeDataGroup(out, entry.collectedTerms);
+		writeDataGroup(out, entry.linkList);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(NO_VALUE);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeDataGroup(DataOutputStream out, DataGroup dataGroup)
+			throws IOException {
+		if (dataGroup == null) {
+			out.writeBoolean(false);
+			return;
+		}
+		out.writeBoolean(true);
+		writeGroup(out, dataGroup);
+	}
+
+	private static void writeGroup(DataOutputStream out, DataGroup dataGroup) throws IOException {
+		writeString(out, dataGroup.getNameInData());
+		writeString(out, dataGroup.getRepeatId());
+		Collection<DataAttribute> attributes = dataGroup.getAttributes();
+		out.writeInt(attributes.size());
+		for (DataAttribute attribute : attributes) {
+			writeString(out, attribute.getNameInData());
+			writeString(out, attribute.getValue());
+		}
+		List<DataElement> children = dataGroup.getChildren();
+		out.writeInt(children.size());
+		for (DataElement child : children) {
+			writeElement(out, child);
+		}
+	}
+
+	private static void writeElement(DataOutputStream out, DataElement dataElement)
+			throws IOException {
+		if (dataElement instanceof DataGroup) {
+			out.writeByte(GROUP);
+			writeGroup(out, (DataGroup) dataElement);
+		} else {
+			DataAtomic dataAtomic = (DataAtomic) dataElement;
+			out.writeByte(ATOMIC);
+			writeString(out, dataAtomic.getNameInData());
+			writeString(out, dataAtomic.getValue());
+			writeString(out, dataAtomic.getRepeatId());
+		}
+	}
+
+	static JournalEntry decode(byte[] payload) {
+		try {
+			return tryToDecode(payload);
+		} catch (IOException | RuntimeException e) {
+			throw JournalException.withMessageAndException(
+					"Error decoding journal entry: " + e.getMessage(), e);
+		}
+	}
+
+	private static JournalEntry tryToDecode(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		int formatVersion = in.readByte();
+		if (FORMAT_VERSION != formatVersion) {
+			throw JournalException
+					.withMessage("Unknown journal entry format version: " + formatVersion);
+		}
+		Operation operation = Operation.values()[in.readByte()];
+		String type = readString(in);
+		String id = readString(in);
+		String dataDivider = readString(in);
+		DataGroup dataRecord = readDataGroup(in);
+		DataGroup collectedTerms = readDataGroup(in);
+		DataGroup linkList = readDataGroup(in);
+		return new JournalEntry(operation, type, id, dataRecord, collectedTerms, linkList,
+				dataDivider);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (NO_VALUE == length) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static DataGroup readDataGroup(DataInputStream in) throws IOException {
+		if (in.readBoolean()) {
+			return readGroup(in);
+		}
+		return null;
+	}
+
+	private static DataGroup readGroup(DataInputStream in) throws IOException {
+		DataGroup dataGroup = DataGroupProvider.getDataGroupUsingNameInData(readString(in));
+		dataGroup.setRepeatId(readString(in));
+		int numberOfAttributes = in.readInt();
+		for (int i = 0; i < numberOfAttributes; i++) {
+			dataGroup.addAttributeByIdWithValue(readString(in), readString(in));
+		}
+		int numberOfChildren = in.readInt();
+		for (int i = 0; i < numberOfChildren; i++) {
+			dataGroup.addChild(readElement(in));
+		}
+		return dataGroup;
+	}
+
+	private static DataElement readElement(DataInputStream in) throws IOException {
+		if (GROUP == in.readByte()) {
+			return readGroup(in);
+		}
+		DataAtomic dataAtomic = DataAtomicProvider
+				.getDataAtomicUsingNameInDataAndValue(readString(in), readString(in));
+		dataAtomic.setRepeatId(readString(in));
+		return dataAtomic;
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+public class WriteBehindConfig {
+	private static final int DEFAULT_JOURNAL_SIZE = 64 * 1024 * 1024;
+	private static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+	private static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+	public final String journalPath;
+	public final int journalSize;
+	public final long retryDelayMillis;
+	public final int maxAttempts;
+
+	public WriteBehindConfig(String journalPath, int journalSize, long retryDelayMillis,
+			int maxAttempts) {
+		this.journalPath = journalPath;
+		this.journalSize = journalSize;
+		this.retryDelayMillis = retryDelayMillis;
+		this.maxAttempts = maxAttempts;
+	}
+
+	public static WriteBehindConfig withJournalPathAndDefaultValues(String journalPath) {
+		return new WriteBehindConfig(journalPath, DEFAULT_JOURNAL_SIZE, DEFAULT_RETRY_DELAY_MILLIS,
+				DEFAULT_MAX_ATTEMPTS);
+	}
+}
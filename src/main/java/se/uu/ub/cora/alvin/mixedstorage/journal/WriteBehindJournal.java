@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.alvin.mixedstorage.util.MappedRingLog;
+import se.uu.ub.cora.alvin.mixedstorage.util.MappedRingLog.LogRecord;
+
+public final class WriteBehindJournal implements Closeable {
+	private static final int MAGIC = 0x414C564A;
+	private static final long DEFAULT_APPEND_TIMEOUT_MILLIS = 30000;
+	private final Path path;
+	private final MappedRingLog ringLog;
+	private final Object syncLock = new Object();
+	private final LongAdder syncs = new LongAdder();
+	private final Set<Long> appliedAheadOfHead = new HashSet<>();
+	private long appendTimeoutMillis = DEFAULT_APPEND_TIMEOUT_MILLIS;
+	private long syncedSequence;
+	private boolean closed = false;
+
+	public static WriteBehindJournal openUsingPathAndSize(Path path, int size) {
+		throwErrorIfSizeTooSmall(path, size);
+		try {
+			return new WriteBehindJournal(path,
+					MappedRingLog.openUsingPathAndSizeAndMagic(path, size, MAGIC));
+		} catch (IOException e) {
+			throw JournalException.withMessageAndException(
+					"Error opening write-behind journal " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static void throwErrorIfSizeTooSmall(Path path, int size) {
+		if (size <= MappedRingLog.HEADER_SIZE + MappedRingLog.ENTRY_HEADER_SIZE) {
+			throw JournalException.withMessage("Write-behind journal size " + size
+					+ " is too small for journal " + path);
+		}
+	}
+
+	private WriteBehindJournal(Path path, MappedRingLog ringLog) {
+		this.path = path;
+		this.ringLog = ringLog;
+		syncedSequence = ringLog.getNextSequence() - 1;
+	}
+
+	long append(byte[] payload) {
+		throwErrorIfEntryCanNeverFit(payload);
+		synchronized (this) {
+			waitForRoomForPayload(payload);
+			long sequence = ringLog.append(payload);
+			notifyAll();
+			return sequence;
+		}
+	}
+
+	private void throwErrorIfEntryCanNeverFit(byte[] payload) {
+		if (!ringLog.canEverFitPayloadOfLength(payload.length)) {
+			throw JournalException.withMessage("Journal entry of "
+					+ (MappedRingLog.ENTRY_HEADER_SIZE + payload.length)
+					+ " bytes does not fit in write-behind journal " + path);
+		}
+	}
+
+	private void waitForRoomForPayload(byte[] payload) {
+		long deadline = System.currentTimeMillis() + appendTimeoutMillis;
+		while (!ringLog.hasRoomForPayloadOfLength(payload.length)) {
+			throwErrorIfClosed();
+			long timeLeft = deadline - System.currentTimeMillis();
+			if (timeLeft <= 0) {
+				throw JournalException.withMessage("Write-behind journal " + path
+						+ " is full, unable to append entry within " + appendTimeoutMillis
+						+ " ms");
+			}
+			waitAtMost(timeLeft);
+		}
+		throwErrorIfClosed();
+	}
+
+	private void throwErrorIfClosed() {
+		if (closed) {
+			throw JournalException.withMessage("Write-behind journal " + path + " is closed");
+		}
+	}
+
+	private void waitAtMost(long millis) {
+		try {
+			wait(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw JournalException.withMessageAndException(
+					"Interrupted while waiting for write-behind journal " + path, e);
+		}
+	}
+
+	void syncUpToSequence(long sequence) {
+		synchronized (syncLock) {
+			if (syncedSequence >= sequence) {
+				return;
+			}
+			long lastAppendedSequence = getLastAppendedSequence();
+			ringLog.force();
+			syncs.increment();
+			syncedSequence = lastAppendedSequence;
+		}
+	}
+
+	private synchronized long getLastAppendedSequence() {
+		return ringLog.getNextSequence() - 1;
+	}
+
+	synchronized JournalRecord readFirstUnapplied() {
+		return toJournalRecordOrNull(ringLog.readHead());
+	}
+
+	private JournalRecord toJournalRecordOrNull(LogRecord logRecord) {
+		if (logRecord == null) {
+			return null;
+		}
+		return new JournalRecord(logRecord);
+	}
+
+	synchronized JournalRecord readEntryFollowing(JournalRecord previous) {
+		if (previous == null) {
+			return readFirstUnapplied();
+		}
+		return toJournalRecordOrNull(ringLog.readFollowing(previous.logRecord));
+	}
+
+	synchronized List<JournalRecord> readAllUnapplied() {
+		List<JournalRecord> records = new ArrayList<>();
+		for (LogRecord logRecord : ringLog.readAll()) {
+			if (!appliedAheadOfHead.contains(logRecord.sequence)) {
+				records.add(new JournalRecord(logRecord));
+			}
+		}
+		return records;
+	}
+
+	void markApplied(long sequence) {
+		synchronized (this) {
+			throwErrorIfNotUnapplied(sequence);
+			appliedAheadOfHead.add(sequence);
+			while (appliedAheadOfHead.remove(ringLog.getHeadSequence())) {
+				ringLog.removeHead();
+			}
+			notifyAll();
+		}
+		synchronized (syncLock) {
+			ringLog.force();
+			syncs.increment();
+		}
+	}
+
+	private void throwErrorIfNotUnapplied(long sequence) {
+		if (isApplied(sequence) || sequence >= ringLog.getNextSequence()) {
+			throw JournalException.withMessage("Unable to mark entry " + sequence
+					+ " as applied, it is not an unapplied entry in write-behind journal "
+					+ path);
+		}
+	}
+
+	synchronized boolean isApplied(long sequence) {
+		return sequence < ringLog.getHeadSequence() || appliedAheadOfHead.contains(sequence);
+	}
+
+	synchronized void awaitEntryFollowingAtMost(JournalRecord previous, long millis) {
+		long lastReadSequence = previous == null ? ringLog.getHeadSequence() - 1
+				: previous.sequence;
+		if (getLastAppendedSequence() <= lastReadSequence && !closed) {
+			waitAtMost(millis);
+		}
+	}
+
+	synchronized void wakeUpWaiting() {
+		notifyAll();
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		synchronized (syncLock) {
+			tryToCloseRingLog();
+		}
+	}
+
+	private void tryToCloseRingLog() {
+		try {
+			ringLog.close();
+		} catch (IOException e) {
+			throw JournalException.withMessageAndException(
+					"Error closing write-behind journal " + path + ": " + e.getMessage(), e);
+		}
+	}
+
+	public synchronized long getNumberOfUnappliedEntries() {
+		return ringLog.getNumberOfEntries() - appliedAheadOfHead.size();
+	}
+
+	public synchronized int getNumberOfUsedBytes() {
+		return ringLog.getNumberOfUsedBytes();
+	}
+
+	public long getNumberOfSyncs() {
+		return syncs.sum();
+	}
+
+	public int getSize() {
+		return ringLog.getSize();
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	void setAppendTimeoutMillis(long appendTimeoutMillis) {
+		// needed for test
+		this.appendTimeoutMillis = appendTimeoutMillis;
+	}
+
+	static final class JournalRecord {
+		final long sequence;
+		final byte[] payload;
+		private final LogRecord logRecord;
+
+		JournalRecord(LogRecord logRecord) {
+			this.sequence = logRecord.sequence;
+			this.payload = logRecord.payload;
+			this.logRecord = logRecord;
+		}
+	}
+}
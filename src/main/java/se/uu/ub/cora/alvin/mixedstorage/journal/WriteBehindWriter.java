@@ -0,0 +1,407 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry.Operation;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindJournal.JournalRecord;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public final class WriteBehindWriter implements Closeable {
+	private static final String DEAD_LETTER_SUFFIX = ".deadletter";
+	private static final long IDLE_WAIT_MILLIS = 1000;
+	private static final long CLOSE_TIMEOUT_MILLIS = 60000;
+	private static final int MAX_RETRY_DELAY_FACTOR = 32;
+	private Logger log = LoggerProvider.getLoggerForClass(WriteBehindWriter.class);
+	private final WriteBehindJournal journal;
+	private final WriteBehindJournal deadLetterJournal;
+	private final JournalEntryApplier applier;
+	private final WriteBehindConfig config;
+	private final ConcurrentMap<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+	private final Map<String, ParkedWrites> parkedWrites = new HashMap<>();
+	private final Object retryLock = new Object();
+	private final LongAdder acceptedWrites = new LongAdder();
+	private final LongAdder appliedWrites = new LongAdder();
+	private final LongAdder retriedWrites = new LongAdder();
+	private final LongAdder failedWrites = new LongAdder();
+	private final Thread flusher;
+	private JournalRecord lastReadRecord;
+	private volatile boolean running = true;
+
+	public static WriteBehindWriter startUsingConfigAndApplier(WriteBehindConfig config,
+			JournalEntryApplier applier) {
+		WriteBehindJournal journal = WriteBehindJournal
+				.openUsingPathAndSize(Paths.get(config.journalPath), config.journalSize);
+		return startUsingJournalAndConfigAndApplier(journal, config, applier);
+	}
+
+	static WriteBehindWriter startUsingJournalAndConfigAndApplier(WriteBehindJournal journal,
+			WriteBehindConfig config, JournalEntryApplier applier) {
+		WriteBehindJournal deadLetterJournal = WriteBehindJournal.openUsingPathAndSize(
+				createDeadLetterPath(journal.getPath()), journal.getSize());
+		WriteBehindWriter writer = new WriteBehindWriter(journal, deadLetterJournal, config,
+				applier);
+		writer.warnIfDeadLetterJournalContainsEntries();
+		writer.registerUnappliedEntriesAsPending();
+		writer.flusher.start();
+		return writer;
+	}
+
+	static Path createDeadLetterPath(Path journalPath) {
+		return journalPath.resolveSibling(journalPath.getFileName() + DEAD_LETTER_SUFFIX);
+	}
+
+	private WriteBehindWriter(WriteBehindJournal journal, WriteBehindJournal deadLetterJournal,
+			WriteBehindConfig config, JournalEntryApplier applier) {
+		this.journal = journal;
+		this.deadLetterJournal = deadLetterJournal;
+		this.config = config;
+		this.applier = applier;
+		flusher = new Thread(this::applyEntriesUntilClosed, "write-behind-flusher");
+		flusher.setDaemon(true);
+	}
+
+	private void warnIfDeadLetterJournalContainsEntries() {
+		long numberOfDeadLetters = deadLetterJournal.getNumberOfUnappliedEntries();
+		if (numberOfDeadLetters > 0) {
+			log.logWarnUsingMessage("Write-behind dead-letter journal "
+					+ deadLetterJournal.getPath() + " contains " + numberOfDeadLetters
+					+ " entries that were never written to storage");
+		}
+	}
+
+	private void registerUnappliedEntriesAsPending() {
+		int numberOfEntries = 0;
+		for (JournalRecord journalRecord : journal.readAllUnapplied()) {
+			registerUnappliedEntryAsPending(journalRecord);
+			numberOfEntries++;
+		}
+		if (numberOfEntries > 0) {
+			log.logInfoUsingMessage("Replaying " + numberOfEntries
+					+ " unapplied entries from write-behind journal " + journal.getPath());
+		}
+	}
+
+	private void registerUnappliedEntryAsPending(JournalRecord journalRecord) {
+		try {
+			JournalEntry entry = JournalEntryCodec.decode(journalRecord.payload);
+			pendingWrites.put(createKey(entry.type, entry.id), new PendingWrite(
+					journalRecord.sequence, entry.operation, journalRecord.payload));
+		} catch (JournalException e) {
+			// reported and skipped when the flusher reaches the entry
+		}
+	}
+
+	private String createKey(String type, String id) {
+		return type + "/" + id;
+	}
+
+	public void write(JournalEntry entry) {
+		byte[] payload = JournalEntryCodec.encode(entry);
+		long sequence = journal.append(payload);
+		registerAsPending(entry, payload, sequence);
+		journal.syncUpToSequence(sequence);
+		acceptedWrites.increment();
+	}
+
+	private void registerAsPending(JournalEntry entry, byte[] payload, long sequence) {
+		String key = createKey(entry.type, entry.id);
+		PendingWrite pendingWrite = new PendingWrite(sequence, entry.operation, payload);
+		pendingWrites.merge(key, pendingWrite, this::keepLatest);
+		if (journal.isApplied(sequence)) {
+			removePendingIfApplied(key, sequence);
+		}
+	}
+
+	private PendingWrite keepLatest(PendingWrite current, PendingWrite added) {
+		return current.sequence > added.sequence ? current : added;
+	}
+
+	private void removePendingIfApplied(String key, long appliedSequence) {
+		pendingWrites.computeIfPresent(key,
+				(k, pendingWrite) -> pendingWrite.sequence <= appliedSequence ? null
+						: pendingWrite);
+	}
+
+	public DataGroup readPendingUsingTypeAndId(String type, String id) {
+		PendingWrite pendingWrite = pendingWrites.get(createKey(type, id));
+		if (pendingWrite == null) {
+			return null;
+		}
+		if (Operation.DELETE == pendingWrite.operation) {
+			throw new RecordNotFoundException(
+					"Record not found for type: " + type + " and id: " + id);
+		}
+		return JournalEntryCodec.decode(pendingWrite.payload).dataRecord;
+	}
+
+	private void applyEntriesUntilClosed() {
+		while (running) {
+			try {
+				retryParkedWritesThatAreDue();
+				applyNextEntryOrWait();
+			} catch (RuntimeException e) {
+				log.logErrorUsingMessageAndException(
+						"Error in write-behind flusher: " + e.getMessage(), e);
+				sleepBeforeRetry(config.retryDelayMillis);
+			}
+		}
+	}
+
+	private void retryParkedWritesThatAreDue() {
+		long now = System.currentTimeMillis();
+		Iterator<ParkedWrites> iterator = parkedWrites.values().iterator();
+		while (running && iterator.hasNext()) {
+			ParkedWrites parked = iterator.next();
+			if (parked.nextAttemptMillis <= now) {
+				applyParkedWritesInOrder(parked);
+			}
+			if (parked.writes.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private void applyNextEntryOrWait() {
+		JournalRecord journalRecord = journal.readEntryFollowing(lastReadRecord);
+		if (journalRecord == null) {
+			journal.awaitEntryFollowingAtMost(lastReadRecord, calculateIdleWaitMillis());
+			return;
+		}
+		JournalEntry entry = decodeOrNullIfCorrupt(journalRecord);
+		if (entry == null) {
+			moveUnreadableEntryToDeadLetters(journalRecord);
+		} else {
+			applyOrParkBehindEarlierWrites(new ParkedWrite(journalRecord, entry));
+		}
+		lastReadRecord = journalRecord;
+	}
+
+	private long calculateIdleWaitMillis() {
+		long waitMillis = IDLE_WAIT_MILLIS;
+		long now = System.currentTimeMillis();
+		for (ParkedWrites parked : parkedWrites.values()) {
+			waitMillis = Math.min(waitMillis, parked.nextAttemptMillis - now);
+		}
+		return Math.max(1, waitMillis);
+	}
+
+	private JournalEntry decodeOrNullIfCorrupt(JournalRecord journalRecord) {
+		try {
+			return JournalEntryCodec.decode(journalRecord.payload);
+		} catch (JournalException e) {
+			log.logErrorUsingMessageAndException("Unable to read write-behind journal entry "
+					+ journalRecord.sequence + ": " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private void moveUnreadableEntryToDeadLetters(JournalRecord journalRecord) {
+		writeToDeadLetters(journalRecord);
+		log.logErrorUsingMessage("Moved unreadable write-behind journal entry "
+				+ journalRecord.sequence + " to dead-letter journal "
+				+ deadLetterJournal.getPath());
+		markAppliedAsFailed(journalRecord);
+	}
+
+	private void writeToDeadLetters(JournalRecord journalRecord) {
+		deadLetterJournal.syncUpToSequence(deadLetterJournal.append(journalRecord.payload));
+	}
+
+	private void markAppliedAsFailed(JournalRecord journalRecord) {
+		failedWrites.increment();
+		journal.markApplied(journalRecord.sequence);
+	}
+
+	private void applyOrParkBehindEarlierWrites(ParkedWrite write) {
+		String key = createKey(write.entry.type, write.entry.id);
+		ParkedWrites parked = parkedWrites.get(key);
+		if (parked != null) {
+			parked.writes.add(write);
+			return;
+		}
+		parked = new ParkedWrites();
+		parked.writes.add(write);
+		applyParkedWritesInOrder(parked);
+		if (!parked.writes.isEmpty()) {
+			parkedWrites.put(key, parked);
+		}
+	}
+
+	private void applyParkedWritesInOrder(ParkedWrites parked) {
+		while (running && !parked.writes.isEmpty()) {
+			ParkedWrite write = parked.writes.peek();
+			try {
+				applier.apply(write.entry);
+				appliedWrites.increment();
+				markAppliedAndRemovePending(write);
+				removeFirstParkedWrite(parked);
+			} catch (RuntimeException e) {
+				parked.attempts++;
+				if (parked.attempts < config.maxAttempts) {
+					retryLater(parked);
+					return;
+				}
+				moveFailedWriteToDeadLetters(write, parked.attempts, e);
+				removeFirstParkedWrite(parked);
+			}
+		}
+	}
+
+	private void markAppliedAndRemovePending(ParkedWrite write) {
+		journal.markApplied(write.journalRecord.sequence);
+		removePendingIfApplied(createKey(write.entry.type, write.entry.id),
+				write.journalRecord.sequence);
+	}
+
+	private void removeFirstParkedWrite(ParkedWrites parked) {
+		parked.writes.remove();
+		parked.attempts = 0;
+	}
+
+	private void retryLater(ParkedWrites parked) {
+		retriedWrites.increment();
+		long delayFactor = Math.min(1L << Math.min(parked.attempts - 1, Integer.SIZE),
+				MAX_RETRY_DELAY_FACTOR);
+		parked.nextAttemptMillis = System.currentTimeMillis()
+				+ config.retryDelayMillis * delayFactor;
+	}
+
+	private void moveFailedWriteToDeadLetters(ParkedWrite write, int attempts,
+			RuntimeException e) {
+		writeToDeadLetters(write.journalRecord);
+		log.logErrorUsingMessageAndException("Moved write-behind " + write.entry.operation
+				+ " for type: " + write.entry.type + " and id: " + write.entry.id
+				+ " to dead-letter journal " + deadLetterJournal.getPath() + " after "
+				+ attempts + " attempts: " + e.getMessage(), e);
+		markAppliedAsFailed(write.journalRecord);
+		removePendingIfApplied(createKey(write.entry.type, write.entry.id),
+				write.journalRecord.sequence);
+	}
+
+	private void sleepBeforeRetry(long millis) {
+		synchronized (retryLock) {
+			if (!running) {
+				return;
+			}
+			try {
+				retryLock.wait(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (retryLock) {
+			running = false;
+			retryLock.notifyAll();
+		}
+		journal.wakeUpWaiting();
+		waitForFlusherToStop();
+		journal.close();
+		deadLetterJournal.close();
+	}
+
+	private void waitForFlusherToStop() {
+		try {
+			flusher.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public long getNumberOfAcceptedWrites() {
+		return acceptedWrites.sum();
+	}
+
+	public long getNumberOfAppliedWrites() {
+		return appliedWrites.sum();
+	}
+
+	public long getNumberOfRetries() {
+		return retriedWrites.sum();
+	}
+
+	public long getNumberOfFailedWrites() {
+		return failedWrites.sum();
+	}
+
+	public long getNumberOfPendingWrites() {
+		return journal.getNumberOfUnappliedEntries();
+	}
+
+	public WriteBehindJournal getJournal() {
+		// needed for test
+		return journal;
+	}
+
+	public WriteBehindJournal getDeadLetterJournal() {
+		return deadLetterJournal;
+	}
+
+	public WriteBehindConfig getConfig() {
+		// needed for test
+		return config;
+	}
+
+	private static final class PendingWrite {
+		private final long sequence;
+		private final Operation operation;
+		private final byte[] payload;
+
+		PendingWrite(long sequence, Operation operation, byte[] payload) {
+			this.sequence = sequence;
+			this.operation = operation;
+			this.payload = payload;
+		}
+	}
+
+	private static final class ParkedWrite {
+		private final JournalRecord journalRecord;
+		private final JournalEntry entry;
+
+		ParkedWrite(JournalRecord journalRecord, JournalEntry entry) {
+			this.journalRecord = journalRecord;
+			this.entry = entry;
+		}
+	}
+
+	private static final class ParkedWrites {
+		private final Deque<ParkedWrite> writes = new ArrayDeque<>();
+		private int attempts = 0;
+		private long nextAttemptMillis = 0;
+	}
+}
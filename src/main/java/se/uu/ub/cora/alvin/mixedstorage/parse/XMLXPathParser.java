@@ -1,6 +1,7 @@
 package se.uu.ub.cora.alvin.mixedstorage.parse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 
@@ -37,6 +38,12 @@ public final class XMLXPathParser {
 		setupXPath();
 	}
 
+	private XMLXPathParser(InputStream xml)
+			throws ParserConfigurationException, SAXException, IOException {
+		document = createDocumentFromInputSource(new InputSource(xml));
+		setupXPath();
+	}
+
 	public static XMLXPathParser forXML(String xml) {
 		try {
 			return new XMLXPathParser(xml);
@@ -45,6 +52,14 @@ public final class XMLXPathParser {
 		}
 	}
 
+	public static XMLXPathParser forXML(InputStream xml) {
+		try {
+			return new XMLXPathParser(xml);
+		} catch (Exception e) {
+			throw ParseException.withMessageAndException("Can not read xml: " + e.getMessage(), e);
+		}
+	}
+
 	private void setupXPath() {
 		XPathFactory xpathFactory = XPathFactory.newInstance();
 		xpath = xpathFactory.newXPath();
@@ -52,8 +67,14 @@ public final class XMLXPathParser {
 
 	public Document createDocumentFromXML(String xml)
 			throws ParserConfigurationException, SAXException, IOException {
+		StringReader reader = new StringReader(xml);
+		return createDocumentFromInputSource(new InputSource(reader));
+	}
+
+	private Document createDocumentFromInputSource(InputSource in)
+			throws ParserConfigurationException, SAXException, IOException {
 		DocumentBuilder dBuilder = createDocumentBuilder();
-		return readXMLUsingBuilderAndXML(dBuilder, xml);
+		return readXMLUsingBuilderAndInputSource(dBuilder, in);
 	}
 
 	private DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
@@ -66,10 +87,8 @@ public final class XMLXPathParser {
 		return dBuilder;
 	}
 
-	private Document readXMLUsingBuilderAndXML(DocumentBuilder dBuilder, String xml)
+	private Document readXMLUsingBuilderAndInputSource(DocumentBuilder dBuilder, InputSource in)
 			throws SAXException, IOException {
-		StringReader reader = new StringReader(xml);
-		InputSource in = new InputSource(reader);
 		Document doc = dBuilder.parse(in);
 		doc.getDocumentElement().normalize();
 		return doc;
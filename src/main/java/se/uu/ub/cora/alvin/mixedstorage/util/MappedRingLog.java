@@ -0,0 +1,298 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public final class MappedRingLog implements Closeable {
+	public static final int HEADER_SIZE = 16;
+	public static final int ENTRY_HEADER_SIZE = 16;
+	private static final int HEAD_POSITION_OFFSET = 4;
+	private static final int HEAD_SEQUENCE_OFFSET = 8;
+	private static final int CRC_OFFSET = 4;
+	private static final int SEQUENCE_OFFSET = 8;
+	private static final int WRAP_MARKER = -1;
+	private static final byte[] NO_PAYLOAD = new byte[0];
+	private static final long FIRST_SEQUENCE = 1;
+	private final Path path;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private int headPosition;
+	private long headSequence;
+	private int writePosition;
+	private long nextSequence;
+
+	public static MappedRingLog openUsingPathAndSizeAndMagic(Path path, int size, int magic)
+			throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			int mappedSize = (int) Math.max(size, channel.size());
+			return new MappedRingLog(path, channel, mappedSize, magic);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private MappedRingLog(Path path, FileChannel channel, int size, int magic)
+			throws IOException {
+		this.path = path;
+		this.channel = channel;
+		this.size = size;
+		buffer = channel.map(MapMode.READ_WRITE, 0, size);
+		if (magic == buffer.getInt(0)) {
+			recoverFromExistingLog();
+		} else {
+			initializeNewLogUsingMagic(magic);
+		}
+	}
+
+	private void recoverFromExistingLog() throws IOException {
+		headPosition = buffer.getInt(HEAD_POSITION_OFFSET);
+		headSequence = buffer.getLong(HEAD_SEQUENCE_OFFSET);
+		if (headPosition < HEADER_SIZE || headPosition > size) {
+			throw new IOException("invalid head position " + headPosition);
+		}
+		writePosition = headPosition;
+		nextSequence = headSequence;
+		int position = findEntryPositionUsingSequence(headPosition, headSequence);
+		if (isValidEntryAtPositionWithSequence(position, headSequence)) {
+			headPosition = position;
+		}
+		while (isValidEntryAtPositionWithSequence(position, nextSequence)) {
+			writePosition = position + ENTRY_HEADER_SIZE + buffer.getInt(position);
+			nextSequence++;
+			position = findEntryPositionUsingSequence(writePosition, nextSequence);
+		}
+	}
+
+	private int findEntryPositionUsingSequence(int position, long sequence) {
+		if (position + ENTRY_HEADER_SIZE > size || isWrapMarkerAtPositionWithSequence(position,
+				sequence)) {
+			return HEADER_SIZE;
+		}
+		return position;
+	}
+
+	private boolean isWrapMarkerAtPositionWithSequence(int position, long sequence) {
+		return WRAP_MARKER == buffer.getInt(position)
+				&& sequence == buffer.getLong(position + SEQUENCE_OFFSET)
+				&& buffer.getInt(position + CRC_OFFSET) == calculateCrc(sequence, NO_PAYLOAD);
+	}
+
+	private boolean isValidEntryAtPositionWithSequence(int position, long sequence) {
+		int length = buffer.getInt(position);
+		if (length < 0 || length > size - position - ENTRY_HEADER_SIZE) {
+			return false;
+		}
+		return sequence == buffer.getLong(position + SEQUENCE_OFFSET)
+				&& buffer.getInt(position + CRC_OFFSET) == calculateCrc(sequence,
+						readPayloadAtPosition(position));
+	}
+
+	private void initializeNewLogUsingMagic(int magic) {
+		headPosition = HEADER_SIZE;
+		headSequence = FIRST_SEQUENCE;
+		writePosition = HEADER_SIZE;
+		nextSequence = FIRST_SEQUENCE;
+		buffer.putInt(0, magic);
+		writeHeader();
+		buffer.force();
+	}
+
+	private void writeHeader() {
+		buffer.putInt(HEAD_POSITION_OFFSET, headPosition);
+		buffer.putLong(HEAD_SEQUENCE_OFFSET, headSequence);
+	}
+
+	public boolean canEverFitPayloadOfLength(int length) {
+		return ENTRY_HEADER_SIZE + length <= size - HEADER_SIZE;
+	}
+
+	public boolean hasRoomForPayloadOfLength(int length) {
+		int entrySize = ENTRY_HEADER_SIZE + length;
+		if (isEmpty()) {
+			return canEverFitPayloadOfLength(length);
+		}
+		if (writePosition > headPosition) {
+			return writePosition + entrySize <= size || HEADER_SIZE + entrySize <= headPosition;
+		}
+		return writePosition + entrySize <= headPosition;
+	}
+
+	public long append(byte[] payload) {
+		int position = findPositionForEntryOfSize(ENTRY_HEADER_SIZE + payload.length);
+		long sequence = nextSequence;
+		if (position != writePosition) {
+			writeWrapMarkerIfRoomAtWritePosition(sequence);
+		}
+		writeEntryAtPosition(position, sequence, payload);
+		if (isEmpty()) {
+			headPosition = position;
+			writeHeader();
+		}
+		writePosition = position + ENTRY_HEADER_SIZE + payload.length;
+		nextSequence++;
+		return sequence;
+	}
+
+	private int findPositionForEntryOfSize(int entrySize) {
+		if (writePosition + entrySize <= size && (isEmpty() || writePosition > headPosition
+				|| writePosition + entrySize <= headPosition)) {
+			return writePosition;
+		}
+		return HEADER_SIZE;
+	}
+
+	private void writeWrapMarkerIfRoomAtWritePosition(long sequence) {
+		if (writePosition + ENTRY_HEADER_SIZE <= size) {
+			buffer.putLong(writePosition + SEQUENCE_OFFSET, sequence);
+			buffer.putInt(writePosition + CRC_OFFSET, calculateCrc(sequence, NO_PAYLOAD));
+			buffer.putInt(writePosition, WRAP_MARKER);
+		}
+	}
+
+	private void writeEntryAtPosition(int position, long sequence, byte[] payload) {
+		ByteBuffer entry = buffer.duplicate();
+		entry.position(position + ENTRY_HEADER_SIZE);
+		entry.put(payload);
+		buffer.putLong(position + SEQUENCE_OFFSET, sequence);
+		buffer.putInt(position + CRC_OFFSET, calculateCrc(sequence, payload));
+		buffer.putInt(position, payload.length);
+	}
+
+	private int calculateCrc(long sequence, byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+
+	public LogRecord readHead() {
+		if (isEmpty()) {
+			return null;
+		}
+		return new LogRecord(headSequence, headPosition, readPayloadAtPosition(headPosition));
+	}
+
+	private byte[] readPayloadAtPosition(int position) {
+		byte[] payload = new byte[buffer.getInt(position)];
+		ByteBuffer entry = buffer.duplicate();
+		entry.position(position + ENTRY_HEADER_SIZE);
+		entry.get(payload);
+		return payload;
+	}
+
+	public LogRecord readFollowing(LogRecord previous) {
+		long sequence = previous.sequence + 1;
+		if (sequence >= nextSequence) {
+			return null;
+		}
+		int position = findEntryPositionUsingSequence(
+				previous.position + ENTRY_HEADER_SIZE + previous.payload.length, sequence);
+		return new LogRecord(sequence, position, readPayloadAtPosition(position));
+	}
+
+	public List<LogRecord> readAll() {
+		List<LogRecord> records = new ArrayList<>();
+		LogRecord logRecord = readHead();
+		while (logRecord != null) {
+			records.add(logRecord);
+			logRecord = readFollowing(logRecord);
+		}
+		return records;
+	}
+
+	public void removeHead() {
+		headPosition += ENTRY_HEADER_SIZE + buffer.getInt(headPosition);
+		headSequence++;
+		if (!isEmpty()) {
+			headPosition = findEntryPositionUsingSequence(headPosition, headSequence);
+		}
+		writeHeader();
+	}
+
+	public void force() {
+		buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+	public boolean isEmpty() {
+		return headSequence == nextSequence;
+	}
+
+	public long getHeadSequence() {
+		return headSequence;
+	}
+
+	public long getNextSequence() {
+		return nextSequence;
+	}
+
+	public long getNumberOfEntries() {
+		return nextSequence - headSequence;
+	}
+
+	public int getNumberOfUsedBytes() {
+		if (isEmpty()) {
+			return 0;
+		}
+		if (writePosition > headPosition) {
+			return writePosition - headPosition;
+		}
+		return size - headPosition + writePosition - HEADER_SIZE;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public static final class LogRecord {
+		public final long sequence;
+		public final byte[] payload;
+		private final int position;
+
+		LogRecord(long sequence, int position, byte[] payload) {
+			this.sequence = sequence;
+			this.position = position;
+			this.payload = payload;
+		}
+	}
+}
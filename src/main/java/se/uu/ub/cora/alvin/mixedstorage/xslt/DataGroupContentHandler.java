@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.xslt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataElement;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.DataRecordLinkProvider;
+
+final class DataGroupContentHandler extends DefaultHandler {
+	private static final String REPEAT_ID = "repeatId";
+	private static final String LINKED_RECORD_TYPE = "linkedRecordType";
+	private static final String LINKED_RECORD_ID = "linkedRecordId";
+	private final Deque<ElementInProgress> openElements = new ArrayDeque<>();
+	private DataGroup topDataGroup;
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes attributes) {
+		openElements.push(new ElementInProgress(getNameInData(localName, qName), attributes));
+	}
+
+	private String getNameInData(String localName, String qName) {
+		if (localName == null || localName.isEmpty()) {
+			return qName;
+		}
+		return localName;
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) {
+		if (!openElements.isEmpty()) {
+			openElements.peek().text.append(ch, start, length);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		ElementInProgress element = openElements.pop();
+		DataElement dataElement = element.toDataElement();
+		if (openElements.isEmpty()) {
+			topDataGroup = (DataGroup) dataElement;
+		} else {
+			openElements.peek().children.add(dataElement);
+		}
+	}
+
+	DataGroup getDataGroup() {
+		return topDataGroup;
+	}
+
+	private static final class ElementInProgress {
+		private final String nameInData;
+		private final Map<String, String> attributes = new LinkedHashMap<>();
+		private final StringBuilder text = new StringBuilder();
+		private final List<DataElement> children = new ArrayList<>();
+
+		private ElementInProgress(String nameInData, Attributes attributes) {
+			this.nameInData = nameInData;
+			for (int i = 0; i < attributes.getLength(); i++) {
+				this.attributes.put(attributes.getQName(i), attributes.getValue(i));
+			}
+		}
+
+		private DataElement toDataElement() {
+			if (children.isEmpty()) {
+				return createDataAtomic();
+			}
+			return createDataGroup();
+		}
+
+		private DataAtomic createDataAtomic() {
+			DataAtomic dataAtomic = DataAtomicProvider
+					.getDataAtomicUsingNameInDataAndValue(nameInData, text.toString());
+			setRepeatIdIfPresent(dataAtomic);
+			return dataAtomic;
+		}
+
+		private void setRepeatIdIfPresent(DataElement dataElement) {
+			String repeatId = attributes.get(REPEAT_ID);
+			if (repeatId != null) {
+				dataElement.setRepeatId(repeatId);
+			}
+		}
+
+		private DataGroup createDataGroup() {
+			DataGroup dataGroup = createLinkOrGroup();
+			setRepeatIdIfPresent(dataGroup);
+			for (Entry<String, String> attribute : attributes.entrySet()) {
+				if (!REPEAT_ID.equals(attribute.getKey())) {
+					dataGroup.addAttributeByIdWithValue(attribute.getKey(), attribute.getValue());
+				}
+			}
+			return dataGroup;
+		}
+
+		private DataGroup createLinkOrGroup() {
+			DataAtomic linkedRecordType = findAtomicChild(LINKED_RECORD_TYPE);
+			DataAtomic linkedRecordId = findAtomicChild(LINKED_RECORD_ID);
+			if (linkedRecordType != null && linkedRecordId != null) {
+				return createLinkUsingTypeAndId(linkedRecordType, linkedRecordId);
+			}
+			DataGroup dataGroup = DataGroupProvider.getDataGroupUsingNameInData(nameInData);
+			addChildrenToGroup(dataGroup);
+			return dataGroup;
+		}
+
+		private DataGroup createLinkUsingTypeAndId(DataAtomic linkedRecordType,
+				DataAtomic linkedRecordId) {
+			DataGroup link = DataRecordLinkProvider.getDataRecordLinkAsLinkUsingNameInDataTypeAndId(
+					nameInData, linkedRecordType.getValue(), linkedRecordId.getValue());
+			children.remove(linkedRecordType);
+			children.remove(linkedRecordId);
+			addChildrenToGroup(link);
+			return link;
+		}
+
+		private DataAtomic findAtomicChild(String childNameInData) {
+			for (DataElement child : children) {
+				if (child instanceof DataAtomic && childNameInData.equals(child.getNameInData())) {
+					return (DataAtomic) child;
+				}
+			}
+			return null;
+		}
+
+		private void addChildrenToGroup(DataGroup dataGroup) {
+			for (DataElement child : children) {
+				dataGroup.addChild(child);
+			}
+		}
+	}
+}
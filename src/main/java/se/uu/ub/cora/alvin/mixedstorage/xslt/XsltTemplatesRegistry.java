@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.xslt;
+
+import java.io.StringReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+import se.uu.ub.cora.alvin.mixedstorage.resource.ResourceReader;
+
+public final class XsltTemplatesRegistry {
+	private static final ConcurrentMap<String, Templates> compiledTemplates = new ConcurrentHashMap<>();
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder compiles = new LongAdder();
+
+	private XsltTemplatesRegistry() {
+		// not called
+		throw new UnsupportedOperationException();
+	}
+
+	public static Templates getTemplatesUsingXsltPath(String xsltPath) {
+		Templates templates = compiledTemplates.get(xsltPath);
+		if (templates != null) {
+			hits.increment();
+			return templates;
+		}
+		return compiledTemplates.computeIfAbsent(xsltPath, XsltTemplatesRegistry::compileXslt);
+	}
+
+	public static Transformer newTransformerUsingXsltPath(String xsltPath) {
+		Templates templates = getTemplatesUsingXsltPath(xsltPath);
+		try {
+			return templates.newTransformer();
+		} catch (TransformerConfigurationException e) {
+			throw ParseException.withMessageAndException(
+					"Unable to create transformer for xslt: " + xsltPath, e);
+		}
+	}
+
+	private static Templates compileXslt(String xsltPath) {
+		String xslt = ResourceReader.readResourceAsString(xsltPath);
+		try {
+			Templates templates = tryToCompileXslt(xsltPath, xslt);
+			compiles.increment();
+			return templates;
+		} catch (Exception e) {
+			throw ParseException.withMessageAndException(
+					"Unable to compile xslt: " + xsltPath + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static Templates tryToCompileXslt(String xsltPath, String xslt)
+			throws TransformerConfigurationException {
+		TransformerFactory transformerFactory = TransformerFactory.newInstance();
+		transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+		transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+		transformerFactory.setURIResolver(createClasspathResolverForXslt(xsltPath));
+		Source xslInput = new StreamSource(new StringReader(xslt), xsltPath);
+		return transformerFactory.newTemplates(xslInput);
+	}
+
+	private static URIResolver createClasspathResolverForXslt(String xsltPath) {
+		String basePath = getFolderPartOfPath(xsltPath);
+		return (href, base) -> new StreamSource(
+				new StringReader(ResourceReader.readResourceAsString(basePath + href)),
+				basePath + href);
+	}
+
+	private static String getFolderPartOfPath(String xsltPath) {
+		int lastSlash = xsltPath.lastIndexOf('/');
+		return xsltPath.substring(0, lastSlash + 1);
+	}
+
+	public static long getNumberOfHits() {
+		return hits.sum();
+	}
+
+	public static long getNumberOfCompiles() {
+		return compiles.sum();
+	}
+
+	public static int getNumberOfCompiledTemplates() {
+		return compiledTemplates.size();
+	}
+
+	static void clear() {
+		// needed for test
+		compiledTemplates.clear();
+		hits.reset();
+		compiles.reset();
+	}
+}
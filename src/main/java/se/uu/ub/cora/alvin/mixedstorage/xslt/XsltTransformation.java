@@ -1,33 +1,60 @@
 package se.uu.ub.cora.alvin.mixedstorage.xslt;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 
-import javax.xml.XMLConstants;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
-import se.uu.ub.cora.alvin.mixedstorage.resource.ResourceReader;
+import se.uu.ub.cora.data.DataGroup;
 
 public class XsltTransformation {
 
-	private String xslt;
+	private String xsltPath;
+	private Templates templates;
 
 	public XsltTransformation(String xsltPath) {
-		this.xslt = ResourceReader.readResourceAsString(xsltPath);
+		this.xsltPath = xsltPath;
+		this.templates = XsltTemplatesRegistry.getTemplatesUsingXsltPath(xsltPath);
 	}
 
 	public String transform(String inputXml) {
 		return tryToTransform(inputXml);
 	}
 
+	public DataGroup transformToDataGroup(String inputXml) {
+		return tryToTransformToDataGroup(createSourceFromFedoraXml(inputXml));
+	}
+
+	public DataGroup transformToDataGroup(InputStream inputXml) {
+		return tryToTransformToDataGroup(new StreamSource(inputXml));
+	}
+
+	private DataGroup tryToTransformToDataGroup(Source xmlSource) {
+		try {
+			return transformXmlToDataGroupUsingXslt(xmlSource);
+		} catch (Exception e) {
+			throw ParseException.withMessageAndException(
+					"Error converting place to Cora place: Can not read xml: " + e.getCause(), e);
+		}
+	}
+
+	private DataGroup transformXmlToDataGroupUsingXslt(Source xmlSource) throws Exception {
+		Transformer transformer = generateTransformer();
+		DataGroupContentHandler contentHandler = new DataGroupContentHandler();
+		transformer.transform(xmlSource, new SAXResult(contentHandler));
+		return contentHandler.getDataGroup();
+	}
+
 	private String tryToTransform(String inputXml) {
 		try {
 			return transformXmlUsingXslt(inputXml).trim();
@@ -43,11 +70,7 @@ public class XsltTransformation {
 	}
 
 	private Transformer generateTransformer() throws Exception {
-		Source xslInput = new StreamSource(new StringReader(xslt));
-		TransformerFactory transformerFactory = TransformerFactory.newInstance();
-		transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
-		transformerFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
-		return transformerFactory.newTransformer(xslInput);
+		return templates.newTransformer();
 	}
 
 	private String transformUsingTransformer(String xmlFromFedora, Transformer transformer)
@@ -69,7 +92,13 @@ public class XsltTransformation {
 		return output.toString(StandardCharsets.UTF_8);
 	}
 
-	String getXslt() {
-		return this.xslt;
+	String getXsltPath() {
+		// needed for test
+		return xsltPath;
+	}
+
+	Templates getTemplates() {
+		// needed for test
+		return templates;
 	}
 }
@@ -20,15 +20,19 @@ package se.uu.ub.cora.alvin.mixedstorage;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -41,8 +45,27 @@ import se.uu.ub.cora.alvin.mixedstorage.db.AlvinDbToCoraConverterFactoryImp;
 import se.uu.ub.cora.alvin.mixedstorage.db.AlvinDbToCoraRecordStorage;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.AlvinFedoraConverterFactory;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.AlvinFedoraToCoraConverterFactoryImp;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig.CreateMode;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraRecordStorage;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.IndexMessageInfo;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.MissingPlaceCache;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceCache;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+import se.uu.ub.cora.alvin.mixedstorage.index.AsyncIndexPublisher;
+import se.uu.ub.cora.alvin.mixedstorage.index.CoalescingRecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexOutboxConfig;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexOutboxRelay;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig.FullQueuePolicy;
+import se.uu.ub.cora.alvin.mixedstorage.index.OutboxRecordIndexerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry;
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalException;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindConfig;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindWriter;
 import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
 import se.uu.ub.cora.basicstorage.DataStorageException;
 import se.uu.ub.cora.basicstorage.RecordStorageInMemoryReadFromDisk;
@@ -51,7 +74,6 @@ import se.uu.ub.cora.basicstorage.RecordStorageOnDisk;
 import se.uu.ub.cora.connection.ContextConnectionProviderImp;
 import se.uu.ub.cora.data.DataGroupFactory;
 import se.uu.ub.cora.data.DataGroupProvider;
-import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.sqldatabase.DataReaderImp;
 import se.uu.ub.cora.sqldatabase.RecordReaderFactoryImp;
@@ -159,11 +181,14 @@ public class AlvinMixedRecordStorageProviderTest {
 		assertTrue(fedoraStorage instanceof FedoraRecordStorage);
 
 		FedoraRecordStorage fedoraToCoraStorage = (FedoraRecordStorage) fedoraStorage;
-		assertTrue(fedoraToCoraStorage.getHttpHandlerFactory() instanceof HttpHandlerFactoryImp);
+		assertTrue(fedoraToCoraStorage
+				.getHttpHandlerFactory() instanceof FedoraHttpHandlerFactory);
 
 		AlvinFedoraConverterFactory alvinFedoraConverterFactory = fedoraToCoraStorage
 				.getAlvinFedoraConverterFactory();
 		assertTrue(alvinFedoraConverterFactory instanceof AlvinFedoraToCoraConverterFactoryImp);
+		assertSame(((AlvinFedoraToCoraConverterFactoryImp) alvinFedoraConverterFactory)
+				.getHttpHandlerFactory(), fedoraToCoraStorage.getHttpHandlerFactory());
 		String fedoraURLInConverter = ((AlvinFedoraToCoraConverterFactoryImp) alvinFedoraConverterFactory)
 				.getFedoraURL();
 		assertEquals(fedoraURLInConverter, initInfo.get("fedoraURL"));
@@ -179,6 +204,318 @@ public class AlvinMixedRecordStorageProviderTest {
 
 	}
 
+	@Test
+	public void testStartedResourcesAreClosedInReverseOrder() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		List<AutoCloseable> startedResources = recordStorageOnDiskProvider.getStartedResources();
+		assertEquals(startedResources.size(), 1);
+		List<String> closed = new ArrayList<>();
+		startedResources.add(() -> closed.add("first"));
+		startedResources.add(() -> closed.add("second"));
+
+		recordStorageOnDiskProvider.closeStartedResources();
+
+		assertEquals(closed, List.of("second", "first"));
+		assertTrue(startedResources.isEmpty());
+	}
+
+	@Test
+	public void testErrorClosingStartedResourceIsLoggedAndOthersAreClosed() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		List<AutoCloseable> startedResources = recordStorageOnDiskProvider.getStartedResources();
+		List<String> closed = new ArrayList<>();
+		startedResources.add(() -> closed.add("first"));
+		startedResources.add(() -> {
+			throw new IOException("some close error");
+		});
+
+		recordStorageOnDiskProvider.closeStartedResources();
+
+		assertEquals(closed, List.of("first"));
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"Error closing resource on shutdown: some close error");
+	}
+
+	@Test
+	public void testFedoraStorageUsesSequentialPlaceListFetchByDefault() {
+		PlaceListFetchConfig placeListFetchConfig = startAndGetPlaceListFetchConfig();
+		assertEquals(placeListFetchConfig.mode, Mode.SEQUENTIAL);
+		assertEquals(placeListFetchConfig.maxConcurrency, 1);
+		assertEquals(placeListFetchConfig.errorPolicy, ErrorPolicy.FAIL);
+		assertEquals(placeListFetchConfig.pageSize, 100);
+	}
+
+	private PlaceListFetchConfig startAndGetPlaceListFetchConfig() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		FedoraRecordStorage fedoraStorage = (FedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+		return fedoraStorage.getPlaceListFetchConfig();
+	}
+
+	@Test
+	public void testFedoraStorageUsesPlaceListFetchConfigFromInitInfo() {
+		initInfo.put("fedoraListFetchMode", "parallel");
+		initInfo.put("fedoraListFetchMaxConcurrency", "8");
+		initInfo.put("fedoraListFetchErrorPolicy", "skip");
+		initInfo.put("fedoraListPageSize", "50");
+		PlaceListFetchConfig placeListFetchConfig = startAndGetPlaceListFetchConfig();
+		assertEquals(placeListFetchConfig.mode, Mode.PARALLEL);
+		assertEquals(placeListFetchConfig.maxConcurrency, 8);
+		assertEquals(placeListFetchConfig.errorPolicy, ErrorPolicy.SKIP);
+		assertEquals(placeListFetchConfig.pageSize, 50);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found parallel as fedoraListFetchMode");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 5),
+				"Found 8 as fedoraListFetchMaxConcurrency");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 6),
+				"Found skip as fedoraListFetchErrorPolicy");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 7),
+				"Found 50 as fedoraListPageSize");
+	}
+
+	@Test
+	public void testErrorIfInvalidPlaceListFetchMode() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraListFetchMode", "sideways");
+	}
+
+	private void assertCorrectErrorAndLogOnInvalidParameter(String parameter, String value) {
+		initInfo.put(parameter, value);
+		String errorMessage = "InitInfo contains invalid value " + value + " for " + parameter;
+		boolean exceptionWasCaught = false;
+		try {
+			recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		} catch (Exception e) {
+			exceptionWasCaught = true;
+			assertTrue(e instanceof DataStorageException);
+			assertEquals(e.getMessage(), errorMessage);
+		}
+		assertTrue(exceptionWasCaught);
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				errorMessage);
+	}
+
+	@Test
+	public void testErrorIfInvalidPlaceListFetchMaxConcurrency() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraListFetchMaxConcurrency", "0");
+	}
+
+	@Test
+	public void testErrorIfNonNumericPlaceListFetchMaxConcurrency() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraListFetchMaxConcurrency", "many");
+	}
+
+	@Test
+	public void testErrorIfInvalidPlaceListFetchErrorPolicy() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraListFetchErrorPolicy", "ignore");
+	}
+
+	@Test
+	public void testFedoraStorageUsesPlaceCacheWithDefaultSize() {
+		PlaceCache placeCache = startAndGetPlaceCache();
+		assertEquals(placeCache.getMaxSize(), 1000);
+	}
+
+	private PlaceCache startAndGetPlaceCache() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		FedoraRecordStorage fedoraStorage = (FedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+		return fedoraStorage.getPlaceCache();
+	}
+
+	@Test
+	public void testFedoraStorageUsesPlaceCacheSizeFromInitInfo() {
+		initInfo.put("fedoraPlaceCacheSize", "20");
+		PlaceCache placeCache = startAndGetPlaceCache();
+		assertEquals(placeCache.getMaxSize(), 20);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found 20 as fedoraPlaceCacheSize");
+	}
+
+	@Test
+	public void testErrorIfInvalidPlaceCacheSize() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraPlaceCacheSize", "0");
+	}
+
+	@Test
+	public void testFedoraStorageUsesMissingPlaceCacheWithDefaultValues() {
+		MissingPlaceCache missingPlaceCache = startAndGetMissingPlaceCache();
+		assertEquals(missingPlaceCache.getTimeToLiveMillis(), 60000);
+		assertEquals(missingPlaceCache.getMaxSize(), 10000);
+	}
+
+	private MissingPlaceCache startAndGetMissingPlaceCache() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		FedoraRecordStorage fedoraStorage = (FedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+		return fedoraStorage.getMissingPlaceCache();
+	}
+
+	@Test
+	public void testFedoraStorageUsesMissingPlaceCacheSettingsFromInitInfo() {
+		initInfo.put("fedoraMissingPlaceCacheTimeToLive", "5000");
+		initInfo.put("fedoraMissingPlaceCacheSize", "50");
+		MissingPlaceCache missingPlaceCache = startAndGetMissingPlaceCache();
+		assertEquals(missingPlaceCache.getTimeToLiveMillis(), 5000);
+		assertEquals(missingPlaceCache.getMaxSize(), 50);
+	}
+
+	@Test
+	public void testFedoraStorageUsesIngestCreateModeByDefault() {
+		assertEquals(startAndGetFedoraStorage().getCreateMode(), CreateMode.INGEST);
+	}
+
+	private FedoraRecordStorage startAndGetFedoraStorage() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		return (FedoraRecordStorage) recordStorage.getFedoraStorage();
+	}
+
+	@Test
+	public void testFedoraStorageUsesCreateModeFromInitInfo() {
+		initInfo.put("fedoraCreateMode", "multi_call");
+		assertEquals(startAndGetFedoraStorage().getCreateMode(), CreateMode.MULTI_CALL);
+	}
+
+	@Test
+	public void testErrorIfInvalidCreateMode() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraCreateMode", "twoCalls");
+	}
+
+	@Test
+	public void testWriteBehindIsOffByDefault() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		assertNull(recordStorage.getWriteBehindWriter());
+	}
+
+	@Test
+	public void testWriteBehindUsesDefaultValues() {
+		initInfo.put("fedoraWriteBehindJournalPath", basePath + "places.journal");
+		WriteBehindWriter writer = startAndGetWriteBehindWriter();
+		try {
+			WriteBehindConfig config = writer.getConfig();
+			assertEquals(config.journalPath, basePath + "places.journal");
+			assertEquals(config.journalSize, 67108864);
+			assertEquals(config.retryDelayMillis, 1000);
+			assertEquals(config.maxAttempts, 10);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private WriteBehindWriter startAndGetWriteBehindWriter() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		return recordStorage.getWriteBehindWriter();
+	}
+
+	@Test
+	public void testWriteBehindWriterIsClosedWithStartedResources() {
+		initInfo.put("fedoraWriteBehindJournalPath", basePath + "places.journal");
+		WriteBehindWriter writer = startAndGetWriteBehindWriter();
+		List<AutoCloseable> startedResources = recordStorageOnDiskProvider.getStartedResources();
+		assertEquals(startedResources.size(), 2);
+
+		recordStorageOnDiskProvider.closeStartedResources();
+
+		try {
+			writer.write(JournalEntry.forDelete("place", "alvin-place:22"));
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertTrue(e.getMessage().endsWith(" is closed"));
+		}
+	}
+
+	@Test
+	public void testWriteBehindUsesValuesFromInitInfo() {
+		initInfo.put("fedoraWriteBehindJournalPath", basePath + "places.journal");
+		initInfo.put("fedoraWriteBehindJournalSize", "4096");
+		initInfo.put("fedoraWriteBehindRetryDelay", "50");
+		initInfo.put("fedoraWriteBehindMaxAttempts", "3");
+		WriteBehindWriter writer = startAndGetWriteBehindWriter();
+		try {
+			WriteBehindConfig config = writer.getConfig();
+			assertEquals(config.journalSize, 4096);
+			assertEquals(config.retryDelayMillis, 50);
+			assertEquals(config.maxAttempts, 3);
+			assertEquals(writer.getJournal().getSize(), 4096);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void testErrorIfInvalidWriteBehindJournalSize() {
+		initInfo.put("fedoraWriteBehindJournalPath", basePath + "places.journal");
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraWriteBehindJournalSize", "0");
+	}
+
+	@Test
+	public void testErrorIfInvalidWriteBehindMaxAttempts() {
+		initInfo.put("fedoraWriteBehindJournalPath", basePath + "places.journal");
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraWriteBehindMaxAttempts", "many");
+	}
+
+	@Test
+	public void testErrorIfInvalidMissingPlaceCacheTimeToLive() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraMissingPlaceCacheTimeToLive", "0");
+	}
+
+	@Test
+	public void testErrorIfInvalidPlaceListPageSize() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraListPageSize", "-5");
+	}
+
+	@Test
+	public void testFedoraStorageUsesTransportConfigWithDefaultValues() {
+		FedoraTransportConfig transportConfig = startAndGetTransportConfig();
+		assertEquals(transportConfig.poolSize, 20);
+		assertEquals(transportConfig.connectTimeoutMillis, 5000);
+		assertEquals(transportConfig.readTimeoutMillis, 30000);
+	}
+
+	private FedoraTransportConfig startAndGetTransportConfig() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		FedoraRecordStorage fedoraStorage = (FedoraRecordStorage) recordStorage
+				.getFedoraStorage();
+		return ((FedoraHttpHandlerFactory) fedoraStorage.getHttpHandlerFactory())
+				.getTransportConfig();
+	}
+
+	@Test
+	public void testFedoraStorageUsesTransportConfigFromInitInfo() {
+		initInfo.put("fedoraConnectionPoolSize", "7");
+		initInfo.put("fedoraConnectTimeout", "100");
+		initInfo.put("fedoraReadTimeout", "200");
+		FedoraTransportConfig transportConfig = startAndGetTransportConfig();
+		assertEquals(transportConfig.poolSize, 7);
+		assertEquals(transportConfig.connectTimeoutMillis, 100);
+		assertEquals(transportConfig.readTimeoutMillis, 200);
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 4),
+				"Found 7 as fedoraConnectionPoolSize");
+	}
+
+	@Test
+	public void testErrorIfInvalidConnectionPoolSize() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraConnectionPoolSize", "0");
+	}
+
+	@Test
+	public void testErrorIfInvalidReadTimeout() {
+		assertCorrectErrorAndLogOnInvalidParameter("fedoraReadTimeout", "-1");
+	}
+
 	@Test
 	public void testAlvinMixedRecordStorageContainsCorrectDbStorage() {
 		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
@@ -225,6 +562,165 @@ public class AlvinMixedRecordStorageProviderTest {
 		assertTrue(recordIndexerFactory instanceof AlvinRecordIndexerFactory);
 	}
 
+	@Test
+	public void testIndexPublishCoalescingUsesDefaultValues() {
+		initInfo.put("indexPublishCoalesceWindow", "250");
+		CoalescingRecordIndexerFactory recordIndexerFactory = startAndGetCoalescingRecordIndexerFactory();
+		AsyncIndexPublisher indexPublisher = recordIndexerFactory.getIndexPublisher();
+		try {
+			assertTrue(
+					recordIndexerFactory.getRecordIndexerFactory() instanceof AlvinRecordIndexerFactory);
+			IndexPublisherConfig config = indexPublisher.getConfig();
+			assertEquals(config.coalesceWindowMillis, 250);
+			assertEquals(config.queueCapacity, 10000);
+			assertEquals(config.batchSize, 100);
+			assertEquals(config.fullQueuePolicy, FullQueuePolicy.BLOCK);
+			assertEquals(config.fullQueueTimeoutMillis, 5000);
+		} finally {
+			indexPublisher.close();
+		}
+	}
+
+	private CoalescingRecordIndexerFactory startAndGetCoalescingRecordIndexerFactory() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		return (CoalescingRecordIndexerFactory) recordStorage.getRecordIndexFactory();
+	}
+
+	@Test
+	public void testIndexPublisherIsClosedWithStartedResources() {
+		initInfo.put("indexPublishCoalesceWindow", "250");
+		AsyncIndexPublisher indexPublisher = startAndGetCoalescingRecordIndexerFactory()
+				.getIndexPublisher();
+		List<AutoCloseable> startedResources = recordStorageOnDiskProvider.getStartedResources();
+		assertEquals(startedResources.size(), 2);
+		assertSame(startedResources.get(1), indexPublisher);
+
+		recordStorageOnDiskProvider.closeStartedResources();
+
+		RecordIndexerSpy recordIndexer = new RecordIndexerSpy();
+		indexPublisher.publish(recordIndexer, "place", "alvin-place:22");
+		assertEquals(recordIndexer.indexedPids, List.of("alvin-place:22"));
+		assertEquals(indexPublisher.getQueueDepth(), 0);
+	}
+
+	@Test
+	public void testIndexPublishCoalescingUsesValuesFromInitInfo() {
+		initInfo.put("indexPublishCoalesceWindow", "250");
+		initInfo.put("indexPublishQueueCapacity", "500");
+		initInfo.put("indexPublishBatchSize", "20");
+		initInfo.put("indexPublishFullQueuePolicy", "drop_oldest");
+		initInfo.put("indexPublishFullQueueTimeout", "100");
+		AsyncIndexPublisher indexPublisher = startAndGetCoalescingRecordIndexerFactory()
+				.getIndexPublisher();
+		try {
+			IndexPublisherConfig config = indexPublisher.getConfig();
+			assertEquals(config.queueCapacity, 500);
+			assertEquals(config.batchSize, 20);
+			assertEquals(config.fullQueuePolicy, FullQueuePolicy.DROP_OLDEST);
+			assertEquals(config.fullQueueTimeoutMillis, 100);
+		} finally {
+			indexPublisher.close();
+		}
+	}
+
+	@Test
+	public void testIndexOutboxUsesDefaultValues() {
+		initInfo.put("indexOutboxPath", basePath + "index.outbox");
+		IndexOutboxRelay outboxRelay = startAndGetOutboxRecordIndexerFactory()
+				.getIndexOutboxRelay();
+		try {
+			assertTrue(outboxRelay.getRecordIndexerFactory() instanceof AlvinRecordIndexerFactory);
+			IndexOutboxConfig config = outboxRelay.getConfig();
+			assertEquals(config.outboxPath, basePath + "index.outbox");
+			assertEquals(config.outboxSize, 16777216);
+			assertEquals(config.retryDelayMillis, 1000);
+			assertEquals(config.coalesceWindowMillis, 0);
+			assertEquals(config.batchSize, 100);
+		} finally {
+			outboxRelay.close();
+		}
+	}
+
+	private OutboxRecordIndexerFactory startAndGetOutboxRecordIndexerFactory() {
+		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
+		AlvinMixedRecordStorage recordStorage = (AlvinMixedRecordStorage) recordStorageOnDiskProvider
+				.getRecordStorage();
+		return (OutboxRecordIndexerFactory) recordStorage.getRecordIndexFactory();
+	}
+
+	@Test
+	public void testIndexOutboxUsesValuesFromInitInfo() {
+		initInfo.put("indexOutboxPath", basePath + "index.outbox");
+		initInfo.put("indexOutboxSize", "4096");
+		initInfo.put("indexOutboxRetryDelay", "50");
+		IndexOutboxRelay outboxRelay = startAndGetOutboxRecordIndexerFactory()
+				.getIndexOutboxRelay();
+		try {
+			IndexOutboxConfig config = outboxRelay.getConfig();
+			assertEquals(config.outboxSize, 4096);
+			assertEquals(config.retryDelayMillis, 50);
+			assertEquals(outboxRelay.getOutbox().getSize(), 4096);
+		} finally {
+			outboxRelay.close();
+		}
+	}
+
+	@Test
+	public void testIndexPublishCoalescingIsDoneInIndexOutboxRelay() {
+		initInfo.put("indexOutboxPath", basePath + "index.outbox");
+		initInfo.put("indexPublishCoalesceWindow", "250");
+		initInfo.put("indexPublishBatchSize", "20");
+		IndexOutboxRelay outboxRelay = startAndGetOutboxRecordIndexerFactory()
+				.getIndexOutboxRelay();
+		try {
+			assertTrue(outboxRelay.getRecordIndexerFactory() instanceof AlvinRecordIndexerFactory);
+			IndexOutboxConfig config = outboxRelay.getConfig();
+			assertEquals(config.coalesceWindowMillis, 250);
+			assertEquals(config.batchSize, 20);
+		} finally {
+			outboxRelay.close();
+		}
+	}
+
+	@Test
+	public void testIndexOutboxRelayIsClosedWithStartedResources() {
+		initInfo.put("indexOutboxPath", basePath + "index.outbox");
+		IndexOutboxRelay outboxRelay = startAndGetOutboxRecordIndexerFactory()
+				.getIndexOutboxRelay();
+		List<AutoCloseable> startedResources = recordStorageOnDiskProvider.getStartedResources();
+		assertEquals(startedResources.size(), 2);
+		assertSame(startedResources.get(1), outboxRelay);
+
+		recordStorageOnDiskProvider.closeStartedResources();
+
+		assertTrue(recordStorageOnDiskProvider.getStartedResources().isEmpty());
+	}
+
+	@Test
+	public void testErrorIfInvalidIndexOutboxSize() {
+		initInfo.put("indexOutboxPath", basePath + "index.outbox");
+		assertCorrectErrorAndLogOnInvalidParameter("indexOutboxSize", "0");
+	}
+
+	@Test
+	public void testErrorIfInvalidIndexPublishCoalesceWindow() {
+		assertCorrectErrorAndLogOnInvalidParameter("indexPublishCoalesceWindow", "0");
+	}
+
+	@Test
+	public void testErrorIfInvalidIndexPublishFullQueuePolicy() {
+		initInfo.put("indexPublishCoalesceWindow", "250");
+		assertCorrectErrorAndLogOnInvalidParameter("indexPublishFullQueuePolicy", "wait");
+	}
+
+	@Test
+	public void testErrorIfInvalidIndexPublishFullQueueTimeout() {
+		initInfo.put("indexPublishCoalesceWindow", "250");
+		assertCorrectErrorAndLogOnInvalidParameter("indexPublishFullQueueTimeout", "0");
+	}
+
 	@Test
 	public void testNormalStartupReturnsTheSameRecordStorageForMultipleCalls() {
 		recordStorageOnDiskProvider.startUsingInitInfo(initInfo);
@@ -25,18 +25,30 @@ import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.IndexMessageInfo;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindConfig;
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindWriter;
 import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
 import se.uu.ub.cora.messaging.MessagingInitializationException;
+import se.uu.ub.cora.storage.RecordNotFoundException;
 import se.uu.ub.cora.storage.RecordStorage;
 
 public class AlvinMixedRecordStorageTest {
@@ -48,6 +60,7 @@ public class AlvinMixedRecordStorageTest {
 	private RecordIndexerFactorySpy recordIndexerFactory;
 	private LoggerFactorySpy loggerFactorySpy;
 	private String testedClassName = "AlvinMixedRecordStorage";
+	private Path journalPath;
 
 	@BeforeMethod
 	public void beforeMethod() {
@@ -64,6 +77,13 @@ public class AlvinMixedRecordStorageTest {
 						recordIndexerFactory, indexMessageInfo);
 	}
 
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		if (journalPath != null) {
+			Files.deleteIfExists(journalPath);
+		}
+	}
+
 	@Test
 	public void testInit() {
 		assertNotNull(alvinMixedRecordStorage);
@@ -305,6 +325,55 @@ public class AlvinMixedRecordStorageTest {
 		assertSame(recordIndexerSpy.messageRoutingInfo, messageRoutingInfo);
 	}
 
+	@Test
+	public void updatePlaceTwiceFactorsIndexerOnce() throws Exception {
+		RecordStorageSpyData expectedData = setUpExpectedData();
+		alvinMixedRecordStorage.update(expectedData.type, expectedData.id, expectedData.dataRecord,
+				expectedData.collectedTerms, expectedData.linkList, expectedData.dataDivider);
+		alvinMixedRecordStorage.update(expectedData.type, "someOtherId", expectedData.dataRecord,
+				expectedData.collectedTerms, expectedData.linkList, expectedData.dataDivider);
+
+		assertEquals(recordIndexerFactory.numberOfFactoredIndexers, 1);
+		assertEquals(recordIndexerFactory.factoredRecordIndexer.pid, "someOtherId");
+	}
+
+	@Test
+	public void updateChangedPlaceInChangeDetectingStorageCallsIndexer() throws Exception {
+		ChangeDetectingRecordStorageSpy changeDetectingStorage = setUpChangeDetectingFedoraStorage();
+		RecordStorageSpyData expectedData = setUpExpectedData();
+
+		alvinMixedRecordStorage.update(expectedData.type, expectedData.id, expectedData.dataRecord,
+				expectedData.collectedTerms, expectedData.linkList, expectedData.dataDivider);
+
+		expectedData.calledMethod = "updateIfChanged";
+		assertExpectedDataSameAsInStorageSpy(changeDetectingStorage, expectedData);
+		assertEquals(recordIndexerFactory.factoredRecordIndexer.pid, expectedData.id);
+	}
+
+	private ChangeDetectingRecordStorageSpy setUpChangeDetectingFedoraStorage() {
+		ChangeDetectingRecordStorageSpy changeDetectingStorage = new ChangeDetectingRecordStorageSpy();
+		alvinMixedRecordStorage = AlvinMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndRecordIndexerFactoryAndIndexMessageInfo(
+						basicStorage, changeDetectingStorage, alvinDbToCoraStorage,
+						recordIndexerFactory, indexMessageInfo);
+		return changeDetectingStorage;
+	}
+
+	@Test
+	public void updateUnchangedPlaceInChangeDetectingStorageDoesNotCallIndexer()
+			throws Exception {
+		ChangeDetectingRecordStorageSpy changeDetectingStorage = setUpChangeDetectingFedoraStorage();
+		changeDetectingStorage.changed = false;
+		RecordStorageSpyData expectedData = setUpExpectedData();
+
+		alvinMixedRecordStorage.update(expectedData.type, expectedData.id, expectedData.dataRecord,
+				expectedData.collectedTerms, expectedData.linkList, expectedData.dataDivider);
+
+		expectedData.calledMethod = "updateIfChanged";
+		assertExpectedDataSameAsInStorageSpy(changeDetectingStorage, expectedData);
+		assertNull(recordIndexerFactory.factoredRecordIndexer);
+	}
+
 	@Test
 	public void testErrorWhenSendingIndexMessageToMessageServer() throws Exception {
 		recordIndexerFactory.throwMessageInitializationErrorOnIndex = true;
@@ -553,4 +622,250 @@ public class AlvinMixedRecordStorageTest {
 
 	}
 
+	@Test
+	public void testTotalNumberOfRecordsForPlaceGoesToFedoraStorage() throws Exception {
+		alvinFedoraToCoraStorage.totalNumberOfRectorsForType = 117;
+		DataGroupSpy filter = new DataGroupSpy("filter");
+
+		long total = alvinMixedRecordStorage.getTotalNumberOfRecordsForType("place", filter);
+
+		assertEquals(total, 117);
+		alvinFedoraToCoraStorage.MCR.assertParameters("getTotalNumberOfRecordsForType", 0,
+				"place", filter);
+	}
+
+	@Test
+	public void writeBehindIsOffByDefault() {
+		assertNull(((AlvinMixedRecordStorage) alvinMixedRecordStorage).getWriteBehindWriter());
+	}
+
+	@Test
+	public void updatePlaceWithWriteBehindIsAppliedToFedoraAndIndexed() throws Exception {
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.update("place", "alvin-place:22", createPlace("Uppsala"),
+					new DataGroupSpy("collectedTerms"), null, "alvin");
+
+			waitUntilNumberOfAppliedWrites(writer, 1);
+			RecordStorageSpyData spyData = alvinFedoraToCoraStorage.data;
+			assertEquals(spyData.calledMethod, "update");
+			assertEquals(spyData.type, "place");
+			assertEquals(spyData.id, "alvin-place:22");
+			assertEquals(spyData.dataRecord.getFirstAtomicValueWithNameInData("name"),
+					"Uppsala");
+			assertEquals(spyData.collectedTerms.getNameInData(), "collectedTerms");
+			assertEquals(spyData.dataDivider, "alvin");
+			assertEquals(recordIndexerFactory.factoredRecordIndexer.pid, "alvin-place:22");
+			assertNoInteractionWithStorage(basicStorage);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private WriteBehindWriter setUpMixedRecordStorageWithWriteBehind() throws IOException {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		journalPath = Files.createTempFile("alvinMixedRecordStorage", ".journal");
+		Files.delete(journalPath);
+		WriteBehindConfig writeBehindConfig = new WriteBehindConfig(journalPath.toString(),
+				64 * 1024, 1, 3);
+		alvinMixedRecordStorage = AlvinMixedRecordStorage
+				.usingBasicAndFedoraAndDbStorageAndRecordIndexerFactoryAndIndexMessageInfoAndWriteBehindConfig(
+						basicStorage, alvinFedoraToCoraStorage, alvinDbToCoraStorage,
+						recordIndexerFactory, indexMessageInfo, writeBehindConfig);
+		return ((AlvinMixedRecordStorage) alvinMixedRecordStorage).getWriteBehindWriter();
+	}
+
+	private DataGroup createPlace(String name) {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addChild(new DataAtomicSpy("name", name));
+		return place;
+	}
+
+	private void waitUntilNumberOfAppliedWrites(WriteBehindWriter writer, int numberOfWrites)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (writer.getNumberOfAppliedWrites() < numberOfWrites) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void createPlaceWithWriteBehindIsAppliedToFedora() throws Exception {
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.create("place", "alvin-place:22", createPlace("Uppsala"),
+					new DataGroupSpy("collectedTerms"), new DataGroupSpy("linkList"), "alvin");
+
+			waitUntilNumberOfAppliedWrites(writer, 1);
+			assertEquals(alvinFedoraToCoraStorage.data.calledMethod, "create");
+			assertEquals(alvinFedoraToCoraStorage.data.linkList.getNameInData(), "linkList");
+			assertNull(recordIndexerFactory.factoredRecordIndexer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void replayedCreateOfPlaceAlreadyInFedoraIsTreatedAsApplied() throws Exception {
+		alvinFedoraToCoraStorage = createFedoraStorageRejectingCreates(false);
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.create("place", "alvin-place:22", createPlace("Uppsala"),
+					new DataGroupSpy("collectedTerms"), new DataGroupSpy("linkList"), "alvin");
+
+			waitUntilNumberOfAppliedWrites(writer, 1);
+			assertEquals(writer.getNumberOfRetries(), 0);
+			assertEquals(writer.getNumberOfFailedWrites(), 0);
+			assertEquals(alvinFedoraToCoraStorage.data.calledMethod, "read");
+			assertEquals(alvinFedoraToCoraStorage.data.id, "alvin-place:22");
+			assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(
+					"AlvinMixedRecordStorage", 0),
+					"Place with id: alvin-place:22 already exists in fedora,"
+							+ " treating journaled create as applied");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private RecordStorageSpy createFedoraStorageRejectingCreates(boolean placeIsMissing) {
+		return new RecordStorageSpy() {
+			@Override
+			public void create(String type, String id, DataGroup dataRecord,
+					DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+				throw FedoraException.withMessage("ingesting object in fedora failed,"
+						+ " with response code: 500");
+			}
+
+			@Override
+			public DataGroup read(String type, String id) {
+				if (placeIsMissing) {
+					throw new RecordNotFoundException("Record not found for id: " + id);
+				}
+				return super.read(type, id);
+			}
+		};
+	}
+
+	@Test
+	public void failedCreateOfPlaceNotInFedoraIsRetried() throws Exception {
+		alvinFedoraToCoraStorage = createFedoraStorageRejectingCreates(true);
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.create("place", "alvin-place:22", createPlace("Uppsala"),
+					new DataGroupSpy("collectedTerms"), new DataGroupSpy("linkList"), "alvin");
+
+			long deadline = System.currentTimeMillis() + 10000;
+			while (writer.getNumberOfFailedWrites() < 1) {
+				assertTrue(System.currentTimeMillis() < deadline);
+				Thread.sleep(5);
+			}
+			assertEquals(writer.getNumberOfAppliedWrites(), 0);
+			assertEquals(writer.getNumberOfRetries(), 2);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void deletePlaceWithWriteBehindIsAppliedToFedora() throws Exception {
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.deleteByTypeAndId("place", "alvin-place:22");
+
+			waitUntilNumberOfAppliedWrites(writer, 1);
+			assertEquals(alvinFedoraToCoraStorage.data.calledMethod, "deleteByTypeAndId");
+			assertEquals(alvinFedoraToCoraStorage.data.id, "alvin-place:22");
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void readPlaceWithPendingWriteReturnsPendingPlace() throws Exception {
+		CountDownLatch fedoraWriteAllowed = new CountDownLatch(1);
+		alvinFedoraToCoraStorage = createFedoraStorageBlockingUpdatesUntil(fedoraWriteAllowed);
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.update("place", "alvin-place:22", createPlace("Uppsala"),
+					new DataGroupSpy("collectedTerms"), null, "alvin");
+
+			DataGroup pendingPlace = alvinMixedRecordStorage.read("place", "alvin-place:22");
+
+			assertEquals(pendingPlace.getFirstAtomicValueWithNameInData("name"), "Uppsala");
+			assertNull(alvinFedoraToCoraStorage.data.calledMethod);
+			fedoraWriteAllowed.countDown();
+			waitUntilNumberOfAppliedWrites(writer, 1);
+		} finally {
+			fedoraWriteAllowed.countDown();
+			writer.close();
+		}
+	}
+
+	private RecordStorageSpy createFedoraStorageBlockingUpdatesUntil(CountDownLatch latch) {
+		return new RecordStorageSpy() {
+			@Override
+			public void update(String type, String id, DataGroup dataRecord,
+					DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+				awaitLatch(latch);
+				super.update(type, id, dataRecord, collectedTerms, linkList, dataDivider);
+			}
+
+			@Override
+			public void deleteByTypeAndId(String type, String id) {
+				awaitLatch(latch);
+				super.deleteByTypeAndId(type, id);
+			}
+		};
+	}
+
+	private void awaitLatch(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class)
+	public void readPlaceWithPendingDeleteIsNotFound() throws Exception {
+		CountDownLatch fedoraWriteAllowed = new CountDownLatch(1);
+		alvinFedoraToCoraStorage = createFedoraStorageBlockingUpdatesUntil(fedoraWriteAllowed);
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.deleteByTypeAndId("place", "alvin-place:22");
+
+			alvinMixedRecordStorage.read("place", "alvin-place:22");
+		} finally {
+			fedoraWriteAllowed.countDown();
+			writer.close();
+		}
+	}
+
+	@Test
+	public void readPlaceWithoutPendingWriteGoesToFedoraStorage() throws Exception {
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			DataGroup place = alvinMixedRecordStorage.read("place", "alvin-place:22");
+
+			assertSame(place, alvinFedoraToCoraStorage.data.answer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void updateWithWriteBehindForOtherTypesGoesToBasicStorage() throws Exception {
+		WriteBehindWriter writer = setUpMixedRecordStorageWithWriteBehind();
+		try {
+			alvinMixedRecordStorage.update("someType", "someId", createPlace("Uppsala"),
+					new DataGroupSpy("collectedTerms"), null, "alvin");
+
+			assertEquals(basicStorage.data.calledMethod, "update");
+			assertEquals(writer.getNumberOfAcceptedWrites(), 0);
+		} finally {
+			writer.close();
+		}
+	}
 }
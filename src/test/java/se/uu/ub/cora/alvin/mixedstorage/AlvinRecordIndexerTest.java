@@ -19,8 +19,10 @@
 package se.uu.ub.cora.alvin.mixedstorage;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Map;
 
 import org.testng.annotations.BeforeMethod;
@@ -114,6 +116,46 @@ public class AlvinRecordIndexerTest {
 
 	}
 
+	@Test
+	public void testSenderIsReusedBetweenMessages() {
+		indexer.index("someRecordType", "alvin-place:1");
+		indexer.index("someRecordType", "alvin-place:2");
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		MessageSenderSpy messageSenderSpy = messagingFactory.messageSenderSpy;
+		assertEquals(messageSenderSpy.numberOfSentMessages.get(), 2);
+		assertEquals(messageSenderSpy.headersSentToSpy.get("PID"), "alvin-place:2");
+	}
+
+	@Test
+	public void testIndexersSharingMessageSenderPoolShareSender() {
+		MessageSenderPool messageSenderPool = MessageSenderPool.create();
+		AlvinRecordIndexer indexer = new AlvinRecordIndexer(messageRoutingInfo,
+				messageSenderPool);
+		AlvinRecordIndexer otherIndexer = new AlvinRecordIndexer(messageRoutingInfo,
+				messageSenderPool);
+
+		indexer.index("someRecordType", "alvin-place:1");
+		otherIndexer.index("someRecordType", "alvin-place:2");
+
+		assertSame(indexer.getMessageSenderPool(), messageSenderPool);
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		assertEquals(messageSenderPool.getNumberOfFactoredSenders(), 1);
+	}
+
+	@Test
+	public void testIndexBatchSendsOneMessagePerPidUsingOneSender() {
+		indexer.indexBatch("someRecordType", List.of("alvin-place:1", "alvin-place:2"));
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		MessageSenderSpy messageSenderSpy = messagingFactory.messageSenderSpy;
+		assertEquals(messageSenderSpy.sentMessages.size(), 2);
+		assertEquals(messageSenderSpy.sentMessages.get(0), messageForCreateForSomeRecordType);
+		assertEquals(messageSenderSpy.sentMessages.get(1),
+				messageForCreateForSomeRecordType.replace("alvin-place:1", "alvin-place:2"));
+		assertEquals(messageSenderSpy.headersSentToSpy.get("PID"), "alvin-place:2");
+	}
+
 	@Test
 	public void testGetMessageRoutingInfo() {
 		AmqpMessageRoutingInfo requestedMessageRoutingInfo = (AmqpMessageRoutingInfo) indexer
@@ -0,0 +1,16 @@
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import se.uu.ub.cora.data.DataGroup;
+
+public class ChangeDetectingRecordStorageSpy extends RecordStorageSpy
+		implements ChangeDetectingStorage {
+	public boolean changed = true;
+
+	@Override
+	public boolean updateIfChanged(String type, String id, DataGroup dataRecord,
+			DataGroup collectedTerms, DataGroup linkList, String dataDivider) {
+		update(type, id, dataRecord, collectedTerms, linkList, dataDivider);
+		data.calledMethod = "updateIfChanged";
+		return changed;
+	}
+}
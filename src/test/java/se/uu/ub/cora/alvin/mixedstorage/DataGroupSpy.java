@@ -21,6 +21,7 @@ package se.uu.ub.cora.alvin.mixedstorage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -149,7 +150,7 @@ public class DataGroupSpy implements DataGroup {
 
 	@Override
 	public Set<DataAttribute> getAttributes() {
-		return (Set<DataAttribute>) addedAttributes.values();
+		return new HashSet<>(addedAttributes.values());
 	}
 
 	@Override
@@ -169,6 +170,7 @@ public class DataGroupSpy implements DataGroup {
 		for (DataElement dataElement : getChildren()) {
 			if (dataElementsNameInDataIs(dataElement, childNameInData)) {
 				getChildren().remove(dataElement);
+				return true;
 			}
 		}
 		return true;
@@ -34,8 +34,7 @@ public class HttpHandlerSpy implements HttpHandler {
 	public Map<String, String> requestProperties = new HashMap<String, String>();
 	public List<String> outputStrings = new ArrayList<String>();
 	public boolean responseCodeWasRequested = false;
-	public String username;
-	public String password;
+	public boolean basicAuthorizationWasSet = false;
 
 	@Override
 	public void setRequestMethod(String requestMetod) {
@@ -85,8 +84,7 @@ public class HttpHandlerSpy implements HttpHandler {
 
 	@Override
 	public void setBasicAuthorization(String username, String password) {
-		this.username = username;
-		this.password = password;
+		basicAuthorizationWasSet = true;
 		// TODO Auto-generated method stub
 
 	}
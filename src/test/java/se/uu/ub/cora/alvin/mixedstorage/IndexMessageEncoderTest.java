@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+public class IndexMessageEncoderTest {
+
+	@Test
+	public void testEncodeUpdateMessage() {
+		IndexMessageEncoder encoder = IndexMessageEncoder.forAction("UPDATE");
+		String message = encoder.encode("someId", "alvin.updates.someType");
+		assertEquals(message,
+				"{\"headers\":{\"ACTION\":\"UPDATE\",\"PID\":\"someId\"},\"action\":\"UPDATE\","
+						+ "\"pid\":\"someId\",\"routingKey\":\"alvin.updates.someType\"}");
+	}
+
+	private static final String[] VALUES = { "alvin-place:1", "alvin-place:123456789", "",
+			"with \"quotes\"", "back\\slash", "</script>", "a/b",
+			"tab\tnewline\nreturn\rformfeed\fbackspace\b", "control\u0001\u001f",
+			"latin\u0080\u009f\u00a0\u00e5\u00e4\u00f6",
+			"punctuation\u2000\u2028\u2029\u20ac\u2100", "emoji\ud83d\ude00",
+			createLongPid() };
+
+	private static String createLongPid() {
+		StringBuilder pid = new StringBuilder("alvin-place:");
+		for (int i = 0; i < 5000; i++) {
+			pid.append(i % 10);
+		}
+		return pid.toString();
+	}
+
+	@Test
+	public void testEncodedPidIsSameAsFromIndexMessageCreator() {
+		IndexMessageEncoder encoder = IndexMessageEncoder.forAction("UPDATE");
+		for (String pid : VALUES) {
+			String expected = IndexMessageCreator.usingId(pid)
+					.createMessage("alvin.updates.place", "UPDATE");
+
+			String message = encoder.encode(pid, "alvin.updates.place");
+
+			assertEquals(message.getBytes(StandardCharsets.UTF_8),
+					expected.getBytes(StandardCharsets.UTF_8), pid);
+		}
+	}
+
+	@Test
+	public void testEncodedRoutingKeyIsSameAsFromIndexMessageCreator() {
+		IndexMessageEncoder encoder = IndexMessageEncoder.forAction("UPDATE");
+		for (String routingKey : VALUES) {
+			String expected = IndexMessageCreator.usingId("alvin-place:1")
+					.createMessage(routingKey, "UPDATE");
+
+			String message = encoder.encode("alvin-place:1", routingKey);
+
+			assertEquals(message.getBytes(StandardCharsets.UTF_8),
+					expected.getBytes(StandardCharsets.UTF_8), routingKey);
+		}
+	}
+
+	@Test
+	public void testOtherActionIsSameAsFromIndexMessageCreator() {
+		IndexMessageEncoder encoder = IndexMessageEncoder.forAction("DELETE \"now\"");
+		String expected = IndexMessageCreator.usingId("alvin-place:1")
+				.createMessage("alvin.updates.place", "DELETE \"now\"");
+
+		assertEquals(encoder.encode("alvin-place:1", "alvin.updates.place"), expected);
+	}
+
+	@Test
+	public void testBufferIsReusedBetweenMessages() {
+		IndexMessageEncoder encoder = IndexMessageEncoder.forAction("UPDATE");
+		encoder.encode(createLongPid(), "alvin.updates.place");
+		String message = encoder.encode("alvin-place:2", "alvin.updates.place");
+
+		assertEquals(message, IndexMessageCreator.usingId("alvin-place:2")
+				.createMessage("alvin.updates.place", "UPDATE"));
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class IndexMessageEncodingBenchmark {
+	private static final String ROUTING_KEY = "alvin.updates.place";
+	private final IndexMessageEncoder encoder = IndexMessageEncoder.forAction("UPDATE");
+	private int pidCounter = 0;
+
+	private String nextPid() {
+		pidCounter++;
+		return "alvin-place:" + pidCounter;
+	}
+
+	@Benchmark
+	public void indexMessageCreator(Blackhole blackhole) {
+		String pid = nextPid();
+		Map<String, Object> headers = new HashMap<>();
+		headers.put("__TypeId__", "epc.messaging.amqp.EPCFedoraMessage");
+		headers.put("ACTION", "UPDATE");
+		headers.put("PID", pid);
+		headers.put("messageSentFrom", "Cora");
+		blackhole.consume(headers);
+		blackhole.consume(IndexMessageCreator.usingId(pid).createMessage(ROUTING_KEY, "UPDATE"));
+	}
+
+	@Benchmark
+	public void indexMessageEncoder(Blackhole blackhole) {
+		String pid = nextPid();
+		blackhole.consume(IndexMessageHeaders.usingPid(pid));
+		blackhole.consume(encoder.encode(pid, ROUTING_KEY));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(IndexMessageEncodingBenchmark.class.getSimpleName())
+				.addProfiler("gc").build()).run();
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class IndexMessageHeadersTest {
+
+	@Test
+	public void testHeadersContainTemplateAndPid() {
+		Map<String, Object> headers = IndexMessageHeaders.usingPid("alvin-place:1");
+
+		assertEquals(headers.size(), 4);
+		assertEquals(headers.get("__TypeId__"), "epc.messaging.amqp.EPCFedoraMessage");
+		assertEquals(headers.get("ACTION"), "UPDATE");
+		assertEquals(headers.get("PID"), "alvin-place:1");
+		assertEquals(headers.get("messageSentFrom"), "Cora");
+		assertNull(headers.get("other"));
+		assertTrue(headers.containsKey("PID"));
+		assertFalse(headers.containsKey("other"));
+	}
+
+	@Test
+	public void testHeadersAreEqualToMutableHeaders() {
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("__TypeId__", "epc.messaging.amqp.EPCFedoraMessage");
+		expected.put("ACTION", "UPDATE");
+		expected.put("PID", "alvin-place:1");
+		expected.put("messageSentFrom", "Cora");
+
+		Map<String, Object> headers = IndexMessageHeaders.usingPid("alvin-place:1");
+
+		assertEquals(headers, expected);
+		assertEquals(new HashMap<>(headers), expected);
+		assertEquals(headers.hashCode(), expected.hashCode());
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testHeadersCanNotBeChanged() {
+		IndexMessageHeaders.usingPid("alvin-place:1").put("PID", "alvin-place:2");
+	}
+}
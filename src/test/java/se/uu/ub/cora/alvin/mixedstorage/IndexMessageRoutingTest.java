@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public class IndexMessageRoutingTest {
+
+	@Test(expectedExceptions = InvocationTargetException.class)
+	public void testPrivateConstructor() throws Exception {
+		Constructor<IndexMessageRouting> constructor = IndexMessageRouting.class
+				.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructor.newInstance();
+	}
+
+	@Test
+	public void testCreateRoutingInfo() {
+		AmqpMessageRoutingInfo routingInfo = IndexMessageRouting
+				.createRoutingInfoUsingHostnameAndPortAndType("messaging.alvin-portal.org",
+						"5672", "place");
+		assertEquals(routingInfo.hostname, "messaging.alvin-portal.org");
+		assertEquals(routingInfo.port, "5672");
+		assertEquals(routingInfo.virtualHost, "alvin");
+		assertEquals(routingInfo.exchange, "index");
+		assertEquals(routingInfo.routingKey, "alvin.updates.place");
+	}
+
+	@Test
+	public void testRoutingKeyForType() {
+		assertEquals(IndexMessageRouting.getRoutingKeyForType("person"), "alvin.updates.person");
+	}
+}
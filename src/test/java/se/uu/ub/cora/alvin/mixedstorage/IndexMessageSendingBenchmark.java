@@ -0,0 +1,232 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingFactory;
+import se.uu.ub.cora.messaging.MessagingProvider;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class IndexMessageSendingBenchmark {
+	private StandInBroker broker;
+	private StandInMessagingFactory messagingFactory;
+	private AmqpMessageRoutingInfo routingInfo;
+	private AlvinRecordIndexerFactory pooledIndexerFactory;
+	private RecordIndexer pooledIndexer;
+	private AtomicInteger pidCounter = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
+		broker = new StandInBroker();
+		messagingFactory = new StandInMessagingFactory(broker.getPort());
+		MessagingProvider.setMessagingFactory(messagingFactory);
+		routingInfo = new AmqpMessageRoutingInfo("localhost", String.valueOf(broker.getPort()),
+				"alvin", "index", "alvin.updates.place");
+		pooledIndexerFactory = new AlvinRecordIndexerFactory();
+		pooledIndexer = pooledIndexerFactory.factor(routingInfo);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		messagingFactory.closeAllSenders();
+		broker.close();
+	}
+
+	@Benchmark
+	public void newSenderPerMessage() {
+		messagingFactory.closeSenderForCurrentThread();
+		RecordIndexer indexer = new AlvinRecordIndexer(routingInfo);
+		indexer.index("place", createPid());
+	}
+
+	private String createPid() {
+		return "alvin-place:" + pidCounter.incrementAndGet();
+	}
+
+	@Benchmark
+	public void pooledSender() {
+		pooledIndexer.index("place", createPid());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(IndexMessageSendingBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	private static final class StandInBroker implements AutoCloseable {
+		private final ServerSocket serverSocket;
+
+		private StandInBroker() throws IOException {
+			serverSocket = new ServerSocket(0, 1000, InetAddress.getLoopbackAddress());
+			startDaemon(this::acceptConnections, "stand-in-broker");
+		}
+
+		private static void startDaemon(Runnable runnable, String name) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		private void acceptConnections() {
+			while (!serverSocket.isClosed()) {
+				try {
+					Socket socket = serverSocket.accept();
+					startDaemon(() -> drainConnection(socket), "stand-in-broker-connection");
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		private void drainConnection(Socket socket) {
+			byte[] buffer = new byte[8192];
+			try (Socket s = socket; InputStream in = s.getInputStream()) {
+				while (in.read(buffer) != -1) {
+					// discard
+				}
+			} catch (IOException e) {
+				// connection closed by sender
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			serverSocket.close();
+		}
+	}
+
+	private static final class StandInMessagingFactory implements MessagingFactory {
+		private final int port;
+		private final List<StandInMessageSender> senders = new CopyOnWriteArrayList<>();
+		private final ThreadLocal<StandInMessageSender> senderForThread = new ThreadLocal<>();
+
+		private StandInMessagingFactory(int port) {
+			this.port = port;
+		}
+
+		@Override
+		public MessageSender factorTopicMessageSender(MessageRoutingInfo messageRoutingInfo) {
+			StandInMessageSender sender = new StandInMessageSender(port);
+			senders.add(sender);
+			senderForThread.set(sender);
+			return sender;
+		}
+
+		private void closeSenderForCurrentThread() {
+			StandInMessageSender sender = senderForThread.get();
+			if (sender != null) {
+				sender.close();
+				senders.remove(sender);
+				senderForThread.remove();
+			}
+		}
+
+		private void closeAllSenders() {
+			senders.forEach(StandInMessageSender::close);
+			senders.clear();
+		}
+
+		@Override
+		public MessageListener factorTopicMessageListener(MessageRoutingInfo messageRoutingInfo) {
+			return null;
+		}
+	}
+
+	private static final class StandInMessageSender implements MessageSender {
+		private final Socket socket;
+		private final OutputStream out;
+
+		private StandInMessageSender(int port) {
+			try {
+				socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				socket.setTcpNoDelay(true);
+				out = socket.getOutputStream();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void sendMessage(Map<String, Object> headers, String message) {
+			try {
+				out.write(headers.toString().getBytes(StandardCharsets.UTF_8));
+				out.write(message.getBytes(StandardCharsets.UTF_8));
+				out.write('\n');
+				out.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.MessageSenderPool.OutgoingMessage;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessagingInitializationException;
+import se.uu.ub.cora.messaging.MessagingProvider;
+
+public class MessageSenderPoolTest {
+	private LoggerFactorySpy loggerFactorySpy;
+	private MessagingFactorySpy messagingFactory;
+	private MessageSenderPool messageSenderPool;
+	private Map<String, Object> headers = new HashMap<>();
+	private String testedClassName = "MessageSenderPool";
+
+	@BeforeMethod
+	public void setUp() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		messagingFactory = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactory);
+		messageSenderPool = MessageSenderPool.create();
+		headers.put("PID", "alvin-place:1");
+	}
+
+	private AmqpMessageRoutingInfo createRoutingInfoUsingRoutingKey(String routingKey) {
+		return new AmqpMessageRoutingInfo("someHostname", "somePort", "someVirtualHost", "index",
+				routingKey);
+	}
+
+	@Test
+	public void testNoSendersBeforeFirstMessage() throws Exception {
+		assertEquals(messageSenderPool.getNumberOfSenders(), 0);
+		assertEquals(messageSenderPool.getNumberOfFactoredSenders(), 0);
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 0);
+	}
+
+	@Test
+	public void testSendMessage() throws Exception {
+		AmqpMessageRoutingInfo routingInfo = createRoutingInfoUsingRoutingKey(
+				"alvin.updates.place");
+
+		messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+
+		assertSame(messagingFactory.messageRoutingInfo, routingInfo);
+		MessageSenderSpy messageSender = messagingFactory.messageSenderSpy;
+		assertEquals(messageSender.messageSentToSpy, "someMessage");
+		assertEquals(messageSender.headersSentToSpy, headers);
+		assertEquals(messageSenderPool.getNumberOfSenders(), 1);
+		assertEquals(messageSenderPool.getNumberOfFactoredSenders(), 1);
+	}
+
+	@Test
+	public void testSenderIsReusedForSameRoutingInfo() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			messageSenderPool.sendMessageUsingRoutingInfo(
+					createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers,
+					"someMessage" + i);
+		}
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		assertEquals(messagingFactory.messageSenderSpy.numberOfSentMessages.get(), 5);
+		assertEquals(messagingFactory.messageSenderSpy.messageSentToSpy, "someMessage4");
+		assertEquals(messageSenderPool.getNumberOfFactoredSenders(), 1);
+	}
+
+	@Test
+	public void testOneSenderPerRoutingKey() throws Exception {
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers, "someMessage");
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.person"), headers, "someMessage");
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers, "someMessage");
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 2);
+		assertEquals(messageSenderPool.getNumberOfSenders(), 2);
+		assertEquals(messagingFactory.factoredMessageSenders.get(0).numberOfSentMessages.get(), 2);
+		assertEquals(messagingFactory.factoredMessageSenders.get(1).numberOfSentMessages.get(), 1);
+	}
+
+	@Test
+	public void testOneSenderPerHostname() throws Exception {
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers, "someMessage");
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				new AmqpMessageRoutingInfo("otherHostname", "somePort", "someVirtualHost",
+						"index", "alvin.updates.place"),
+				headers, "someMessage");
+
+		assertEquals(messageSenderPool.getNumberOfSenders(), 2);
+	}
+
+	@Test
+	public void testOtherRoutingInfoIsPooledPerInstance() throws Exception {
+		MessageRoutingInfo routingInfo = new MessageRoutingInfo() {
+		};
+		messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+		messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+		messageSenderPool.sendMessageUsingRoutingInfo(new MessageRoutingInfo() {
+		}, headers, "someMessage");
+
+		assertEquals(messageSenderPool.getNumberOfSenders(), 2);
+	}
+
+	@Test
+	public void testBrokenSenderIsReplacedAndMessageSentAgain() throws Exception {
+		messagingFactory.numberOfFailingSenders = 1;
+
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers, "someMessage");
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 2);
+		assertEquals(messagingFactory.factoredMessageSenders.get(1).messageSentToSpy,
+				"someMessage");
+		assertEquals(messageSenderPool.getNumberOfReconnects(), 1);
+		assertEquals(messageSenderPool.getNumberOfFactoredSenders(), 2);
+		assertEquals(loggerFactorySpy.getNoOfWarnLogMessagesUsingClassName(testedClassName), 1);
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"Sending message failed, reconnecting: Error from MessageSenderSpy");
+	}
+
+	@Test
+	public void testReplacedSenderIsReused() throws Exception {
+		messagingFactory.numberOfFailingSenders = 1;
+
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers, "someMessage");
+		messageSenderPool.sendMessageUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), headers, "someMessage");
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 2);
+		assertEquals(messagingFactory.factoredMessageSenders.get(1).numberOfSentMessages.get(), 2);
+		assertEquals(messageSenderPool.getNumberOfReconnects(), 1);
+	}
+
+	@Test
+	public void testErrorIsThrownWhenReconnectedSenderAlsoFails() throws Exception {
+		messagingFactory.numberOfFailingSenders = 2;
+		AmqpMessageRoutingInfo routingInfo = createRoutingInfoUsingRoutingKey(
+				"alvin.updates.place");
+		try {
+			messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+			fail("Exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertEquals(e.getMessage(), "Error from MessageSenderSpy");
+		}
+
+		messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 3);
+		assertEquals(messagingFactory.factoredMessageSenders.get(2).numberOfSentMessages.get(), 1);
+	}
+
+	@Test
+	public void testErrorFactoringSenderIsThrownAndFactoringIsRetriedOnNextMessage()
+			throws Exception {
+		messagingFactory.throwErrorOnFactor = true;
+		AmqpMessageRoutingInfo routingInfo = createRoutingInfoUsingRoutingKey(
+				"alvin.updates.place");
+		try {
+			messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+			fail("Exception should have been thrown");
+		} catch (MessagingInitializationException e) {
+			assertEquals(e.getMessage(), "Error from MessagingFactorySpy");
+		}
+		messagingFactory.throwErrorOnFactor = false;
+
+		messageSenderPool.sendMessageUsingRoutingInfo(routingInfo, headers, "someMessage");
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		assertEquals(messageSenderPool.getNumberOfReconnects(), 0);
+	}
+
+	@Test
+	public void testSendMessagesSendsAllMessagesInOrderUsingOneSender() throws Exception {
+		List<OutgoingMessage> messages = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			messages.add(new OutgoingMessage(headers, "someMessage" + i));
+		}
+
+		messageSenderPool.sendMessagesUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), messages);
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		assertEquals(messagingFactory.messageSenderSpy.sentMessages,
+				List.of("someMessage0", "someMessage1", "someMessage2"));
+		assertEquals(messageSenderPool.getNumberOfSenders(), 1);
+	}
+
+	@Test
+	public void testSendMessagesReconnectsAndContinuesWhenSenderBreaks() throws Exception {
+		messagingFactory.numberOfFailingSenders = 1;
+		List<OutgoingMessage> messages = List.of(new OutgoingMessage(headers, "someMessage0"),
+				new OutgoingMessage(headers, "someMessage1"));
+
+		messageSenderPool.sendMessagesUsingRoutingInfo(
+				createRoutingInfoUsingRoutingKey("alvin.updates.place"), messages);
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 2);
+		assertEquals(messagingFactory.factoredMessageSenders.get(1).sentMessages,
+				List.of("someMessage0", "someMessage1"));
+		assertEquals(messageSenderPool.getNumberOfReconnects(), 1);
+	}
+
+	@Test
+	public void testConcurrentSendsShareOneSenderAndAreNotInterleaved() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			futures.add(executor.submit(this::sendOneThousandMessages));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		assertEquals(messagingFactory.factoredMessageSenders.size(), 1);
+		MessageSenderSpy messageSender = messagingFactory.messageSenderSpy;
+		assertEquals(messageSender.numberOfSentMessages.get(), 8000);
+		assertEquals(messageSender.maxSendsInProgress.get(), 1);
+		assertEquals(messageSenderPool.getNumberOfReconnects(), 0);
+	}
+
+	private void sendOneThousandMessages() {
+		for (int i = 0; i < 1000; i++) {
+			messageSenderPool.sendMessageUsingRoutingInfo(
+					createRoutingInfoUsingRoutingKey("alvin.updates.place"), new HashMap<>(),
+					"someMessage");
+		}
+	}
+}
@@ -18,8 +18,12 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import se.uu.ub.cora.messaging.MessageSender;
 
@@ -28,11 +32,23 @@ public class MessageSenderSpy implements MessageSender {
 	public boolean sendMessageWasCalled = false;
 	public String messageSentToSpy;
 	public Map<String, Object> headersSentToSpy = new HashMap<>();
+	public boolean throwErrorOnSend = false;
+	public AtomicInteger numberOfSentMessages = new AtomicInteger();
+	public AtomicInteger sendsInProgress = new AtomicInteger();
+	public AtomicInteger maxSendsInProgress = new AtomicInteger();
+	public List<String> sentMessages = Collections.synchronizedList(new ArrayList<>());
 
 	@Override
 	public void sendMessage(Map<String, Object> headers, String message) {
+		if (throwErrorOnSend) {
+			throw new RuntimeException("Error from MessageSenderSpy");
+		}
+		maxSendsInProgress.accumulateAndGet(sendsInProgress.incrementAndGet(), Math::max);
+		numberOfSentMessages.incrementAndGet();
+		sendsInProgress.decrementAndGet();
 		sendMessageWasCalled = true;
 		messageSentToSpy = message;
+		sentMessages.add(message);
 
 		headersSentToSpy.putAll(headers);
 
@@ -18,22 +18,34 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import se.uu.ub.cora.messaging.MessageListener;
 import se.uu.ub.cora.messaging.MessageRoutingInfo;
 import se.uu.ub.cora.messaging.MessageSender;
 import se.uu.ub.cora.messaging.MessagingFactory;
+import se.uu.ub.cora.messaging.MessagingInitializationException;
 
 public class MessagingFactorySpy implements MessagingFactory {
 
 	public boolean factorMessageSenderWasCalled = false;
 	public MessageSenderSpy messageSenderSpy;
 	public MessageRoutingInfo messageRoutingInfo;
+	public List<MessageSenderSpy> factoredMessageSenders = new ArrayList<>();
+	public int numberOfFailingSenders = 0;
+	public boolean throwErrorOnFactor = false;
 
 	@Override
-	public MessageSender factorTopicMessageSender(MessageRoutingInfo channelInfo) {
+	public synchronized MessageSender factorTopicMessageSender(MessageRoutingInfo channelInfo) {
+		if (throwErrorOnFactor) {
+			throw new MessagingInitializationException("Error from MessagingFactorySpy");
+		}
 		this.messageRoutingInfo = channelInfo;
 		factorMessageSenderWasCalled = true;
 		messageSenderSpy = new MessageSenderSpy();
+		messageSenderSpy.throwErrorOnSend = factoredMessageSenders.size() < numberOfFailingSenders;
+		factoredMessageSenders.add(messageSenderSpy);
 		return messageSenderSpy;
 	}
 
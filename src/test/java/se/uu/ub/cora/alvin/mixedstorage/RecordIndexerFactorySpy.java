@@ -18,22 +18,38 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import se.uu.ub.cora.messaging.MessageRoutingInfo;
 
 public class RecordIndexerFactorySpy implements RecordIndexerFactory {
 
 	public RecordIndexerSpy factoredRecordIndexer;
+	public RecordIndexerSpy recordIndexerToReturn;
 	public MessageRoutingInfo messageRoutingInfo;
+	public List<MessageRoutingInfo> messageRoutingInfos = new ArrayList<>();
 	public boolean throwMessageInitializationErrorOnIndex = false;
 	public boolean throwRuntimeErrorOnIndex = false;
+	public int numberOfFactoredIndexers = 0;
 
 	@Override
-	public RecordIndexer factor(MessageRoutingInfo messageRoutingInfo) {
+	public synchronized RecordIndexer factor(MessageRoutingInfo messageRoutingInfo) {
 		this.messageRoutingInfo = messageRoutingInfo;
+		messageRoutingInfos.add(messageRoutingInfo);
+		numberOfFactoredIndexers++;
+		if (recordIndexerToReturn != null) {
+			factoredRecordIndexer = recordIndexerToReturn;
+			return recordIndexerToReturn;
+		}
 		factoredRecordIndexer = new RecordIndexerSpy(messageRoutingInfo);
 		factoredRecordIndexer.throwMessageInitializationErrorOnIndex = throwMessageInitializationErrorOnIndex;
 		factoredRecordIndexer.throwRuntimeErrorOnIndex = throwRuntimeErrorOnIndex;
 		return factoredRecordIndexer;
 	}
 
+	public synchronized int getNumberOfFactoredIndexers() {
+		return numberOfFactoredIndexers;
+	}
+
 }
@@ -46,4 +46,17 @@ public class RecordIndexerFactoryTest {
 		assertSame(indexer.getMessageRoutingInfo(), messageRoutingInfo);
 
 	}
+
+	@Test
+	public void testFactoredIndexersShareMessageSenderPool() {
+		AlvinRecordIndexerFactory recordIndexFactory = new AlvinRecordIndexerFactory();
+		AlvinRecordIndexer indexer = (AlvinRecordIndexer) recordIndexFactory
+				.factor(messageRoutingInfo);
+		AlvinRecordIndexer otherIndexer = (AlvinRecordIndexer) recordIndexFactory
+				.factor(messageRoutingInfo);
+
+		assertSame(indexer.getMessageSenderPool(), recordIndexFactory.getMessageSenderPool());
+		assertSame(otherIndexer.getMessageSenderPool(),
+				recordIndexFactory.getMessageSenderPool());
+	}
 }
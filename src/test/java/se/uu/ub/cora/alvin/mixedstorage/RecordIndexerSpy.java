@@ -18,6 +18,10 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import se.uu.ub.cora.messaging.MessageRoutingInfo;
 import se.uu.ub.cora.messaging.MessagingInitializationException;
 
@@ -27,7 +31,16 @@ public class RecordIndexerSpy implements RecordIndexer {
 	public String pid;
 	public MessageRoutingInfo messageRoutingInfo;
 	public boolean throwMessageInitializationErrorOnIndex = false;
-	public boolean throwRuntimeErrorOnIndex = false;
+	public volatile boolean throwRuntimeErrorOnIndex = false;
+	public int numberOfRuntimeErrorsToThrow = 0;
+	public CountDownLatch releaseIndex = null;
+	public List<String> indexedTypes = new ArrayList<>();
+	public List<String> indexedPids = new ArrayList<>();
+	public List<List<String>> indexedBatches = new ArrayList<>();
+	public int numberOfIndexCalls = 0;
+
+	public RecordIndexerSpy() {
+	}
 
 	public RecordIndexerSpy(MessageRoutingInfo messageRoutingInfo) {
 		this.messageRoutingInfo = messageRoutingInfo;
@@ -35,15 +48,60 @@ public class RecordIndexerSpy implements RecordIndexer {
 
 	@Override
 	public void index(String type, String pid) {
+		waitForRelease();
+		synchronized (this) {
+			numberOfIndexCalls++;
+			throwErrorIfRequested();
+			this.type = type;
+			this.pid = pid;
+			indexedTypes.add(type);
+			indexedPids.add(pid);
+		}
+	}
+
+	private void waitForRelease() {
+		if (releaseIndex != null) {
+			try {
+				releaseIndex.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void throwErrorIfRequested() {
 		if (throwMessageInitializationErrorOnIndex) {
 			throw new MessagingInitializationException(
 					"MessagingInitialization error from RecordIndexerSpy");
 		}
-		if (throwRuntimeErrorOnIndex) {
+		if (throwRuntimeErrorOnIndex || numberOfRuntimeErrorsToThrow > 0) {
+			numberOfRuntimeErrorsToThrow--;
 			throw new RuntimeException("Runtime error from RecordIndexerSpy");
 		}
-		this.type = type;
-		this.pid = pid;
+	}
+
+	@Override
+	public void indexBatch(String type, List<String> pids) {
+		waitForRelease();
+		synchronized (this) {
+			numberOfIndexCalls++;
+			throwErrorIfRequested();
+			this.type = type;
+			this.pid = pids.get(pids.size() - 1);
+			indexedBatches.add(new ArrayList<>(pids));
+			for (String batchPid : pids) {
+				indexedTypes.add(type);
+				indexedPids.add(batchPid);
+			}
+		}
+	}
+
+	public synchronized int getNumberOfIndexedPids() {
+		return indexedPids.size();
+	}
+
+	public synchronized int getNumberOfIndexCalls() {
+		return numberOfIndexCalls;
 	}
 
 }
@@ -152,7 +152,7 @@ public class RecordStorageSpy implements RecordStorage, SearchStorage {
 	@Override
 	public long getTotalNumberOfRecordsForType(String type, DataGroup filter) {
 		MCR.addCall("type", type, "filter", filter);
-		long total = 0;
+		long total = totalNumberOfRectorsForType;
 		MCR.addReturned(total);
 		return total;
 	}
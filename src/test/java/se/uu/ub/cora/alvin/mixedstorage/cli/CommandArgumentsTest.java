@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+public class CommandArgumentsTest {
+	private String[] args = { "first", "12", "-1", "0", "twelve" };
+
+	@Test
+	public void testDefaultWhenArgumentIsMissing() {
+		assertEquals(CommandArguments.getPositiveIntOrDefault(args, 5, "someName", 7), 7);
+	}
+
+	@Test
+	public void testPositiveNumber() {
+		assertEquals(CommandArguments.getPositiveIntOrDefault(args, 1, "someName", 7), 12);
+	}
+
+	@Test
+	public void testNotPositiveNumbersThrowError() {
+		for (int position = 2; position < args.length; position++) {
+			try {
+				CommandArguments.getPositiveIntOrDefault(args, position, "someName", 7);
+				fail("Expected CommandArgumentException");
+			} catch (CommandArgumentException e) {
+				assertEquals(e.getMessage(),
+						"someName must be a positive number, was: " + args[position]);
+			}
+		}
+	}
+}
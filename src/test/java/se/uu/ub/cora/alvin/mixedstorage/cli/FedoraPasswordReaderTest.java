@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FedoraPasswordReaderTest {
+	private Map<String, String> environment;
+	private Path passwordFile;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		environment = new HashMap<>();
+		passwordFile = Files.createTempFile("fedoraPassword", ".txt");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(passwordFile);
+	}
+
+	@Test
+	public void testPasswordFromEnvironmentVariable() {
+		environment.put("FEDORA_PASSWORD", "someFedoraPassword");
+		environment.put("FEDORA_PASSWORD_FILE", passwordFile.toString());
+
+		assertEquals(FedoraPasswordReader.readPasswordUsingEnvironment(environment),
+				"someFedoraPassword");
+	}
+
+	@Test
+	public void testPasswordFromFileWithoutTrailingLineBreak() throws IOException {
+		Files.write(passwordFile, "some password\r\n".getBytes(StandardCharsets.UTF_8));
+		environment.put("FEDORA_PASSWORD_FILE", passwordFile.toString());
+
+		assertEquals(FedoraPasswordReader.readPasswordUsingEnvironment(environment),
+				"some password");
+	}
+
+	@Test
+	public void testNoPasswordThrowsError() {
+		try {
+			FedoraPasswordReader.readPasswordUsingEnvironment(environment);
+			fail("Expected CommandArgumentException");
+		} catch (CommandArgumentException e) {
+			assertEquals(e.getMessage(),
+					"No fedora password set in FEDORA_PASSWORD or FEDORA_PASSWORD_FILE");
+		}
+	}
+
+	@Test
+	public void testMissingPasswordFileThrowsError() throws IOException {
+		Files.delete(passwordFile);
+		environment.put("FEDORA_PASSWORD_FILE", passwordFile.toString());
+		try {
+			FedoraPasswordReader.readPasswordUsingEnvironment(environment);
+			fail("Expected CommandArgumentException");
+		} catch (CommandArgumentException e) {
+			assertTrue(e.getMessage()
+					.startsWith("Error reading fedora password from " + passwordFile + ": "));
+		}
+	}
+}
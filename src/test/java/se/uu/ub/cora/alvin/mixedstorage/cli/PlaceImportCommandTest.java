@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult.Failure;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportSource;
+
+public class PlaceImportCommandTest {
+	private ByteArrayOutputStream output;
+	private XmlConverterSpy xmlConverter;
+	private Map<String, String> environment;
+	private PlaceImportCommand command;
+	private Path inputDirectory;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		output = new ByteArrayOutputStream();
+		xmlConverter = new XmlConverterSpy();
+		environment = new HashMap<>();
+		command = new PlaceImportCommand(new PrintStream(output, true, "UTF-8"), xmlConverter,
+				environment);
+		inputDirectory = Files.createTempDirectory("placeImport");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(inputDirectory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	@Test
+	public void testWrongNumberOfArgumentsPrintsUsage() throws IOException {
+		int exitCode = command.run(new String[] { "someFedoraUrl" });
+
+		assertEquals(exitCode, 2);
+		assertEquals(output.toString("UTF-8"), String.format("Usage: PlaceImportCommand"
+				+ " fedoraURL fedoraUsername inputDirectory checkpointFile"
+				+ " [pidBlockSize [conversionThreads [maxConcurrentIngests]]]%n"
+				+ "The fedora password is read from the environment variable FEDORA_PASSWORD,"
+				+ " or from the file named in FEDORA_PASSWORD_FILE.%n"));
+	}
+
+	@Test
+	public void testMissingPasswordPrintsMessageAndUsage() throws IOException {
+		int exitCode = command.run(createArguments());
+
+		assertEquals(exitCode, 2);
+		assertTrue(output.toString("UTF-8").startsWith(String.format(
+				"No fedora password set in FEDORA_PASSWORD or FEDORA_PASSWORD_FILE%n"
+						+ "Usage: PlaceImportCommand")));
+	}
+
+	private String[] createArguments(String... optionalArguments) {
+		String[] requiredArguments = { "http://someFedoraUrl/fedora/", "someFedoraUser",
+				inputDirectory.toString(), inputDirectory.resolve("checkpoint").toString() };
+		String[] args = new String[requiredArguments.length + optionalArguments.length];
+		System.arraycopy(requiredArguments, 0, args, 0, requiredArguments.length);
+		System.arraycopy(optionalArguments, 0, args, requiredArguments.length,
+				optionalArguments.length);
+		return args;
+	}
+
+	@Test
+	public void testNotANumberArgumentPrintsMessageAndUsage() throws IOException {
+		environment.put("FEDORA_PASSWORD", "someFedoraPassword");
+
+		int exitCode = command.run(createArguments("10", "many"));
+
+		assertEquals(exitCode, 2);
+		assertTrue(output.toString("UTF-8").startsWith(String.format(
+				"conversionThreads must be a positive number, was: many%n"
+						+ "Usage: PlaceImportCommand")));
+	}
+
+	@Test
+	public void testZeroArgumentPrintsMessageAndUsage() throws IOException {
+		environment.put("FEDORA_PASSWORD", "someFedoraPassword");
+
+		int exitCode = command.run(createArguments("10", "2", "0"));
+
+		assertEquals(exitCode, 2);
+		assertTrue(output.toString("UTF-8").startsWith(String.format(
+				"maxConcurrentIngests must be a positive number, was: 0%n")));
+	}
+
+	@Test
+	public void testPlacesAreReadFromXmlFilesInNameOrderWhenReaderIsCalled() throws IOException {
+		writeFile("b.xml", "<place>b</place>");
+		writeFile("a.xml", "<place>a</place>");
+		writeFile("notAPlace.txt", "some text");
+
+		List<PlaceImportSource> placeSources = command
+				.createPlaceSourcesUsingDirectory(inputDirectory);
+
+		assertEquals(placeSources.size(), 2);
+		assertEquals(placeSources.get(0).name, "a.xml");
+		assertEquals(placeSources.get(1).name, "b.xml");
+		assertTrue(xmlConverter.convertedStrings.isEmpty());
+		assertSame(placeSources.get(0).placeReader.get(),
+				xmlConverter.returnedDataGroups.get(0));
+		assertSame(placeSources.get(1).placeReader.get(),
+				xmlConverter.returnedDataGroups.get(1));
+		assertEquals(xmlConverter.convertedStrings,
+				List.of("<place>a</place>", "<place>b</place>"));
+	}
+
+	private void writeFile(String fileName, String content) throws IOException {
+		Files.write(inputDirectory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testUnreadablePlaceFileThrowsErrorWithFileNameOnlyFromItsReader()
+			throws IOException {
+		writeFile("a.xml", "<place>a</place>");
+		writeFile("b.xml", "<broken>");
+		writeFile("c.xml", "<place>c</place>");
+		xmlConverter.failOnString = "<broken>";
+		List<PlaceImportSource> placeSources = command
+				.createPlaceSourcesUsingDirectory(inputDirectory);
+
+		assertSame(placeSources.get(0).placeReader.get(),
+				xmlConverter.returnedDataGroups.get(0));
+		try {
+			placeSources.get(1).placeReader.get();
+			fail("Expected FedoraException");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(),
+					"Error reading place from b.xml: Error from XmlConverterSpy");
+		}
+		assertSame(placeSources.get(2).placeReader.get(),
+				xmlConverter.returnedDataGroups.get(1));
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error listing places to import in .*")
+	public void testMissingInputDirectory() {
+		command.createPlaceSourcesUsingDirectory(inputDirectory.resolve("missing"));
+	}
+
+	@Test
+	public void testCreateReport() {
+		PlaceImportResult result = new PlaceImportResult(300, 20,
+				List.of(new Failure(4, "someFile.xml", "alvin-place:4", "someMessage")), 1500);
+
+		String report = command.createReport(result);
+
+		assertEquals(report, String.format(
+				"Imported: 300, skipped: 20, failed: 1, time: 1500 ms, 200.0 places/s%n"
+						+ "Failed file: someFile.xml, index: 4, pid: alvin-place:4,"
+						+ " message: someMessage%n"));
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpServerStub;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceReindexResult;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public class PlaceReindexCommandTest {
+	private ByteArrayOutputStream output;
+	private RecordIndexerFactorySpy recordIndexerFactory;
+	private Map<String, String> environment;
+	private PlaceReindexCommand command;
+	private FedoraHttpServerStub fedora;
+	private Path checkpointPath;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
+		output = new ByteArrayOutputStream();
+		recordIndexerFactory = new RecordIndexerFactorySpy();
+		environment = new HashMap<>();
+		environment.put("FEDORA_PASSWORD", "somePass");
+		command = new PlaceReindexCommand(new PrintStream(output, true, "UTF-8"),
+				recordIndexerFactory, environment);
+		fedora = new FedoraHttpServerStub();
+		fedora.responseText = "<result><resultList>"
+				+ "<objectFields><pid>alvin-place:1</pid></objectFields>"
+				+ "</resultList></result>";
+		checkpointPath = Files.createTempFile("placeReindexCheckpoint", ".txt");
+		Files.delete(checkpointPath);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		fedora.close();
+		Files.deleteIfExists(checkpointPath);
+	}
+
+	private String getOutput() {
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testUsageWhenTooFewArguments() {
+		int exitCode = command.run(new String[] { "someFedoraUrl" });
+
+		assertEquals(exitCode, 2);
+		assertTrue(getOutput().startsWith("Usage: PlaceReindexCommand fedoraURL"));
+		assertEquals(recordIndexerFactory.numberOfFactoredIndexers, 0);
+	}
+
+	@Test
+	public void testUsageWhenTooManyArguments() {
+		int exitCode = command.run(new String[] { "1", "2", "3", "4", "5", "6", "7", "8" });
+
+		assertEquals(exitCode, 2);
+	}
+
+	@Test
+	public void testReindexAllPlaces() {
+		int exitCode = command.run(createArguments());
+
+		assertEquals(exitCode, 0);
+		assertEquals(recordIndexerFactory.factoredRecordIndexer.type, "place");
+		assertEquals(recordIndexerFactory.factoredRecordIndexer.pid, "alvin-place:1");
+		assertTrue(getOutput().startsWith("Reindexed: 1, skipped: 0, retries: 0, time: "));
+		assertTrue(fedora.requestLines.get(0).contains("query=state%3DA+pid%7Ealvin-place%3A*"));
+	}
+
+	private String[] createArguments(String... extraArguments) {
+		String[] arguments = new String[] { fedora.getBaseUrl(), "someUser",
+				"messaging.alvin.se", "5672", checkpointPath.toString() };
+		String[] allArguments = new String[arguments.length + extraArguments.length];
+		System.arraycopy(arguments, 0, allArguments, 0, arguments.length);
+		System.arraycopy(extraArguments, 0, allArguments, arguments.length,
+				extraArguments.length);
+		return allArguments;
+	}
+
+	@Test
+	public void testMessageRoutingInfo() {
+		command.run(createArguments());
+
+		AmqpMessageRoutingInfo routingInfo = (AmqpMessageRoutingInfo) recordIndexerFactory.messageRoutingInfo;
+		assertEquals(routingInfo.hostname, "messaging.alvin.se");
+		assertEquals(routingInfo.port, "5672");
+		assertEquals(routingInfo.virtualHost, "alvin");
+		assertEquals(routingInfo.exchange, "index");
+		assertEquals(routingInfo.routingKey, "alvin.updates.place");
+	}
+
+	@Test
+	public void testOptionalRateAndMaxAttempts() {
+		int exitCode = command.run(createArguments("20", "3"));
+
+		assertEquals(exitCode, 0);
+	}
+
+	@Test
+	public void testNonNumericMessagesPerSecondPrintsUsage() {
+		int exitCode = command.run(createArguments("fast"));
+
+		assertEquals(exitCode, 2);
+		assertTrue(getOutput().startsWith(
+				"messagesPerSecond must be a positive number, was: fast" + System.lineSeparator()
+						+ "Usage: PlaceReindexCommand fedoraURL"));
+		assertEquals(recordIndexerFactory.numberOfFactoredIndexers, 0);
+	}
+
+	@Test
+	public void testZeroMessagesPerSecondPrintsUsage() {
+		int exitCode = command.run(createArguments("0"));
+
+		assertEquals(exitCode, 2);
+		assertTrue(getOutput()
+				.startsWith("messagesPerSecond must be a positive number, was: 0"));
+	}
+
+	@Test
+	public void testInvalidMaxAttemptsPrintsUsage() {
+		int exitCode = command.run(createArguments("20", "-1"));
+
+		assertEquals(exitCode, 2);
+		assertTrue(getOutput().startsWith("maxAttempts must be a positive number, was: -1"));
+	}
+
+	@Test
+	public void testMissingPasswordPrintsUsage() {
+		environment.clear();
+
+		int exitCode = command.run(createArguments());
+
+		assertEquals(exitCode, 2);
+		assertEquals(getOutput(), String.format(
+				"No fedora password set in FEDORA_PASSWORD or FEDORA_PASSWORD_FILE%n"
+						+ "Usage: PlaceReindexCommand fedoraURL fedoraUsername"
+						+ " messageServerHostname messageServerPort checkpointFile"
+						+ " [messagesPerSecond [maxAttempts]]%n"
+						+ "The fedora password is read from the environment variable"
+						+ " FEDORA_PASSWORD, or from the file named in FEDORA_PASSWORD_FILE.%n"));
+		assertEquals(recordIndexerFactory.numberOfFactoredIndexers, 0);
+	}
+
+	@Test
+	public void testReindexStoppedWhenSendFails() {
+		recordIndexerFactory.throwRuntimeErrorOnIndex = true;
+
+		int exitCode = command.run(createArguments("1000", "1"));
+
+		assertEquals(exitCode, 1);
+		assertTrue(getOutput().startsWith(
+				"Reindex stopped, rerun to resume: Reindex of places stopped at pid: alvin-place:1"));
+	}
+
+	@Test
+	public void testCreateReport() {
+		PlaceReindexResult result = new PlaceReindexResult(500, 3, 1, 2000);
+
+		assertEquals(command.createReport(result), String.format(
+				"Reindexed: 500, skipped: 3, retries: 1, time: 2000 ms, 250.0 messages/s%n"));
+	}
+}
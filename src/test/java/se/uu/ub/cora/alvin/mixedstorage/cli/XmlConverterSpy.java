@@ -0,0 +1,32 @@
+package se.uu.ub.cora.alvin.mixedstorage.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.converter.Converter;
+import se.uu.ub.cora.data.DataElement;
+
+public class XmlConverterSpy implements Converter {
+
+	public List<String> convertedStrings = new ArrayList<>();
+	public List<DataGroupSpy> returnedDataGroups = new ArrayList<>();
+	public String failOnString = null;
+
+	@Override
+	public DataElement convert(String dataString) {
+		convertedStrings.add(dataString);
+		if (dataString.equals(failOnString)) {
+			throw new RuntimeException("Error from XmlConverterSpy");
+		}
+		DataGroupSpy dataGroup = new DataGroupSpy("authority");
+		returnedDataGroups.add(dataGroup);
+		return dataGroup;
+	}
+
+	@Override
+	public String convert(DataElement dataElement) {
+		return null;
+	}
+
+}
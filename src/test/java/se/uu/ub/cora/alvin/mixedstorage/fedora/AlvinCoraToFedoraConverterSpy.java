@@ -18,6 +18,11 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
 import se.uu.ub.cora.data.DataGroup;
 
 public class AlvinCoraToFedoraConverterSpy implements AlvinCoraToFedoraConverter {
@@ -25,6 +30,8 @@ public class AlvinCoraToFedoraConverterSpy implements AlvinCoraToFedoraConverter
 	public DataGroup dataRecord;
 	public String returnedXML = "<dummy>Dummy xml from AlvinCoraToFedoraConverterSpy</dummy>";
 	public String returnedNewXML = "<dummy>Dummy new xml from AlvinCoraToFedoraConverterSpy</dummy>";
+	public String currentFedoraXML;
+	public String returnedXMLUsingCurrentFedoraXML = "<dummy>Dummy xml from current fedora xml</dummy>";
 
 	@Override
 	public String toXML(DataGroup dataRecord) {
@@ -32,6 +39,18 @@ public class AlvinCoraToFedoraConverterSpy implements AlvinCoraToFedoraConverter
 		return returnedXML;
 	}
 
+	@Override
+	public String toXMLUsingCurrentFedoraXML(DataGroup dataRecord, InputStream currentFedoraXML) {
+		this.dataRecord = dataRecord;
+		try {
+			this.currentFedoraXML = new String(currentFedoraXML.readAllBytes(),
+					StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return returnedXMLUsingCurrentFedoraXML;
+	}
+
 	@Override
 	public String toNewXML(DataGroup dataRecord) {
 		this.dataRecord = dataRecord;
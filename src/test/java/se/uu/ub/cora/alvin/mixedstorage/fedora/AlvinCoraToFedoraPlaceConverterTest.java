@@ -21,6 +21,10 @@ package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
 import static org.testng.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -66,6 +70,21 @@ public class AlvinCoraToFedoraPlaceConverterTest {
 
 	}
 
+	@Test
+	public void testConvertToFedoraXMLUsingCurrentFedoraXML() throws Exception {
+		HttpHandlerFactorySpy httpHandlerFactory = new HttpHandlerFactorySpy();
+		AlvinCoraToFedoraConverter converter = AlvinCoraToFedoraPlaceConverter
+				.usingHttpHandlerFactoryAndFedoraUrl(httpHandlerFactory, "someFedoraURL");
+		DataGroup dataRecord = createPlaceDataGroupUsingPid("alvin-place:679");
+		InputStream currentFedoraXML = new ByteArrayInputStream(ResourceReader
+				.readResourceAsString("place/679.xml").getBytes(StandardCharsets.UTF_8));
+
+		String xml = converter.toXMLUsingCurrentFedoraXML(dataRecord, currentFedoraXML);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 0);
+		assertEquals(xml, ResourceReader.readResourceAsString("place/expectedUpdated679.xml"));
+	}
+
 	private DataGroup createPlaceDataGroupUsingPid(String id) {
 		DataGroup dataRecord = new DataGroupSpy("authority");
 		dataRecord.addAttributeByIdWithValue("type", "place");
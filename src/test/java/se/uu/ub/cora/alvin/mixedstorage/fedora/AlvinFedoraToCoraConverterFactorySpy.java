@@ -27,6 +27,7 @@ public class AlvinFedoraToCoraConverterFactorySpy implements AlvinFedoraConverte
 	List<String> factoredToCoraTypes = new ArrayList<>();
 	List<AlvinCoraToFedoraConverter> factoredToFedoraConverters = new ArrayList<>();
 	List<String> factoredToFedoraTypes = new ArrayList<>();
+	String returnedXMLFromToFedoraConverters;
 
 	@Override
 	public AlvinFedoraToCoraConverter factorToCoraConverter(String type) {
@@ -39,7 +40,11 @@ public class AlvinFedoraToCoraConverterFactorySpy implements AlvinFedoraConverte
 	@Override
 	public AlvinCoraToFedoraConverter factorToFedoraConverter(String type) {
 		factoredToFedoraTypes.add(type);
-		AlvinCoraToFedoraConverter converter = new AlvinCoraToFedoraConverterSpy();
+		AlvinCoraToFedoraConverterSpy converter = new AlvinCoraToFedoraConverterSpy();
+		if (returnedXMLFromToFedoraConverters != null) {
+			converter.returnedXML = returnedXMLFromToFedoraConverters;
+			converter.returnedXMLUsingCurrentFedoraXML = returnedXMLFromToFedoraConverters;
+		}
 		factoredToFedoraConverters.add(converter);
 		return converter;
 	}
@@ -19,6 +19,7 @@
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import org.testng.annotations.BeforeMethod;
@@ -71,6 +72,29 @@ public class AlvinFedoraToCoraConverterFactoryTest {
 		assertEquals(converter.getFedorURL(), fedoraURL);
 	}
 
+	@Test
+	public void testFactorToFedoraForPlaceReusesHttpHandlerFactory() throws Exception {
+		AlvinCoraToFedoraPlaceConverter converter = (AlvinCoraToFedoraPlaceConverter) alvinToCoraConverterFactoryImp
+				.factorToFedoraConverter("place");
+		AlvinCoraToFedoraPlaceConverter converter2 = (AlvinCoraToFedoraPlaceConverter) alvinToCoraConverterFactoryImp
+				.factorToFedoraConverter("place");
+		assertSame(converter.getHttpHandlerFactory(), converter2.getHttpHandlerFactory());
+		assertSame(converter.getHttpHandlerFactory(),
+				alvinToCoraConverterFactoryImp.getHttpHandlerFactory());
+	}
+
+	@Test
+	public void testFactorToFedoraUsingHttpHandlerFactory() throws Exception {
+		HttpHandlerFactorySpy httpHandlerFactory = new HttpHandlerFactorySpy();
+		AlvinFedoraToCoraConverterFactoryImp converterFactory = AlvinFedoraToCoraConverterFactoryImp
+				.usingFedoraURLAndHttpHandlerFactory(fedoraURL, httpHandlerFactory);
+		AlvinCoraToFedoraPlaceConverter converter = (AlvinCoraToFedoraPlaceConverter) converterFactory
+				.factorToFedoraConverter("place");
+		assertSame(converter.getHttpHandlerFactory(), httpHandlerFactory);
+		assertEquals(converter.getFedorURL(), fedoraURL);
+		assertEquals(converterFactory.getFedoraURL(), fedoraURL);
+	}
+
 	@Test
 	public void testGetFedoraURLNeededForTests() throws Exception {
 		assertEquals(alvinToCoraConverterFactoryImp.getFedoraURL(), fedoraURL);
@@ -1,5 +1,11 @@
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
 import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
 import se.uu.ub.cora.data.DataGroup;
 
@@ -12,7 +18,17 @@ public class AlvinFedoraToCoraConverterSpy implements AlvinFedoraToCoraConverter
 	public DataGroup fromXML(String xml) {
 		this.xml = xml;
 		convertedDataGroup = new DataGroupSpy("Converted xml");
+		convertedDataGroup.addChild(new DataAtomicSpy("xml", xml));
 		return convertedDataGroup;
 	}
 
+	@Override
+	public DataGroup fromXML(InputStream xml) {
+		try {
+			return fromXML(new String(xml.readAllBytes(), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 }
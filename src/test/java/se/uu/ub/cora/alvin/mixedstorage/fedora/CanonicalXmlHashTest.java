@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+
+public class CanonicalXmlHashTest {
+	private static final String PLACE_XML = "<place id=\"1\" type=\"city\">"
+			+ "<name lang=\"sv\">Uppsala</name><name lang=\"en\">Uppsala</name></place>";
+
+	@Test
+	public void testPrivateConstructor() throws Exception {
+		Constructor<CanonicalXmlHash> constructor = CanonicalXmlHash.class
+				.getDeclaredConstructor();
+		assertTrue(Modifier.isPrivate(constructor.getModifiers()));
+	}
+
+	@Test(expectedExceptions = InvocationTargetException.class)
+	public void testPrivateConstructorInvoke() throws Exception {
+		Constructor<CanonicalXmlHash> constructor = CanonicalXmlHash.class
+				.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructor.newInstance();
+	}
+
+	@Test
+	public void testHashIsSha256() throws Exception {
+		assertEquals(CanonicalXmlHash.hashXML(PLACE_XML).length, 32);
+	}
+
+	@Test
+	public void testSameXMLGivesSameHash() throws Exception {
+		assertSameHash(PLACE_XML, PLACE_XML);
+	}
+
+	private void assertSameHash(String xml, String otherXML) {
+		assertTrue(Arrays.equals(CanonicalXmlHash.hashXML(xml),
+				CanonicalXmlHash.hashXML(otherXML)));
+	}
+
+	private void assertDifferentHash(String xml, String otherXML) {
+		assertFalse(Arrays.equals(CanonicalXmlHash.hashXML(xml),
+				CanonicalXmlHash.hashXML(otherXML)));
+	}
+
+	@Test
+	public void testXMLDeclarationAndIndentationIsIgnored() throws Exception {
+		assertSameHash(PLACE_XML,
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<place id=\"1\" type=\"city\">\n"
+						+ "\t<name lang=\"sv\">Uppsala</name>\n"
+						+ "\t<name lang=\"en\">Uppsala</name>\n</place>\n");
+	}
+
+	@Test
+	public void testAttributeOrderAndQuotesAreIgnored() throws Exception {
+		assertSameHash(PLACE_XML, "<place type='city'  id='1'>"
+				+ "<name lang='sv'>Uppsala</name><name lang='en'>Uppsala</name></place>");
+	}
+
+	@Test
+	public void testCommentsAndEmptyElementFormAreIgnored() throws Exception {
+		assertSameHash("<place><!-- some comment --><note></note></place>",
+				"<place><note/></place>");
+	}
+
+	@Test
+	public void testEntitiesAndCDataAreReadAsText() throws Exception {
+		assertSameHash("<name>Åre &amp; Östersund</name>",
+				"<name><![CDATA[Åre & Östersund]]></name>");
+	}
+
+	@Test
+	public void testNamespacePrefixIsIgnored() throws Exception {
+		assertSameHash("<a:place xmlns:a=\"http://some.ns\">Uppsala</a:place>",
+				"<b:place xmlns:b=\"http://some.ns\">Uppsala</b:place>");
+	}
+
+	@Test
+	public void testDifferentNamespaceGivesDifferentHash() throws Exception {
+		assertDifferentHash("<a:place xmlns:a=\"http://some.ns\">Uppsala</a:place>",
+				"<a:place xmlns:a=\"http://other.ns\">Uppsala</a:place>");
+	}
+
+	@Test
+	public void testChangedTextGivesDifferentHash() throws Exception {
+		assertDifferentHash(PLACE_XML, PLACE_XML.replace(">Uppsala<", ">Upsala<"));
+	}
+
+	@Test
+	public void testWhitespaceInTextIsKept() throws Exception {
+		assertDifferentHash("<name>Uppsala</name>", "<name>Uppsala </name>");
+	}
+
+	@Test
+	public void testChangedAttributeGivesDifferentHash() throws Exception {
+		assertDifferentHash(PLACE_XML, PLACE_XML.replace("type=\"city\"", "type=\"town\""));
+	}
+
+	@Test
+	public void testChangedElementOrderGivesDifferentHash() throws Exception {
+		assertDifferentHash(PLACE_XML, "<place id=\"1\" type=\"city\">"
+				+ "<name lang=\"en\">Uppsala</name><name lang=\"sv\">Uppsala</name></place>");
+	}
+
+	@Test
+	public void testMovedTextGivesDifferentHash() throws Exception {
+		assertDifferentHash("<place><a>x</a><b/></place>", "<place><a/><b>x</b></place>");
+	}
+
+	@Test
+	public void testTextAndAttributeWithSameValueGiveDifferentHash() throws Exception {
+		assertDifferentHash("<place a=\"x\"/>", "<place><a>x</a></place>");
+	}
+
+	@Test
+	public void testHashOfStreamIsSameAsHashOfString() throws Exception {
+		byte[] hashOfStream = CanonicalXmlHash.hashXMLStream(
+				new ByteArrayInputStream(PLACE_XML.getBytes(StandardCharsets.UTF_8)));
+		assertTrue(Arrays.equals(hashOfStream, CanonicalXmlHash.hashXML(PLACE_XML)));
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testBrokenXMLThrowsParseException() throws Exception {
+		CanonicalXmlHash.hashXML("<someTag></notSameTag>");
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testTextThatIsNotXMLThrowsParseException() throws Exception {
+		CanonicalXmlHash.hashXML("Dummy response text");
+	}
+}
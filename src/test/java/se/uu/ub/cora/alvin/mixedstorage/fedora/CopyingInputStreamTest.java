@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CopyingInputStreamTest {
+	private CloseCountingInputStream source;
+	private CopyingInputStream copyingStream;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		source = new CloseCountingInputStream("<place>some text</place>");
+		copyingStream = new CopyingInputStream(source);
+	}
+
+	@Test
+	public void testNothingCopiedBeforeRead() {
+		assertEquals(copyingStream.getCopy().length, 0);
+		assertFalse(copyingStream.markSupported());
+	}
+
+	@Test
+	public void testSingleByteReadsAreCopied() throws Exception {
+		assertEquals(copyingStream.read(), '<');
+		assertEquals(copyingStream.read(), 'p');
+
+		assertEquals(getCopyAsString(), "<p");
+	}
+
+	@Test
+	public void testBufferReadsAreCopied() throws Exception {
+		byte[] buffer = new byte[10];
+		int read = copyingStream.read(buffer, 2, 5);
+
+		assertEquals(read, 5);
+		assertEquals(getCopyAsString(), "<plac");
+	}
+
+	@Test
+	public void testReadAllIsCopied() throws Exception {
+		copyingStream.readAllBytes();
+
+		assertEquals(getCopyAsString(), "<place>some text</place>");
+		assertEquals(copyingStream.read(), -1);
+		assertEquals(getCopyAsString(), "<place>some text</place>");
+	}
+
+	@Test
+	public void testSkippedBytesAreCopied() throws Exception {
+		assertEquals(copyingStream.skip(7), 7);
+		assertEquals(copyingStream.skip(0), 0);
+		assertEquals(copyingStream.skip(-1), 0);
+
+		assertEquals(getCopyAsString(), "<place>");
+	}
+
+	@Test
+	public void testCloseReadsRestIntoCopy() throws Exception {
+		copyingStream.read(new byte[3]);
+		copyingStream.close();
+
+		assertEquals(getCopyAsString(), "<place>some text</place>");
+		assertEquals(source.closeCount, 1);
+	}
+
+	@Test
+	public void testCloseTwiceClosesSourceOnce() throws Exception {
+		copyingStream.close();
+		copyingStream.close();
+
+		assertEquals(source.closeCount, 1);
+	}
+
+	private String getCopyAsString() {
+		return new String(copyingStream.getCopy(), StandardCharsets.UTF_8);
+	}
+
+	private static class CloseCountingInputStream extends ByteArrayInputStream {
+		int closeCount = 0;
+
+		CloseCountingInputStream(String text) {
+			super(text.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public void close() throws IOException {
+			closeCount++;
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+public class DataGroupCopierTest {
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+	}
+
+	@Test
+	public void testCopyDataGroup() {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addAttributeByIdWithValue("type", "place");
+		DataGroup name = new DataGroupSpy("name");
+		name.setRepeatId("0");
+		DataAtomic value = new DataAtomicSpy("value", "Uppsala");
+		value.setRepeatId("1");
+		name.addChild(value);
+		place.addChild(name);
+		place.addChild(new DataAtomicSpy("id", "alvin-place:22"));
+
+		DataGroup copy = DataGroupCopier.copyDataGroup(place);
+
+		assertNotSame(copy, place);
+		assertEquals(copy.getNameInData(), "authority");
+		assertNull(copy.getRepeatId());
+		assertEquals(copy.getAttribute("type").getValue(), "place");
+		assertEquals(copy.getChildren().size(), 2);
+		DataGroup copiedName = copy.getFirstGroupWithNameInData("name");
+		assertNotSame(copiedName, name);
+		assertEquals(copiedName.getRepeatId(), "0");
+		DataAtomic copiedValue = (DataAtomic) copiedName.getChildren().get(0);
+		assertNotSame(copiedValue, value);
+		assertEquals(copiedValue.getValue(), "Uppsala");
+		assertEquals(copiedValue.getRepeatId(), "1");
+		assertEquals(copy.getFirstAtomicValueWithNameInData("id"), "alvin-place:22");
+	}
+
+	@Test
+	public void testChangingCopyDoesNotChangeOriginal() {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addChild(new DataAtomicSpy("id", "alvin-place:22"));
+
+		DataGroup copy = DataGroupCopier.copyDataGroup(place);
+		copy.addChild(new DataAtomicSpy("extra", "value"));
+
+		assertEquals(place.getChildren().size(), 1);
+	}
+}
@@ -22,6 +22,8 @@ import static org.testng.Assert.assertEquals;
 
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig.CreateMode;
+
 public class FedoraConfigTest {
 
 	@Test
@@ -33,6 +35,18 @@ public class FedoraConfigTest {
 		assertEquals(fedoraConfig.userName, userName);
 		assertEquals(fedoraConfig.password, password);
 		assertEquals(fedoraConfig.baseUrl, baseUrl);
+		assertEquals(fedoraConfig.createMode, CreateMode.INGEST);
+		assertEquals(fedoraConfig.createMode, FedoraConfig.DEFAULT_CREATE_MODE);
+	}
+
+	@Test
+	public void testFedoraConfigWithCreateMode() {
+		FedoraConfig fedoraConfig = new FedoraConfig("someUserName", "somePassword",
+				"someBaseUrl", CreateMode.MULTI_CALL);
+		assertEquals(fedoraConfig.userName, "someUserName");
+		assertEquals(fedoraConfig.password, "somePassword");
+		assertEquals(fedoraConfig.baseUrl, "someBaseUrl");
+		assertEquals(fedoraConfig.createMode, CreateMode.MULTI_CALL);
 	}
 
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+
+public class FedoraFindObjectsParserTest {
+	private List<FedoraObjectFields> parsedObjects;
+	private FedoraFindObjectsParser parser;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		parsedObjects = new ArrayList<>();
+		parser = FedoraFindObjectsParser.usingObjectFieldsConsumer(parsedObjects::add);
+	}
+
+	@Test
+	public void testParsePidsOnly() {
+		parser.parse(new StringReader("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n"
+				+ "  <resultList>\n" + "  <objectFields>\n" + "      <pid>alvin-place:22</pid>\n"
+				+ "  </objectFields>\n" + "  <objectFields>\n"
+				+ "      <pid>alvin-place:24</pid>\n" + "  </objectFields>\n"
+				+ "  </resultList>\n" + "</result>"));
+
+		assertEquals(parsedObjects.size(), 2);
+		assertEquals(parsedObjects.get(0).pid, "alvin-place:22");
+		assertEquals(parsedObjects.get(0).label, "");
+		assertEquals(parsedObjects.get(0).lastModifiedDate, "");
+		assertEquals(parsedObjects.get(1).pid, "alvin-place:24");
+		assertEquals(parser.getSessionToken(), "");
+		assertEquals(parser.getCompleteListSize(), "");
+	}
+
+	@Test
+	public void testParseLabelMDateAndListSession() {
+		parser.parse(new StringReader("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n"
+				+ "  <listSession>\n" + "    <token>someToken</token>\n"
+				+ "    <cursor>0</cursor>\n" + "    <completeListSize>250</completeListSize>\n"
+				+ "    <expirationDate>2019-03-01T10:00:00.000Z</expirationDate>\n"
+				+ "  </listSession>\n" + "  <resultList>\n" + "  <objectFields>\n"
+				+ "      <pid>alvin-place:22</pid>\n" + "      <label>Uppsala &amp; Co</label>\n"
+				+ "      <mDate>2019-03-01T10:00:00.123Z</mDate>\n" + "  </objectFields>\n"
+				+ "  <objectFields>\n" + "      <pid>alvin-place:24</pid>\n"
+				+ "  </objectFields>\n" + "  </resultList>\n" + "</result>"));
+
+		assertEquals(parsedObjects.size(), 2);
+		FedoraObjectFields first = parsedObjects.get(0);
+		assertEquals(first.pid, "alvin-place:22");
+		assertEquals(first.label, "Uppsala & Co");
+		assertEquals(first.lastModifiedDate, "2019-03-01T10:00:00.123Z");
+		FedoraObjectFields second = parsedObjects.get(1);
+		assertEquals(second.label, "");
+		assertEquals(second.lastModifiedDate, "");
+		assertEquals(parser.getSessionToken(), "someToken");
+		assertEquals(parser.getCompleteListSize(), "250");
+	}
+
+	@Test
+	public void testObjectsAreHandedOverAsTheyAreParsed() {
+		List<Integer> numberParsedWhenCalled = new ArrayList<>();
+		parser = FedoraFindObjectsParser.usingObjectFieldsConsumer(objectFields -> {
+			numberParsedWhenCalled.add(numberParsedWhenCalled.size());
+		});
+		parser.parse(new StringReader("<result><resultList>"
+				+ "<objectFields><pid>a:1</pid></objectFields>"
+				+ "<objectFields><pid>a:2</pid></objectFields>" + "</resultList></result>"));
+		assertEquals(numberParsedWhenCalled.size(), 2);
+	}
+
+	@Test
+	public void testParseFromStreamUsesDeclaredEncoding() {
+		parser.parse(new ByteArrayInputStream(("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n"
+				+ "<result><resultList><objectFields><pid>alvin-place:22</pid>"
+				+ "<label>Linköping</label></objectFields></resultList></result>")
+						.getBytes(StandardCharsets.ISO_8859_1)));
+
+		assertEquals(parsedObjects.size(), 1);
+		assertEquals(parsedObjects.get(0).label, "Linköping");
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testBrokenXMLFromStream() {
+		parser.parse(new ByteArrayInputStream(
+				"<someTag></notSameTag>".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testBrokenXML() {
+		parser.parse(new StringReader("<someTag></notSameTag>"));
+	}
+
+	@Test(expectedExceptions = ParseException.class)
+	public void testExternalEntitiesAreNotResolved() {
+		parser.parse(new StringReader("<?xml version=\"1.0\"?>"
+				+ "<!DOCTYPE result [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+				+ "<result><resultList><objectFields><pid>&xxe;</pid></objectFields>"
+				+ "</resultList></result>"));
+	}
+}
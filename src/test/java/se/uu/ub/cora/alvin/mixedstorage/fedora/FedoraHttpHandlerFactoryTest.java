@@ -0,0 +1,331 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.httphandler.HttpHandler;
+
+public class FedoraHttpHandlerFactoryTest {
+	private FedoraHttpServerStub server;
+	private FedoraHttpHandlerFactory factory;
+	private FedoraTransportConfig transportConfig = new FedoraTransportConfig(2, 1000, 2000);
+
+	@BeforeMethod
+	public void beforeMethod() throws Exception {
+		server = new FedoraHttpServerStub();
+		factory = FedoraHttpHandlerFactory.usingUsernameAndPasswordAndTransportConfig(
+				"fedoraUser", "fedoraPassword", transportConfig);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws Exception {
+		server.close();
+	}
+
+	@Test
+	public void testTransportConfig() {
+		assertSame(factory.getTransportConfig(), transportConfig);
+		assertEquals(factory.getHttpClient().connectTimeout().get(), Duration.ofMillis(1000));
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testAuthorizationHeaderIsPrecomputed() {
+		assertEquals(factory.getAuthorizationHeader(), "Basic " + Base64.getEncoder()
+				.encodeToString("fedoraUser:fedoraPassword".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testFactorReturnsFedoraHttpHandlerForUrl() {
+		HttpHandler httpHandler = factory.factor("someUrl");
+		assertTrue(httpHandler instanceof FedoraHttpHandler);
+		assertEquals(((FedoraHttpHandler) httpHandler).getUrl(), "someUrl");
+	}
+
+	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
+			+ "factorHttpMultiPartUploader is not implemented for fedora")
+	public void testFactorHttpMultiPartUploaderIsNotImplemented() {
+		factory.factorHttpMultiPartUploader("someUrl");
+	}
+
+	@Test
+	public void testGetRequestSendsAuthorizationAndReturnsResponse() {
+		server.responseText = "<objectProfile/>";
+		HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects/alvin-place:22");
+		httpHandler.setRequestMethod("GET");
+
+		assertEquals(httpHandler.getResponseCode(), 200);
+		assertEquals(httpHandler.getResponseText(), "<objectProfile/>");
+		assertEquals(httpHandler.getErrorText(), "");
+		assertEquals(httpHandler.getHeaderField("X-Stub"), "someHeaderValue");
+		assertNull(httpHandler.getHeaderField("X-Missing"));
+		assertEquals(server.requestLines.get(0), "GET /fedora/objects/alvin-place:22 HTTP/1.1");
+		assertEquals(server.requestHeaders.get(0).get("authorization"),
+				factory.getAuthorizationHeader());
+	}
+
+	@Test
+	public void testRequestIsOnlySentOnce() {
+		HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects");
+		httpHandler.getResponseCode();
+		httpHandler.getResponseText();
+		httpHandler.getResponseCode();
+		assertEquals(server.requestLines.size(), 1);
+	}
+
+	@Test
+	public void testPutWithOutputAndOwnHeaders() {
+		HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects/alvin-place:22");
+		httpHandler.setRequestMethod("PUT");
+		httpHandler.setRequestProperty("Accept", "text/xml");
+		httpHandler.setOutput("<place/>");
+
+		assertEquals(httpHandler.getResponseCode(), 200);
+		assertEquals(server.requestLines.get(0), "PUT /fedora/objects/alvin-place:22 HTTP/1.1");
+		assertEquals(server.requestHeaders.get(0).get("accept"), "text/xml");
+		assertEquals(server.requestHeaders.get(0).get("content-type"),
+				"text/xml; charset=UTF-8");
+		assertEquals(server.requestBodies.get(0), "<place/>");
+	}
+
+	@Test
+	public void testPostWithStreamOutput() {
+		HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects/new");
+		httpHandler.setRequestMethod("POST");
+		httpHandler.setStreamOutput(
+				new ByteArrayInputStream("<foxml/>".getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(httpHandler.getResponseCode(), 200);
+		assertEquals(server.requestBodies.get(0), "<foxml/>");
+		assertEquals(server.requestHeaders.get(0).get("content-type"),
+				"application/octet-stream");
+	}
+
+	@Test
+	public void testBasicAuthorizationSetOnHandlerReplacesPrecomputed() {
+		HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects/nextPID");
+		httpHandler.setRequestMethod("POST");
+		httpHandler.setBasicAuthorization("otherUser", "otherPassword");
+
+		httpHandler.getResponseCode();
+
+		assertEquals(server.requestHeaders.get(0).get("authorization"),
+				"Basic " + Base64.getEncoder().encodeToString(
+						"otherUser:otherPassword".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testErrorResponse() {
+		server.responseCode = 404;
+		server.responseText = "Object not found";
+		HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects/alvin-place:1");
+
+		assertEquals(httpHandler.getResponseCode(), 404);
+		assertEquals(httpHandler.getErrorText(), "Object not found");
+	}
+
+	@Test
+	public void testConnectionIsReusedBetweenRequests() {
+		for (int i = 0; i < 5; i++) {
+			HttpHandler httpHandler = factory.factor(server.getBaseUrl() + "objects/" + i);
+			httpHandler.getResponseText();
+		}
+		assertEquals(server.requestLines.size(), 5);
+		assertEquals(server.acceptedConnections.get(), 1);
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error communicating with fedora using url: .*objects/slow: .*")
+	public void testReadTimeout() {
+		server.responseDelayMillis = 3000;
+		factory.factor(server.getBaseUrl() + "objects/slow").getResponseCode();
+	}
+
+	@Test
+	public void testConnectionPermitIsReleasedAfterError() {
+		server.responseDelayMillis = 3000;
+		try {
+			factory.factor(server.getBaseUrl() + "objects/slow").getResponseCode();
+		} catch (FedoraException e) {
+			// expected
+		}
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testResponseAsStream() throws Exception {
+		server.responseText = "<objectProfile>Linköping</objectProfile>";
+		FedoraHttpHandler httpHandler = (FedoraHttpHandler) factory
+				.factor(server.getBaseUrl() + "objects/alvin-place:22");
+		httpHandler.setResponseAsStream();
+
+		assertEquals(httpHandler.getResponseCode(), 200);
+		assertEquals(httpHandler.getHeaderField("X-Stub"), "someHeaderValue");
+		assertEquals(factory.getNumberOfAvailableConnections(), 1);
+		try (InputStream stream = httpHandler.getResponseStream()) {
+			assertEquals(new String(stream.readAllBytes(), StandardCharsets.UTF_8),
+					"<objectProfile>Linköping</objectProfile>");
+		}
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+		assertEquals(server.requestLines.size(), 1);
+	}
+
+	@Test
+	public void testResponseAsStreamReadAsText() {
+		server.responseCode = 404;
+		server.responseText = "Object not found";
+		FedoraHttpHandler httpHandler = (FedoraHttpHandler) factory
+				.factor(server.getBaseUrl() + "objects/alvin-place:1");
+		httpHandler.setResponseAsStream();
+
+		assertEquals(httpHandler.getResponseCode(), 404);
+		assertEquals(httpHandler.getErrorText(), "Object not found");
+		assertEquals(httpHandler.getResponseText(), "Object not found");
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testCloseResponseStreamReleasesConnectionPermit() {
+		FedoraHttpHandler httpHandler = (FedoraHttpHandler) factory
+				.factor(server.getBaseUrl() + "objects/alvin-place:1");
+		httpHandler.setResponseAsStream();
+		httpHandler.getResponseCode();
+		assertEquals(factory.getNumberOfAvailableConnections(), 1);
+
+		httpHandler.closeResponseStream();
+		httpHandler.closeResponseStream();
+
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testCloseResponseStreamBeforeSendDoesNothing() {
+		FedoraHttpHandler httpHandler = (FedoraHttpHandler) factory
+				.factor(server.getBaseUrl() + "objects/alvin-place:1");
+		httpHandler.setResponseAsStream();
+
+		httpHandler.closeResponseStream();
+
+		assertEquals(server.requestLines.size(), 0);
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testGetResponseStreamWithoutStreamModeReturnsResponseText() throws Exception {
+		server.responseText = "<objectProfile/>";
+		FedoraHttpHandler httpHandler = (FedoraHttpHandler) factory
+				.factor(server.getBaseUrl() + "objects/alvin-place:22");
+
+		try (InputStream stream = httpHandler.getResponseStream()) {
+			assertEquals(new String(stream.readAllBytes(), StandardCharsets.UTF_8),
+					"<objectProfile/>");
+		}
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testConnectionPermitIsReleasedAfterErrorWithResponseAsStream() {
+		server.responseDelayMillis = 3000;
+		FedoraHttpHandler httpHandler = (FedoraHttpHandler) factory
+				.factor(server.getBaseUrl() + "objects/slow");
+		httpHandler.setResponseAsStream();
+		try {
+			httpHandler.getResponseCode();
+		} catch (FedoraException e) {
+			// expected
+		}
+		assertEquals(factory.getNumberOfAvailableConnections(), 2);
+	}
+
+	@Test
+	public void testSharedFactoryIsSameForSameSettings() {
+		FedoraHttpHandlerFactory shared = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig("sharedUser", "somePassword",
+						new FedoraTransportConfig(3, 100, 200));
+		FedoraHttpHandlerFactory shared2 = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig("sharedUser", "somePassword",
+						new FedoraTransportConfig(3, 100, 200));
+		FedoraHttpHandlerFactory other = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig("otherUser", "somePassword",
+						new FedoraTransportConfig(3, 100, 200));
+		assertSame(shared, shared2);
+		assertNotSame(shared, other);
+	}
+
+	@Test
+	public void testSharedFactoryIsNotSameForOtherPassword() {
+		FedoraHttpHandlerFactory shared = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig("sharedUser", "somePassword",
+						new FedoraTransportConfig(3, 100, 200));
+		FedoraHttpHandlerFactory other = FedoraHttpHandlerFactory
+				.getSharedUsingUsernameAndPasswordAndTransportConfig("sharedUser", "otherPassword",
+						new FedoraTransportConfig(3, 100, 200));
+		assertNotSame(shared, other);
+	}
+
+	@Test
+	public void testSharedFactoryKeyDoesNotContainPassword() {
+		FedoraHttpHandlerFactory.getSharedUsingUsernameAndPasswordAndTransportConfig(
+				"keyUser", "secretPassword", new FedoraTransportConfig(3, 100, 200));
+		for (String key : FedoraHttpHandlerFactory.getSharedFactoryKeys()) {
+			assertFalse(key.contains("secretPassword"));
+		}
+	}
+
+	@Test
+	public void testWaitingForConnectionTimesOutAfterReadTimeout() throws Exception {
+		FedoraHttpHandlerFactory singleConnectionFactory = FedoraHttpHandlerFactory
+				.usingUsernameAndPasswordAndTransportConfig("fedoraUser", "fedoraPassword",
+						new FedoraTransportConfig(1, 1000, 200));
+		FedoraHttpHandler unclosedHandler = (FedoraHttpHandler) singleConnectionFactory
+				.factor(server.getBaseUrl() + "objects/alvin-place:1");
+		unclosedHandler.setResponseAsStream();
+		unclosedHandler.getResponseCode();
+		String url = server.getBaseUrl() + "objects/alvin-place:2";
+		try {
+			singleConnectionFactory.factor(url).getResponseCode();
+			fail("Waiting for a connection should time out");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(), "Timed out after 200 ms waiting for a connection to"
+					+ " fedora for url: " + url);
+		} finally {
+			unclosedHandler.closeResponseStream();
+		}
+		assertEquals(singleConnectionFactory.getNumberOfAvailableConnections(), 1);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FedoraHttpServerStub implements AutoCloseable {
+	public AtomicInteger acceptedConnections = new AtomicInteger();
+	public List<String> requestLines = new ArrayList<>();
+	public List<Map<String, String>> requestHeaders = new ArrayList<>();
+	public List<String> requestBodies = new ArrayList<>();
+	public int responseCode = 200;
+	public String responseText = "someResponseText";
+	public long responseDelayMillis = 0;
+	private ServerSocket serverSocket;
+
+	public FedoraHttpServerStub() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptThread = new Thread(this::acceptConnections, "fedora-http-server-stub");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	public String getBaseUrl() {
+		return "http://localhost:" + serverSocket.getLocalPort() + "/fedora/";
+	}
+
+	private void acceptConnections() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				acceptedConnections.incrementAndGet();
+				Thread connectionThread = new Thread(() -> handleConnection(socket));
+				connectionThread.setDaemon(true);
+				connectionThread.start();
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void handleConnection(Socket socket) {
+		try (Socket s = socket) {
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+			OutputStream out = s.getOutputStream();
+			String requestLine;
+			while ((requestLine = reader.readLine()) != null) {
+				if (requestLine.isEmpty()) {
+					continue;
+				}
+				Map<String, String> headers = readHeaders(reader);
+				String body = readBody(reader, headers);
+				synchronized (this) {
+					requestLines.add(requestLine);
+					requestHeaders.add(headers);
+					requestBodies.add(body);
+				}
+				sleepResponseDelay();
+				writeResponse(out);
+			}
+		} catch (IOException e) {
+			// connection closed by client
+		}
+	}
+
+	private Map<String, String> readHeaders(BufferedReader reader) throws IOException {
+		Map<String, String> headers = new HashMap<>();
+		String line = reader.readLine();
+		while (line != null && !line.isEmpty()) {
+			int colon = line.indexOf(':');
+			headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+					line.substring(colon + 1).trim());
+			line = reader.readLine();
+		}
+		return headers;
+	}
+
+	private String readBody(BufferedReader reader, Map<String, String> headers)
+			throws IOException {
+		if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+			return readChunkedBody(reader);
+		}
+		int contentLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+		char[] body = new char[contentLength];
+		int read = 0;
+		while (read < contentLength) {
+			read += reader.read(body, read, contentLength - read);
+		}
+		return new String(body, 0, read);
+	}
+
+	private String readChunkedBody(BufferedReader reader) throws IOException {
+		StringBuilder body = new StringBuilder();
+		int chunkSize = Integer.parseInt(reader.readLine().trim(), 16);
+		while (chunkSize > 0) {
+			char[] chunk = new char[chunkSize];
+			int read = 0;
+			while (read < chunkSize) {
+				read += reader.read(chunk, read, chunkSize - read);
+			}
+			body.append(chunk);
+			reader.readLine();
+			chunkSize = Integer.parseInt(reader.readLine().trim(), 16);
+		}
+		reader.readLine();
+		return body.toString();
+	}
+
+	private void sleepResponseDelay() {
+		if (responseDelayMillis > 0) {
+			try {
+				Thread.sleep(responseDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void writeResponse(OutputStream out) throws IOException {
+		byte[] body = responseText.getBytes(StandardCharsets.UTF_8);
+		String head = "HTTP/1.1 " + responseCode + " Stub\r\n" + "Content-Type: text/xml\r\n"
+				+ "Content-Length: " + body.length + "\r\n" + "X-Stub: someHeaderValue\r\n"
+				+ "\r\n";
+		out.write(head.getBytes(StandardCharsets.UTF_8));
+		out.write(body);
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+}
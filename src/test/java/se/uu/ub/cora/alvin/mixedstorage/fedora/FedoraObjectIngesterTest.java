@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class FedoraObjectIngesterTest {
+	private HttpHandlerFactorySpy httpHandlerFactory;
+	private FedoraObjectIngester objectIngester;
+
+	@BeforeMethod
+	public void setUp() {
+		httpHandlerFactory = new HttpHandlerFactorySpy();
+		FedoraConfig fedoraConfig = new FedoraConfig("someFedoraUser", "someFedoraPassword",
+				"http://someFedoraUrl/fedora/");
+		objectIngester = FedoraObjectIngester
+				.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory, fedoraConfig);
+	}
+
+	@Test
+	public void testIngestFoxml() {
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("alvin-place:22");
+
+		objectIngester.ingestFoxml("alvin-place:22", "<someFoxml/>");
+
+		assertEquals(httpHandlerFactory.urls.get(0),
+				"http://someFedoraUrl/fedora/objects/alvin-place:22?format="
+						+ "info%3Afedora%2Ffedora-system%3AFOXML-1.1&logMessage=coraWritten");
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
+		assertEquals(httpHandler.requestMethod, "POST");
+		assertFalse(httpHandler.basicAuthorizationWasSet);
+		assertEquals(httpHandler.requestProperties.get("Content-Type"),
+				"text/xml; charset=UTF-8");
+		assertEquals(httpHandler.outputStrings.get(0), "<someFoxml/>");
+	}
+
+	@Test
+	public void testIngestPlaceCreatesFoxml() {
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("alvin-place:22");
+
+		objectIngester.ingestPlace("alvin-place:22", "someLabel", "<place/>");
+
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
+		assertEquals(httpHandler.outputStrings.get(0), PlaceFoxml
+				.createUsingPidAndLabelAndMetadataXml("alvin-place:22", "someLabel", "<place/>"));
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "ingesting object in fedora failed, with response code: 500")
+	public void testIngestFoxmlErrorFromFedora() {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("someError");
+
+		objectIngester.ingestFoxml("alvin-place:22", "<someFoxml/>");
+	}
+
+	@Test
+	public void testObjectExists() {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<objectProfile/>");
+
+		assertTrue(objectIngester.objectExists("alvin-place:22"));
+
+		assertEquals(httpHandlerFactory.urls.get(0),
+				"http://someFedoraUrl/fedora/objects/alvin-place:22?format=xml");
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
+		assertEquals(httpHandler.requestMethod, "GET");
+		assertFalse(httpHandler.basicAuthorizationWasSet);
+	}
+
+	@Test
+	public void testObjectDoesNotExist() {
+		httpHandlerFactory.responseCodes.add(404);
+		httpHandlerFactory.responseTexts.add("");
+
+		assertFalse(objectIngester.objectExists("alvin-place:22"));
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "checking if object exists in fedora failed, with response code: 500")
+	public void testObjectExistsErrorFromFedora() {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("someError");
+
+		objectIngester.objectExists("alvin-place:22");
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+
+public class FedoraObjectProfileTest {
+
+	@Test
+	public void testActiveObjectProfile() {
+		FedoraObjectProfile profile = FedoraObjectProfile
+				.fromXML(createObjectProfileXMLWithState("A"));
+		assertEquals(profile.pid, "alvin-place:22");
+		assertEquals(profile.state, "A");
+		assertEquals(profile.lastModifiedDate, "2019-03-01T10:00:00.123Z");
+		assertTrue(profile.isActive());
+	}
+
+	@Test
+	public void testDeletedObjectProfile() {
+		FedoraObjectProfile profile = FedoraObjectProfile
+				.fromXML(createObjectProfileXMLWithState("D"));
+		assertEquals(profile.state, "D");
+		assertFalse(profile.isActive());
+	}
+
+	@Test
+	public void testInactiveObjectProfile() {
+		FedoraObjectProfile profile = FedoraObjectProfile
+				.fromXML(createObjectProfileXMLWithState("I"));
+		assertFalse(profile.isActive());
+	}
+
+	@Test
+	public void testObjectProfileFromStream() {
+		FedoraObjectProfile profile = FedoraObjectProfile.fromXML(new ByteArrayInputStream(
+				createObjectProfileXMLWithState("A").getBytes(StandardCharsets.UTF_8)));
+		assertEquals(profile.pid, "alvin-place:22");
+		assertEquals(profile.lastModifiedDate, "2019-03-01T10:00:00.123Z");
+		assertTrue(profile.isActive());
+	}
+
+	@Test(expectedExceptions = ParseException.class)
+	public void testBrokenXMLFromStream() {
+		FedoraObjectProfile.fromXML(
+				new ByteArrayInputStream("<objectProfile".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expectedExceptions = ParseException.class)
+	public void testBrokenXML() {
+		FedoraObjectProfile.fromXML("<objectProfile");
+	}
+
+	private String createObjectProfileXMLWithState(String state) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<objectProfile xmlns=\"http://www.fedora.info/definitions/1/0/access/\" "
+				+ "pid=\"alvin-place:22\">\n" + "  <objLabel>Place</objLabel>\n"
+				+ "  <objLastModDate>2019-03-01T10:00:00.123Z</objLastModDate>\n"
+				+ "  <objState>" + state + "</objState>\n" + "</objectProfile>";
+	}
+}
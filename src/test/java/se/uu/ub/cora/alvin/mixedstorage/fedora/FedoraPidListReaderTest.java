@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+
+public class FedoraPidListReaderTest {
+	private static final String QUERY_URL = "someBaseUrl/objects?pid=true&mDate=true&maxResults=2"
+			+ "&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*";
+	private HttpHandlerFactorySpy httpHandlerFactory;
+	private FedoraPidListReader reader;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		httpHandlerFactory = new HttpHandlerFactorySpy();
+		reader = FedoraPidListReader.usingHttpHandlerFactoryAndBaseUrlAndPageSize(
+				httpHandlerFactory, "someBaseUrl/", 2);
+	}
+
+	@Test
+	public void testPageSize() {
+		assertEquals(reader.getPageSize(), 2);
+	}
+
+	@Test
+	public void testSinglePageWithoutListSession() {
+		addPageResponse(createPage("", "", "pid:1", "pid:2"));
+
+		FedoraPidList pidList = readWindow(1, Long.MAX_VALUE);
+
+		assertEquals(httpHandlerFactory.urls.size(), 1);
+		assertEquals(httpHandlerFactory.urls.get(0), QUERY_URL);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(0).requestMethod, "GET");
+		assertEquals(pidList.pids, Arrays.asList("pid:1", "pid:2"));
+		assertEquals(pidList.totalNumberOfMatches, 2);
+	}
+
+	private void addPageResponse(String page) {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(page);
+	}
+
+	private FedoraPidList readWindow(long fromNo, long toNo) {
+		return reader.readPidsUsingQueryFromNoAndToNo("state=A pid~alvin-place:*", fromNo, toNo);
+	}
+
+	private String createPage(String token, String completeListSize, String... pids) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n");
+		if (!token.isEmpty()) {
+			xml.append("  <listSession>\n    <token>" + token + "</token>\n");
+			if (!completeListSize.isEmpty()) {
+				xml.append("    <completeListSize>" + completeListSize + "</completeListSize>\n");
+			}
+			xml.append("  </listSession>\n");
+		}
+		xml.append("  <resultList>\n");
+		for (String pid : pids) {
+			xml.append("  <objectFields>\n      <pid>" + pid + "</pid>\n  </objectFields>\n");
+		}
+		xml.append("  </resultList>\n</result>");
+		return xml.toString();
+	}
+
+	@Test
+	public void testLastModifiedDatesForPidsInWindow() {
+		addPageResponse("<result><resultList>"
+				+ "<objectFields><pid>pid:1</pid><mDate>date1</mDate></objectFields>"
+				+ "<objectFields><pid>pid:2</pid><mDate>date2</mDate></objectFields>"
+				+ "</resultList></result>");
+
+		FedoraPidList pidList = readWindow(2, 2);
+
+		assertEquals(pidList.pids, Arrays.asList("pid:2"));
+		assertEquals(pidList.lastModifiedDates.size(), 1);
+		assertEquals(pidList.lastModifiedDates.get("pid:2"), "date2");
+	}
+
+	@Test
+	public void testFollowsSessionTokenToEndOfListWhenNoToNo() {
+		addPageResponse(createPage("token1", "5", "pid:1", "pid:2"));
+		addPageResponse(createPage("token2", "5", "pid:3", "pid:4"));
+		addPageResponse(createPage("", "", "pid:5"));
+
+		FedoraPidList pidList = readWindow(2, Long.MAX_VALUE);
+
+		assertEquals(httpHandlerFactory.urls.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(1), QUERY_URL + "&sessionToken=token1");
+		assertEquals(httpHandlerFactory.urls.get(2), QUERY_URL + "&sessionToken=token2");
+		assertEquals(pidList.pids, Arrays.asList("pid:2", "pid:3", "pid:4", "pid:5"));
+		assertEquals(pidList.totalNumberOfMatches, 5);
+	}
+
+	@Test
+	public void testStopsWhenWindowIsReadAndCompleteListSizeIsKnown() {
+		addPageResponse(createPage("token1", "5", "pid:1", "pid:2"));
+
+		FedoraPidList pidList = readWindow(1, 2);
+
+		assertEquals(httpHandlerFactory.urls.size(), 1);
+		assertEquals(pidList.pids, Arrays.asList("pid:1", "pid:2"));
+		assertEquals(pidList.totalNumberOfMatches, 5);
+	}
+
+	@Test
+	public void testCountsRemainingPidsWhenCompleteListSizeIsUnknown() {
+		addPageResponse(createPage("token1", "", "pid:1", "pid:2"));
+		addPageResponse(createPage("token2", "", "pid:3", "pid:4"));
+		addPageResponse(createPage("", "", "pid:5"));
+
+		FedoraPidList pidList = readWindow(1, 1);
+
+		assertEquals(httpHandlerFactory.urls.size(), 3);
+		assertEquals(pidList.pids, Arrays.asList("pid:1"));
+		assertEquals(pidList.totalNumberOfMatches, 5);
+	}
+
+	@Test
+	public void testFromNoAfterEndOfListReturnsNoPids() {
+		addPageResponse(createPage("token1", "3", "pid:1", "pid:2"));
+		addPageResponse(createPage("", "", "pid:3"));
+
+		FedoraPidList pidList = readWindow(10, 20);
+
+		assertEquals(httpHandlerFactory.urls.size(), 2);
+		assertEquals(pidList.pids, new ArrayList<>());
+		assertEquals(pidList.totalNumberOfMatches, 3);
+	}
+
+	@Test
+	public void testEmptyList() {
+		addPageResponse(createPage("", ""));
+
+		FedoraPidList pidList = readWindow(1, 10);
+
+		assertEquals(pidList.pids, new ArrayList<>());
+		assertEquals(pidList.totalNumberOfMatches, 0);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "reading list from fedora failed, with response code: 401")
+	public void testErrorFromFedora() {
+		httpHandlerFactory.responseCodes.add(401);
+		httpHandlerFactory.responseTexts.add("Unauthorized");
+		readWindow(1, 10);
+	}
+
+	@Test
+	public void testCountUsesCompleteListSizeFromListSession() {
+		addPageResponse(createPage("someToken", "4711", "pid:1"));
+
+		long count = reader.countPidsUsingQuery("state=A pid~alvin-place:*");
+
+		assertEquals(count, 4711);
+		assertEquals(httpHandlerFactory.urls.size(), 1);
+		assertEquals(httpHandlerFactory.urls.get(0),
+				"someBaseUrl/objects?pid=true&maxResults=1&resultFormat=xml"
+						+ "&query=state%3DA+pid%7Ealvin-place%3A*");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(0).requestMethod, "GET");
+	}
+
+	@Test
+	public void testCountWithoutListSessionCountsListedPids() {
+		addPageResponse(createPage("", "", "pid:1"));
+		assertEquals(reader.countPidsUsingQuery("state=A pid~alvin-place:*"), 1);
+	}
+
+	@Test
+	public void testCountNoMatches() {
+		addPageResponse(createPage("", ""));
+		assertEquals(reader.countPidsUsingQuery("state=A pid~alvin-place:*"), 0);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "reading list from fedora failed, with response code: 500")
+	public void testCountErrorFromFedora() {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("");
+		reader.countPidsUsingQuery("state=A pid~alvin-place:*");
+	}
+
+	@Test
+	public void testReadUsingPlaceListFilterWithLabelUsesFilterQuery() {
+		addPageResponse(createPage("", "", "alvin-place:1"));
+
+		reader.readPidsUsingPlaceListFilterFromNoAndToNo(
+				createPlaceListFilterWithPart("labelStartsWith", "Upp"), 1, Long.MAX_VALUE);
+
+		assertEquals(httpHandlerFactory.urls.get(0), QUERY_URL + "+label%7E%27Upp*%27");
+	}
+
+	private PlaceListFilter createPlaceListFilterWithPart(String key, String value) {
+		DataGroupSpy filter = new DataGroupSpy("filter");
+		DataGroupSpy part = new DataGroupSpy("part");
+		part.addChild(new DataAtomicSpy("key", key));
+		part.addChild(new DataAtomicSpy("value", value));
+		filter.addChild(part);
+		return PlaceListFilter.fromFilter(filter);
+	}
+
+	@Test
+	public void testReadUsingPidRangeCountsOnlyMatchingAndReadsAllPages() {
+		addPageResponse(createPage("someToken", "4", "alvin-place:1", "alvin-place:20"));
+		addPageResponse(createPage("", "", "alvin-place:21", "alvin-place:300"));
+
+		FedoraPidList pidList = reader.readPidsUsingPlaceListFilterFromNoAndToNo(
+				createPlaceListFilterWithPart("pidFrom", "20"), 1, 1);
+
+		assertEquals(httpHandlerFactory.urls.size(), 2);
+		assertEquals(pidList.pids, Arrays.asList("alvin-place:20"));
+		assertEquals(pidList.totalNumberOfMatches, 3);
+	}
+
+	@Test
+	public void testWindowConsumerGetsPidsInWindowAsTheyAreRead() {
+		addPageResponse(createPage("token1", "", "pid:1", "pid:2"));
+		addPageResponse(createPage("", "", "pid:3", "pid:4"));
+		List<String> consumedPids = new ArrayList<>();
+
+		FedoraPidList pidList = reader.readPidsUsingPlaceListFilterFromNoAndToNoAndWindowConsumer(
+				PlaceListFilter.fromFilter(null), 2, 3, objectFields -> consumedPids
+						.add(objectFields.pid + " " + httpHandlerFactory.urls.size()));
+
+		assertEquals(consumedPids, Arrays.asList("pid:2 1", "pid:3 2"));
+		assertEquals(pidList.pids, Arrays.asList("pid:2", "pid:3"));
+	}
+}
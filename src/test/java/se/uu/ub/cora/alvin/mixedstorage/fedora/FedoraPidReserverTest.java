@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
+
+public class FedoraPidReserverTest {
+	private HttpHandlerFactorySpy httpHandlerFactory;
+	private FedoraConfig fedoraConfig;
+	private FedoraPidReserver pidReserver;
+
+	@BeforeMethod
+	public void setUp() {
+		httpHandlerFactory = new HttpHandlerFactorySpy();
+		fedoraConfig = new FedoraConfig("someFedoraUser", "someFedoraPassword",
+				"http://someFedoraUrl/fedora/");
+		pidReserver = FedoraPidReserver.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory,
+				fedoraConfig);
+	}
+
+	@Test
+	public void testInit() {
+		assertSame(pidReserver.getFedoraConfig(), fedoraConfig);
+	}
+
+	@Test
+	public void testReservePlacePidsUsesOneRequestForBlock() {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<pidList><pid>alvin-place:1</pid>"
+				+ "<pid>alvin-place:2</pid><pid>alvin-place:3</pid></pidList>");
+
+		List<String> pids = pidReserver.reservePlacePids(3);
+
+		assertEquals(pids, List.of("alvin-place:1", "alvin-place:2", "alvin-place:3"));
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(httpHandlerFactory.urls.get(0), "http://someFedoraUrl/fedora/"
+				+ "objects/nextPID?namespace=alvin-place&numPIDs=3&format=xml");
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
+		assertEquals(httpHandler.requestMethod, "POST");
+		assertFalse(httpHandler.basicAuthorizationWasSet);
+	}
+
+	@Test
+	public void testReservePlacePidsHandlesNamespacedResponse() {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<pidList xmlns=\"http://www.fedora.info/definitions/1/0/management/\">\n"
+				+ "  <pid>alvin-place:7</pid>\n</pidList>");
+
+		List<String> pids = pidReserver.reservePlacePids(1);
+
+		assertEquals(pids, List.of("alvin-place:7"));
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "getting next pid from fedora failed, with response code: 500")
+	public void testReservePlacePidsErrorFromFedora() {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("someError");
+
+		pidReserver.reservePlacePids(3);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "getting next pid from fedora failed, expected 3 pids but got 1")
+	public void testReservePlacePidsWrongNumberOfPids() {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<pidList><pid>alvin-place:1</pid></pidList>");
+
+		pidReserver.reservePlacePids(3);
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testReservePlacePidsBrokenXML() {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<pidList><pid>alvin-place:1</pid>");
+
+		pidReserver.reservePlacePids(1);
+	}
+}
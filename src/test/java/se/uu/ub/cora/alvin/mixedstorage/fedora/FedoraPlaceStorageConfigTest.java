@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+
+public class FedoraPlaceStorageConfigTest {
+
+	@Test
+	public void testDefaultValues() {
+		FedoraPlaceStorageConfig config = FedoraPlaceStorageConfig.withDefaultValues();
+		assertEquals(config.placeListFetchConfig.mode, Mode.SEQUENTIAL);
+		assertEquals(config.placeListFetchConfig.errorPolicy, ErrorPolicy.FAIL);
+		assertEquals(config.placeCache.getMaxSize(), 0);
+		assertEquals(config.missingPlaceCache.getMaxSize(), 0);
+	}
+}
@@ -17,14 +17,17 @@
 package se.uu.ub.cora.alvin.mixedstorage.fedora;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -33,12 +36,23 @@ import java.util.List;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
 import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
 import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
 import se.uu.ub.cora.alvin.mixedstorage.NotImplementedException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig.CreateMode;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceCache.CachedMetadata;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.data.DataAtomicProvider;
 import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.storage.RecordNotFoundException;
 import se.uu.ub.cora.storage.RecordStorage;
+import se.uu.ub.cora.storage.StorageReadResult;
 
 public class FedoraRecordStorageTest {
 	private FedoraRecordStorage alvinToCoraRecordStorage;
@@ -50,9 +64,11 @@ public class FedoraRecordStorageTest {
 
 	@BeforeMethod
 	public void BeforeMethod() {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
 		httpHandlerFactory = new HttpHandlerFactorySpy();
 		converterFactory = new AlvinFedoraToCoraConverterFactorySpy();
-		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL);
+		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL,
+				CreateMode.MULTI_CALL);
 		alvinToCoraRecordStorage = FedoraRecordStorage
 				.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfig(httpHandlerFactory,
 						converterFactory, fedoraConfig);
@@ -63,6 +79,41 @@ public class FedoraRecordStorageTest {
 		assertNotNull(alvinToCoraRecordStorage);
 	}
 
+	@Test
+	public void testDefaultPlaceListFetchConfigIsSequentialFailingOnError() throws Exception {
+		PlaceListFetchConfig placeListFetchConfig = alvinToCoraRecordStorage
+				.getPlaceListFetchConfig();
+		assertEquals(placeListFetchConfig.mode, Mode.SEQUENTIAL);
+		assertEquals(placeListFetchConfig.errorPolicy, ErrorPolicy.FAIL);
+	}
+
+	@Test
+	public void testPlaceListFetchConfig() throws Exception {
+		PlaceListFetchConfig placeListFetchConfig = new PlaceListFetchConfig(Mode.PARALLEL, 4,
+				ErrorPolicy.SKIP);
+		FedoraRecordStorage recordStorage = createRecordStorageWithPlaceListFetchConfig(
+				placeListFetchConfig);
+		assertSame(recordStorage.getPlaceListFetchConfig(), placeListFetchConfig);
+	}
+
+	@Test
+	public void testCloseShutsDownPlaceListFetcher() throws Exception {
+		FedoraRecordStorage recordStorage = createRecordStorageWithPlaceListFetchConfig(
+				new PlaceListFetchConfig(Mode.PARALLEL, 4, ErrorPolicy.SKIP));
+		recordStorage.close();
+		assertTrue(recordStorage.getPlaceListFetcher().getExecutor().isShutdown());
+	}
+
+	private FedoraRecordStorage createRecordStorageWithPlaceListFetchConfig(
+			PlaceListFetchConfig placeListFetchConfig) {
+		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL);
+		return FedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndPlaceStorageConfig(
+						httpHandlerFactory, converterFactory, fedoraConfig,
+						new FedoraPlaceStorageConfig(placeListFetchConfig,
+								PlaceCache.withMaxSize(0), createDisabledMissingPlaceCache()));
+	}
+
 	@Test
 	public void alvinToCoraRecordStorageImplementsRecordStorage() throws Exception {
 		assertTrue(alvinToCoraRecordStorage instanceof RecordStorage);
@@ -77,16 +128,15 @@ public class FedoraRecordStorageTest {
 	@Test
 	public void readPlaceCallsFedoraAndReturnsConvertedResult() throws Exception {
 		httpHandlerFactory.responseCodes.add(200);
-		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("A"));
 		httpHandlerFactory.responseTexts.add("Dummy response text");
 		httpHandlerFactory.responseCodes.add(200);
 
 		DataGroup readPlace = alvinToCoraRecordStorage.read("place", "alvin-place:22");
-		assertEquals(httpHandlerFactory.urls.get(0),
-				baseURL + "objects?pid=true&maxResults=10000&resultFormat=xml&"
-						+ "query=state%3DA+pid%3Dalvin-place%3A22");
+		assertEquals(httpHandlerFactory.urls.get(0), baseURL + "objects/alvin-place:22?format=xml");
 		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
 		assertEquals(httpHandler.requestMethod, "GET");
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandler);
 
 		assertEquals(httpHandlerFactory.urls.get(1),
 				baseURL + "objects/alvin-place:22/datastreams/METADATA/content");
@@ -102,45 +152,630 @@ public class FedoraRecordStorageTest {
 		assertEquals(readPlace, alvinToCoraConverter.convertedDataGroup);
 	}
 
+	@Test
+	public void readPlaceGoesThroughReadCoalescer() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("A"));
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+		httpHandlerFactory.responseCodes.add(200);
+
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+
+		PlaceReadCoalescer placeReadCoalescer = alvinToCoraRecordStorage.getPlaceReadCoalescer();
+		assertEquals(placeReadCoalescer.getNumberOfReads(), 1);
+		assertEquals(placeReadCoalescer.getNumberOfDeduplicatedReads(), 0);
+		assertEquals(placeReadCoalescer.getNumberOfInFlightReads(), 0);
+	}
+
+	private String createXMLForObjectProfileWithState(String state) {
+		return createXMLForObjectProfileWithStateAndLastModifiedDate(state,
+				"2019-03-01T10:00:00.123Z");
+	}
+
+	private String createXMLForObjectProfileWithStateAndLastModifiedDate(String state,
+			String lastModifiedDate) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<objectProfile xmlns=\"http://www.fedora.info/definitions/1/0/access/\" "
+				+ "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+				+ "pid=\"alvin-place:22\" "
+				+ "xsi:schemaLocation=\"http://www.fedora.info/definitions/1/0/access/ "
+				+ "http://localhost:8088/fedora/schema/objectProfile.xsd\">\n"
+				+ "  <objLabel>Place</objLabel>\n" + "  <objOwnerId>fedoraAdmin</objOwnerId>\n"
+				+ "  <objCreateDate>2014-12-18T20:20:38.346Z</objCreateDate>\n"
+				+ "  <objLastModDate>" + lastModifiedDate + "</objLastModDate>\n"
+				+ "  <objState>" + state + "</objState>\n" + "</objectProfile>";
+	}
+
 	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
 			+ "Record not found for type: place and id: alvin-place:22")
 	public void testRecordNotFoundInStorage() throws Exception {
-		httpHandlerFactory.responseCodes.add(200);
-		httpHandlerFactory.responseTexts.add(createXMLForPlaceListNoRecordsFound());
-		httpHandlerFactory.responseTexts.add("Dummy response text");
 		httpHandlerFactory.responseCodes.add(404);
+		httpHandlerFactory.responseTexts.add("Object not found in low-level storage");
 		alvinToCoraRecordStorage.read("place", "alvin-place:22");
 	}
 
+	@Test
+	public void testRecordNotFoundInStorageDoesNotReadContent() throws Exception {
+		httpHandlerFactory.responseCodes.add(404);
+		httpHandlerFactory.responseTexts.add("Object not found in low-level storage");
+		try {
+			alvinToCoraRecordStorage.read("place", "alvin-place:22");
+		} catch (RecordNotFoundException e) {
+			// expected
+		}
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(converterFactory.factoredToCoraConverters.size(), 0);
+	}
+
 	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
 			+ "Record not found for type: place and id: alvin-place:22")
 	public void testRecordMarkedAsDeletedInStorage() throws Exception {
-		httpHandlerFactory.responseTexts.add(createXMLForPlaceListNoRecordsFound());
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("D"));
 		httpHandlerFactory.responseCodes.add(200);
 		alvinToCoraRecordStorage.read("place", "alvin-place:22");
 	}
 
-	private String createXMLForPlaceListNoRecordsFound() {
-		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
-				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\" "
-				+ "xmlns:types=\"http://www.fedora.info/definitions/1/0/types/\" "
-				+ "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
-				+ "xsi:schemaLocation=\"http://www.fedora.info/definitions/1/0/types/ "
-				+ "http://localhost:8088/fedora/schema/findObjects.xsd\">\n" + "  <resultList>\n"
-				+ "  </resultList>\n" + "</result>";
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "Record not found for type: place and id: alvin-place:22")
+	public void testRecordMarkedAsInactiveInStorage() throws Exception {
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("I"));
+		httpHandlerFactory.responseCodes.add(200);
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "reading object profile from fedora failed for place: alvin-place:22, "
+			+ "with response code: 500")
+	public void testErrorReadingObjectProfile() throws Exception {
+		httpHandlerFactory.responseTexts.add("Internal error");
+		httpHandlerFactory.responseCodes.add(500);
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
 	}
 
 	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
 			+ "Record not found for type: place and id: alvin-place:22")
 	public void testRecordFoundWhenLookingForNonDeletedButThenDeletedBeforeWeCanReadIt()
 			throws Exception {
-		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("A"));
 		httpHandlerFactory.responseCodes.add(200);
 		httpHandlerFactory.responseTexts.add("Dummy response text");
 		httpHandlerFactory.responseCodes.add(404);
 		alvinToCoraRecordStorage.read("place", "alvin-place:22");
 	}
 
+	@Test
+	public void testDefaultPlaceCacheIsDisabled() throws Exception {
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getMaxSize(), 0);
+	}
+
+	@Test
+	public void testPlaceCache() throws Exception {
+		PlaceCache placeCache = PlaceCache.withMaxSize(10);
+		FedoraRecordStorage recordStorage = createRecordStorageWithPlaceCache(placeCache);
+		assertSame(recordStorage.getPlaceCache(), placeCache);
+	}
+
+	private FedoraRecordStorage createRecordStorageWithPlaceCache(PlaceCache placeCache) {
+		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL);
+		return FedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndPlaceStorageConfig(
+						httpHandlerFactory, converterFactory, fedoraConfig,
+						new FedoraPlaceStorageConfig(createSequentialPlaceListFetchConfig(),
+								placeCache, createDisabledMissingPlaceCache()));
+	}
+
+	private PlaceListFetchConfig createSequentialPlaceListFetchConfig() {
+		return PlaceListFetchConfig.sequentialFailingOnError();
+	}
+
+	private MissingPlaceCache createDisabledMissingPlaceCache() {
+		return MissingPlaceCache.withTimeToLiveMillisAndMaxSize(0, 0);
+	}
+
+	@Test
+	public void testDefaultMissingPlaceCacheIsDisabled() throws Exception {
+		assertEquals(alvinToCoraRecordStorage.getMissingPlaceCache().getMaxSize(), 0);
+	}
+
+	private void setUpRecordStorageWithMissingPlaceCache() {
+		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL);
+		MissingPlaceCache missingPlaceCache = MissingPlaceCache.withTimeToLiveMillisAndMaxSize(60000,
+				10);
+		alvinToCoraRecordStorage = FedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndPlaceStorageConfig(
+						httpHandlerFactory, converterFactory, fedoraConfig,
+						new FedoraPlaceStorageConfig(createSequentialPlaceListFetchConfig(),
+								PlaceCache.withMaxSize(0), missingPlaceCache));
+		assertSame(alvinToCoraRecordStorage.getMissingPlaceCache(), missingPlaceCache);
+	}
+
+	@Test
+	public void readNotFoundPlaceTwiceOnlyAsksFedoraOnce() throws Exception {
+		setUpRecordStorageWithMissingPlaceCache();
+		httpHandlerFactory.responseCodes.add(404);
+		httpHandlerFactory.responseTexts.add("Object not found in low-level storage");
+
+		assertReadThrowsRecordNotFound("alvin-place:22");
+		assertReadThrowsRecordNotFound("alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(alvinToCoraRecordStorage.getMissingPlaceCache().getNumberOfHits(), 1);
+	}
+
+	private void assertReadThrowsRecordNotFound(String id) {
+		try {
+			alvinToCoraRecordStorage.read("place", id);
+			fail("RecordNotFoundException expected");
+		} catch (RecordNotFoundException e) {
+			assertEquals(e.getMessage(), "Record not found for type: place and id: " + id);
+		}
+	}
+
+	@Test
+	public void readDeletedPlaceTwiceOnlyAsksFedoraOnce() throws Exception {
+		setUpRecordStorageWithMissingPlaceCache();
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("D"));
+
+		assertReadThrowsRecordNotFound("alvin-place:22");
+		assertReadThrowsRecordNotFound("alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+	}
+
+	@Test
+	public void errorReadingObjectProfileIsNotCachedAsMissing() throws Exception {
+		setUpRecordStorageWithMissingPlaceCache();
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("Internal error");
+		try {
+			alvinToCoraRecordStorage.read("place", "alvin-place:22");
+		} catch (FedoraException e) {
+			// expected
+		}
+		assertEquals(alvinToCoraRecordStorage.getMissingPlaceCache().getSize(), 0);
+	}
+
+	@Test
+	public void deletePlaceMarksItAsMissing() throws Exception {
+		setUpRecordStorageWithMissingPlaceCache();
+		addContentResponse();
+
+		alvinToCoraRecordStorage.deleteByTypeAndId("place", "alvin-place:22");
+		assertReadThrowsRecordNotFound("alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+	}
+
+	@Test
+	public void failedDeleteDoesNotMarkPlaceAsMissing() throws Exception {
+		setUpRecordStorageWithMissingPlaceCache();
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("Internal error");
+		try {
+			alvinToCoraRecordStorage.deleteByTypeAndId("place", "alvin-place:22");
+		} catch (FedoraException e) {
+			// expected
+		}
+		assertEquals(alvinToCoraRecordStorage.getMissingPlaceCache().getSize(), 0);
+	}
+
+	@Test
+	public void createPlaceClearsItFromMissing() throws Exception {
+		setUpRecordStorageWithMissingPlaceCache();
+		httpHandlerFactory.responseCodes.add(404);
+		httpHandlerFactory.responseTexts.add("Object not found in low-level storage");
+		assertReadThrowsRecordNotFound("alvin-place:22");
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+
+		alvinToCoraRecordStorage.create("place", "alvin-place:22", new DataGroupSpy("authority"),
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(alvinToCoraRecordStorage.getMissingPlaceCache().getSize(), 0);
+	}
+
+	@Test
+	public void readPlaceTwiceWithUnchangedLastModifiedDateOnlyConvertsOnce() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		addObjectProfileResponseWithLastModifiedDate("date1");
+		addContentResponse();
+		addObjectProfileResponseWithLastModifiedDate("date1");
+
+		DataGroup firstRead = alvinToCoraRecordStorage.read("place", "alvin-place:22");
+		DataGroup secondRead = alvinToCoraRecordStorage.read("place", "alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(2), baseURL + "objects/alvin-place:22?format=xml");
+		assertEquals(converterFactory.factoredToCoraConverters.size(), 1);
+		assertNotSame(secondRead, firstRead);
+		assertEquals(secondRead.getNameInData(), firstRead.getNameInData());
+		PlaceCache placeCache = alvinToCoraRecordStorage.getPlaceCache();
+		assertEquals(placeCache.getNumberOfHits(), 1);
+		assertEquals(placeCache.getSize(), 1);
+	}
+
+	private void setUpRecordStorageWithPlaceCacheAndProviders() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		alvinToCoraRecordStorage = createRecordStorageWithPlaceCache(PlaceCache.withMaxSize(10));
+	}
+
+	private void addObjectProfileResponseWithLastModifiedDate(String lastModifiedDate) {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(
+				createXMLForObjectProfileWithStateAndLastModifiedDate("A", lastModifiedDate));
+	}
+
+	private void addContentResponse() {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+	}
+
+	@Test
+	public void readPlaceWithChangedLastModifiedDateReadsAndConvertsAgain() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		addObjectProfileResponseWithLastModifiedDate("date1");
+		addContentResponse();
+		addObjectProfileResponseWithLastModifiedDate("date2");
+		addContentResponse();
+
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertEquals(converterFactory.factoredToCoraConverters.size(), 2);
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getNumberOfMisses(), 2);
+	}
+
+	@Test
+	public void readDeletedPlaceRemovesItFromCache() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		addObjectProfileResponseWithLastModifiedDate("date1");
+		addContentResponse();
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForObjectProfileWithState("D"));
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+
+		try {
+			alvinToCoraRecordStorage.read("place", "alvin-place:22");
+		} catch (RecordNotFoundException e) {
+			// expected
+		}
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getSize(), 0);
+	}
+
+	@Test
+	public void updatePlaceRemovesItFromCache() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		addContentResponse();
+
+		alvinToCoraRecordStorage.update("place", "alvin-place:22", new DataGroupSpy("authority"),
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getSize(), 0);
+	}
+
+	private void readPlaceIntoCache() {
+		addObjectProfileResponseWithLastModifiedDate("date1");
+		addContentResponse();
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getSize(), 1);
+	}
+
+	@Test
+	public void readPlaceKeepsMetadataInCache() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+
+		CachedMetadata cachedMetadata = alvinToCoraRecordStorage.getPlaceCache()
+				.getMetadataUsingPid("alvin-place:22");
+		assertEquals(cachedMetadata.lastModifiedDate, "date1");
+		assertEquals(new String(cachedMetadata.getMetadataAsStream().readAllBytes(),
+				StandardCharsets.UTF_8), "Dummy response text");
+	}
+
+	@Test
+	public void readPlaceWithoutPlaceCacheKeepsNoMetadata() throws Exception {
+		addObjectProfileResponseWithLastModifiedDate("date1");
+		addContentResponse();
+
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+
+		assertNull(alvinToCoraRecordStorage.getPlaceCache().getMetadataUsingPid("alvin-place:22"));
+	}
+
+	@Test
+	public void updatePlaceUsesCachedMetadataWithLastModifiedDate() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		addContentResponse();
+		DataGroup dataRecord = new DataGroupSpy("authority");
+
+		alvinToCoraRecordStorage.update("place", "alvin-place:22", dataRecord,
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(2),
+				createUrlForWritingMetadata() + "&lastModifiedDate=date1");
+		AlvinCoraToFedoraConverterSpy converter = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertSame(converter.dataRecord, dataRecord);
+		assertEquals(converter.currentFedoraXML, "Dummy response text");
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(2);
+		assertEquals(httpHandler.requestMethod, "PUT");
+		assertEquals(httpHandler.outputStrings.get(0), converter.returnedXMLUsingCurrentFedoraXML);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfStaleWrites(), 0);
+	}
+
+	private String createUrlForWritingMetadata() {
+		return baseURL + "objects/alvin-place:22/datastreams/METADATA?format=?xml&controlGroup=M"
+				+ "&logMessage=coraWritten&checksumType=SHA-512&dsLabel="
+				+ urlEncode("Some Place Collected Name åäö");
+	}
+
+	@Test
+	public void updatePlaceWithStaleCachedMetadataRefetchesAndWritesAgain() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		addConflictResponse();
+		addObjectProfileResponseWithLastModifiedDate("date2");
+		addContentResponse();
+		addContentResponse();
+
+		alvinToCoraRecordStorage.update("place", "alvin-place:22", new DataGroupSpy("authority"),
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 6);
+		assertEquals(httpHandlerFactory.urls.get(3),
+				baseURL + "objects/alvin-place:22?format=xml");
+		assertEquals(httpHandlerFactory.urls.get(4),
+				baseURL + "objects/alvin-place:22/datastreams/METADATA/content");
+		assertEquals(httpHandlerFactory.urls.get(5),
+				createUrlForWritingMetadata() + "&lastModifiedDate=date2");
+		AlvinCoraToFedoraConverterSpy converter = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(5).outputStrings.get(0),
+				converter.returnedXMLUsingCurrentFedoraXML);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfStaleWrites(), 1);
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getSize(), 0);
+	}
+
+	private void addConflictResponse() {
+		httpHandlerFactory.responseCodes.add(409);
+		httpHandlerFactory.responseTexts.add("Conflict");
+	}
+
+	@Test
+	public void updatePlaceWithConflictAlsoOnRetryThrowsException() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		addConflictResponse();
+		addObjectProfileResponseWithLastModifiedDate("date2");
+		addContentResponse();
+		addConflictResponse();
+
+		try {
+			alvinToCoraRecordStorage.update("place", "alvin-place:22",
+					new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null,
+					null);
+			fail("Exception should have been thrown");
+		} catch (FedoraException e) {
+			assertEquals(e.getCause().getMessage(), "update to fedora failed for dataRecord:"
+					+ " alvin-place:22, with response code: 409");
+		}
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 6);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfStaleWrites(), 1);
+	}
+
+	@Test
+	public void updatePlaceUsingCachedMetadataErrorThrowsException() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("Error");
+		try {
+			alvinToCoraRecordStorage.update("place", "alvin-place:22",
+					new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null,
+					null);
+			fail("Exception should have been thrown");
+		} catch (FedoraException e) {
+			assertEquals(e.getCause().getMessage(),
+					"update to fedora failed for dataRecord: alvin-place:22, with response code: 500");
+		}
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+	}
+
+	@Test
+	public void deletePlaceRemovesItFromCache() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		addContentResponse();
+
+		alvinToCoraRecordStorage.deleteByTypeAndId("place", "alvin-place:22");
+
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getSize(), 0);
+	}
+
+	@Test
+	public void updatePlaceWithCachedMetadataEqualToNewXMLSkipsWrite() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		addObjectProfileResponseWithLastModifiedDate("date1");
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<dummy>Dummy xml from current fedora xml</dummy>\n");
+		alvinToCoraRecordStorage.read("place", "alvin-place:22");
+
+		boolean changed = alvinToCoraRecordStorage.updateIfChanged("place", "alvin-place:22",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+
+		assertFalse(changed);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 1);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfStaleWrites(), 0);
+	}
+
+	@Test
+	public void updatePlaceWithCachedMetadataNotReadableAsXMLWrites() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		addContentResponse();
+
+		boolean changed = alvinToCoraRecordStorage.updateIfChanged("place", "alvin-place:22",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+
+		assertTrue(changed);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 0);
+	}
+
+	@Test
+	public void updatePlaceWithoutCachedMetadataConvertsUsingCurrentMetadataFromFedora()
+			throws Exception {
+		addContentResponse();
+		addContentResponse();
+		DataGroup dataRecord = new DataGroupSpy("authority");
+
+		boolean changed = alvinToCoraRecordStorage.updateIfChanged("place", "alvin-place:22",
+				dataRecord, createCollectTermsWithRecordLabel(), null, null);
+
+		assertTrue(changed);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(httpHandlerFactory.urls.get(0),
+				baseURL + "objects/alvin-place:22/datastreams/METADATA/content");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(0).requestMethod, "GET");
+		AlvinCoraToFedoraConverterSpy converter = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertSame(converter.dataRecord, dataRecord);
+		assertEquals(converter.currentFedoraXML, "Dummy response text");
+		assertEquals(httpHandlerFactory.urls.get(1), createUrlForWritingMetadata());
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(1);
+		assertEquals(httpHandler.requestMethod, "PUT");
+		assertEquals(httpHandler.outputStrings.get(0), converter.returnedXMLUsingCurrentFedoraXML);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 0);
+	}
+
+	@Test
+	public void updatePlaceWithCurrentMetadataEqualToNewXMLSkipsWrite() throws Exception {
+		addCurrentMetadataResponse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<dummy>Dummy xml from current fedora xml</dummy>\n");
+
+		boolean changed = alvinToCoraRecordStorage.updateIfChanged("place", "alvin-place:22",
+				new DataGroupSpy("authority"), createCollectTermsWithRecordLabel(), null, null);
+
+		assertFalse(changed);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 1);
+	}
+
+	private void addCurrentMetadataResponse(String currentMetadata) {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(currentMetadata);
+	}
+
+	@Test
+	public void updatePlaceWithOnlyFormattingChangedSkipsWrite() throws Exception {
+		addCurrentMetadataResponse("<?xml version=\"1.0\"?>\n"
+				+ "<place type=\"city\"  id=\"1\">\n  <name>Uppsala</name>\n</place>");
+		converterFactory.returnedXMLFromToFedoraConverters = "<place id=\"1\" type=\"city\">"
+				+ "<name>Uppsala</name></place>";
+
+		updatePlace("alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 1);
+	}
+
+	private void updatePlace(String id) {
+		alvinToCoraRecordStorage.update("place", id, new DataGroupSpy("authority"),
+				createCollectTermsWithRecordLabel(), null, null);
+	}
+
+	@Test
+	public void updatePlaceChangedInFedoraSinceLastWriteWritesAgain() throws Exception {
+		addCurrentMetadataResponse("<place><name>Uppsala</name></place>");
+		addContentResponse();
+		addCurrentMetadataResponse("<place><name>Changed by someone else</name></place>");
+		addContentResponse();
+		converterFactory.returnedXMLFromToFedoraConverters = "<place><name>Upsala</name></place>";
+		updatePlace("alvin-place:22");
+
+		updatePlace("alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(3).requestMethod, "PUT");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(3).outputStrings.get(0),
+				"<place><name>Upsala</name></place>");
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 0);
+	}
+
+	@Test
+	public void updatePlaceWithXMLNotReadableWrites() throws Exception {
+		addCurrentMetadataResponse("not xml");
+		addContentResponse();
+		converterFactory.returnedXMLFromToFedoraConverters = "not xml";
+
+		updatePlace("alvin-place:22");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(alvinToCoraRecordStorage.getNumberOfSkippedWrites(), 0);
+	}
+
+	@Test
+	public void updatePlaceWhenReadingCurrentMetadataFailsThrowsExceptionWithoutWriting()
+			throws Exception {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("Error");
+		try {
+			updatePlace("alvin-place:22");
+			fail("Exception should have been thrown");
+		} catch (FedoraException e) {
+			assertEquals(e.getCause().getMessage(),
+					"reading metadata from fedora failed for place: alvin-place:22"
+							+ ", with response code: 500");
+		}
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+	}
+
+	@Test
+	public void updatePlaceNotFoundInFedoraThrowsExceptionWithoutWriting() throws Exception {
+		httpHandlerFactory.responseCodes.add(404);
+		httpHandlerFactory.responseTexts.add("Not found");
+		try {
+			updatePlace("alvin-place:22");
+			fail("Exception should have been thrown");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(), "update to fedora failed for dataRecord: alvin-place:22");
+			assertTrue(e.getCause() instanceof RecordNotFoundException);
+		}
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		AlvinCoraToFedoraConverterSpy converter = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertNull(converter.dataRecord);
+	}
+
+	@Test
+	public void createPlaceRemovesItFromCache() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		readPlaceIntoCache();
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+
+		alvinToCoraRecordStorage.create("place", "alvin-place:22", new DataGroupSpy("authority"),
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getSize(), 0);
+	}
+
 	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
 			+ "create is not implemented")
 	public void createThrowsNotImplementedException() throws Exception {
@@ -193,10 +828,7 @@ public class FedoraRecordStorageTest {
 	private void assertCorrectHttpHandlerForCreatingObject() throws UnsupportedEncodingException {
 		HttpHandlerSpy httpHandlerForObject = httpHandlerFactory.factoredHttpHandlers.get(0);
 		assertEquals(httpHandlerForObject.requestMethod, "POST");
-		String encoded = getEncodedAuthorization();
-
-		assertEquals(httpHandlerForObject.requestProperties.get("Authorization"),
-				"Basic " + encoded);
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandlerForObject);
 
 		String encodedLabel = urlEncode("Some Place Collected Name åäö");
 		assertEquals(httpHandlerFactory.urls.get(0),
@@ -208,30 +840,22 @@ public class FedoraRecordStorageTest {
 	private void assertCorrectHttpHandlerForRelation() {
 		HttpHandlerSpy httpHandlerForRelation = httpHandlerFactory.factoredHttpHandlers.get(1);
 		assertEquals(httpHandlerForRelation.requestMethod, "POST");
-		String encoded = getEncodedAuthorization();
-
-		assertEquals(httpHandlerForRelation.requestProperties.get("Authorization"),
-				"Basic " + encoded);
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandlerForRelation);
 		assertEquals(httpHandlerFactory.urls.get(1),
 				baseURL + "objects/alvin-place:22/relationships/new?object="
 						+ urlEncode("info:fedora/alvin-model:place") + "&predicate="
 						+ urlEncode("info:fedora/fedora-system:def/model#hasModel"));
 	}
 
-	private String getEncodedAuthorization() {
-		String encoded = Base64.getEncoder().encodeToString(
-				(fedoraUsername + ":" + fedoraPassword).getBytes(StandardCharsets.UTF_8));
-		return encoded;
+	private void assertAuthorizationIsLeftToHttpHandlerFactory(HttpHandlerSpy httpHandler) {
+		assertFalse(httpHandler.basicAuthorizationWasSet);
 	}
 
 	private void assertCorrectHttpHandlerForCreatingDatastream(
 			AlvinCoraToFedoraConverterSpy converterSpy) throws UnsupportedEncodingException {
 		HttpHandlerSpy httpHandlerForDatastream = httpHandlerFactory.factoredHttpHandlers.get(2);
 		assertEquals(httpHandlerForDatastream.requestMethod, "POST");
-		String encoded = getEncodedAuthorization();
-
-		assertEquals(httpHandlerForDatastream.requestProperties.get("Authorization"),
-				"Basic " + encoded);
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandlerForDatastream);
 
 		String encodedLabel = urlEncode("Some Place Collected Name åäö");
 		assertEquals(httpHandlerFactory.urls.get(2),
@@ -251,6 +875,73 @@ public class FedoraRecordStorageTest {
 		return null;
 	}
 
+	@Test
+	public void testDefaultCreateModeIsIngest() throws Exception {
+		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL);
+		FedoraRecordStorage recordStorage = FedoraRecordStorage
+				.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfig(httpHandlerFactory,
+						converterFactory, fedoraConfig);
+		assertEquals(recordStorage.getCreateMode(), CreateMode.INGEST);
+	}
+
+	@Test
+	public void testCreateModeFromConfigIsUsed() throws Exception {
+		assertEquals(alvinToCoraRecordStorage.getCreateMode(), CreateMode.MULTI_CALL);
+	}
+
+	@Test
+	public void createPlaceInIngestModeUsesOneFoxmlIngest() throws Exception {
+		FedoraRecordStorage recordStorage = createRecordStorageWithIngestCreateMode();
+		httpHandlerFactory.responseCodes.add(201);
+		httpHandlerFactory.responseTexts.add("alvin-place:22");
+		DataGroup dataRecord = new DataGroupSpy("authority");
+
+		recordStorage.create("place", "alvin-place:22", dataRecord,
+				createCollectTermsWithRecordLabel(), null, null);
+
+		assertEquals(recordStorage.getCreateMode(), CreateMode.INGEST);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
+		assertEquals(httpHandler.requestMethod, "POST");
+		assertEquals(httpHandlerFactory.urls.get(0),
+				baseURL + "objects/alvin-place:22?format="
+						+ urlEncode("info:fedora/fedora-system:FOXML-1.1")
+						+ "&logMessage=coraWritten");
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandler);
+		assertEquals(httpHandler.requestProperties.get("Content-Type"),
+				"text/xml; charset=UTF-8");
+		AlvinCoraToFedoraConverterSpy converter = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertEquals(converter.dataRecord, dataRecord);
+		assertEquals(httpHandler.outputStrings.get(0),
+				PlaceFoxml.createUsingPidAndLabelAndMetadataXml("alvin-place:22",
+						"Some Place Collected Name åäö", converter.returnedNewXML));
+		assertTrue(httpHandler.responseCodeWasRequested);
+	}
+
+	private FedoraRecordStorage createRecordStorageWithIngestCreateMode() {
+		FedoraConfig fedoraConfig = new FedoraConfig(fedoraUsername, fedoraPassword, baseURL,
+				CreateMode.INGEST);
+		return FedoraRecordStorage.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfig(
+				httpHandlerFactory, converterFactory, fedoraConfig);
+	}
+
+	@Test
+	public void createPlaceInIngestModeErrorThrowsException() throws Exception {
+		FedoraRecordStorage recordStorage = createRecordStorageWithIngestCreateMode();
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("Error from ingest");
+		try {
+			recordStorage.create("place", "alvin-place:22", new DataGroupSpy("authority"),
+					createCollectTermsWithRecordLabel(), null, null);
+			fail("Exception should have been thrown");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(), "create in fedora failed with message: "
+					+ "ingesting object in fedora failed, with response code: 500");
+		}
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+	}
+
 	@Test
 	public void createPlaceErrorCreatingObjectDoNotCreateRelationOrDatastreamAndThrowsException()
 			throws Exception {
@@ -369,9 +1060,7 @@ public class FedoraRecordStorageTest {
 		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
 		assertEquals(httpHandler.requestMethod, "PUT");
 
-		String encoded = Base64.getEncoder().encodeToString(
-				(fedoraUsername + ":" + fedoraPassword).getBytes(StandardCharsets.UTF_8));
-		assertEquals(httpHandler.requestProperties.get("Authorization"), "Basic " + encoded);
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandler);
 		assertEquals(converterFactory.factoredToFedoraConverters.size(), 0);
 
 		assertEquals(httpHandlerFactory.urls.get(0), baseURL + "objects/alvin-place:22?state=D");
@@ -400,8 +1089,8 @@ public class FedoraRecordStorageTest {
 
 	@Test
 	public void updateUpdatesRecordInStoragesName() throws Exception {
-		httpHandlerFactory.responseCodes.add(200);
-		httpHandlerFactory.responseTexts.add("Dummy response text");
+		addContentResponse();
+		addContentResponse();
 		DataGroup dataRecord = new DataGroupSpy("authority");
 
 		DataGroup collectedTerms = createCollectTermsWithRecordLabel();
@@ -412,25 +1101,24 @@ public class FedoraRecordStorageTest {
 		alvinToCoraRecordStorage.update("place", "alvin-place:22", dataRecord, collectedTerms, linkList,
 				dataDivider);
 
-		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
 
 		String encodedLabel = URLEncoder.encode("Some Place Collected Name åäö", "UTF-8");
-		assertEquals(httpHandlerFactory.urls.get(0),
+		assertEquals(httpHandlerFactory.urls.get(1),
 				baseURL + "objects/alvin-place:22/datastreams/METADATA?format=?xml&controlGroup=M"
 						+ "&logMessage=coraWritten&checksumType=SHA-512&dsLabel=" + encodedLabel);
 
-		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
+		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(1);
 		assertEquals(httpHandler.requestMethod, "PUT");
-		String encoded = Base64.getEncoder().encodeToString(
-				(fedoraUsername + ":" + fedoraPassword).getBytes(StandardCharsets.UTF_8));
-		assertEquals(httpHandler.requestProperties.get("Authorization"), "Basic " + encoded);
+		assertAuthorizationIsLeftToHttpHandlerFactory(httpHandler);
 
 		assertEquals(converterFactory.factoredToFedoraConverters.size(), 1);
 		assertEquals(converterFactory.factoredToFedoraTypes.get(0), "place");
 		AlvinCoraToFedoraConverterSpy converterSpy = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
 				.get(0);
 		assertSame(converterSpy.dataRecord, dataRecord);
-		assertEquals(converterSpy.returnedXML, httpHandler.outputStrings.get(0));
+		assertEquals(converterSpy.returnedXMLUsingCurrentFedoraXML,
+				httpHandler.outputStrings.get(0));
 	}
 
 	private DataGroup createCollectTermsWithRecordLabel() {
@@ -452,8 +1140,8 @@ public class FedoraRecordStorageTest {
 
 	@Test
 	public void updateIsMissingRecordLabelInCollectedStorageTerms() throws Exception {
-		httpHandlerFactory.responseCodes.add(200);
-		httpHandlerFactory.responseTexts.add("Dummy response text");
+		addContentResponse();
+		addContentResponse();
 		DataGroup dataRecord = new DataGroupSpy("authority");
 
 		DataGroup collectedTerms = new DataGroupSpy("collectedData");
@@ -477,8 +1165,8 @@ public class FedoraRecordStorageTest {
 		alvinToCoraRecordStorage.update("place", "alvin-place:22", dataRecord, collectedTerms, linkList,
 				dataDivider);
 
-		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
-		assertEquals(httpHandlerFactory.urls.get(0), baseURL
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(httpHandlerFactory.urls.get(1), baseURL
 				+ "objects/alvin-place:22/datastreams/METADATA?format=?xml&controlGroup=M"
 				+ "&logMessage=coraWritten&checksumType=SHA-512&dsLabel=LabelNotPresentInStorageTerms");
 	}
@@ -486,6 +1174,7 @@ public class FedoraRecordStorageTest {
 	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
 			+ "update to fedora failed for dataRecord: alvin-place:22")
 	public void updateIfNotOkFromFedoraThrowException() throws Exception {
+		addContentResponse();
 		httpHandlerFactory.responseTexts.add("Dummy response text");
 		httpHandlerFactory.responseCodes.add(500);
 
@@ -499,6 +1188,7 @@ public class FedoraRecordStorageTest {
 	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
 			+ "update to fedora failed for dataRecord: alvin-place:23")
 	public void updateIfNotOkFromFedoraThrowExceptionOtherRecord() throws Exception {
+		addContentResponse();
 		httpHandlerFactory.responseTexts.add("Dummy response text");
 		httpHandlerFactory.responseCodes.add(505);
 
@@ -517,7 +1207,8 @@ public class FedoraRecordStorageTest {
 
 	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
 			+ "Unable to read list of places: Can not read xml: "
-			+ "The element type \"someTag\" must be terminated by the matching end-tag \"</someTag>\".")
+			+ "ParseError at \\[row,col\\]:\\[1,12\\]\n"
+			+ "Message: The element type \"someTag\" must be terminated by the matching end-tag \"</someTag>\".")
 	public void readListThrowsParseExceptionOnBrokenXML() throws Exception {
 		httpHandlerFactory.responseTexts.add("<someTag></notSameTag>");
 		httpHandlerFactory.responseCodes.add(200);
@@ -533,7 +1224,7 @@ public class FedoraRecordStorageTest {
 		Collection<DataGroup> readPlaceList = alvinToCoraRecordStorage.readList("place",
 				new DataGroupSpy("filter")).listOfDataGroups;
 		assertEquals(httpHandlerFactory.urls.get(0), baseURL
-				+ "objects?pid=true&maxResults=10000&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*");
+				+ "objects?pid=true&mDate=true&maxResults=100&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*");
 		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 7);
 		HttpHandlerSpy httpHandler = httpHandlerFactory.factoredHttpHandlers.get(0);
 		assertEquals(httpHandler.requestMethod, "GET");
@@ -561,6 +1252,293 @@ public class FedoraRecordStorageTest {
 		assertEquals(readPlaceIterator.next(), alvinToCoraConverter.convertedDataGroup);
 	}
 
+	@Test
+	public void readPlaceListWithoutPagingReturnsStartAndTotalNumberOfMatches() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+
+		StorageReadResult readResult = alvinToCoraRecordStorage.readList("place",
+				new DataGroupSpy("filter"));
+
+		assertEquals(readResult.start, 0);
+		assertEquals(readResult.totalNumberOfMatches, 6);
+	}
+
+	@Test
+	public void readPlaceListOnlyConvertsPlacesInRequestedWindow() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", "2"));
+		filter.addChild(new DataAtomicSpy("toNo", "3"));
+
+		StorageReadResult readResult = alvinToCoraRecordStorage.readList("place", filter);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(1),
+				baseURL + "objects/alvin-place:24/datastreams/METADATA/content");
+		assertEquals(httpHandlerFactory.urls.get(2),
+				baseURL + "objects/alvin-place:679/datastreams/METADATA/content");
+		assertEquals(converterFactory.factoredToCoraConverters.size(), 2);
+		assertEquals(readResult.listOfDataGroups.size(), 2);
+		assertEquals(readResult.start, 1);
+		assertEquals(readResult.totalNumberOfMatches, 6);
+	}
+
+	@Test
+	public void readPlaceListFollowsSessionTokenUntilWindowIsRead() throws Exception {
+		alvinToCoraRecordStorage = createRecordStorageWithPlaceListFetchConfig(
+				new PlaceListFetchConfig(Mode.SEQUENTIAL, 1, ErrorPolicy.FAIL, 2));
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceListPageWithSessionToken(
+				"someToken", "alvin-place:22", "alvin-place:24"));
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceListPageWithSessionToken(
+				"someToken", "alvin-place:679", "alvin-place:692"));
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("Dummy response text");
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(new DataAtomicSpy("fromNo", "3"));
+		filter.addChild(new DataAtomicSpy("toNo", "3"));
+
+		StorageReadResult readResult = alvinToCoraRecordStorage.readList("place", filter);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 3);
+		assertEquals(httpHandlerFactory.urls.get(0), baseURL
+				+ "objects?pid=true&mDate=true&maxResults=2&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*");
+		assertEquals(httpHandlerFactory.urls.get(1), baseURL
+				+ "objects?pid=true&mDate=true&maxResults=2&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*"
+				+ "&sessionToken=someToken");
+		assertEquals(httpHandlerFactory.urls.get(2),
+				baseURL + "objects/alvin-place:679/datastreams/METADATA/content");
+		assertEquals(readResult.listOfDataGroups.size(), 1);
+		assertEquals(readResult.start, 2);
+		assertEquals(readResult.totalNumberOfMatches, 6);
+	}
+
+	@Test
+	public void readPlaceListWithLabelFilterIsSentToFedora() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("labelStartsWith", "Upp"));
+
+		alvinToCoraRecordStorage.readList("place", filter);
+
+		assertEquals(httpHandlerFactory.urls.get(0), baseURL
+				+ "objects?pid=true&mDate=true&maxResults=100&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*"
+				+ "+label%7E%27Upp*%27");
+	}
+
+	private DataGroup createFilterPart(String key, String value) {
+		DataGroup part = new DataGroupSpy("part");
+		part.addChild(new DataAtomicSpy("key", key));
+		part.addChild(new DataAtomicSpy("value", value));
+		return part;
+	}
+
+	@Test
+	public void readPlaceListWithPidRangeOnlyFetchesPlacesInRange() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("pidFrom", "24"));
+		filter.addChild(createFilterPart("pidTo", "692"));
+
+		StorageReadResult readResult = alvinToCoraRecordStorage.readList("place", filter);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertEquals(httpHandlerFactory.urls.get(1),
+				baseURL + "objects/alvin-place:24/datastreams/METADATA/content");
+		assertEquals(httpHandlerFactory.urls.get(3),
+				baseURL + "objects/alvin-place:692/datastreams/METADATA/content");
+		assertEquals(readResult.listOfDataGroups.size(), 3);
+		assertEquals(readResult.totalNumberOfMatches, 3);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unable to read list of places: "
+			+ "Invalid value in place list filter for pidFrom: notANumber")
+	public void readPlaceListWithInvalidPidRangeIsRejected() throws Exception {
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("pidFrom", "notANumber"));
+
+		alvinToCoraRecordStorage.readList("place", filter);
+	}
+
+	@Test
+	public void readPlaceListWithUnsupportedFilterPartFallsBackToPostFilter() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		for (int i = 0; i < 6; i++) {
+			httpHandlerFactory.responseCodes.add(200);
+			httpHandlerFactory.responseTexts.add(i % 2 == 0 ? "match" : "noMatch");
+		}
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("xml", "match"));
+		filter.addChild(new DataAtomicSpy("fromNo", "2"));
+		filter.addChild(new DataAtomicSpy("toNo", "5"));
+
+		StorageReadResult readResult = alvinToCoraRecordStorage.readList("place", filter);
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 7);
+		assertEquals(readResult.totalNumberOfMatches, 3);
+		assertEquals(readResult.start, 1);
+		assertEquals(readResult.listOfDataGroups.size(), 2);
+		AlvinFedoraToCoraConverterSpy thirdConverter = (AlvinFedoraToCoraConverterSpy) converterFactory.factoredToCoraConverters
+				.get(2);
+		assertSame(readResult.listOfDataGroups.get(0), thirdConverter.convertedDataGroup);
+	}
+
+	@Test
+	public void getTotalNumberOfRecordsForPlaceWithPidRangeDoesNotFetchPlaces()
+			throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("pidTo", "100"));
+
+		long total = alvinToCoraRecordStorage.getTotalNumberOfRecordsForType("place", filter);
+
+		assertEquals(total, 3);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+	}
+
+	@Test
+	public void getTotalNumberOfRecordsForPlaceWithLabelUsesCountQuery() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(
+				createXMLForPlaceListPageWithSessionToken("someToken", "alvin-place:22"));
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("labelStartsWith", "Upp"));
+
+		assertEquals(alvinToCoraRecordStorage.getTotalNumberOfRecordsForType("place", filter), 6);
+		assertEquals(httpHandlerFactory.urls.get(0), baseURL
+				+ "objects?pid=true&maxResults=1&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*"
+				+ "+label%7E%27Upp*%27");
+	}
+
+	@Test
+	public void getTotalNumberOfRecordsForPlaceWithPostFilter() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		for (int i = 0; i < 6; i++) {
+			httpHandlerFactory.responseCodes.add(200);
+			httpHandlerFactory.responseTexts.add(i < 4 ? "match" : "noMatch");
+		}
+		DataGroup filter = new DataGroupSpy("filter");
+		filter.addChild(createFilterPart("xml", "match"));
+
+		assertEquals(alvinToCoraRecordStorage.getTotalNumberOfRecordsForType("place", filter), 4);
+	}
+
+	private String createXMLForPlaceListPageWithSessionToken(String token, String... pids) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n"
+				+ "  <listSession>\n" + "    <token>" + token + "</token>\n"
+				+ "    <cursor>0</cursor>\n" + "    <completeListSize>6</completeListSize>\n"
+				+ "  </listSession>\n" + "  <resultList>\n");
+		for (String pid : pids) {
+			xml.append("  <objectFields>\n      <pid>" + pid + "</pid>\n  </objectFields>\n");
+		}
+		xml.append("  </resultList>\n" + "</result>");
+		return xml.toString();
+	}
+
+	@Test
+	public void readPlaceListTwiceWithUnchangedMDateOnlyConvertsOnce() throws Exception {
+		setUpRecordStorageWithPlaceCacheAndProviders();
+		addPlaceListResponseWithMDate("date1");
+		addContentResponse();
+		addContentResponse();
+		addPlaceListResponseWithMDate("date1");
+
+		alvinToCoraRecordStorage.readList("place", new DataGroupSpy("filter"));
+		StorageReadResult readResult = alvinToCoraRecordStorage.readList("place",
+				new DataGroupSpy("filter"));
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 4);
+		assertEquals(converterFactory.factoredToCoraConverters.size(), 2);
+		assertEquals(readResult.listOfDataGroups.size(), 2);
+		assertEquals(alvinToCoraRecordStorage.getPlaceCache().getNumberOfHits(), 2);
+	}
+
+	private void addPlaceListResponseWithMDate(String mDate) {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n"
+				+ "  <resultList>\n" + "  <objectFields>\n" + "      <pid>alvin-place:22</pid>\n"
+				+ "      <mDate>" + mDate + "</mDate>\n" + "  </objectFields>\n"
+				+ "  <objectFields>\n" + "      <pid>alvin-place:24</pid>\n" + "      <mDate>"
+				+ mDate + "</mDate>\n" + "  </objectFields>\n" + "  </resultList>\n"
+				+ "</result>");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unable to read list of places: "
+			+ "reading list from fedora failed, with response code: 500")
+	public void readPlaceListThrowsErrorIfListCanNotBeRead() throws Exception {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("Internal error");
+		alvinToCoraRecordStorage.readList("place", new DataGroupSpy("filter"));
+	}
+
+	@Test
+	public void readPlaceListInParallelReturnsConvertedResultInFedoraOrder() throws Exception {
+		alvinToCoraRecordStorage = createRecordStorageWithPlaceListFetchConfig(
+				new PlaceListFetchConfig(Mode.PARALLEL, 1, ErrorPolicy.FAIL));
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+
+		List<DataGroup> readPlaceList = alvinToCoraRecordStorage.readList("place",
+				new DataGroupSpy("filter")).listOfDataGroups;
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 7);
+		assertEquals(httpHandlerFactory.urls.get(1),
+				baseURL + "objects/alvin-place:22/datastreams/METADATA/content");
+		assertEquals(httpHandlerFactory.urls.get(6),
+				baseURL + "objects/alvin-place:1684/datastreams/METADATA/content");
+		assertEquals(readPlaceList.size(), 6);
+		for (int i = 0; i < 6; i++) {
+			AlvinFedoraToCoraConverterSpy converter = (AlvinFedoraToCoraConverterSpy) converterFactory.factoredToCoraConverters
+					.get(i);
+			assertSame(readPlaceList.get(i), converter.convertedDataGroup);
+		}
+	}
+
+	@Test
+	public void readPlaceListSkipsPlacesThatCanNotBeReadWhenPolicyIsSkip() throws Exception {
+		alvinToCoraRecordStorage = createRecordStorageWithPlaceListFetchConfig(
+				new PlaceListFetchConfig(Mode.SEQUENTIAL, 1, ErrorPolicy.SKIP));
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+		httpHandlerFactory.responseCodes.set(2, 404);
+
+		List<DataGroup> readPlaceList = alvinToCoraRecordStorage.readList("place",
+				new DataGroupSpy("filter")).listOfDataGroups;
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 7);
+		assertEquals(readPlaceList.size(), 5);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unable to read list of places: "
+			+ "Record not found for type: place and id: alvin-place:24")
+	public void readPlaceListFailsWhenPlaceCanNotBeReadWhenPolicyIsFail() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createXMLForPlaceList());
+		addDummyResponsesForAllObjectsInList();
+		httpHandlerFactory.responseCodes.set(2, 404);
+
+		alvinToCoraRecordStorage.readList("place", new DataGroupSpy("filter"));
+	}
+
 	private void addDummyResponsesForAllObjectsInList() {
 		for (int i = 0; i < 6; i++) {
 			httpHandlerFactory.responseTexts.add("Dummy response text");
@@ -616,6 +1594,31 @@ public class FedoraRecordStorageTest {
 		alvinToCoraRecordStorage.getTotalNumberOfRecordsForType("someType", filter);
 	}
 
+	@Test
+	public void getTotalNumberOfRecordsForPlaceOnlyAsksFedoraForListSize() throws Exception {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(
+				createXMLForPlaceListPageWithSessionToken("someToken", "alvin-place:22"));
+
+		long total = alvinToCoraRecordStorage.getTotalNumberOfRecordsForType("place",
+				new DataGroupSpy("filter"));
+
+		assertEquals(total, 6);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 1);
+		assertEquals(httpHandlerFactory.urls.get(0), baseURL
+				+ "objects?pid=true&maxResults=1&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*");
+		assertEquals(converterFactory.factoredToCoraConverters.size(), 0);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unable to count places: reading list from fedora failed, with response code: 500")
+	public void getTotalNumberOfRecordsForPlaceErrorFromFedora() throws Exception {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("");
+		alvinToCoraRecordStorage.getTotalNumberOfRecordsForType("place",
+				new DataGroupSpy("filter"));
+	}
+
 	@Test(expectedExceptions = NotImplementedException.class, expectedExceptionsMessageRegExp = ""
 			+ "getTotalNumberOfRecordsForAbstractType is not implemented for someAbstractType")
 	public void getTotalNumberOfRecordsForAbstractTypeThrowsNotImplementedException()
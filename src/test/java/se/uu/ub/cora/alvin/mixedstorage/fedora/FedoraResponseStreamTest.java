@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+
+public class FedoraResponseStreamTest {
+
+	@Test
+	public void testOtherHttpHandlerStreamsResponseText() throws Exception {
+		HttpHandlerSpy httpHandler = new HttpHandlerSpy();
+		httpHandler.responseText = "<place>Linköping</place>";
+
+		FedoraResponseStream.requestResponseAsStream(httpHandler);
+		try (InputStream stream = FedoraResponseStream.getResponseStream(httpHandler)) {
+			assertEquals(new String(stream.readAllBytes(), StandardCharsets.UTF_8),
+					"<place>Linköping</place>");
+		}
+		FedoraResponseStream.closeResponseStream(httpHandler);
+	}
+}
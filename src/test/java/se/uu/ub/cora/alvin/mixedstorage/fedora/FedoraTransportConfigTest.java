@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class FedoraTransportConfigTest {
+
+	@Test
+	public void testFedoraTransportConfig() {
+		FedoraTransportConfig config = new FedoraTransportConfig(8, 1000, 2000);
+		assertEquals(config.poolSize, 8);
+		assertEquals(config.connectTimeoutMillis, 1000);
+		assertEquals(config.readTimeoutMillis, 2000);
+	}
+
+	@Test
+	public void testDefaultValues() {
+		FedoraTransportConfig config = FedoraTransportConfig.withDefaultValues();
+		assertEquals(config.poolSize, 20);
+		assertEquals(config.connectTimeoutMillis, 5000);
+		assertEquals(config.readTimeoutMillis, 30000);
+	}
+}
@@ -34,6 +34,7 @@ public class HttpHandlerSpy implements HttpHandler {
 	public Map<String, String> requestProperties = new HashMap<String, String>();
 	public List<String> outputStrings = new ArrayList<String>();
 	public boolean responseCodeWasRequested = false;
+	public boolean basicAuthorizationWasSet = false;
 
 	@Override
 	public void setRequestMethod(String requestMetod) {
@@ -82,9 +83,8 @@ public class HttpHandlerSpy implements HttpHandler {
 	}
 
 	@Override
-	public void setBasicAuthorization(String arg0, String arg1) {
-		// TODO Auto-generated method stub
-
+	public void setBasicAuthorization(String username, String password) {
+		basicAuthorizationWasSet = true;
 	}
 
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class MissingPlaceCacheTest {
+	private long now;
+	private MissingPlaceCache cache;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 1000;
+		cache = MissingPlaceCache.withTimeToLiveMillisAndMaxSizeAndClock(100, 3, () -> now);
+	}
+
+	@Test
+	public void testSettings() {
+		MissingPlaceCache missingPlaceCache = MissingPlaceCache.withTimeToLiveMillisAndMaxSize(50,
+				7);
+		assertEquals(missingPlaceCache.getTimeToLiveMillis(), 50);
+		assertEquals(missingPlaceCache.getMaxSize(), 7);
+		assertEquals(missingPlaceCache.getSize(), 0);
+	}
+
+	@Test
+	public void testUnknownPidIsNotMissing() {
+		assertFalse(cache.isKnownMissing("alvin-place:1"));
+		assertEquals(cache.getNumberOfHits(), 0);
+	}
+
+	@Test
+	public void testMarkedPidIsMissing() {
+		cache.markMissing("alvin-place:1");
+		assertTrue(cache.isKnownMissing("alvin-place:1"));
+		assertFalse(cache.isKnownMissing("alvin-place:2"));
+		assertEquals(cache.getNumberOfHits(), 1);
+		assertEquals(cache.getSize(), 1);
+	}
+
+	@Test
+	public void testMarkedPidExpiresAfterTimeToLive() {
+		cache.markMissing("alvin-place:1");
+		now = 1099;
+		assertTrue(cache.isKnownMissing("alvin-place:1"));
+		now = 1100;
+		assertFalse(cache.isKnownMissing("alvin-place:1"));
+		assertEquals(cache.getSize(), 0);
+	}
+
+	@Test
+	public void testClearRemovesPid() {
+		cache.markMissing("alvin-place:1");
+		cache.clear("alvin-place:1");
+		assertFalse(cache.isKnownMissing("alvin-place:1"));
+	}
+
+	@Test
+	public void testFullCacheDoesNotGrow() {
+		cache.markMissing("alvin-place:1");
+		cache.markMissing("alvin-place:2");
+		cache.markMissing("alvin-place:3");
+		cache.markMissing("alvin-place:4");
+		assertEquals(cache.getSize(), 3);
+		assertFalse(cache.isKnownMissing("alvin-place:4"));
+	}
+
+	@Test
+	public void testFullCacheRemovesExpiredToMakeRoom() {
+		cache.markMissing("alvin-place:1");
+		cache.markMissing("alvin-place:2");
+		now = 1050;
+		cache.markMissing("alvin-place:3");
+		now = 1100;
+		cache.markMissing("alvin-place:4");
+		assertEquals(cache.getSize(), 2);
+		assertTrue(cache.isKnownMissing("alvin-place:3"));
+		assertTrue(cache.isKnownMissing("alvin-place:4"));
+	}
+
+	@Test
+	public void testMarkingAgainInFullCacheExtendsTimeToLive() {
+		cache.markMissing("alvin-place:1");
+		cache.markMissing("alvin-place:2");
+		cache.markMissing("alvin-place:3");
+		now = 1050;
+		cache.markMissing("alvin-place:1");
+		now = 1120;
+		assertTrue(cache.isKnownMissing("alvin-place:1"));
+	}
+
+	@Test
+	public void testDisabledCacheStoresNothing() {
+		MissingPlaceCache disabled = MissingPlaceCache.withTimeToLiveMillisAndMaxSize(0, 0);
+		disabled.markMissing("alvin-place:1");
+		assertFalse(disabled.isKnownMissing("alvin-place:1"));
+		assertEquals(disabled.getSize(), 0);
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceCache.CachedMetadata;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+public class PlaceCacheTest {
+	private PlaceCache placeCache;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		placeCache = PlaceCache.withMaxSize(2);
+	}
+
+	@Test
+	public void testEmptyCache() {
+		assertEquals(placeCache.getMaxSize(), 2);
+		assertEquals(placeCache.getSize(), 0);
+		assertEquals(placeCache.getHitRatio(), 0.0);
+		assertEquals(placeCache.getNumberOfEvictions(), 0);
+	}
+
+	@Test
+	public void testMissWhenNotCached() {
+		assertNull(placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1"));
+		assertEquals(placeCache.getNumberOfMisses(), 1);
+		assertEquals(placeCache.getHitRatio(), 0.0);
+	}
+
+	@Test
+	public void testHitReturnsCopyOfCachedPlace() {
+		DataGroup place = createPlace("alvin-place:1");
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1", place);
+
+		DataGroup cachedPlace = placeCache.getUsingPidAndLastModifiedDate("alvin-place:1",
+				"date1");
+
+		assertNotNull(cachedPlace);
+		assertNotSame(cachedPlace, place);
+		assertEquals(cachedPlace.getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+		assertEquals(placeCache.getNumberOfHits(), 1);
+		assertEquals(placeCache.getHitRatio(), 1.0);
+		assertEquals(placeCache.getSize(), 1);
+	}
+
+	private DataGroup createPlace(String id) {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addChild(new DataAtomicSpy("id", id));
+		return place;
+	}
+
+	@Test
+	public void testChangesToReturnedPlaceDoNotChangeCache() {
+		DataGroup place = createPlace("alvin-place:1");
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1", place);
+		place.addChild(new DataAtomicSpy("changedAfterPut", "value"));
+		DataGroup cachedPlace = placeCache.getUsingPidAndLastModifiedDate("alvin-place:1",
+				"date1");
+		cachedPlace.addChild(new DataAtomicSpy("changedAfterGet", "value"));
+
+		DataGroup cachedPlace2 = placeCache.getUsingPidAndLastModifiedDate("alvin-place:1",
+				"date1");
+		assertEquals(cachedPlace2.getChildren().size(), 1);
+	}
+
+	@Test
+	public void testMissWhenLastModifiedDateDiffers() {
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1",
+				createPlace("alvin-place:1"));
+
+		assertNull(placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date2"));
+		assertEquals(placeCache.getNumberOfMisses(), 1);
+	}
+
+	@Test
+	public void testHitRatio() {
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1",
+				createPlace("alvin-place:1"));
+		placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1");
+		placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1");
+		placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1");
+		placeCache.getUsingPidAndLastModifiedDate("alvin-place:2", "date1");
+		assertEquals(placeCache.getHitRatio(), 0.75);
+	}
+
+	@Test
+	public void testInvalidate() {
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1",
+				createPlace("alvin-place:1"));
+		placeCache.invalidate("alvin-place:1");
+
+		assertEquals(placeCache.getSize(), 0);
+		assertNull(placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvictedWhenFull() {
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1",
+				createPlace("alvin-place:1"));
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:2", "date1",
+				createPlace("alvin-place:2"));
+		placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1");
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:3", "date1",
+				createPlace("alvin-place:3"));
+
+		assertEquals(placeCache.getSize(), 2);
+		assertEquals(placeCache.getNumberOfEvictions(), 1);
+		assertNull(placeCache.getUsingPidAndLastModifiedDate("alvin-place:2", "date1"));
+		assertNotNull(placeCache.getUsingPidAndLastModifiedDate("alvin-place:1", "date1"));
+		assertNotNull(placeCache.getUsingPidAndLastModifiedDate("alvin-place:3", "date1"));
+	}
+
+	@Test
+	public void testCacheWithMaxSizeZeroStoresNothing() {
+		placeCache = PlaceCache.withMaxSize(0);
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1",
+				createPlace("alvin-place:1"));
+
+		assertEquals(placeCache.getSize(), 0);
+		assertEquals(placeCache.getNumberOfEvictions(), 0);
+	}
+
+	@Test
+	public void testIsEnabled() {
+		assertTrue(placeCache.isEnabled());
+		assertFalse(PlaceCache.withMaxSize(0).isEnabled());
+	}
+
+	@Test
+	public void testNoMetadataWhenNotCached() {
+		assertNull(placeCache.getMetadataUsingPid("alvin-place:1"));
+	}
+
+	@Test
+	public void testNoMetadataWhenPutWithoutMetadata() {
+		placeCache.putUsingPidAndLastModifiedDate("alvin-place:1", "date1",
+				createPlace("alvin-place:1"));
+
+		assertNull(placeCache.getMetadataUsingPid("alvin-place:1"));
+	}
+
+	@Test
+	public void testMetadataIsCachedWithLastModifiedDate() throws Exception {
+		placeCache.putUsingPidAndLastModifiedDateAndMetadata("alvin-place:1", "date1",
+				createPlace("alvin-place:1"), "<place/>".getBytes(StandardCharsets.UTF_8));
+
+		CachedMetadata cachedMetadata = placeCache.getMetadataUsingPid("alvin-place:1");
+		assertEquals(cachedMetadata.lastModifiedDate, "date1");
+		assertEquals(new String(cachedMetadata.getMetadataAsStream().readAllBytes(),
+				StandardCharsets.UTF_8), "<place/>");
+		assertEquals(placeCache.getNumberOfMisses(), 0);
+	}
+
+	@Test
+	public void testMetadataIsRemovedOnInvalidate() {
+		placeCache.putUsingPidAndLastModifiedDateAndMetadata("alvin-place:1", "date1",
+				createPlace("alvin-place:1"), "<place/>".getBytes(StandardCharsets.UTF_8));
+		placeCache.invalidate("alvin-place:1");
+
+		assertNull(placeCache.getMetadataUsingPid("alvin-place:1"));
+	}
+}
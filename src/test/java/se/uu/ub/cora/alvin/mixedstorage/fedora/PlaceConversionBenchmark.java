@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.resource.ResourceReader;
+import se.uu.ub.cora.alvin.mixedstorage.xslt.XsltTransformation;
+import se.uu.ub.cora.converter.ConverterProvider;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.DataRecordLinkProvider;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceConversionBenchmark {
+	private static final String XSLT_FEDORA_TO_CORA_PLACE = "xslt/AlvinFedoraToCoraPlace.xsl";
+	private static final String XML_FEDORA_PLACE = "place/xmlFedoraAlvinPlace_679.xml";
+	private String fedoraXml;
+	private XsltTransformation xsltTransformation;
+
+	@Setup
+	public void setUp() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataRecordLinkProvider.setDataRecordLinkFactory(new DataRecordLinkFactorySpy());
+		fedoraXml = ResourceReader.readResourceAsString(XML_FEDORA_PLACE);
+		xsltTransformation = new XsltTransformation(XSLT_FEDORA_TO_CORA_PLACE);
+	}
+
+	@Benchmark
+	public DataGroup transformToStringAndConvert() {
+		String coraXml = xsltTransformation.transform(fedoraXml);
+		return (DataGroup) ConverterProvider.getConverter("xml").convert(coraXml);
+	}
+
+	@Benchmark
+	public DataGroup transformToDataGroup() {
+		return xsltTransformation.transformToDataGroup(fedoraXml);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PlaceConversionBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.parse.XMLXPathParser;
+
+public class PlaceFoxmlTest {
+	private static final String METADATA_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<place><defaultName>Linköping</defaultName></place>";
+
+	@Test
+	public void testObjectProperties() {
+		XMLXPathParser parser = createFoxmlAndParse("Linköping");
+
+		assertEquals(parser.getStringFromDocumentUsingXPath("/digitalObject/@PID"),
+				"alvin-place:22");
+		assertEquals(parser.getStringFromDocumentUsingXPath("/digitalObject/@VERSION"), "1.1");
+		assertEquals(parser.getStringFromDocumentUsingXPath(
+				"/digitalObject/objectProperties/property[@NAME='info:fedora/fedora-system:def/model#state']/@VALUE"),
+				"A");
+		assertEquals(parser.getStringFromDocumentUsingXPath(
+				"/digitalObject/objectProperties/property[@NAME='info:fedora/fedora-system:def/model#label']/@VALUE"),
+				"Linköping");
+	}
+
+	private XMLXPathParser createFoxmlAndParse(String label) {
+		String foxml = PlaceFoxml.createUsingPidAndLabelAndMetadataXml("alvin-place:22", label,
+				METADATA_XML);
+		return XMLXPathParser.forXML(foxml.replace("foxml:", "").replace(":foxml", "")
+				.replace("rdf:", "").replace("fedora-model:", ""));
+	}
+
+	@Test
+	public void testRelsExtHasPlaceModel() {
+		XMLXPathParser parser = createFoxmlAndParse("Linköping");
+
+		String relsExt = "/digitalObject/datastream[@ID='RELS-EXT']";
+		assertEquals(parser.getStringFromDocumentUsingXPath(relsExt + "/@CONTROL_GROUP"), "X");
+		String description = relsExt + "/datastreamVersion/xmlContent/RDF/Description";
+		assertEquals(parser.getStringFromDocumentUsingXPath(description + "/@about"),
+				"info:fedora/alvin-place:22");
+		assertEquals(parser.getStringFromDocumentUsingXPath(description + "/hasModel/@resource"),
+				"info:fedora/alvin-model:place");
+	}
+
+	@Test
+	public void testMetadataIsManagedInlineDatastream() {
+		XMLXPathParser parser = createFoxmlAndParse("Linköping");
+
+		String metadata = "/digitalObject/datastream[@ID='METADATA']";
+		assertEquals(parser.getStringFromDocumentUsingXPath(metadata + "/@CONTROL_GROUP"), "M");
+		String version = metadata + "/datastreamVersion";
+		assertEquals(parser.getStringFromDocumentUsingXPath(version + "/@MIMETYPE"), "text/xml");
+		assertEquals(parser.getStringFromDocumentUsingXPath(version + "/@LABEL"), "Linköping");
+		assertEquals(parser.getStringFromDocumentUsingXPath(version + "/contentDigest/@TYPE"),
+				"SHA-512");
+		String binaryContent = parser
+				.getStringFromDocumentUsingXPath(version + "/binaryContent/text()");
+		assertEquals(new String(Base64.getDecoder().decode(binaryContent),
+				StandardCharsets.UTF_8), METADATA_XML);
+	}
+
+	@Test
+	public void testLabelIsEscaped() {
+		XMLXPathParser parser = createFoxmlAndParse("<Tom & \"Jerry's\">");
+
+		assertEquals(parser.getStringFromDocumentUsingXPath(
+				"/digitalObject/objectProperties/property[@NAME='info:fedora/fedora-system:def/model#label']/@VALUE"),
+				"<Tom & \"Jerry's\">");
+		assertEquals(parser.getStringFromDocumentUsingXPath(
+				"/digitalObject/datastream[@ID='METADATA']/datastreamVersion/@LABEL"),
+				"<Tom & \"Jerry's\">");
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PlaceImportCheckpointTest {
+	private Path checkpointPath;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		checkpointPath = Files.createTempFile("placeImportCheckpoint", ".txt");
+		Files.delete(checkpointPath);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(checkpointPath);
+	}
+
+	@Test
+	public void testWithoutPathKeepsImportedInMemoryOnly() {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint.usingPath(null)) {
+			checkpoint.markImported(3, "3.xml", "alvin-place:3");
+
+			assertTrue(checkpoint.isImported(3));
+			assertFalse(checkpoint.isImported(2));
+		}
+		assertFalse(Files.exists(checkpointPath));
+	}
+
+	@Test
+	public void testMarkImportedIsWrittenToFile() throws IOException {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markImported(0, "10.xml", "alvin-place:10");
+			checkpoint.markImported(2, "12.xml", "alvin-place:12");
+
+			assertEquals(readCheckpointFile(),
+					"0\t10.xml\talvin-place:10\n2\t12.xml\talvin-place:12\n");
+		}
+	}
+
+	private String readCheckpointFile() throws IOException {
+		return new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testExistingCheckpointIsRead() {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markImported(0, "10.xml", "alvin-place:10");
+			checkpoint.markImported(2, "12.xml", "alvin-place:12");
+		}
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getNumberOfImported(), 2);
+			assertTrue(checkpoint.isImported(0));
+			assertFalse(checkpoint.isImported(1));
+			assertEquals(checkpoint.getPidForImported(2), "alvin-place:12");
+			assertNull(checkpoint.getPidForImported(1));
+		}
+	}
+
+	@Test
+	public void testMarkStartedIsWrittenToFileAndRead() throws IOException {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markStarted(0, "10.xml", "alvin-place:10");
+			checkpoint.markStarted(1, "11.xml", "alvin-place:11");
+			checkpoint.markImported(0, "10.xml", "alvin-place:10");
+
+			assertEquals(readCheckpointFile(), "0\t10.xml\talvin-place:10\tstarted\n"
+					+ "1\t11.xml\talvin-place:11\tstarted\n0\t10.xml\talvin-place:10\n");
+		}
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getNumberOfImported(), 1);
+			assertTrue(checkpoint.isImported(0));
+			assertFalse(checkpoint.isImported(1));
+			assertEquals(checkpoint.getPidForStarted(1), "alvin-place:11");
+			assertNull(checkpoint.getPidForStarted(2));
+		}
+	}
+
+	@Test
+	public void testPartiallyWrittenLastLineIsIgnoredAndEnded() throws IOException {
+		Files.write(checkpointPath,
+				"0\t10.xml\talvin-place:10\n1".getBytes(StandardCharsets.UTF_8));
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getNumberOfImported(), 1);
+			checkpoint.markImported(1, "11.xml", "alvin-place:11");
+		}
+
+		assertEquals(readCheckpointFile(),
+				"0\t10.xml\talvin-place:10\n1\n1\t11.xml\talvin-place:11\n");
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getNumberOfImported(), 2);
+			assertEquals(checkpoint.getPidForImported(1), "alvin-place:11");
+		}
+	}
+
+	@Test
+	public void testUnreadableLinesAreIgnored() throws IOException {
+		Files.write(checkpointPath,
+				("someText\n\nx\t1.xml\talvin-place:1\n3\t\t\n4\t4.xml\talvin-place:4\n"
+						+ "5\t5.xml\talvin-place:5\tother\n2\talvin-place:2\n")
+								.getBytes(StandardCharsets.UTF_8));
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getNumberOfImported(), 1);
+			assertTrue(checkpoint.isImported(4));
+			assertNull(checkpoint.getPidForStarted(5));
+		}
+	}
+
+	@Test
+	public void testSourceNamesMatchingCheckpointAreAccepted() {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markStarted(0, "10.xml", "alvin-place:10");
+			checkpoint.markImported(1, "11.xml", "alvin-place:11");
+		}
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.ensureSourceNamesMatch(List.of("10.xml", "11.xml", "12.xml"));
+		}
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Place import checkpoint .* does not match the places to import, "
+			+ "place with index: 1 was 11.xml and is now 10b.xml")
+	public void testChangedSourceNameIsRejected() {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markImported(0, "10.xml", "alvin-place:10");
+			checkpoint.markStarted(1, "11.xml", "alvin-place:11");
+		}
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.ensureSourceNamesMatch(List.of("10.xml", "10b.xml", "11.xml"));
+		}
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Place import checkpoint .* does not match the places to import, "
+			+ "place with index: 1 was 11.xml and is now missing")
+	public void testMissingSourceIsRejected() {
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markImported(1, "11.xml", "alvin-place:11");
+		}
+
+		try (PlaceImportCheckpoint checkpoint = PlaceImportCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.ensureSourceNamesMatch(List.of("10.xml"));
+		}
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error opening place import checkpoint .*")
+	public void testCheckpointInMissingDirectory() {
+		PlaceImportCheckpoint
+				.usingPath(checkpointPath.resolve("missing").resolve("checkpoint").toString());
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class PlaceImportConfigTest {
+
+	@Test
+	public void testPlaceImportConfig() {
+		PlaceImportConfig config = new PlaceImportConfig(50, 3, 6, "/some/checkpoint");
+		assertEquals(config.pidBlockSize, 50);
+		assertEquals(config.conversionThreads, 3);
+		assertEquals(config.maxConcurrentIngests, 6);
+		assertEquals(config.checkpointPath, "/some/checkpoint");
+	}
+
+	@Test
+	public void testWithCheckpointPathAndDefaultValues() {
+		PlaceImportConfig config = PlaceImportConfig
+				.withCheckpointPathAndDefaultValues("/some/checkpoint");
+		assertEquals(config.pidBlockSize, 100);
+		assertEquals(config.conversionThreads, Runtime.getRuntime().availableProcessors());
+		assertEquals(config.maxConcurrentIngests, 8);
+		assertEquals(config.checkpointPath, "/some/checkpoint");
+	}
+
+}
@@ -0,0 +1,95 @@
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+import se.uu.ub.cora.httphandler.HttpMultiPartUploader;
+
+public class PlaceImportHttpHandlerFactorySpy implements HttpHandlerFactory {
+
+	public List<String> urls = Collections.synchronizedList(new ArrayList<>());
+	public List<String> nextPidUrls = Collections.synchronizedList(new ArrayList<>());
+	public List<IngestHttpHandlerSpy> ingestHttpHandlers = Collections
+			.synchronizedList(new ArrayList<>());
+	public Set<String> failingPids = Collections.synchronizedSet(new HashSet<>());
+	public Set<String> existingPids = Collections.synchronizedSet(new HashSet<>());
+	public int nextPidResponseCode = 200;
+	public long ingestDelayMillis = 0;
+	public AtomicInteger concurrentIngests = new AtomicInteger();
+	public AtomicInteger maxConcurrentIngests = new AtomicInteger();
+	private int nextPidNumber = 0;
+
+	@Override
+	public synchronized HttpHandler factor(String url) {
+		urls.add(url);
+		if (url.contains("nextPID")) {
+			return createNextPidHttpHandler(url);
+		}
+		if (url.endsWith("?format=xml")) {
+			return createObjectExistsHttpHandler(url);
+		}
+		IngestHttpHandlerSpy httpHandler = new IngestHttpHandlerSpy();
+		httpHandler.responseCode = isForFailingPid(url) ? 500 : 201;
+		ingestHttpHandlers.add(httpHandler);
+		return httpHandler;
+	}
+
+	private HttpHandler createNextPidHttpHandler(String url) {
+		nextPidUrls.add(url);
+		int numberOfPids = Integer
+				.parseInt(url.substring(url.indexOf("numPIDs=") + 8, url.indexOf("&format")));
+		StringBuilder pidList = new StringBuilder("<pidList>");
+		for (int i = 0; i < numberOfPids; i++) {
+			nextPidNumber++;
+			pidList.append("<pid>alvin-place:").append(nextPidNumber).append("</pid>");
+		}
+		pidList.append("</pidList>");
+		HttpHandlerSpy httpHandler = new HttpHandlerSpy();
+		httpHandler.responseCode = nextPidResponseCode;
+		httpHandler.responseText = pidList.toString();
+		return httpHandler;
+	}
+
+	private HttpHandler createObjectExistsHttpHandler(String url) {
+		String pid = url.substring(url.indexOf("objects/") + 8, url.indexOf("?"));
+		HttpHandlerSpy httpHandler = new HttpHandlerSpy();
+		httpHandler.responseCode = existingPids.contains(pid) ? 200 : 404;
+		return httpHandler;
+	}
+
+	private boolean isForFailingPid(String url) {
+		for (String pid : failingPids) {
+			if (url.contains("objects/" + pid + "?")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public HttpMultiPartUploader factorHttpMultiPartUploader(String url) {
+		return null;
+	}
+
+	public class IngestHttpHandlerSpy extends HttpHandlerSpy {
+
+		@Override
+		public int getResponseCode() {
+			int concurrent = concurrentIngests.incrementAndGet();
+			maxConcurrentIngests.accumulateAndGet(concurrent, Math::max);
+			try {
+				Thread.sleep(ingestDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			concurrentIngests.decrementAndGet();
+			return super.getResponseCode();
+		}
+	}
+}
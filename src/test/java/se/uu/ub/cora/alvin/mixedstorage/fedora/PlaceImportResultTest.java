@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult.Failure;
+
+public class PlaceImportResultTest {
+
+	@Test
+	public void testPlaceImportResult() {
+		Failure failure = new Failure(4, "someFile.xml", "alvin-place:4", "someMessage");
+		PlaceImportResult result = new PlaceImportResult(300, 20, List.of(failure), 1500);
+
+		assertEquals(result.numberOfImported, 300);
+		assertEquals(result.numberOfSkipped, 20);
+		assertEquals(result.failures.size(), 1);
+		assertEquals(result.failures.get(0).index, 4);
+		assertEquals(result.failures.get(0).sourceName, "someFile.xml");
+		assertEquals(result.failures.get(0).pid, "alvin-place:4");
+		assertEquals(result.failures.get(0).message, "someMessage");
+		assertEquals(result.elapsedMillis, 1500);
+		assertEquals(result.getPlacesPerSecond(), 200.0);
+	}
+
+	@Test
+	public void testPlacesPerSecondWithoutElapsedTime() {
+		PlaceImportResult result = new PlaceImportResult(3, 0, List.of(), 0);
+
+		assertEquals(result.getPlacesPerSecond(), 3.0);
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceImportResult.Failure;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataAttributeProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public class PlaceImporterTest {
+	private static final String TESTED_CLASS_NAME = "PlaceImporter";
+	private LoggerFactorySpy loggerFactorySpy;
+	private PlaceImportHttpHandlerFactorySpy httpHandlerFactory;
+	private AlvinFedoraToCoraConverterFactorySpy converterFactory;
+	private FedoraConfig fedoraConfig;
+	private Path checkpointPath;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		DataAttributeProvider.setDataAttributeFactory(new DataAttibuteFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		httpHandlerFactory = new PlaceImportHttpHandlerFactorySpy();
+		converterFactory = new AlvinFedoraToCoraConverterFactorySpy();
+		fedoraConfig = new FedoraConfig("someFedoraUser", "someFedoraPassword",
+				"http://someFedoraUrl/fedora/");
+		checkpointPath = Files.createTempFile("placeImportCheckpoint", ".txt");
+		Files.delete(checkpointPath);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(checkpointPath);
+	}
+
+	private PlaceImporter createImporterUsingConfig(PlaceImportConfig importConfig) {
+		return PlaceImporter.usingHttpHandlerFactoryAndConverterFactoryAndFedoraConfigAndImportConfig(
+				httpHandlerFactory, converterFactory, fedoraConfig, importConfig);
+	}
+
+	private PlaceImportConfig createConfigUsingPidBlockSize(int pidBlockSize) {
+		return new PlaceImportConfig(pidBlockSize, 2, 3, checkpointPath.toString());
+	}
+
+	private List<DataGroup> createPlaces(int numberOfPlaces) {
+		List<DataGroup> places = new ArrayList<>();
+		for (int i = 0; i < numberOfPlaces; i++) {
+			places.add(createPlaceUsingDefaultName("somePlace" + i));
+		}
+		return places;
+	}
+
+	private List<PlaceImportSource> createPlaceSources(int numberOfPlaces) {
+		return toPlaceSources(createPlaces(numberOfPlaces));
+	}
+
+	private List<PlaceImportSource> toPlaceSources(List<DataGroup> places) {
+		List<PlaceImportSource> placeSources = new ArrayList<>();
+		for (DataGroup place : places) {
+			placeSources.add(new PlaceImportSource("place" + placeSources.size() + ".xml",
+					() -> place));
+		}
+		return placeSources;
+	}
+
+	private DataGroup createPlaceUsingDefaultName(String defaultName) {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addChild(new DataGroupSpy("recordInfo"));
+		DataGroup authorizedName = new DataGroupSpy("name");
+		authorizedName.addAttributeByIdWithValue("type", "authorized");
+		place.addChild(authorizedName);
+		DataGroup defaultNamePart = new DataGroupSpy("namePart");
+		defaultNamePart.addAttributeByIdWithValue("type", "defaultName");
+		defaultNamePart.addChild(new DataAtomicSpy("value", defaultName));
+		authorizedName.addChild(defaultNamePart);
+		return place;
+	}
+
+	@Test
+	public void testInit() {
+		PlaceImportConfig importConfig = createConfigUsingPidBlockSize(10);
+		PlaceImporter importer = createImporterUsingConfig(importConfig);
+
+		assertSame(importer.getImportConfig(), importConfig);
+	}
+
+	@Test
+	public void testImportPlacesReservesPidsInBlocks() {
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(2));
+
+		PlaceImportResult result = importer.importPlaces(createPlaceSources(5));
+
+		assertEquals(result.numberOfImported, 5);
+		assertEquals(result.numberOfSkipped, 0);
+		assertEquals(result.failures.size(), 0);
+		assertEquals(httpHandlerFactory.nextPidUrls.size(), 3);
+		assertEquals(httpHandlerFactory.nextPidUrls.get(0), "http://someFedoraUrl/fedora/"
+				+ "objects/nextPID?namespace=alvin-place&numPIDs=2&format=xml");
+		assertEquals(httpHandlerFactory.ingestHttpHandlers.size(), 5);
+	}
+
+	@Test
+	public void testImportPlacesSetsPidInRecordInfoAndIngestsFoxml() {
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+		List<DataGroup> places = createPlaces(1);
+
+		importer.importPlaces(toPlaceSources(places));
+
+		DataGroup recordInfo = places.get(0).getFirstGroupWithNameInData("recordInfo");
+		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+		assertEquals(converterFactory.factoredToFedoraTypes.get(0), "place");
+		AlvinCoraToFedoraConverterSpy converter = (AlvinCoraToFedoraConverterSpy) converterFactory.factoredToFedoraConverters
+				.get(0);
+		assertSame(converter.dataRecord, places.get(0));
+
+		assertTrue(httpHandlerFactory.urls.contains("http://someFedoraUrl/fedora/objects/"
+				+ "alvin-place:1?format=info%3Afedora%2Ffedora-system%3AFOXML-1.1"
+				+ "&logMessage=coraWritten"));
+		HttpHandlerSpy ingestHttpHandler = httpHandlerFactory.ingestHttpHandlers.get(0);
+		assertEquals(ingestHttpHandler.requestMethod, "POST");
+		assertEquals(ingestHttpHandler.outputStrings.get(0),
+				PlaceFoxml.createUsingPidAndLabelAndMetadataXml("alvin-place:1", "somePlace0",
+						converter.returnedNewXML));
+	}
+
+	@Test
+	public void testImportPlacesReplacesExistingId() {
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+		DataGroup place = createPlaceUsingDefaultName("somePlace");
+		place.getFirstGroupWithNameInData("recordInfo")
+				.addChild(new DataAtomicSpy("id", "someOldId"));
+
+		importer.importPlaces(toPlaceSources(List.of(place)));
+
+		DataGroup recordInfo = place.getFirstGroupWithNameInData("recordInfo");
+		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+		assertEquals(recordInfo.getChildren().size(), 1);
+	}
+
+	@Test
+	public void testFailingRecordsDoNotStopImport() {
+		httpHandlerFactory.failingPids.add("alvin-place:2");
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+		List<DataGroup> places = createPlaces(4);
+		places.set(3, new DataGroupSpy("authority"));
+
+		PlaceImportResult result = importer.importPlaces(toPlaceSources(places));
+
+		assertEquals(result.numberOfImported, 2);
+		assertEquals(result.failures.size(), 2);
+		Failure ingestFailure = result.failures.get(0);
+		assertEquals(ingestFailure.index, 1);
+		assertEquals(ingestFailure.sourceName, "place1.xml");
+		assertEquals(ingestFailure.pid, "alvin-place:2");
+		assertEquals(ingestFailure.message,
+				"ingesting object in fedora failed, with response code: 500");
+		Failure conversionFailure = result.failures.get(1);
+		assertEquals(conversionFailure.index, 3);
+		assertEquals(conversionFailure.sourceName, "place3.xml");
+		assertEquals(conversionFailure.pid, "alvin-place:4");
+		assertEquals(loggerFactorySpy.getNoOfErrorLogMessagesUsingClassName(TESTED_CLASS_NAME),
+				2);
+		assertTrue(List
+				.of(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+						loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME,
+								1))
+				.contains("Import of place with index: 1 from: place1.xml and pid: alvin-place:2"
+						+ " failed with message: "
+						+ "ingesting object in fedora failed, with response code: 500"));
+	}
+
+	@Test
+	public void testUnreadablePlaceInTheMiddleIsRecordedAndImportContinues() {
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+		List<PlaceImportSource> placeSources = createPlaceSources(3);
+		placeSources.set(1, new PlaceImportSource("someFile.xml", () -> {
+			throw FedoraException.withMessage("Error reading place from someFile.xml");
+		}));
+
+		PlaceImportResult result = importer.importPlaces(placeSources);
+
+		assertEquals(result.numberOfImported, 2);
+		assertEquals(result.failures.size(), 1);
+		assertEquals(result.failures.get(0).index, 1);
+		assertEquals(result.failures.get(0).sourceName, "someFile.xml");
+		assertNull(result.failures.get(0).pid);
+		assertEquals(result.failures.get(0).message, "Error reading place from someFile.xml");
+		assertEquals(httpHandlerFactory.ingestHttpHandlers.size(), 2);
+	}
+
+	@Test
+	public void testImportIsCheckpointedAndResumed() throws IOException {
+		httpHandlerFactory.failingPids.add("alvin-place:2");
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+		importer.importPlaces(createPlaceSources(3));
+
+		assertEquals(readSortedCheckpointLines(),
+				List.of("0\tplace0.xml\talvin-place:1", "0\tplace0.xml\talvin-place:1\tstarted",
+						"1\tplace1.xml\talvin-place:2\tstarted",
+						"2\tplace2.xml\talvin-place:3",
+						"2\tplace2.xml\talvin-place:3\tstarted"));
+
+		httpHandlerFactory.failingPids.clear();
+		PlaceImportResult result = importer.importPlaces(createPlaceSources(3));
+
+		assertEquals(result.numberOfImported, 1);
+		assertEquals(result.numberOfSkipped, 2);
+		assertEquals(result.failures.size(), 0);
+		assertEquals(httpHandlerFactory.nextPidUrls.size(), 1);
+		assertTrue(httpHandlerFactory.urls.get(httpHandlerFactory.urls.size() - 1)
+				.contains("objects/alvin-place:2?"));
+	}
+
+	private List<String> readSortedCheckpointLines() throws IOException {
+		return new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8).lines()
+				.sorted().collect(Collectors.toList());
+	}
+
+	@Test
+	public void testPlaceIngestedBeforeCheckpointIsNotIngestedAgainOnResume()
+			throws IOException {
+		Files.write(checkpointPath, ("0\tplace0.xml\talvin-place:7\tstarted\n"
+				+ "1\tplace1.xml\talvin-place:8\tstarted\n").getBytes(StandardCharsets.UTF_8));
+		httpHandlerFactory.existingPids.add("alvin-place:7");
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+
+		PlaceImportResult result = importer.importPlaces(createPlaceSources(3));
+
+		assertEquals(result.numberOfImported, 2);
+		assertEquals(result.numberOfSkipped, 1);
+		assertEquals(httpHandlerFactory.ingestHttpHandlers.size(), 2);
+		assertTrue(httpHandlerFactory.urls.contains(
+				"http://someFedoraUrl/fedora/objects/alvin-place:7?format=xml"));
+		assertTrue(readSortedCheckpointLines()
+				.containsAll(List.of("0\tplace0.xml\talvin-place:7",
+						"1\tplace1.xml\talvin-place:8", "2\tplace2.xml\talvin-place:1")));
+	}
+
+	@Test
+	public void testResumeWithChangedPlacesIsRejectedBeforeAnyImport() throws IOException {
+		Files.write(checkpointPath,
+				"0\tplace0.xml\talvin-place:7\n".getBytes(StandardCharsets.UTF_8));
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+		List<PlaceImportSource> placeSources = createPlaceSources(2);
+		placeSources.add(0, new PlaceImportSource("newPlace.xml", () -> null));
+
+		try {
+			importer.importPlaces(placeSources);
+			fail("Expected FedoraException");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(), "Place import checkpoint " + checkpointPath
+					+ " does not match the places to import, place with index: 0 was"
+					+ " place0.xml and is now newPlace.xml");
+		}
+		assertEquals(httpHandlerFactory.nextPidUrls.size(), 0);
+		assertEquals(httpHandlerFactory.ingestHttpHandlers.size(), 0);
+	}
+
+	@Test
+	public void testNumberOfConcurrentIngestsIsBounded() {
+		httpHandlerFactory.ingestDelayMillis = 20;
+		PlaceImporter importer = createImporterUsingConfig(
+				new PlaceImportConfig(5, 2, 3, checkpointPath.toString()));
+
+		PlaceImportResult result = importer.importPlaces(createPlaceSources(20));
+
+		assertEquals(result.numberOfImported, 20);
+		assertTrue(httpHandlerFactory.maxConcurrentIngests.get() <= 3);
+		assertTrue(httpHandlerFactory.maxConcurrentIngests.get() > 1);
+	}
+
+	@Test
+	public void testErrorReservingPidsStopsImportAfterPlacesInFlight() {
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(2));
+		List<PlaceImportSource> placesFailingPidReservation = createPlaceSources(3);
+		DataGroup thirdPlace = placesFailingPidReservation.get(2).placeReader.get();
+		placesFailingPidReservation.set(2, new PlaceImportSource("place2.xml", () -> {
+			httpHandlerFactory.nextPidResponseCode = 503;
+			return thirdPlace;
+		}));
+
+		try {
+			importer.importPlaces(placesFailingPidReservation);
+			fail("Expected FedoraException");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(),
+					"getting next pid from fedora failed, with response code: 503");
+		}
+		assertEquals(httpHandlerFactory.ingestHttpHandlers.size(), 2);
+		assertTrue(httpHandlerFactory.ingestHttpHandlers.get(0).responseCodeWasRequested);
+		assertTrue(httpHandlerFactory.ingestHttpHandlers.get(1).responseCodeWasRequested);
+	}
+
+	@Test
+	public void testResultIsLogged() {
+		PlaceImporter importer = createImporterUsingConfig(createConfigUsingPidBlockSize(10));
+
+		importer.importPlaces(createPlaceSources(2));
+
+		assertTrue(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0)
+				.startsWith("Place import done: 2 imported, 0 skipped, 0 failed in "));
+	}
+}
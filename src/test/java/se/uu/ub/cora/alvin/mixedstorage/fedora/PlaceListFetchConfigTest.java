@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+
+public class PlaceListFetchConfigTest {
+
+	@Test
+	public void testPlaceListFetchConfig() {
+		PlaceListFetchConfig config = new PlaceListFetchConfig(Mode.PARALLEL, 8,
+				ErrorPolicy.SKIP);
+		assertEquals(config.mode, Mode.PARALLEL);
+		assertEquals(config.maxConcurrency, 8);
+		assertEquals(config.errorPolicy, ErrorPolicy.SKIP);
+		assertEquals(config.pageSize, 100);
+	}
+
+	@Test
+	public void testPlaceListFetchConfigWithPageSize() {
+		PlaceListFetchConfig config = new PlaceListFetchConfig(Mode.SEQUENTIAL, 1,
+				ErrorPolicy.FAIL, 25);
+		assertEquals(config.pageSize, 25);
+	}
+
+	@Test
+	public void testSequentialFailingOnError() {
+		PlaceListFetchConfig config = PlaceListFetchConfig.sequentialFailingOnError();
+		assertEquals(config.mode, Mode.SEQUENTIAL);
+		assertEquals(config.maxConcurrency, 1);
+		assertEquals(config.errorPolicy, ErrorPolicy.FAIL);
+		assertEquals(config.pageSize, 100);
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.ErrorPolicy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetchConfig.Mode;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.PlaceListFetcher.PlaceFetch;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class PlaceListFetcherTest {
+	private LoggerFactorySpy loggerFactorySpy;
+	private String testedClassName = "PlaceListFetcher";
+	private List<String> pids = Arrays.asList("alvin-place:1", "alvin-place:2",
+			"alvin-place:3", "alvin-place:4", "alvin-place:5");
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+	}
+
+	private Function<String, DataGroup> createReaderFailingForPid(String failingPid) {
+		return pid -> {
+			if (pid.equals(failingPid)) {
+				throw new RecordNotFoundException("Record not found for type: place and id: " + pid);
+			}
+			return new DataGroupSpy(pid);
+		};
+	}
+
+	@Test
+	public void testSequentialHasNoExecutor() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(PlaceListFetchConfig.sequentialFailingOnError());
+		assertNull(fetcher.getExecutor());
+	}
+
+	@Test
+	public void testSequentialReturnsPlacesInOrder() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(PlaceListFetchConfig.sequentialFailingOnError());
+		List<DataGroup> places = fetcher.fetchPlacesUsingPidsAndPlaceReader(pids,
+				createReaderFailingForPid(""));
+		assertCorrectPlacesInOrder(places, pids);
+	}
+
+	private void assertCorrectPlacesInOrder(List<DataGroup> places, List<String> expectedPids) {
+		assertEquals(places.size(), expectedPids.size());
+		for (int i = 0; i < expectedPids.size(); i++) {
+			assertEquals(places.get(i).getNameInData(), expectedPids.get(i));
+		}
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "Record not found for type: place and id: alvin-place:3")
+	public void testSequentialFailPolicyThrowsError() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(PlaceListFetchConfig.sequentialFailingOnError());
+		fetcher.fetchPlacesUsingPidsAndPlaceReader(pids,
+				createReaderFailingForPid("alvin-place:3"));
+	}
+
+	@Test
+	public void testSequentialSkipPolicySkipsAndLogsFailingPid() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.SEQUENTIAL, 1, ErrorPolicy.SKIP));
+		List<DataGroup> places = fetcher.fetchPlacesUsingPidsAndPlaceReader(pids,
+				createReaderFailingForPid("alvin-place:3"));
+		assertCorrectPlacesInOrder(places, Arrays.asList("alvin-place:1", "alvin-place:2",
+				"alvin-place:4", "alvin-place:5"));
+		assertCorrectErrorLoggedForPid("alvin-place:3");
+	}
+
+	private void assertCorrectErrorLoggedForPid(String pid) {
+		assertEquals(loggerFactorySpy.getNoOfErrorLogMessagesUsingClassName(testedClassName), 1);
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"Skipping place " + pid + " in list, reading it from fedora failed: "
+						+ "Record not found for type: place and id: " + pid);
+		assertTrue(loggerFactorySpy.getErrorLogExceptionsUsingClassNameAndNo(testedClassName,
+				0) instanceof RecordNotFoundException);
+	}
+
+	@Test
+	public void testCloseSequentialWithoutExecutor() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(PlaceListFetchConfig.sequentialFailingOnError());
+		fetcher.close();
+		assertNull(fetcher.getExecutor());
+	}
+
+	@Test
+	public void testCloseShutsDownParallelExecutor() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.PARALLEL, 3, ErrorPolicy.FAIL));
+		fetcher.close();
+		assertTrue(fetcher.getExecutor().isShutdown());
+	}
+
+	@Test
+	public void testParallelPlaceFetchStartsReadingBeforeAllPidsAreAdded() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.PARALLEL, 2, ErrorPolicy.FAIL));
+		CountDownLatch firstPlaceRead = new CountDownLatch(1);
+		PlaceFetch placeFetch = fetcher.startFetchUsingPlaceReader((pid, lastModifiedDate) -> {
+			firstPlaceRead.countDown();
+			return new DataGroupSpy(pid + " " + lastModifiedDate);
+		});
+
+		placeFetch.fetchUsingPidAndLastModifiedDate("alvin-place:1", "date1");
+		assertTrue(firstPlaceRead.await(5, TimeUnit.SECONDS));
+		placeFetch.fetchUsingPidAndLastModifiedDate("alvin-place:2", "date2");
+		List<DataGroup> places = placeFetch.collectPlacesInOrder();
+
+		assertEquals(places.get(0).getNameInData(), "alvin-place:1 date1");
+		assertEquals(places.get(1).getNameInData(), "alvin-place:2 date2");
+	}
+
+	@Test
+	public void testSequentialPlaceFetchReadsWhenCollected() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(PlaceListFetchConfig.sequentialFailingOnError());
+		List<String> readPids = new ArrayList<>();
+		PlaceFetch placeFetch = fetcher.startFetchUsingPlaceReader((pid, lastModifiedDate) -> {
+			readPids.add(pid);
+			return new DataGroupSpy(pid + " " + lastModifiedDate);
+		});
+
+		placeFetch.fetchUsingPidAndLastModifiedDate("alvin-place:1", "date1");
+		assertTrue(readPids.isEmpty());
+		List<DataGroup> places = placeFetch.collectPlacesInOrder();
+
+		assertEquals(readPids, Arrays.asList("alvin-place:1"));
+		assertEquals(places.get(0).getNameInData(), "alvin-place:1 date1");
+	}
+
+	@Test
+	public void testParallelUsesExecutorWithMaxConcurrencyThreads() throws Exception {
+		List<String> usedThreads = new ArrayList<>();
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.PARALLEL, 3, ErrorPolicy.FAIL));
+
+		fetcher.fetchPlacesUsingPidsAndPlaceReader(pids, pid -> {
+			synchronized (usedThreads) {
+				usedThreads.add(Thread.currentThread().getName());
+			}
+			return new DataGroupSpy(pid);
+		});
+
+		assertEquals(usedThreads.size(), 5);
+		for (String threadName : usedThreads) {
+			assertTrue(threadName.startsWith("fedora-place-list-fetch-"));
+		}
+		assertTrue(usedThreads.stream().distinct().count() <= 3);
+	}
+
+	@Test
+	public void testParallelReturnsPlacesInOrderEvenIfFinishedOutOfOrder() throws Exception {
+		CountDownLatch lastPidRead = new CountDownLatch(1);
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.PARALLEL, 5, ErrorPolicy.FAIL));
+
+		List<DataGroup> places = fetcher.fetchPlacesUsingPidsAndPlaceReader(pids, pid -> {
+			if ("alvin-place:1".equals(pid)) {
+				awaitLatch(lastPidRead);
+			}
+			if ("alvin-place:5".equals(pid)) {
+				lastPidRead.countDown();
+			}
+			return new DataGroupSpy(pid);
+		});
+
+		assertCorrectPlacesInOrder(places, pids);
+	}
+
+	private void awaitLatch(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test(expectedExceptions = RecordNotFoundException.class, expectedExceptionsMessageRegExp = ""
+			+ "Record not found for type: place and id: alvin-place:3")
+	public void testParallelFailPolicyThrowsOriginalError() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.PARALLEL, 2, ErrorPolicy.FAIL));
+		fetcher.fetchPlacesUsingPidsAndPlaceReader(pids,
+				createReaderFailingForPid("alvin-place:3"));
+	}
+
+	@Test
+	public void testParallelSkipPolicySkipsAndLogsFailingPid() throws Exception {
+		PlaceListFetcher fetcher = PlaceListFetcher
+				.usingConfig(new PlaceListFetchConfig(Mode.PARALLEL, 2, ErrorPolicy.SKIP));
+		List<DataGroup> places = fetcher.fetchPlacesUsingPidsAndPlaceReader(pids,
+				createReaderFailingForPid("alvin-place:3"));
+		assertCorrectPlacesInOrder(places, Arrays.asList("alvin-place:1", "alvin-place:2",
+				"alvin-place:4", "alvin-place:5"));
+		assertCorrectErrorLoggedForPid("alvin-place:3");
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.function.Predicate;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.data.DataGroup;
+
+public class PlaceListFilterTest {
+	private DataGroupSpy filter;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		filter = new DataGroupSpy("filter");
+	}
+
+	private void addPart(String key, String value) {
+		DataGroupSpy part = new DataGroupSpy("part");
+		part.addChild(new DataAtomicSpy("key", key));
+		part.addChild(new DataAtomicSpy("value", value));
+		filter.addChild(part);
+	}
+
+	@Test
+	public void testNoFilter() {
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(null);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:*");
+		assertFalse(placeListFilter.hasObjectFieldsFilter());
+		assertFalse(placeListFilter.hasPostFilter());
+		assertTrue(placeListFilter.getObjectFieldsFilter().test(objectFieldsWithPid("any:1")));
+	}
+
+	private FedoraObjectFields objectFieldsWithPid(String pid) {
+		return new FedoraObjectFields(pid, "", "");
+	}
+
+	@Test
+	public void testFilterWithoutParts() {
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:*");
+		assertFalse(placeListFilter.hasPostFilter());
+	}
+
+	@Test
+	public void testLabelPrefixIsAddedToQuery() {
+		addPart("labelStartsWith", "Upp");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:* label~'Upp*'");
+		assertFalse(placeListFilter.hasPostFilter());
+		assertFalse(placeListFilter.hasObjectFieldsFilter());
+	}
+
+	@Test
+	public void testLabelPrefixWithQuoteIsEscaped() {
+		addPart("labelStartsWith", "L'Aq");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:* label~'L\\'Aq*'");
+	}
+
+	@Test
+	public void testModifiedSinceIsAddedToQuery() {
+		addPart("modifiedSince", "2019-01-01T00:00:00Z");
+		addPart("labelStartsWith", "Upp");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(),
+				"state=A pid~alvin-place:* mDate>=2019-01-01T00:00:00Z label~'Upp*'");
+	}
+
+	@Test
+	public void testModifiedSinceAsDateIsAddedToQuery() {
+		addPart("modifiedSince", "2019-01-01");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:* mDate>=2019-01-01");
+	}
+
+	@Test
+	public void testModifiedSinceAsLocalDateTimeIsAddedToQuery() {
+		addPart("modifiedSince", "2019-01-01T12:30:00");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(),
+				"state=A pid~alvin-place:* mDate>=2019-01-01T12:30:00");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Invalid value in place list filter for modifiedSince: 2019-01-01 state=D")
+	public void testModifiedSinceWithQueryPartsIsRejected() {
+		addPart("modifiedSince", "2019-01-01 state=D");
+		PlaceListFilter.fromFilter(filter);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Invalid value in place list filter for modifiedSince: 2019-13-01T00:00:00Z")
+	public void testModifiedSinceWithInvalidDateTimeIsRejected() {
+		addPart("modifiedSince", "2019-13-01T00:00:00Z");
+		PlaceListFilter.fromFilter(filter);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Invalid value in place list filter for pidFrom: notANumber")
+	public void testPidFromNotANumberIsRejected() {
+		addPart("pidFrom", "notANumber");
+		PlaceListFilter.fromFilter(filter);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Invalid value in place list filter for pidTo: 12a")
+	public void testPidToNotANumberIsRejected() {
+		addPart("pidTo", "12a");
+		PlaceListFilter.fromFilter(filter);
+	}
+
+	@Test
+	public void testPidRangeIsObjectFieldsFilter() {
+		addPart("pidFrom", "24");
+		addPart("pidTo", "679");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:*");
+		assertTrue(placeListFilter.hasObjectFieldsFilter());
+		assertFalse(placeListFilter.hasPostFilter());
+
+		Predicate<FedoraObjectFields> objectFieldsFilter = placeListFilter
+				.getObjectFieldsFilter();
+		assertFalse(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:22")));
+		assertTrue(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:24")));
+		assertTrue(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:679")));
+		assertFalse(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:692")));
+		assertFalse(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:notANumber")));
+		assertFalse(objectFieldsFilter.test(objectFieldsWithPid("other:100")));
+	}
+
+	@Test
+	public void testOnlyPidFrom() {
+		addPart("pidFrom", "600");
+		Predicate<FedoraObjectFields> objectFieldsFilter = PlaceListFilter.fromFilter(filter)
+				.getObjectFieldsFilter();
+		assertFalse(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:22")));
+		assertTrue(objectFieldsFilter.test(objectFieldsWithPid("alvin-place:1684")));
+	}
+
+	@Test
+	public void testUnsupportedPartIsPostFilter() {
+		addPart("country", "SE");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+		assertEquals(placeListFilter.getQuery(), "state=A pid~alvin-place:*");
+		assertTrue(placeListFilter.hasPostFilter());
+	}
+
+	@Test
+	public void testPostFilterMatchesAtomicInChildGroup() {
+		addPart("country", "SE");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+
+		assertTrue(placeListFilter.placeMatchesPostFilter(createPlaceWithCountry("SE")));
+		assertFalse(placeListFilter.placeMatchesPostFilter(createPlaceWithCountry("NO")));
+		assertFalse(placeListFilter.placeMatchesPostFilter(new DataGroupSpy("place")));
+	}
+
+	private DataGroup createPlaceWithCountry(String country) {
+		DataGroupSpy place = new DataGroupSpy("place");
+		DataGroupSpy address = new DataGroupSpy("address");
+		address.addChild(new DataAtomicSpy("country", country));
+		place.addChild(address);
+		return place;
+	}
+
+	@Test
+	public void testPostFilterRequiresAllParts() {
+		addPart("country", "SE");
+		addPart("city", "Uppsala");
+		PlaceListFilter placeListFilter = PlaceListFilter.fromFilter(filter);
+
+		DataGroup place = createPlaceWithCountry("SE");
+		assertFalse(placeListFilter.placeMatchesPostFilter(place));
+		place.addChild(new DataAtomicSpy("city", "Uppsala"));
+		assertTrue(placeListFilter.placeMatchesPostFilter(place));
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+public class PlaceReadCoalescerTest {
+	private static final int NUMBER_OF_READERS = 5;
+	private PlaceReadCoalescer coalescer;
+	private ExecutorService executor;
+	private AtomicInteger numberOfFedoraReads;
+	private CountDownLatch releaseRead;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		coalescer = PlaceReadCoalescer.create();
+		executor = Executors.newFixedThreadPool(NUMBER_OF_READERS);
+		numberOfFedoraReads = new AtomicInteger();
+		releaseRead = new CountDownLatch(1);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		executor.shutdownNow();
+	}
+
+	private DataGroup readPlaceWaitingForRelease(String pid) {
+		numberOfFedoraReads.incrementAndGet();
+		awaitRelease();
+		DataGroup place = new DataGroupSpy("place");
+		place.addChild(new DataAtomicSpy("id", pid));
+		return place;
+	}
+
+	private void awaitRelease() {
+		try {
+			releaseRead.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testSingleReadReturnsPlaceFromReader() {
+		releaseRead.countDown();
+		DataGroup place = coalescer.readUsingPidAndPlaceReader("alvin-place:1",
+				this::readPlaceWaitingForRelease);
+
+		assertEquals(place.getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+		assertEquals(numberOfFedoraReads.get(), 1);
+		assertEquals(coalescer.getNumberOfReads(), 1);
+		assertEquals(coalescer.getNumberOfDeduplicatedReads(), 0);
+		assertEquals(coalescer.getNumberOfInFlightReads(), 0);
+	}
+
+	@Test
+	public void testSequentialReadsAreNotCoalesced() {
+		releaseRead.countDown();
+		coalescer.readUsingPidAndPlaceReader("alvin-place:1", this::readPlaceWaitingForRelease);
+		coalescer.readUsingPidAndPlaceReader("alvin-place:1", this::readPlaceWaitingForRelease);
+
+		assertEquals(numberOfFedoraReads.get(), 2);
+		assertEquals(coalescer.getNumberOfDeduplicatedReads(), 0);
+	}
+
+	@Test
+	public void testConcurrentReadsOfSamePidShareOneFedoraRead() throws Exception {
+		List<Future<DataGroup>> results = startConcurrentReadsUsingReader("alvin-place:1",
+				this::readPlaceWaitingForRelease);
+		waitUntilAllReadersHaveJoined();
+		releaseRead.countDown();
+
+		List<DataGroup> places = new ArrayList<>();
+		for (Future<DataGroup> result : results) {
+			places.add(result.get(5, TimeUnit.SECONDS));
+		}
+
+		assertEquals(numberOfFedoraReads.get(), 1);
+		assertEquals(coalescer.getNumberOfDeduplicatedReads(), NUMBER_OF_READERS - 1);
+		assertEquals(coalescer.getNumberOfInFlightReads(), 0);
+		for (DataGroup place : places) {
+			assertEquals(place.getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+			for (DataGroup otherPlace : places) {
+				if (place != otherPlace) {
+					assertNotSame(place.getChildren().get(0), otherPlace.getChildren().get(0));
+				}
+			}
+		}
+	}
+
+	private List<Future<DataGroup>> startConcurrentReadsUsingReader(String pid,
+			Function<String, DataGroup> placeReader) {
+		List<Future<DataGroup>> results = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_READERS; i++) {
+			results.add(executor
+					.submit(() -> coalescer.readUsingPidAndPlaceReader(pid, placeReader)));
+		}
+		return results;
+	}
+
+	private void waitUntilAllReadersHaveJoined() throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (coalescer.getNumberOfReads() < NUMBER_OF_READERS
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		Thread.sleep(50);
+	}
+
+	@Test
+	public void testConcurrentReadsOfDifferentPidsAreNotCoalesced() throws Exception {
+		releaseRead.countDown();
+		Future<DataGroup> first = executor.submit(() -> coalescer
+				.readUsingPidAndPlaceReader("alvin-place:1", this::readPlaceWaitingForRelease));
+		Future<DataGroup> second = executor.submit(() -> coalescer
+				.readUsingPidAndPlaceReader("alvin-place:2", this::readPlaceWaitingForRelease));
+
+		assertEquals(first.get().getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+		assertEquals(second.get().getFirstAtomicValueWithNameInData("id"), "alvin-place:2");
+		assertEquals(numberOfFedoraReads.get(), 2);
+		assertEquals(coalescer.getNumberOfDeduplicatedReads(), 0);
+	}
+
+	@Test
+	public void testErrorInSharedReadIsThrownToAllReaders() throws Exception {
+		RuntimeException error = FedoraException.withMessage("fedora is down");
+		List<Future<DataGroup>> results = startConcurrentReadsUsingReader("alvin-place:1",
+				pid -> {
+					readPlaceWaitingForRelease(pid);
+					throw error;
+				});
+		waitUntilAllReadersHaveJoined();
+		releaseRead.countDown();
+
+		for (Future<DataGroup> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+			} catch (ExecutionException e) {
+				assertSame(e.getCause(), error);
+			}
+		}
+		assertEquals(numberOfFedoraReads.get(), 1);
+		assertEquals(coalescer.getNumberOfInFlightReads(), 0);
+		assertTrue(results.stream().allMatch(Future::isDone));
+	}
+
+	@Test
+	public void testErrorThrownByReaderIsThrownToAllReadersAndNextReadIsNotBlocked()
+			throws Exception {
+		Error error = new OutOfMemoryError("no memory left");
+		List<Future<DataGroup>> results = startConcurrentReadsUsingReader("alvin-place:1",
+				pid -> {
+					readPlaceWaitingForRelease(pid);
+					throw error;
+				});
+		waitUntilAllReadersHaveJoined();
+		releaseRead.countDown();
+
+		for (Future<DataGroup> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+			} catch (ExecutionException e) {
+				assertSame(e.getCause(), error);
+			}
+		}
+		assertEquals(coalescer.getNumberOfInFlightReads(), 0);
+
+		DataGroup place = coalescer.readUsingPidAndPlaceReader("alvin-place:1",
+				this::readPlaceWaitingForRelease);
+		assertEquals(place.getFirstAtomicValueWithNameInData("id"), "alvin-place:1");
+		assertEquals(numberOfFedoraReads.get(), 2);
+	}
+}
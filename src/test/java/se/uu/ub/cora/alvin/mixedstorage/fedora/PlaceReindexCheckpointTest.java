@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public class PlaceReindexCheckpointTest {
+	private static final String TESTED_CLASS_NAME = "PlaceReindexCheckpoint";
+	private LoggerFactorySpy loggerFactorySpy;
+	private Path checkpointPath;
+	private Path completedPath;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		checkpointPath = Files.createTempFile("placeReindexCheckpoint", ".txt");
+		Files.delete(checkpointPath);
+		completedPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".completed");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(checkpointPath);
+		Files.deleteIfExists(completedPath);
+	}
+
+	@Test
+	public void testWithoutPathKeepsPositionInMemoryOnly() {
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint.usingPath(null)) {
+			checkpoint.markReindexedAtPosition(3, "alvin-place:3");
+
+			assertEquals(checkpoint.getPosition(), 3);
+			assertEquals(checkpoint.getLastPid(), "alvin-place:3");
+			checkpoint.markCompleted();
+		}
+		assertFalse(Files.exists(checkpointPath));
+	}
+
+	@Test
+	public void testNewCheckpointStartsAtBeginning() {
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getPosition(), 0);
+			assertEquals(checkpoint.getLastPid(), "");
+		}
+	}
+
+	@Test
+	public void testLastPositionIsReadWhenReopened() throws IOException {
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markReindexedAtPosition(1, "alvin-place:1");
+			checkpoint.markReindexedAtPosition(2, "alvin-place:2");
+		}
+
+		assertEquals(readCheckpoint(), "1\talvin-place:1\n2\talvin-place:2\n");
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getPosition(), 2);
+			assertEquals(checkpoint.getLastPid(), "alvin-place:2");
+		}
+	}
+
+	private void writeCheckpoint(String content) throws IOException {
+		Files.write(checkpointPath, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readCheckpoint() throws IOException {
+		return new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testPartiallyWrittenLastLineIsIgnoredAndEnded() throws IOException {
+		writeCheckpoint("1\talvin-place:1\n2\talvin-pla");
+
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getPosition(), 1);
+			assertEquals(checkpoint.getLastPid(), "alvin-place:1");
+			checkpoint.markReindexedAtPosition(2, "alvin-place:2");
+		}
+
+		assertEquals(readCheckpoint(), "1\talvin-place:1\n2\talvin-pla\n2\talvin-place:2\n");
+	}
+
+	@Test
+	public void testEmptyLinesAreIgnored() throws IOException {
+		writeCheckpoint("\n1\talvin-place:1\n\n");
+
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getPosition(), 1);
+		}
+	}
+
+	@Test
+	public void testRestartStartsFromBeginningAlsoWhenReopened() {
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markReindexedAtPosition(1, "alvin-place:1");
+			checkpoint.restart();
+
+			assertEquals(checkpoint.getPosition(), 0);
+			assertEquals(checkpoint.getLastPid(), "");
+		}
+
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getPosition(), 0);
+		}
+	}
+
+	@Test
+	public void testCompletedCheckpointIsMovedAsideWhenReopened() throws IOException {
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			checkpoint.markReindexedAtPosition(1, "alvin-place:1");
+			checkpoint.markCompleted();
+		}
+
+		try (PlaceReindexCheckpoint checkpoint = PlaceReindexCheckpoint
+				.usingPath(checkpointPath.toString())) {
+			assertEquals(checkpoint.getPosition(), 0);
+		}
+
+		assertEquals(readCheckpoint(), "");
+		assertEquals(new String(Files.readAllBytes(completedPath), StandardCharsets.UTF_8),
+				"1\talvin-place:1\ncompleted\n");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Place reindex checkpoint " + checkpointPath + " is from a completed run,"
+						+ " moved it to " + completedPath + " and starting a new run");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Invalid place reindex checkpoint .*, last line is: alvin-place:1")
+	public void testCheckpointWithInvalidLastLine() throws IOException {
+		writeCheckpoint("alvin-place:1\n");
+
+		PlaceReindexCheckpoint.usingPath(checkpointPath.toString());
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error opening place reindex checkpoint .*")
+	public void testCheckpointInMissingDirectory() {
+		PlaceReindexCheckpoint
+				.usingPath(checkpointPath.resolveSibling("missing").resolve("c.txt").toString());
+	}
+}
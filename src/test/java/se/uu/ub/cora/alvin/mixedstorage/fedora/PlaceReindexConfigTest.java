@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.testng.annotations.Test;
+
+public class PlaceReindexConfigTest {
+
+	@Test
+	public void testDefaultValues() {
+		PlaceReindexConfig config = PlaceReindexConfig
+				.withCheckpointPathAndDefaultValues("/tmp/reindex.txt");
+		assertEquals(config.messagesPerSecond, 100);
+		assertEquals(config.maxAttempts, 10);
+		assertEquals(config.retryDelayMillis, 1000);
+		assertEquals(config.pageSize, 100);
+		assertEquals(config.checkpointPath, "/tmp/reindex.txt");
+	}
+
+	@Test
+	public void testDefaultValuesWithoutCheckpoint() {
+		assertNull(PlaceReindexConfig.withCheckpointPathAndDefaultValues(null).checkpointPath);
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerSpy;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public class PlaceReindexerTest {
+	private static final String TESTED_CLASS_NAME = "PlaceReindexer";
+	private static final String QUERY_URL = "someBaseUrl/objects?pid=true&mDate=true&maxResults=2"
+			+ "&resultFormat=xml&query=state%3DA+pid%7Ealvin-place%3A*";
+	private LoggerFactorySpy loggerFactorySpy;
+	private HttpHandlerFactorySpy httpHandlerFactory;
+	private RecordIndexerSpy recordIndexer;
+	private Path checkpointPath;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		httpHandlerFactory = new HttpHandlerFactorySpy();
+		recordIndexer = new RecordIndexerSpy();
+		checkpointPath = Files.createTempFile("placeReindexCheckpoint", ".txt");
+		Files.delete(checkpointPath);
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(checkpointPath);
+	}
+
+	private PlaceReindexer createReindexer(int messagesPerSecond, int maxAttempts) {
+		PlaceReindexConfig reindexConfig = new PlaceReindexConfig(messagesPerSecond,
+				maxAttempts, 1, 2, checkpointPath.toString());
+		return PlaceReindexer.usingHttpHandlerFactoryAndBaseUrlAndRecordIndexerAndReindexConfig(
+				httpHandlerFactory, "someBaseUrl/", recordIndexer, reindexConfig);
+	}
+
+	private void addPageResponse(String token, String... pids) {
+		httpHandlerFactory.responseCodes.add(200);
+		httpHandlerFactory.responseTexts.add(createPage(token, pids));
+	}
+
+	private String createPage(String token, String... pids) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<result xmlns=\"http://www.fedora.info/definitions/1/0/types/\">\n");
+		if (!token.isEmpty()) {
+			xml.append("  <listSession>\n    <token>" + token + "</token>\n  </listSession>\n");
+		}
+		xml.append("  <resultList>\n");
+		for (String pid : pids) {
+			xml.append("  <objectFields>\n      <pid>" + pid + "</pid>\n  </objectFields>\n");
+		}
+		xml.append("  </resultList>\n</result>");
+		return xml.toString();
+	}
+
+	@Test
+	public void testReindexConfig() {
+		PlaceReindexConfig reindexConfig = PlaceReindexConfig
+				.withCheckpointPathAndDefaultValues(null);
+		PlaceReindexer reindexer = PlaceReindexer
+				.usingHttpHandlerFactoryAndBaseUrlAndRecordIndexerAndReindexConfig(
+						httpHandlerFactory, "someBaseUrl/", recordIndexer, reindexConfig);
+		assertSame(reindexer.getReindexConfig(), reindexConfig);
+	}
+
+	@Test
+	public void testAllPlacesInAllPagesAreReindexedInOrder() {
+		addPageResponse("token1", "alvin-place:1", "alvin-place:2");
+		addPageResponse("", "alvin-place:3");
+
+		PlaceReindexResult result = createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(recordIndexer.indexedPids,
+				Arrays.asList("alvin-place:1", "alvin-place:2", "alvin-place:3"));
+		assertEquals(recordIndexer.indexedTypes, Arrays.asList("place", "place", "place"));
+		assertEquals(result.numberOfReindexed, 3);
+		assertEquals(result.numberOfSkipped, 0);
+		assertEquals(result.numberOfRetries, 0);
+	}
+
+	@Test
+	public void testPagesAreReadUsingSessionToken() {
+		addPageResponse("token1", "alvin-place:1", "alvin-place:2");
+		addPageResponse("", "alvin-place:3");
+
+		createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(httpHandlerFactory.urls.size(), 2);
+		assertEquals(httpHandlerFactory.urls.get(0), QUERY_URL);
+		assertEquals(httpHandlerFactory.urls.get(1), QUERY_URL + "&sessionToken=token1");
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.get(0).requestMethod, "GET");
+	}
+
+	@Test
+	public void testNoPlacesInFedora() {
+		addPageResponse("");
+
+		PlaceReindexResult result = createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(recordIndexer.getNumberOfIndexCalls(), 0);
+		assertEquals(result.numberOfReindexed, 0);
+	}
+
+	@Test
+	public void testMessagesAreSentAtConfiguredRate() {
+		addPageResponse("token1", "alvin-place:1", "alvin-place:2");
+		addPageResponse("token2", "alvin-place:3", "alvin-place:4");
+		addPageResponse("", "alvin-place:5", "alvin-place:6");
+
+		long start = System.nanoTime();
+		createReindexer(50, 1).reindexAllPlaces();
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+		assertEquals(recordIndexer.getNumberOfIndexedPids(), 6);
+		assertTrue(elapsedMillis >= 90, "elapsed: " + elapsedMillis);
+	}
+
+	@Test
+	public void testResumeSkipsPlacesInCheckpoint() throws IOException {
+		writeCheckpoint("1\talvin-place:1\n2\talvin-place:2\n");
+		addPageResponse("token1", "alvin-place:1", "alvin-place:2");
+		addPageResponse("", "alvin-place:3");
+
+		PlaceReindexResult result = createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(recordIndexer.indexedPids, Arrays.asList("alvin-place:3"));
+		assertEquals(result.numberOfReindexed, 1);
+		assertEquals(result.numberOfSkipped, 2);
+	}
+
+	private void writeCheckpoint(String content) throws IOException {
+		Files.write(checkpointPath, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readCheckpoint() throws IOException {
+		return new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testReindexedPlacesAreWrittenToCheckpoint() throws IOException {
+		addPageResponse("", "alvin-place:1", "alvin-place:2");
+
+		createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(readCheckpoint(), "1\talvin-place:1\n2\talvin-place:2\ncompleted\n");
+	}
+
+	@Test
+	public void testRunAfterCompletedRunReindexesAllPlacesAgain() throws IOException {
+		writeCheckpoint("1\talvin-place:1\ncompleted\n");
+		addPageResponse("", "alvin-place:1", "alvin-place:2");
+
+		PlaceReindexResult result = createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(recordIndexer.indexedPids, Arrays.asList("alvin-place:1", "alvin-place:2"));
+		assertEquals(result.numberOfSkipped, 0);
+		Path completedPath = checkpointPath
+				.resolveSibling(checkpointPath.getFileName() + ".completed");
+		try {
+			assertEquals(new String(Files.readAllBytes(completedPath), StandardCharsets.UTF_8),
+					"1\talvin-place:1\ncompleted\n");
+		} finally {
+			Files.deleteIfExists(completedPath);
+		}
+	}
+
+	@Test
+	public void testChangedPlaceListRestartsFromBeginning() throws IOException {
+		writeCheckpoint("1\talvin-place:1\n2\talvin-place:3\n");
+		addPageResponse("token1", "alvin-place:1", "alvin-place:2");
+		addPageResponse("token1", "alvin-place:1", "alvin-place:2");
+		addPageResponse("", "alvin-place:3");
+
+		PlaceReindexResult result = createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(recordIndexer.indexedPids,
+				Arrays.asList("alvin-place:1", "alvin-place:2", "alvin-place:3"));
+		assertEquals(result.numberOfReindexed, 3);
+		assertEquals(result.numberOfSkipped, 0);
+		assertEquals(httpHandlerFactory.urls.get(1), QUERY_URL);
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Place list has changed since checkpoint at position 2 with pid: alvin-place:3,"
+						+ " reindexing all places again");
+		assertEquals(readCheckpoint(), "1\talvin-place:1\n2\talvin-place:3\nrestarted\n"
+				+ "1\talvin-place:1\n2\talvin-place:2\n3\talvin-place:3\ncompleted\n");
+	}
+
+	@Test
+	public void testShorterPlaceListRestartsFromBeginning() throws IOException {
+		writeCheckpoint("5\talvin-place:5\n");
+		addPageResponse("", "alvin-place:1");
+		addPageResponse("", "alvin-place:1");
+
+		PlaceReindexResult result = createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(recordIndexer.indexedPids, Arrays.asList("alvin-place:1"));
+		assertEquals(result.numberOfSkipped, 0);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "messagesPerSecond must be a positive number, was: 0")
+	public void testErrorIfMessagesPerSecondIsZero() {
+		createReindexer(0, 1);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxAttempts must be a positive number, was: 0")
+	public void testErrorIfMaxAttemptsIsZero() {
+		createReindexer(1000, 0);
+	}
+
+	@Test
+	public void testFailedSendIsRetried() {
+		addPageResponse("", "alvin-place:1", "alvin-place:2");
+		recordIndexer.numberOfRuntimeErrorsToThrow = 2;
+
+		PlaceReindexResult result = createReindexer(1000, 3).reindexAllPlaces();
+
+		assertEquals(recordIndexer.indexedPids, Arrays.asList("alvin-place:1", "alvin-place:2"));
+		assertEquals(recordIndexer.getNumberOfIndexCalls(), 4);
+		assertEquals(result.numberOfRetries, 2);
+		assertEquals(loggerFactorySpy.getNoOfWarnLogMessagesUsingClassName(TESTED_CLASS_NAME), 2);
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Reindex of place with pid: alvin-place:1 failed, retrying in 1 ms:"
+						+ " Runtime error from RecordIndexerSpy");
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 1),
+				"Reindex of place with pid: alvin-place:1 failed, retrying in 2 ms:"
+						+ " Runtime error from RecordIndexerSpy");
+	}
+
+	@Test
+	public void testReindexStopsAfterMaxAttempts() throws IOException {
+		addPageResponse("", "alvin-place:1", "alvin-place:2");
+		addFailureAfterFirstPid();
+		PlaceReindexer reindexer = createReindexer(1000, 2);
+
+		try {
+			reindexer.reindexAllPlaces();
+			fail("Reindex should have stopped");
+		} catch (FedoraException e) {
+			assertEquals(e.getMessage(), "Reindex of places stopped at pid: alvin-place:2"
+					+ " after 2 attempts: Runtime error from RecordIndexerSpy");
+			assertEquals(e.getCause().getMessage(), "Runtime error from RecordIndexerSpy");
+		}
+		assertEquals(recordIndexer.getNumberOfIndexCalls(), 3);
+		assertEquals(readCheckpoint(), "1\talvin-place:1\n");
+	}
+
+	private void addFailureAfterFirstPid() {
+		recordIndexer = new RecordIndexerSpy() {
+			@Override
+			public void index(String type, String pid) {
+				throwRuntimeErrorOnIndex = "alvin-place:2".equals(pid);
+				super.index(type, pid);
+			}
+		};
+	}
+
+	@Test
+	public void testLogResult() {
+		addPageResponse("", "alvin-place:1");
+
+		createReindexer(1000, 1).reindexAllPlaces();
+
+		assertEquals(loggerFactorySpy.getNoOfInfoLogMessagesUsingClassName(TESTED_CLASS_NAME), 1);
+		assertTrue(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0)
+				.startsWith("Place reindex done: 1 reindexed, 0 skipped, 0 retries in "));
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "reading list from fedora failed, with response code: 500")
+	public void testErrorReadingPlacesFromFedora() {
+		httpHandlerFactory.responseCodes.add(500);
+		httpHandlerFactory.responseTexts.add("");
+
+		createReindexer(1000, 1).reindexAllPlaces();
+	}
+}
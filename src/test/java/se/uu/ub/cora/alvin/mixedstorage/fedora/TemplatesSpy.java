@@ -0,0 +1,27 @@
+package se.uu.ub.cora.alvin.mixedstorage.fedora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+
+public class TemplatesSpy implements Templates {
+
+	public List<TransformerSpy> transformers = new ArrayList<>();
+
+	@Override
+	public Transformer newTransformer() throws TransformerConfigurationException {
+		TransformerSpy transformerSpy = new TransformerSpy();
+		transformers.add(transformerSpy);
+		return transformerSpy;
+	}
+
+	@Override
+	public Properties getOutputProperties() {
+		return null;
+	}
+
+}
@@ -18,6 +18,8 @@ public class TransformerFactorySpy extends TransformerFactory {
 	public static TransformerFactorySpy factory = new TransformerFactorySpy();
 	// public static List<TransformerFactorySpy> factories = new ArrayList<>();
 	public List<TransformerSpy> transformers = new ArrayList<>();
+	public List<TemplatesSpy> templates = new ArrayList<>();
+	public URIResolver uriResolver;
 
 	public Map<String, Object> attributes = new HashMap<>();
 	public Map<String, Boolean> features = new HashMap<>();
@@ -67,8 +69,10 @@ public class TransformerFactorySpy extends TransformerFactory {
 
 	@Override
 	public Templates newTemplates(Source arg0) throws TransformerConfigurationException {
-		// TODO Auto-generated method stub
-		return null;
+		sources.add(arg0);
+		TemplatesSpy templatesSpy = new TemplatesSpy();
+		templates.add(templatesSpy);
+		return templatesSpy;
 	}
 
 	@Override
@@ -104,8 +108,7 @@ public class TransformerFactorySpy extends TransformerFactory {
 
 	@Override
 	public void setURIResolver(URIResolver arg0) {
-		// TODO Auto-generated method stub
-
+		uriResolver = arg0;
 	}
 
 }
@@ -18,6 +18,7 @@
  */
 package se.uu.ub.cora.alvin.mixedstorage.id;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
@@ -25,11 +26,20 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import se.uu.ub.cora.httphandler.HttpHandlerFactoryImp;
+import se.uu.ub.cora.alvin.mixedstorage.HttpHandlerFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
 
 public class AlvinIdGeneratorFactoryTest {
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
+	}
+
 	@Test
 	public void testPrivateConstructor() throws Exception {
 		Constructor<AlvinIdGeneratorFactory> constructor = AlvinIdGeneratorFactory.class
@@ -52,7 +62,48 @@ public class AlvinIdGeneratorFactoryTest {
 		AlvinIdGenerator idGenerator = AlvinIdGeneratorFactory
 				.factorUsingConnectionInfo(connectionInfo);
 		assertTrue(idGenerator instanceof AlvinIdGenerator);
-		assertTrue(idGenerator.getHttpHandlerFactory() instanceof HttpHandlerFactoryImp);
+		assertTrue(idGenerator.getHttpHandlerFactory() instanceof FedoraHttpHandlerFactory);
+		assertSame(idGenerator.getConnectInfo(), connectionInfo);
+	}
+
+	@Test
+	public void testFactorUsingHttpHandlerFactory() throws Exception {
+		IdGeneratorConnectionInfo connectionInfo = new IdGeneratorConnectionInfo("fedoraURL",
+				"fedoraUsername", "fedoraPassword");
+		HttpHandlerFactorySpy httpHandlerFactory = new HttpHandlerFactorySpy();
+		AlvinIdGenerator idGenerator = AlvinIdGeneratorFactory
+				.factorUsingConnectionInfoAndHttpHandlerFactory(connectionInfo, httpHandlerFactory);
+		assertSame(idGenerator.getHttpHandlerFactory(), httpHandlerFactory);
+		assertSame(idGenerator.getConnectInfo(), connectionInfo);
+	}
+
+	@Test
+	public void testFactorUsingHttpHandlerFactoryAndPidPoolConfig() throws Exception {
+		IdGeneratorConnectionInfo connectionInfo = new IdGeneratorConnectionInfo("fedoraURL",
+				"fedoraUsername", "fedoraPassword");
+		HttpHandlerFactorySpy httpHandlerFactory = new HttpHandlerFactorySpy();
+		PidPoolConfig pidPoolConfig = new PidPoolConfig(50, 10);
+		AlvinIdGenerator idGenerator = AlvinIdGeneratorFactory
+				.factorUsingConnectionInfoAndHttpHandlerFactoryAndPidPoolConfig(connectionInfo,
+						httpHandlerFactory, pidPoolConfig);
+		assertSame(idGenerator.getHttpHandlerFactory(), httpHandlerFactory);
+		assertSame(idGenerator.getConnectInfo(), connectionInfo);
+		assertSame(idGenerator.getPlacePidPool().getConfig(), pidPoolConfig);
+		assertEquals(idGenerator.getNodeId(), 0);
+	}
+
+	@Test
+	public void testFactorUsingHttpHandlerFactoryAndPidPoolConfigAndNodeId() throws Exception {
+		IdGeneratorConnectionInfo connectionInfo = new IdGeneratorConnectionInfo("fedoraURL",
+				"fedoraUsername", "fedoraPassword");
+		HttpHandlerFactorySpy httpHandlerFactory = new HttpHandlerFactorySpy();
+		PidPoolConfig pidPoolConfig = new PidPoolConfig(50, 10);
+		AlvinIdGenerator idGenerator = AlvinIdGeneratorFactory
+				.factorUsingConnectionInfoAndHttpHandlerFactoryAndPidPoolConfigAndNodeId(
+						connectionInfo, httpHandlerFactory, pidPoolConfig, 12);
+		assertSame(idGenerator.getHttpHandlerFactory(), httpHandlerFactory);
 		assertSame(idGenerator.getConnectInfo(), connectionInfo);
+		assertSame(idGenerator.getPlacePidPool().getConfig(), pidPoolConfig);
+		assertEquals(idGenerator.getNodeId(), 12);
 	}
 }
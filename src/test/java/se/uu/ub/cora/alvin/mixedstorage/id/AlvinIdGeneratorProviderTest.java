@@ -22,13 +22,18 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraHttpHandlerFactory;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraTransportConfig;
 import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.storage.RecordIdGenerator;
@@ -47,6 +52,7 @@ public class AlvinIdGeneratorProviderTest {
 		initInfo.put("fedoraURL", "someFedoraURL");
 		initInfo.put("fedoraUsername", "someFedoraUsername");
 		initInfo.put("fedoraPassword", "someFedoraPassword");
+		initInfo.put("idGeneratorNodeId", "0");
 		alvinIdGeneratorProvider = new AlvinIdGeneratorProvider();
 	}
 
@@ -62,6 +68,35 @@ public class AlvinIdGeneratorProviderTest {
 		assertTrue(recordIdGenerator instanceof AlvinIdGenerator);
 	}
 
+	@Test
+	public void testIdGeneratorIsClosedWithStartedResources() {
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		List<AutoCloseable> startedResources = alvinIdGeneratorProvider.getStartedResources();
+		assertEquals(startedResources.size(), 1);
+		assertSame(startedResources.get(0), alvinIdGeneratorProvider.getRecordIdGenerator());
+
+		alvinIdGeneratorProvider.closeStartedResources();
+
+		assertTrue(startedResources.isEmpty());
+	}
+
+	@Test
+	public void testErrorClosingStartedResourceIsLoggedAndOthersAreClosed() {
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		List<AutoCloseable> startedResources = alvinIdGeneratorProvider.getStartedResources();
+		List<String> closed = new ArrayList<>();
+		startedResources.add(() -> closed.add("first"));
+		startedResources.add(() -> {
+			throw new IOException("some close error");
+		});
+
+		alvinIdGeneratorProvider.closeStartedResources();
+
+		assertEquals(closed, List.of("first"));
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"Error closing resource on shutdown: some close error");
+	}
+
 	@Test
 	public void testNormalStartupReturnsTheSameIdGeneratorForMultipleCalls() {
 		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
@@ -81,6 +116,138 @@ public class AlvinIdGeneratorProviderTest {
 		assertEquals(initInfo.get("fedoraPassword"), connectInfo.fedoraPassword);
 	}
 
+	@Test
+	public void testGeneratorUsesSharedFedoraHttpHandlerFactoryWithDefaultTransport() {
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		AlvinIdGenerator recordIdGenerator = (AlvinIdGenerator) alvinIdGeneratorProvider
+				.getRecordIdGenerator();
+		FedoraHttpHandlerFactory httpHandlerFactory = (FedoraHttpHandlerFactory) recordIdGenerator
+				.getHttpHandlerFactory();
+		FedoraTransportConfig transportConfig = httpHandlerFactory.getTransportConfig();
+		assertEquals(transportConfig.poolSize, 20);
+		assertEquals(transportConfig.connectTimeoutMillis, 5000);
+		assertEquals(transportConfig.readTimeoutMillis, 30000);
+		assertSame(httpHandlerFactory,
+				FedoraHttpHandlerFactory.getSharedUsingUsernameAndPasswordAndTransportConfig(
+						"someFedoraUsername", "someFedoraPassword",
+						FedoraTransportConfig.withDefaultValues()));
+	}
+
+	@Test
+	public void testGeneratorUsesTransportConfigFromInitInfo() {
+		initInfo.put("fedoraConnectionPoolSize", "3");
+		initInfo.put("fedoraConnectTimeout", "10");
+		initInfo.put("fedoraReadTimeout", "20");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		AlvinIdGenerator recordIdGenerator = (AlvinIdGenerator) alvinIdGeneratorProvider
+				.getRecordIdGenerator();
+		FedoraTransportConfig transportConfig = ((FedoraHttpHandlerFactory) recordIdGenerator
+				.getHttpHandlerFactory()).getTransportConfig();
+		assertEquals(transportConfig.poolSize, 3);
+		assertEquals(transportConfig.connectTimeoutMillis, 10);
+		assertEquals(transportConfig.readTimeoutMillis, 20);
+	}
+
+	@Test
+	public void testGeneratorUsesDefaultPidPoolConfig() {
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		AlvinIdGenerator recordIdGenerator = (AlvinIdGenerator) alvinIdGeneratorProvider
+				.getRecordIdGenerator();
+		PidPoolConfig pidPoolConfig = recordIdGenerator.getPlacePidPool().getConfig();
+		assertEquals(pidPoolConfig.blockSize, 20);
+		assertEquals(pidPoolConfig.lowWatermark, 5);
+	}
+
+	@Test
+	public void testGeneratorUsesPidPoolConfigFromInitInfo() {
+		initInfo.put("fedoraPidBlockSize", "100");
+		initInfo.put("fedoraPidLowWatermark", "25");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		AlvinIdGenerator recordIdGenerator = (AlvinIdGenerator) alvinIdGeneratorProvider
+				.getRecordIdGenerator();
+		PidPoolConfig pidPoolConfig = recordIdGenerator.getPlacePidPool().getConfig();
+		assertEquals(pidPoolConfig.blockSize, 100);
+		assertEquals(pidPoolConfig.lowWatermark, 25);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "InitInfo must contain idGeneratorNodeId")
+	public void testErrorIfMissingStartParameterIdGeneratorNodeId() {
+		initInfo.remove("idGeneratorNodeId");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test
+	public void testLoggingAndErrorIfMissingParameterIdGeneratorNodeId() {
+		assertFatalLogMessageForMissingParameter("idGeneratorNodeId");
+		assertEquals(loggerFactorySpy.getNoOfInfoLogMessagesUsingClassName(testedClassName), 2);
+	}
+
+	@Test
+	public void testGeneratorUsesNodeIdZeroFromInitInfo() {
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		AlvinIdGenerator recordIdGenerator = (AlvinIdGenerator) alvinIdGeneratorProvider
+				.getRecordIdGenerator();
+		assertEquals(recordIdGenerator.getNodeId(), 0);
+	}
+
+	@Test
+	public void testGeneratorUsesNodeIdFromInitInfo() {
+		initInfo.put("idGeneratorNodeId", "1023");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		AlvinIdGenerator recordIdGenerator = (AlvinIdGenerator) alvinIdGeneratorProvider
+				.getRecordIdGenerator();
+		assertEquals(recordIdGenerator.getNodeId(), 1023);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "InitInfo contains invalid value 1024 for idGeneratorNodeId, "
+			+ "must be between 0 and 1023")
+	public void testErrorIfNodeIdTooLarge() {
+		initInfo.put("idGeneratorNodeId", "1024");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test
+	public void testLoggingErrorIfInvalidNodeId() {
+		initInfo.put("idGeneratorNodeId", "notANumber");
+		try {
+			alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		} catch (Exception e) {
+			// expected
+		}
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"InitInfo contains invalid value notANumber for idGeneratorNodeId, "
+						+ "must be between 0 and 1023");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "InitInfo contains invalid value 0 for fedoraPidBlockSize")
+	public void testErrorIfInvalidPidBlockSize() {
+		initInfo.put("fedoraPidBlockSize", "0");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "InitInfo contains invalid value notANumber for fedoraConnectTimeout")
+	public void testErrorIfInvalidConnectTimeout() {
+		initInfo.put("fedoraConnectTimeout", "notANumber");
+		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+	}
+
+	@Test
+	public void testLoggingErrorIfInvalidConnectionPoolSize() {
+		initInfo.put("fedoraConnectionPoolSize", "0");
+		try {
+			alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
+		} catch (Exception e) {
+
+		}
+		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
+				"InitInfo contains invalid value 0 for fedoraConnectionPoolSize");
+		assertEquals(loggerFactorySpy.getNoOfFatalLogMessagesUsingClassName(testedClassName), 1);
+	}
+
 	@Test
 	public void testLoggingNormalStartup() {
 		alvinIdGeneratorProvider.startUsingInitInfo(initInfo);
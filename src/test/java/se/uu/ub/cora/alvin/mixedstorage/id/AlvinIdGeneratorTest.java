@@ -19,6 +19,7 @@
 package se.uu.ub.cora.alvin.mixedstorage.id;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertTrue;
 
@@ -28,7 +29,9 @@ import org.testng.annotations.Test;
 import se.uu.ub.cora.alvin.mixedstorage.HttpHandlerFactorySpy;
 import se.uu.ub.cora.alvin.mixedstorage.HttpHandlerSpy;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
 import se.uu.ub.cora.alvin.mixedstorage.resource.ResourceReader;
+import se.uu.ub.cora.logger.LoggerProvider;
 
 public class AlvinIdGeneratorTest {
 	private AlvinIdGenerator idGenerator;
@@ -40,6 +43,7 @@ public class AlvinIdGeneratorTest {
 
 	@BeforeMethod
 	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
 		httpHandlerFactory = new HttpHandlerFactorySpy();
 		idGeneratorConnectionInfo = new IdGeneratorConnectionInfo(fedoraBaseURL, fedoraUsername,
 				fedoraPassword);
@@ -69,6 +73,20 @@ public class AlvinIdGeneratorTest {
 		assertNotEquals(idForType, idForType2);
 	}
 
+	@Test
+	public void idsForTypeAreIncreasingAndContainNodeId() throws Exception {
+		idGenerator = AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfigAndNodeId(
+				httpHandlerFactory, idGeneratorConnectionInfo, PidPoolConfig.oneAtATime(), 5);
+
+		long id = Long.parseLong(idGenerator.getIdForType("anyType").substring(8));
+		long id2 = Long.parseLong(idGenerator.getIdForType("anyType").substring(8));
+
+		assertTrue(id2 > id);
+		assertEquals((id >>> TimeOrderedIdGenerator.SEQUENCE_BITS)
+				& TimeOrderedIdGenerator.MAX_NODE_ID, 5);
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 0);
+	}
+
 	@Test
 	public void testIdForPlaceFromFedora() throws Exception {
 		String generatedPlaceId = idGenerator.getIdForType("place");
@@ -80,11 +98,10 @@ public class AlvinIdGeneratorTest {
 		HttpHandlerSpy httpHandlerForPid = httpHandlerFactory.factoredHttpHandlers.get(0);
 
 		assertEquals(httpHandlerFactory.urls.get(0),
-				fedoraBaseURL + "objects/nextPID?namespace=alvin-place" + "&format=xml");
+				fedoraBaseURL + "objects/nextPID?namespace=alvin-place&numPIDs=1&format=xml");
 
 		assertEquals(httpHandlerForPid.requestMethod, "POST");
-		assertEquals(httpHandlerForPid.username, fedoraUsername);
-		assertEquals(httpHandlerForPid.password, fedoraPassword);
+		assertFalse(httpHandlerForPid.basicAuthorizationWasSet);
 	}
 
 	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
@@ -94,6 +111,46 @@ public class AlvinIdGeneratorTest {
 		idGenerator.getIdForType("place");
 	}
 
+	@Test
+	public void testIdForPlaceIsFetchedForEachPlaceWithoutPool() throws Exception {
+		idGenerator.getIdForType("place");
+		idGenerator.getIdForType("place");
+
+		assertEquals(httpHandlerFactory.factoredHttpHandlers.size(), 2);
+		assertEquals(idGenerator.getPlacePidPool().getNumberOfReservedPids(), 0);
+	}
+
+	@Test
+	public void testIdForPlaceUsesPidPool() throws Exception {
+		PidReservingHttpHandlerFactorySpy pidReservingHttpHandlerFactory = new PidReservingHttpHandlerFactorySpy();
+		idGenerator = AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfig(
+				pidReservingHttpHandlerFactory, idGeneratorConnectionInfo,
+				new PidPoolConfig(10, 2));
+
+		assertEquals(idGenerator.getIdForType("place"), "alvin-place:1");
+		assertEquals(idGenerator.getIdForType("place"), "alvin-place:2");
+
+		assertEquals(pidReservingHttpHandlerFactory.urls.get(0),
+				fedoraBaseURL + "objects/nextPID?namespace=alvin-place&numPIDs=10&format=xml");
+		assertEquals(idGenerator.getPlacePidPool().getConfig().blockSize, 10);
+	}
+
+	@Test
+	public void testCloseStopsPidPoolRefills() throws Exception {
+		PidReservingHttpHandlerFactorySpy pidReservingHttpHandlerFactory = new PidReservingHttpHandlerFactorySpy();
+		idGenerator = AlvinIdGenerator.usingHttpHandlerFactoryAndConnectionInfoAndPidPoolConfig(
+				pidReservingHttpHandlerFactory, idGeneratorConnectionInfo,
+				new PidPoolConfig(4, 2));
+		idGenerator.getIdForType("place");
+
+		idGenerator.close();
+
+		assertEquals(idGenerator.getIdForType("place"), "alvin-place:2");
+		assertEquals(idGenerator.getIdForType("place"), "alvin-place:3");
+		assertEquals(pidReservingHttpHandlerFactory.urls.size(), 1);
+		assertFalse(idGenerator.getPlacePidPool().isRefilling());
+	}
+
 	@Test
 	public void testMethodsNeededForTest() throws Exception {
 		assertEquals(idGenerator.getFedoraURL(), fedoraBaseURL);
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class PidPoolConfigTest {
+
+	@Test
+	public void testPidPoolConfig() {
+		PidPoolConfig config = new PidPoolConfig(50, 10);
+		assertEquals(config.blockSize, 50);
+		assertEquals(config.lowWatermark, 10);
+	}
+
+	@Test
+	public void testWithDefaultValues() {
+		PidPoolConfig config = PidPoolConfig.withDefaultValues();
+		assertEquals(config.blockSize, 20);
+		assertEquals(config.lowWatermark, 5);
+	}
+
+	@Test
+	public void testOneAtATime() {
+		PidPoolConfig config = PidPoolConfig.oneAtATime();
+		assertEquals(config.blockSize, 1);
+		assertEquals(config.lowWatermark, 0);
+	}
+
+}
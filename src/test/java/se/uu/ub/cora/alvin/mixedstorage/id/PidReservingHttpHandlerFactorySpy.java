@@ -0,0 +1,57 @@
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.uu.ub.cora.alvin.mixedstorage.HttpHandlerSpy;
+import se.uu.ub.cora.httphandler.HttpHandler;
+import se.uu.ub.cora.httphandler.HttpHandlerFactory;
+import se.uu.ub.cora.httphandler.HttpMultiPartUploader;
+
+public class PidReservingHttpHandlerFactorySpy implements HttpHandlerFactory {
+
+	public List<String> urls = Collections.synchronizedList(new ArrayList<>());
+	public List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+	public volatile int responseCode = 200;
+	public volatile CountDownLatch blockUntil = new CountDownLatch(0);
+	public AtomicInteger numberOfReservedPids = new AtomicInteger();
+
+	@Override
+	public HttpHandler factor(String url) {
+		urls.add(url);
+		threadNames.add(Thread.currentThread().getName());
+		waitUntilUnblocked();
+		int numberOfPids = Integer
+				.parseInt(url.substring(url.indexOf("numPIDs=") + 8, url.indexOf("&format")));
+		HttpHandlerSpy httpHandler = new HttpHandlerSpy();
+		httpHandler.responseCode = responseCode;
+		httpHandler.responseText = createPidList(numberOfPids);
+		return httpHandler;
+	}
+
+	private void waitUntilUnblocked() {
+		try {
+			blockUntil.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private String createPidList(int numberOfPids) {
+		StringBuilder pidList = new StringBuilder("<pidList>");
+		for (int i = 0; i < numberOfPids; i++) {
+			pidList.append("<pid>alvin-place:").append(numberOfReservedPids.incrementAndGet())
+					.append("</pid>");
+		}
+		return pidList.append("</pidList>").toString();
+	}
+
+	@Override
+	public HttpMultiPartUploader factorHttpMultiPartUploader(String url) {
+		return null;
+	}
+
+}
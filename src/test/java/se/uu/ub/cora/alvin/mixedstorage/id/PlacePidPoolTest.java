@@ -0,0 +1,231 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraConfig;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraException;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.FedoraPidReserver;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public class PlacePidPoolTest {
+	private static final String TESTED_CLASS_NAME = "PlacePidPool";
+	private LoggerFactorySpy loggerFactorySpy;
+	private PidReservingHttpHandlerFactorySpy httpHandlerFactory;
+	private FedoraPidReserver pidReserver;
+
+	@BeforeMethod
+	public void setUp() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		httpHandlerFactory = new PidReservingHttpHandlerFactorySpy();
+		pidReserver = FedoraPidReserver.usingHttpHandlerFactoryAndFedoraConfig(httpHandlerFactory,
+				new FedoraConfig("someUser", "somePassword", "http://someFedoraUrl/fedora/"));
+	}
+
+	private PlacePidPool createPoolUsingBlockSizeAndLowWatermark(int blockSize,
+			int lowWatermark) {
+		return PlacePidPool.usingPidReserverAndConfig(pidReserver,
+				new PidPoolConfig(blockSize, lowWatermark));
+	}
+
+	private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	public void testFirstTakeReservesBlockWhileWaiting() {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(10, 2);
+
+		assertEquals(pool.takePid(), "alvin-place:1");
+
+		assertEquals(httpHandlerFactory.urls.size(), 1);
+		assertEquals(httpHandlerFactory.urls.get(0), "http://someFedoraUrl/fedora/"
+				+ "objects/nextPID?namespace=alvin-place&numPIDs=10&format=xml");
+		assertEquals(httpHandlerFactory.threadNames.get(0), Thread.currentThread().getName());
+		assertEquals(pool.getNumberOfWaitingReservations(), 1);
+		assertEquals(pool.getNumberOfReservedPids(), 9);
+	}
+
+	@Test
+	public void testPidsAreTakenFromPoolInOrder() {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(10, 2);
+
+		assertEquals(pool.takePid(), "alvin-place:1");
+		assertEquals(pool.takePid(), "alvin-place:2");
+		assertEquals(pool.takePid(), "alvin-place:3");
+
+		assertEquals(httpHandlerFactory.urls.size(), 1);
+		assertEquals(pool.getNumberOfReservedPids(), 7);
+	}
+
+	@Test
+	public void testRefillStartsInBackgroundBelowLowWatermark() throws Exception {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(4, 2);
+		pool.takePid();
+		pool.takePid();
+		assertEquals(httpHandlerFactory.urls.size(), 1);
+
+		pool.takePid();
+
+		waitUntil(() -> pool.getNumberOfRefills() == 1);
+		assertEquals(httpHandlerFactory.urls.size(), 2);
+		assertEquals(httpHandlerFactory.threadNames.get(1), "alvin-place-pid-refill");
+		assertEquals(pool.getNumberOfReservedPids(), 5);
+		assertEquals(pool.getNumberOfWaitingReservations(), 1);
+		assertEquals(pool.takePid(), "alvin-place:4");
+		assertEquals(pool.takePid(), "alvin-place:5");
+	}
+
+	@Test
+	public void testTakeDoesNotWaitForRunningRefill() throws Exception {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(4, 3);
+		pool.takePid();
+		httpHandlerFactory.blockUntil = new CountDownLatch(1);
+
+		assertEquals(pool.takePid(), "alvin-place:2");
+		assertEquals(pool.takePid(), "alvin-place:3");
+		assertEquals(pool.takePid(), "alvin-place:4");
+
+		waitUntil(() -> httpHandlerFactory.urls.size() == 2);
+		assertEquals(pool.getNumberOfRefills(), 0);
+		httpHandlerFactory.blockUntil.countDown();
+		waitUntil(() -> pool.getNumberOfRefills() == 1);
+		assertEquals(pool.takePid(), "alvin-place:5");
+		assertEquals(pool.getNumberOfWaitingReservations(), 1);
+	}
+
+	@Test
+	public void testNoRefillWithoutLowWatermark() throws Exception {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(2, 0);
+
+		assertEquals(pool.takePid(), "alvin-place:1");
+		assertEquals(pool.takePid(), "alvin-place:2");
+		assertEquals(pool.takePid(), "alvin-place:3");
+
+		assertEquals(httpHandlerFactory.urls.size(), 2);
+		assertEquals(pool.getNumberOfWaitingReservations(), 2);
+		assertEquals(pool.getNumberOfRefills(), 0);
+	}
+
+	@Test
+	public void testNoRefillAfterClose() throws Exception {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(4, 2);
+		pool.takePid();
+
+		pool.close();
+
+		assertEquals(pool.takePid(), "alvin-place:2");
+		assertEquals(pool.takePid(), "alvin-place:3");
+		assertEquals(pool.takePid(), "alvin-place:4");
+		assertEquals(pool.takePid(), "alvin-place:5");
+		assertFalse(pool.isRefilling());
+		assertEquals(httpHandlerFactory.urls.size(), 2);
+		assertEquals(httpHandlerFactory.threadNames.get(1), Thread.currentThread().getName());
+		assertEquals(pool.getNumberOfRefills(), 0);
+	}
+
+	@Test
+	public void testCloseWithoutLowWatermark() {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(2, 0);
+
+		pool.close();
+
+		assertEquals(pool.takePid(), "alvin-place:1");
+	}
+
+	@Test(expectedExceptions = FedoraException.class, expectedExceptionsMessageRegExp = ""
+			+ "getting next pid from fedora failed, with response code: 500")
+	public void testErrorReservingPidsWhenPoolIsEmpty() {
+		httpHandlerFactory.responseCode = 500;
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(10, 2);
+
+		pool.takePid();
+	}
+
+	@Test
+	public void testFailedRefillIsLoggedAndRetriedOnNextTake() throws Exception {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(3, 2);
+		pool.takePid();
+		httpHandlerFactory.responseCode = 500;
+
+		assertEquals(pool.takePid(), "alvin-place:2");
+
+		waitUntil(() -> loggerFactorySpy
+				.getNoOfErrorLogMessagesUsingClassName(TESTED_CLASS_NAME) == 1);
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Refilling pool of place pids failed with message: "
+						+ "getting next pid from fedora failed, with response code: 500");
+		waitUntil(() -> !pool.isRefilling());
+		httpHandlerFactory.responseCode = 200;
+
+		assertEquals(pool.takePid(), "alvin-place:3");
+
+		waitUntil(() -> pool.getNumberOfRefills() == 1);
+		assertEquals(pool.getNumberOfReservedPids(), 3);
+	}
+
+	@Test
+	public void testConcurrentTakesReturnUniquePids() throws Exception {
+		PlacePidPool pool = createPoolUsingBlockSizeAndLowWatermark(50, 20);
+		int numberOfThreads = 8;
+		int pidsPerThread = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		List<Future<List<String>>> futures = new ArrayList<>();
+		Callable<List<String>> takePids = () -> {
+			List<String> pids = new ArrayList<>();
+			for (int i = 0; i < pidsPerThread; i++) {
+				pids.add(pool.takePid());
+			}
+			return pids;
+		};
+		for (int i = 0; i < numberOfThreads; i++) {
+			futures.add(executor.submit(takePids));
+		}
+		Set<String> allPids = new HashSet<>();
+		for (Future<List<String>> future : futures) {
+			allPids.addAll(future.get());
+		}
+		executor.shutdown();
+
+		assertEquals(allPids.size(), numberOfThreads * pidsPerThread);
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.id;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+public class TimeOrderedIdGeneratorTest {
+	private static final long SOME_TIME = TimeOrderedIdGenerator.EPOCH_MILLIS + 1000;
+	private AtomicLong clock = new AtomicLong(SOME_TIME);
+
+	private long getTimestamp(long id) {
+		return id >>> (TimeOrderedIdGenerator.NODE_ID_BITS
+				+ TimeOrderedIdGenerator.SEQUENCE_BITS);
+	}
+
+	private long getNodeId(long id) {
+		return (id >>> TimeOrderedIdGenerator.SEQUENCE_BITS)
+				& TimeOrderedIdGenerator.MAX_NODE_ID;
+	}
+
+	private long getSequence(long id) {
+		return id & TimeOrderedIdGenerator.SEQUENCE_MASK;
+	}
+
+	@Test
+	public void testIdContainsTimestampNodeIdAndSequence() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeIdAndClock(7,
+				clock::get);
+
+		long id = generator.nextId();
+
+		assertEquals(getTimestamp(id), 1000);
+		assertEquals(getNodeId(id), 7);
+		assertEquals(getSequence(id), 0);
+	}
+
+	@Test
+	public void testSequenceIncreasesWithinSameMillisecond() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeIdAndClock(7,
+				clock::get);
+
+		generator.nextId();
+		long id = generator.nextId();
+
+		assertEquals(getTimestamp(id), 1000);
+		assertEquals(getSequence(id), 1);
+	}
+
+	@Test
+	public void testSequenceRestartsInNewMillisecond() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeIdAndClock(7,
+				clock::get);
+		generator.nextId();
+		generator.nextId();
+		clock.incrementAndGet();
+
+		long id = generator.nextId();
+
+		assertEquals(getTimestamp(id), 1001);
+		assertEquals(getSequence(id), 0);
+	}
+
+	@Test
+	public void testFullSequenceContinuesInNextMillisecond() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeIdAndClock(7,
+				clock::get);
+		long id = 0;
+		for (int i = 0; i <= TimeOrderedIdGenerator.SEQUENCE_MASK; i++) {
+			id = generator.nextId();
+		}
+		assertEquals(getTimestamp(id), 1000);
+		assertEquals(getSequence(id), TimeOrderedIdGenerator.SEQUENCE_MASK);
+
+		long nextId = generator.nextId();
+
+		assertEquals(getTimestamp(nextId), 1001);
+		assertEquals(getSequence(nextId), 0);
+		assertTrue(nextId > id);
+	}
+
+	@Test
+	public void testIdsKeepIncreasingWhenClockMovesBack() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeIdAndClock(7,
+				clock::get);
+		long id = generator.nextId();
+		clock.addAndGet(-500);
+
+		long nextId = generator.nextId();
+
+		assertTrue(nextId > id);
+		assertEquals(getTimestamp(nextId), 1000);
+		assertEquals(getSequence(nextId), 1);
+	}
+
+	@Test
+	public void testDifferentNodesGiveDifferentIdsForSameTime() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeIdAndClock(1,
+				clock::get);
+		TimeOrderedIdGenerator otherGenerator = TimeOrderedIdGenerator.usingNodeIdAndClock(2,
+				clock::get);
+
+		long id = generator.nextId();
+		long otherId = otherGenerator.nextId();
+
+		assertEquals(getTimestamp(id), getTimestamp(otherId));
+		assertEquals(getSequence(id), getSequence(otherId));
+		assertTrue(id != otherId);
+	}
+
+	@Test
+	public void testHighestNodeIdAndSystemClockGivePositiveIds() {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator
+				.usingNodeId(TimeOrderedIdGenerator.MAX_NODE_ID);
+
+		long id = generator.nextId();
+
+		assertTrue(id > 0);
+		assertEquals(getNodeId(id), TimeOrderedIdGenerator.MAX_NODE_ID);
+		long millisSinceEpoch = System.currentTimeMillis() - TimeOrderedIdGenerator.EPOCH_MILLIS;
+		assertTrue(Math.abs(getTimestamp(id) - millisSinceEpoch) < 1000);
+	}
+
+	@Test
+	public void testConcurrentIdsAreUniqueAndFast() throws Exception {
+		TimeOrderedIdGenerator generator = TimeOrderedIdGenerator.usingNodeId(3);
+		int numberOfThreads = 8;
+		int idsPerThread = 100_000;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		Callable<long[]> generateIds = () -> {
+			long[] ids = new long[idsPerThread];
+			for (int i = 0; i < idsPerThread; i++) {
+				ids[i] = generator.nextId();
+			}
+			return ids;
+		};
+		List<Future<long[]>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int i = 0; i < numberOfThreads; i++) {
+			futures.add(executor.submit(generateIds));
+		}
+		Set<Long> allIds = new HashSet<>();
+		for (Future<long[]> future : futures) {
+			long[] ids = future.get();
+			assertIncreasing(ids);
+			for (long id : ids) {
+				allIds.add(id);
+			}
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		executor.shutdown();
+
+		assertEquals(allIds.size(), numberOfThreads * idsPerThread);
+		assertTrue(elapsedMillis < 10_000, "generating 800000 ids took " + elapsedMillis + " ms");
+	}
+
+	private void assertIncreasing(long[] ids) {
+		for (int i = 1; i < ids.length; i++) {
+			assertTrue(ids[i] > ids[i - 1]);
+		}
+	}
+}
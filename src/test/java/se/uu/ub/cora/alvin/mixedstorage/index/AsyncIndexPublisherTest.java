@@ -0,0 +1,324 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerSpy;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig.FullQueuePolicy;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+public class AsyncIndexPublisherTest {
+	private static final String TESTED_CLASS_NAME = "AsyncIndexPublisher";
+	private static final long LONG_WINDOW = 60000;
+	private LoggerFactorySpy loggerFactorySpy;
+	private RecordIndexerSpy indexer;
+	private AsyncIndexPublisher indexPublisher;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		indexer = new RecordIndexerSpy();
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		if (indexer.releaseIndex != null) {
+			indexer.releaseIndex.countDown();
+		}
+		if (indexPublisher != null) {
+			indexPublisher.close();
+		}
+	}
+
+	private void startPublisher(int queueCapacity, long coalesceWindow, int batchSize,
+			FullQueuePolicy fullQueuePolicy) {
+		startPublisherWithFullQueueTimeout(queueCapacity, coalesceWindow, batchSize,
+				fullQueuePolicy, 10000);
+	}
+
+	private void startPublisherWithFullQueueTimeout(int queueCapacity, long coalesceWindow,
+			int batchSize, FullQueuePolicy fullQueuePolicy, long fullQueueTimeout) {
+		indexPublisher = AsyncIndexPublisher.startUsingConfig(new IndexPublisherConfig(
+				queueCapacity, coalesceWindow, batchSize, fullQueuePolicy, fullQueueTimeout));
+	}
+
+	@Test
+	public void testStartUsingConfig() {
+		IndexPublisherConfig config = IndexPublisherConfig.withDefaultValues();
+		indexPublisher = AsyncIndexPublisher.startUsingConfig(config);
+		assertSame(indexPublisher.getConfig(), config);
+		assertEquals(indexPublisher.getQueueDepth(), 0);
+		assertEquals(indexPublisher.getOldestPendingAgeMillis(), 0);
+		assertEquals(indexPublisher.getCoalesceRatio(), 0.0);
+	}
+
+	@Test
+	public void testPublishIsQueuedDuringCoalesceWindow() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+
+		assertEquals(indexPublisher.getQueueDepth(), 1);
+		assertEquals(indexPublisher.getNumberOfEnqueuedMessages(), 1);
+		assertEquals(indexer.getNumberOfIndexedPids(), 0);
+	}
+
+	@Test
+	public void testPublishIsSentAfterCoalesceWindow() {
+		startPublisher(100, 10, 10, FullQueuePolicy.BLOCK);
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+
+		waitUntil(() -> indexPublisher.getNumberOfPublishedMessages() == 1);
+		assertEquals(indexer.indexedTypes.get(0), "place");
+		assertEquals(indexer.indexedPids.get(0), "alvin-place:22");
+		assertEquals(indexPublisher.getQueueDepth(), 0);
+		assertEquals(indexPublisher.getNumberOfPublishedBatches(), 1);
+		assertTrue(indexPublisher.getLastPublishLagMillis() >= 10);
+	}
+
+	private void waitUntil(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Condition not met within timeout");
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	@Test
+	public void testRepeatedPublishForSamePidIsCoalesced() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+		indexPublisher.publish(indexer, "place", "alvin-place:23");
+
+		assertEquals(indexPublisher.getQueueDepth(), 2);
+		assertEquals(indexPublisher.getNumberOfEnqueuedMessages(), 4);
+		assertEquals(indexPublisher.getNumberOfCoalescedMessages(), 2);
+		assertEquals(indexPublisher.getCoalesceRatio(), 0.5);
+
+		indexPublisher.close();
+		assertEquals(indexer.indexedPids, List.of("alvin-place:22", "alvin-place:23"));
+	}
+
+	@Test
+	public void testSamePidForDifferentIndexersIsNotCoalesced() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		RecordIndexerSpy otherIndexer = new RecordIndexerSpy();
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+		indexPublisher.publish(otherIndexer, "place", "alvin-place:22");
+
+		assertEquals(indexPublisher.getQueueDepth(), 2);
+		indexPublisher.close();
+		assertEquals(indexer.indexedPids, List.of("alvin-place:22"));
+		assertEquals(otherIndexer.indexedPids, List.of("alvin-place:22"));
+	}
+
+	@Test
+	public void testCloseFlushesPendingMessagesInBatches() {
+		startPublisher(100, LONG_WINDOW, 2, FullQueuePolicy.BLOCK);
+		for (int i = 0; i < 5; i++) {
+			indexPublisher.publish(indexer, "place", "alvin-place:" + i);
+		}
+		indexPublisher.close();
+
+		assertEquals(indexer.getNumberOfIndexedPids(), 5);
+		assertEquals(indexPublisher.getNumberOfPublishedMessages(), 5);
+		assertEquals(indexPublisher.getNumberOfPublishedBatches(), 3);
+		assertEquals(indexPublisher.getQueueDepth(), 0);
+	}
+
+	@Test
+	public void testBatchIsSentUsingOneIndexBatchCallPerIndexerAndType() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		RecordIndexerSpy otherIndexer = new RecordIndexerSpy();
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+		indexPublisher.publish(otherIndexer, "place", "alvin-place:2");
+		indexPublisher.publish(indexer, "place", "alvin-place:3");
+		indexPublisher.publish(indexer, "person", "alvin-person:4");
+		indexPublisher.publish(indexer, "place", "alvin-place:5");
+		indexPublisher.close();
+
+		assertEquals(indexer.indexedBatches,
+				List.of(List.of("alvin-place:1", "alvin-place:3", "alvin-place:5")));
+		assertEquals(indexer.getNumberOfIndexCalls(), 2);
+		assertEquals(indexer.indexedPids, List.of("alvin-place:1", "alvin-place:3",
+				"alvin-place:5", "alvin-person:4"));
+		assertEquals(otherIndexer.indexedBatches.size(), 0);
+		assertEquals(otherIndexer.indexedPids, List.of("alvin-place:2"));
+		assertEquals(indexPublisher.getNumberOfPublishedMessages(), 5);
+		assertEquals(indexPublisher.getNumberOfPublishedBatches(), 1);
+	}
+
+	@Test
+	public void testFailedBatchIsSentAgainOneByOne() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		indexer.numberOfRuntimeErrorsToThrow = 1;
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+		indexPublisher.publish(indexer, "place", "alvin-place:2");
+		indexPublisher.close();
+
+		assertEquals(indexer.indexedBatches.size(), 0);
+		assertEquals(indexer.indexedPids, List.of("alvin-place:1", "alvin-place:2"));
+		assertEquals(indexPublisher.getNumberOfPublishedMessages(), 2);
+		assertEquals(indexPublisher.getNumberOfFailedMessages(), 0);
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Sending batch of 2 index messages to classic failed, sending them one by one:"
+						+ " Runtime error from RecordIndexerSpy");
+	}
+
+	@Test
+	public void testPublishAfterCloseIsSentDirectly() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		indexPublisher.close();
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+
+		assertEquals(indexer.indexedPids, List.of("alvin-place:22"));
+		assertEquals(indexPublisher.getQueueDepth(), 0);
+	}
+
+	@Test
+	public void testOldestPendingAge() throws Exception {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+		Thread.sleep(20);
+		assertTrue(indexPublisher.getOldestPendingAgeMillis() >= 20);
+	}
+
+	@Test
+	public void testDropOldestWhenQueueIsFull() {
+		startPublisher(2, LONG_WINDOW, 10, FullQueuePolicy.DROP_OLDEST);
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+		indexPublisher.publish(indexer, "place", "alvin-place:2");
+		indexPublisher.publish(indexer, "place", "alvin-place:3");
+
+		assertEquals(indexPublisher.getQueueDepth(), 2);
+		assertEquals(indexPublisher.getNumberOfDroppedMessages(), 1);
+		assertEquals(loggerFactorySpy.getNoOfWarnLogMessagesUsingClassName(TESTED_CLASS_NAME),
+				1);
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Index message queue full, dropping index message for recordType:place"
+						+ " and id:alvin-place:1");
+
+		indexPublisher.close();
+		assertEquals(indexer.indexedPids, List.of("alvin-place:2", "alvin-place:3"));
+	}
+
+	@Test
+	public void testCoalescedPublishIsNotDroppedWhenQueueIsFull() {
+		startPublisher(1, LONG_WINDOW, 10, FullQueuePolicy.DROP_OLDEST);
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+
+		assertEquals(indexPublisher.getNumberOfDroppedMessages(), 0);
+		assertEquals(indexPublisher.getNumberOfCoalescedMessages(), 1);
+	}
+
+	@Test
+	public void testBlockWaitsForRoomWhenQueueIsFull() throws Exception {
+		startPublisher(1, 1, 1, FullQueuePolicy.BLOCK);
+		indexer.releaseIndex = new CountDownLatch(1);
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+		waitUntil(() -> indexPublisher.getQueueDepth() == 0);
+		indexPublisher.publish(indexer, "place", "alvin-place:2");
+
+		CountDownLatch thirdPublished = new CountDownLatch(1);
+		Thread publishingThread = new Thread(() -> {
+			indexPublisher.publish(indexer, "place", "alvin-place:3");
+			thirdPublished.countDown();
+		});
+		publishingThread.start();
+		Thread.sleep(50);
+		assertEquals(thirdPublished.getCount(), 1);
+		assertEquals(indexPublisher.getQueueDepth(), 1);
+
+		indexer.releaseIndex.countDown();
+		publishingThread.join(10000);
+		assertFalse(publishingThread.isAlive());
+		indexPublisher.close();
+		assertEquals(indexer.indexedPids,
+				List.of("alvin-place:1", "alvin-place:2", "alvin-place:3"));
+		assertEquals(indexPublisher.getNumberOfDroppedMessages(), 0);
+	}
+
+	@Test
+	public void testBlockSendsDirectlyWhenQueueIsStillFullAfterTimeout() throws Exception {
+		startPublisherWithFullQueueTimeout(1, 1, 1, FullQueuePolicy.BLOCK, 20);
+		indexer.releaseIndex = new CountDownLatch(1);
+		RecordIndexerSpy directIndexer = new RecordIndexerSpy();
+		indexPublisher.publish(indexer, "place", "alvin-place:1");
+		waitUntil(() -> indexPublisher.getQueueDepth() == 0);
+		indexPublisher.publish(indexer, "place", "alvin-place:2");
+
+		indexPublisher.publish(directIndexer, "place", "alvin-place:3");
+
+		assertEquals(directIndexer.indexedPids, List.of("alvin-place:3"));
+		assertEquals(indexPublisher.getQueueDepth(), 1);
+		assertEquals(indexPublisher.getNumberOfDirectlySentMessages(), 1);
+		assertEquals(indexPublisher.getNumberOfDroppedMessages(), 0);
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Index message queue still full after 20 ms, sending index message for"
+						+ " recordType:place and id:alvin-place:3 directly");
+	}
+
+	@Test
+	public void testFailedPublishIsLoggedAndCounted() {
+		startPublisher(100, LONG_WINDOW, 10, FullQueuePolicy.BLOCK);
+		indexer.throwRuntimeErrorOnIndex = true;
+		indexPublisher.publish(indexer, "place", "alvin-place:22");
+		indexPublisher.close();
+
+		assertEquals(indexPublisher.getNumberOfFailedMessages(), 1);
+		assertEquals(indexPublisher.getNumberOfPublishedMessages(), 0);
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Error sending index message to classic for recordType:place"
+						+ " and id:alvin-place:22");
+		assertEquals(loggerFactorySpy
+				.getErrorLogExceptionsUsingClassNameAndNo(TESTED_CLASS_NAME, 0).getMessage(),
+				"Runtime error from RecordIndexerSpy");
+	}
+
+	@Test
+	public void testFailedPublishDoesNotStopLaterMessages() {
+		startPublisher(100, 10, 10, FullQueuePolicy.BLOCK);
+		RecordIndexerSpy failingIndexer = new RecordIndexerSpy();
+		failingIndexer.throwRuntimeErrorOnIndex = true;
+		indexPublisher.publish(failingIndexer, "place", "alvin-place:1");
+		indexPublisher.publish(indexer, "place", "alvin-place:2");
+
+		waitUntil(() -> indexer.getNumberOfIndexedPids() == 1);
+		assertEquals(indexPublisher.getNumberOfFailedMessages(), 1);
+	}
+}
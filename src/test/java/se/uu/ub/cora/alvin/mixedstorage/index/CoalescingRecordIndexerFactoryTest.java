@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerSpy;
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig.FullQueuePolicy;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public class CoalescingRecordIndexerFactoryTest {
+	private RecordIndexerFactorySpy recordIndexerFactory;
+	private AsyncIndexPublisher indexPublisher;
+	private CoalescingRecordIndexerFactory factory;
+	private AmqpMessageRoutingInfo routingInfo;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
+		recordIndexerFactory = new RecordIndexerFactorySpy();
+		indexPublisher = AsyncIndexPublisher
+				.startUsingConfig(new IndexPublisherConfig(100, 60000, 10, FullQueuePolicy.BLOCK, 1000));
+		factory = CoalescingRecordIndexerFactory
+				.usingRecordIndexerFactoryAndIndexPublisher(recordIndexerFactory, indexPublisher);
+		routingInfo = new AmqpMessageRoutingInfo("messaging.alvin-portal.org", "5672", "alvin",
+				"index", "alvin.updates.place");
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		indexPublisher.close();
+	}
+
+	@Test
+	public void testInit() {
+		assertSame(factory.getRecordIndexerFactory(), recordIndexerFactory);
+		assertSame(factory.getIndexPublisher(), indexPublisher);
+	}
+
+	@Test
+	public void testFactorUsesDelegateFactory() {
+		RecordIndexer recordIndexer = factory.factor(routingInfo);
+		assertFalse(recordIndexer instanceof RecordIndexerSpy);
+		assertEquals(recordIndexerFactory.numberOfFactoredIndexers, 1);
+		assertSame(recordIndexerFactory.messageRoutingInfo, routingInfo);
+	}
+
+	@Test
+	public void testIndexIsQueuedInPublisherAndSentOnClose() {
+		RecordIndexer recordIndexer = factory.factor(routingInfo);
+		recordIndexer.index("place", "alvin-place:22");
+		RecordIndexerSpy delegate = recordIndexerFactory.factoredRecordIndexer;
+
+		assertEquals(indexPublisher.getQueueDepth(), 1);
+		assertEquals(delegate.pid, null);
+
+		indexPublisher.close();
+		assertEquals(delegate.type, "place");
+		assertEquals(delegate.pid, "alvin-place:22");
+		assertEquals(indexPublisher.getNumberOfPublishedMessages(), 1);
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class IndexOutboxConfigTest {
+
+	@Test
+	public void testDefaultValues() {
+		IndexOutboxConfig config = IndexOutboxConfig
+				.withOutboxPathAndDefaultValues("/mnt/data/index.outbox");
+		assertEquals(config.outboxPath, "/mnt/data/index.outbox");
+		assertEquals(config.outboxSize, 16 * 1024 * 1024);
+		assertEquals(config.retryDelayMillis, 1000);
+		assertEquals(config.coalesceWindowMillis, 0);
+		assertEquals(config.batchSize, 100);
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public class IndexOutboxMessageCodecTest {
+
+	@Test
+	public void testEncodeAndDecode() {
+		AmqpMessageRoutingInfo routingInfo = new AmqpMessageRoutingInfo(
+				"messaging.alvin-portal.org", "5672", "alvin", "index", "alvin.updates.place");
+		IndexOutboxMessage message = new IndexOutboxMessage(routingInfo, "place",
+				"alvin-place:22");
+
+		IndexOutboxMessage decoded = IndexOutboxMessageCodec
+				.decode(IndexOutboxMessageCodec.encode(message));
+
+		assertEquals(decoded.messageRoutingInfo.hostname, "messaging.alvin-portal.org");
+		assertEquals(decoded.messageRoutingInfo.port, "5672");
+		assertEquals(decoded.messageRoutingInfo.virtualHost, "alvin");
+		assertEquals(decoded.messageRoutingInfo.exchange, "index");
+		assertEquals(decoded.messageRoutingInfo.routingKey, "alvin.updates.place");
+		assertEquals(decoded.type, "place");
+		assertEquals(decoded.pid, "alvin-place:22");
+	}
+
+	@Test
+	public void testDecodeUnknownFormatVersion() {
+		try {
+			IndexOutboxMessageCodec.decode(new byte[] { 9 });
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertEquals(e.getMessage(), "Unsupported index message format version: 9");
+		}
+	}
+
+	@Test
+	public void testDecodeTruncatedMessage() {
+		try {
+			IndexOutboxMessageCodec.decode(new byte[] { 1, 0 });
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertEquals(e.getMessage().substring(0, 30), "Error decoding index message: ");
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerSpy;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+
+public class IndexOutboxRelayTest {
+	private static final String TESTED_CLASS_NAME = "IndexOutboxRelay";
+	private LoggerFactorySpy loggerFactorySpy;
+	private Path outboxPath;
+	private IndexOutboxConfig config;
+	private RecordIndexerFactorySpy recordIndexerFactory;
+	private AmqpMessageRoutingInfo routingInfo;
+	private IndexOutboxRelay outboxRelay;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		outboxPath = Files.createTempFile("indexOutboxRelay", ".outbox");
+		Files.delete(outboxPath);
+		config = new IndexOutboxConfig(outboxPath.toString(), 1024, 1, 0, 100);
+		recordIndexerFactory = new RecordIndexerFactorySpy();
+		recordIndexerFactory.recordIndexerToReturn = new RecordIndexerSpy();
+		routingInfo = new AmqpMessageRoutingInfo("messaging.alvin-portal.org", "5672", "alvin",
+				"index", "alvin.updates.place");
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		if (outboxRelay != null) {
+			outboxRelay.close();
+		}
+		Files.deleteIfExists(outboxPath);
+	}
+
+	@Test
+	public void testStartUsingConfigAndRecordIndexerFactory() {
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		assertSame(outboxRelay.getConfig(), config);
+		assertSame(outboxRelay.getRecordIndexerFactory(), recordIndexerFactory);
+		assertEquals(outboxRelay.getOutbox().getPath(), outboxPath);
+		assertEquals(outboxRelay.getOutbox().getSize(), 1024);
+		assertEquals(outboxRelay.getBacklogSize(), 0);
+		assertEquals(outboxRelay.getBacklogAgeMillis(), 0);
+	}
+
+	@Test
+	public void testAddedMessageIsRelayed() {
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:22");
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		RecordIndexerSpy recordIndexer = recordIndexerFactory.recordIndexerToReturn;
+		assertEquals(recordIndexer.indexedTypes, List.of("place"));
+		assertEquals(recordIndexer.indexedPids, List.of("alvin-place:22"));
+		AmqpMessageRoutingInfo relayedRoutingInfo = (AmqpMessageRoutingInfo) recordIndexerFactory.messageRoutingInfos
+				.get(0);
+		assertEquals(relayedRoutingInfo.hostname, "messaging.alvin-portal.org");
+		assertEquals(relayedRoutingInfo.routingKey, "alvin.updates.place");
+		assertEquals(outboxRelay.getNumberOfAcceptedMessages(), 1);
+		assertEquals(outboxRelay.getNumberOfRelayedMessages(), 1);
+	}
+
+	private void waitUntil(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Condition not met within timeout");
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	@Test
+	public void testIndexersAreReusedForSameRoutingInfo() {
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:22");
+		outboxRelay.add(routingInfo, "place", "alvin-place:23");
+
+		waitUntil(() -> outboxRelay.getNumberOfRelayedMessages() == 2);
+		assertEquals(recordIndexerFactory.getNumberOfFactoredIndexers(), 1);
+	}
+
+	@Test
+	public void testFailedRelayIsRetriedUntilSent() {
+		recordIndexerFactory.recordIndexerToReturn.numberOfRuntimeErrorsToThrow = 2;
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:22");
+
+		waitUntil(() -> outboxRelay.getNumberOfRelayedMessages() == 1);
+		assertEquals(outboxRelay.getNumberOfRetries(), 2);
+		assertEquals(outboxRelay.getBacklogSize(), 0);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedPids, List.of("alvin-place:22"));
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Relaying index message for recordType:place and id:alvin-place:22 failed,"
+						+ " retrying in 1 ms: Runtime error from RecordIndexerSpy");
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 1),
+				"Relaying index message for recordType:place and id:alvin-place:22 failed,"
+						+ " retrying in 2 ms: Runtime error from RecordIndexerSpy");
+	}
+
+	@Test
+	public void testMessagesAreKeptInOrderWhileRelayFails() {
+		recordIndexerFactory.recordIndexerToReturn.throwRuntimeErrorOnIndex = true;
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+		outboxRelay.add(routingInfo, "place", "alvin-place:2");
+
+		waitUntil(() -> outboxRelay.getNumberOfRetries() >= 3);
+		assertEquals(outboxRelay.getBacklogSize(), 2);
+		recordIndexerFactory.recordIndexerToReturn.throwRuntimeErrorOnIndex = false;
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedPids,
+				List.of("alvin-place:1", "alvin-place:2"));
+	}
+
+	@Test
+	public void testUnrelayedMessagesSurviveRestart() {
+		recordIndexerFactory.recordIndexerToReturn.throwRuntimeErrorOnIndex = true;
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+		outboxRelay.add(routingInfo, "place", "alvin-place:2");
+		outboxRelay.close();
+
+		RecordIndexerFactorySpy restartedIndexerFactory = new RecordIndexerFactorySpy();
+		restartedIndexerFactory.recordIndexerToReturn = new RecordIndexerSpy();
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				restartedIndexerFactory);
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		assertEquals(restartedIndexerFactory.recordIndexerToReturn.indexedPids,
+				List.of("alvin-place:1", "alvin-place:2"));
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Relaying 2 index messages left in index outbox " + outboxPath);
+	}
+
+	@Test
+	public void testBacklogAgeWhileRelayFails() throws Exception {
+		recordIndexerFactory.recordIndexerToReturn.throwRuntimeErrorOnIndex = true;
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+		Thread.sleep(20);
+
+		assertEquals(outboxRelay.getBacklogSize(), 1);
+		assertTrue(outboxRelay.getBacklogAgeMillis() >= 20);
+	}
+
+	@Test
+	public void testMessageIsSentDirectlyWhenOutboxRejectsIt() {
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		outboxRelay.getOutbox().close();
+
+		outboxRelay.add(routingInfo, "place", "alvin-place:2");
+
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedPids, List.of("alvin-place:2"));
+		assertEquals(outboxRelay.getNumberOfAcceptedMessages(), 0);
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Unable to add index message to outbox for recordType:place and"
+						+ " id:alvin-place:2, sending directly: Index outbox " + outboxPath
+						+ " is closed");
+	}
+
+	@Test
+	public void testUnreadableEntryIsSkipped() {
+		IndexOutbox outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+		outbox.append(new byte[] { 9 });
+		outboxRelay = IndexOutboxRelay.startUsingOutboxAndConfigAndRecordIndexerFactory(outbox,
+				config, recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		assertEquals(outboxRelay.getNumberOfFailedMessages(), 1);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedPids, List.of("alvin-place:1"));
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Skipping unreadable index outbox entry 1:"
+						+ " Unsupported index message format version: 9");
+	}
+
+	@Test
+	public void testMessagesWaitingInOutboxAreSentAsOneBatch() {
+		IndexOutbox outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+		outboxRelay = IndexOutboxRelay.startUsingOutboxAndConfigAndRecordIndexerFactory(outbox,
+				new IndexOutboxConfig(outboxPath.toString(), 1024, 1, 200, 100),
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+		outboxRelay.add(routingInfo, "place", "alvin-place:2");
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		RecordIndexerSpy recordIndexer = recordIndexerFactory.recordIndexerToReturn;
+		assertEquals(recordIndexer.indexedBatches,
+				List.of(List.of("alvin-place:1", "alvin-place:2")));
+		assertEquals(recordIndexer.getNumberOfIndexCalls(), 1);
+		assertEquals(outboxRelay.getNumberOfRelayedMessages(), 2);
+		assertEquals(outboxRelay.getNumberOfCoalescedMessages(), 1);
+	}
+
+	@Test
+	public void testMessagesAreKeptInOutboxDuringCoalesceWindow() {
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(
+				new IndexOutboxConfig(outboxPath.toString(), 1024, 1, 60000, 100),
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+
+		assertEquals(outboxRelay.getBacklogSize(), 1);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.getNumberOfIndexCalls(), 0);
+		outboxRelay.close();
+
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(config,
+				recordIndexerFactory);
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedPids,
+				List.of("alvin-place:1"));
+	}
+
+	@Test
+	public void testBatchIsLimitedByBatchSize() {
+		IndexOutbox outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+		outboxRelay = IndexOutboxRelay.startUsingOutboxAndConfigAndRecordIndexerFactory(outbox,
+				new IndexOutboxConfig(outboxPath.toString(), 1024, 1, 200, 2),
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+		outboxRelay.add(routingInfo, "place", "alvin-place:2");
+		outboxRelay.add(routingInfo, "place", "alvin-place:3");
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		RecordIndexerSpy recordIndexer = recordIndexerFactory.recordIndexerToReturn;
+		assertEquals(recordIndexer.indexedBatches,
+				List.of(List.of("alvin-place:1", "alvin-place:2")));
+		assertEquals(recordIndexer.indexedPids,
+				List.of("alvin-place:1", "alvin-place:2", "alvin-place:3"));
+	}
+
+	@Test
+	public void testFailedBatchIsRetried() {
+		recordIndexerFactory.recordIndexerToReturn.numberOfRuntimeErrorsToThrow = 1;
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(
+				new IndexOutboxConfig(outboxPath.toString(), 1024, 1, 200, 100),
+				recordIndexerFactory);
+		outboxRelay.add(routingInfo, "place", "alvin-place:1");
+		outboxRelay.add(routingInfo, "place", "alvin-place:2");
+
+		waitUntil(() -> outboxRelay.getBacklogSize() == 0);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedBatches,
+				List.of(List.of("alvin-place:1", "alvin-place:2")));
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Relaying 2 index messages for recordType:place failed, retrying in 1 ms:"
+						+ " Runtime error from RecordIndexerSpy");
+	}
+}
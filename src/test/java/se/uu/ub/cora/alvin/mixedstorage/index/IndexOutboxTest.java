@@ -0,0 +1,298 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexOutbox.OutboxRecord;
+import se.uu.ub.cora.alvin.mixedstorage.util.MappedRingLog;
+
+public class IndexOutboxTest {
+	private static final int HEADER_SIZE = MappedRingLog.HEADER_SIZE;
+	private static final int ENTRY_OVERHEAD = MappedRingLog.ENTRY_HEADER_SIZE + Long.BYTES;
+	private Path outboxPath;
+	private IndexOutbox outbox;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		outboxPath = Files.createTempFile("indexOutbox", ".outbox");
+		Files.delete(outboxPath);
+		outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		outbox.close();
+		Files.deleteIfExists(outboxPath);
+	}
+
+	@Test
+	public void testNewOutboxIsEmpty() {
+		assertEquals(outbox.getPath(), outboxPath);
+		assertEquals(outbox.getSize(), 1024);
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 0);
+		assertEquals(outbox.getNumberOfUsedBytes(), 0);
+		assertEquals(outbox.getOldestUnrelayedAgeMillis(), 0);
+		assertNull(outbox.readFirstUnrelayed());
+		assertTrue(Files.exists(outboxPath));
+	}
+
+	@Test
+	public void testAppendedEntriesAreReadInOrder() {
+		long first = outbox.append(toBytes("first"));
+		long second = outbox.append(toBytes("second"));
+
+		assertEquals(second, first + 1);
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 2);
+		assertEquals(outbox.getNumberOfUsedBytes(), 2 * ENTRY_OVERHEAD + 11);
+		OutboxRecord outboxRecord = outbox.readFirstUnrelayed();
+		assertEquals(outboxRecord.sequence, first);
+		assertEquals(toString(outboxRecord.payload), "first");
+	}
+
+	private byte[] toBytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private String toString(byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testMarkRelayedMovesToNextEntry() {
+		long first = outbox.append(toBytes("first"));
+		outbox.append(toBytes("second"));
+
+		outbox.markRelayed(first);
+
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 1);
+		assertEquals(toString(outbox.readFirstUnrelayed().payload), "second");
+	}
+
+	@Test
+	public void testMarkRelayedOutOfOrderThrowsError() {
+		outbox.append(toBytes("first"));
+		long second = outbox.append(toBytes("second"));
+		try {
+			outbox.markRelayed(second);
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertEquals(e.getMessage(),
+					"Unable to mark entry 2 as relayed, next entry to relay is 1");
+		}
+	}
+
+	@Test
+	public void testMarkRelayedFreesUsedBytes() {
+		outbox.markRelayed(outbox.append(toBytes("first")));
+
+		assertEquals(outbox.getNumberOfUsedBytes(), 0);
+		assertNull(outbox.readFirstUnrelayed());
+	}
+
+	@Test
+	public void testReadUnrelayedAtMost() {
+		outbox.append(toBytes("first"));
+		outbox.append(toBytes("second"));
+		outbox.append(toBytes("third"));
+
+		List<OutboxRecord> outboxRecords = outbox.readUnrelayedAtMost(2);
+
+		assertEquals(outboxRecords.size(), 2);
+		assertEquals(toString(outboxRecords.get(0).payload), "first");
+		assertEquals(toString(outboxRecords.get(1).payload), "second");
+		assertEquals(outboxRecords.get(1).sequence, 2);
+		assertEquals(outbox.readUnrelayedAtMost(10).size(), 3);
+	}
+
+	@Test
+	public void testMarkRelayedUpToRemovesAllEntriesUpToSequence() {
+		outbox.append(toBytes("first"));
+		long second = outbox.append(toBytes("second"));
+		outbox.append(toBytes("third"));
+
+		outbox.markRelayedUpTo(second);
+
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 1);
+		assertEquals(toString(outbox.readFirstUnrelayed().payload), "third");
+	}
+
+	@Test
+	public void testMarkRelayedUpToNotAppendedEntryThrowsError() {
+		outbox.append(toBytes("first"));
+		try {
+			outbox.markRelayedUpTo(2);
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertEquals(e.getMessage(),
+					"Unable to mark entries up to 2 as relayed, unrelayed entries are 1 to 1");
+		}
+	}
+
+	@Test
+	public void testRelayedSpaceIsReusedWhileEntriesAreWaiting() {
+		byte[] payload = new byte[100];
+		for (int i = 0; i < 8; i++) {
+			outbox.append(payload);
+		}
+		outbox.markRelayedUpTo(2);
+
+		outbox.append(toBytes("wrapped"));
+		outbox.append(toBytes("wrapped again"));
+
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 8);
+		List<OutboxRecord> outboxRecords = outbox.readUnrelayedAtMost(10);
+		assertEquals(outboxRecords.get(0).sequence, 3);
+		assertEquals(toString(outboxRecords.get(6).payload), "wrapped");
+		assertEquals(toString(outboxRecords.get(7).payload), "wrapped again");
+	}
+
+	@Test
+	public void testReopenedOutboxContainsWrappedEntries() {
+		byte[] payload = new byte[100];
+		for (int i = 0; i < 8; i++) {
+			outbox.append(payload);
+		}
+		outbox.markRelayedUpTo(7);
+		outbox.append(toBytes("wrapped"));
+		outbox.close();
+
+		outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 2);
+		List<OutboxRecord> outboxRecords = outbox.readUnrelayedAtMost(10);
+		assertEquals(outboxRecords.get(0).sequence, 8);
+		assertEquals(toString(outboxRecords.get(1).payload), "wrapped");
+		assertEquals(outbox.append(toBytes("next")), 10);
+	}
+
+	@Test
+	public void testOldestUnrelayedAge() throws Exception {
+		outbox.append(toBytes("first"));
+		Thread.sleep(20);
+		outbox.append(toBytes("second"));
+
+		assertTrue(outbox.getOldestUnrelayedAgeMillis() >= 20);
+	}
+
+	@Test
+	public void testReopenedOutboxContainsUnrelayedEntries() {
+		outbox.markRelayed(outbox.append(toBytes("relayed")));
+		outbox.append(toBytes("first"));
+		outbox.append(toBytes("second"));
+		outbox.close();
+
+		outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 2);
+		OutboxRecord outboxRecord = outbox.readFirstUnrelayed();
+		assertEquals(outboxRecord.sequence, 2);
+		assertEquals(toString(outboxRecord.payload), "first");
+		assertEquals(outbox.append(toBytes("third")), 4);
+	}
+
+	@Test
+	public void testReopenedOutboxIgnoresTornEntry() throws Exception {
+		outbox.append(toBytes("complete"));
+		outbox.append(toBytes("torn"));
+		outbox.close();
+		int tornPayloadPosition = HEADER_SIZE + ENTRY_OVERHEAD + 8 + ENTRY_OVERHEAD;
+		try (RandomAccessFile file = new RandomAccessFile(outboxPath.toFile(), "rw")) {
+			file.seek(tornPayloadPosition);
+			file.write('X');
+		}
+
+		outbox = IndexOutbox.openUsingPathAndSize(outboxPath, 1024);
+
+		assertEquals(outbox.getNumberOfUnrelayedEntries(), 1);
+		assertEquals(toString(outbox.readFirstUnrelayed().payload), "complete");
+	}
+
+	@Test
+	public void testSizeTooSmall() {
+		Path smallPath = outboxPath.resolveSibling("small.outbox");
+		try {
+			IndexOutbox.openUsingPathAndSize(smallPath, 40);
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertTrue(e.getMessage().startsWith("Index outbox size 40 is too small"));
+		} finally {
+			deleteIfExists(smallPath);
+		}
+	}
+
+	private void deleteIfExists(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	@Test
+	public void testOpenErrorIsWrapped() {
+		Path missingDirectory = outboxPath.resolveSibling("missing").resolve("some.outbox");
+		try {
+			IndexOutbox.openUsingPathAndSize(missingDirectory, 1024);
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertTrue(e.getMessage().startsWith("Error opening index outbox"));
+		}
+	}
+
+	@Test
+	public void testFullOutboxThrowsError() {
+		byte[] payload = new byte[100];
+		for (int i = 0; i < 8; i++) {
+			outbox.append(payload);
+		}
+		try {
+			outbox.append(payload);
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertEquals(e.getMessage(), "Index outbox " + outboxPath
+					+ " is full, 8 entries waiting to be relayed");
+		}
+	}
+
+	@Test
+	public void testAppendToClosedOutboxThrowsError() {
+		outbox.close();
+		try {
+			outbox.append(toBytes("first"));
+			fail("Exception should have been thrown");
+		} catch (IndexOutboxException e) {
+			assertEquals(e.getMessage(), "Index outbox " + outboxPath + " is closed");
+		}
+	}
+}
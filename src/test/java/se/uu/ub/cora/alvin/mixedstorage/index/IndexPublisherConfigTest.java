@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.index.IndexPublisherConfig.FullQueuePolicy;
+
+public class IndexPublisherConfigTest {
+
+	@Test
+	public void testDefaultValues() {
+		IndexPublisherConfig config = IndexPublisherConfig.withDefaultValues();
+		assertEquals(config.queueCapacity, 10000);
+		assertEquals(config.coalesceWindowMillis, 500);
+		assertEquals(config.batchSize, 100);
+		assertEquals(config.fullQueuePolicy, FullQueuePolicy.BLOCK);
+		assertEquals(config.fullQueueTimeoutMillis, 5000);
+	}
+
+	@Test
+	public void testValuesFromConstructor() {
+		IndexPublisherConfig config = new IndexPublisherConfig(10, 20, 5,
+				FullQueuePolicy.DROP_OLDEST, 30);
+		assertEquals(config.queueCapacity, 10);
+		assertEquals(config.coalesceWindowMillis, 20);
+		assertEquals(config.batchSize, 5);
+		assertEquals(config.fullQueuePolicy, FullQueuePolicy.DROP_OLDEST);
+		assertEquals(config.fullQueueTimeoutMillis, 30);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.index;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexer;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.RecordIndexerSpy;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+
+public class OutboxRecordIndexerFactoryTest {
+	private Path outboxPath;
+	private RecordIndexerFactorySpy recordIndexerFactory;
+	private IndexOutboxRelay outboxRelay;
+	private OutboxRecordIndexerFactory factory;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		LoggerProvider.setLoggerFactory(new LoggerFactorySpy());
+		outboxPath = Files.createTempFile("outboxRecordIndexerFactory", ".outbox");
+		Files.delete(outboxPath);
+		recordIndexerFactory = new RecordIndexerFactorySpy();
+		recordIndexerFactory.recordIndexerToReturn = new RecordIndexerSpy();
+		outboxRelay = IndexOutboxRelay.startUsingConfigAndRecordIndexerFactory(
+				new IndexOutboxConfig(outboxPath.toString(), 1024, 1, 0, 100), recordIndexerFactory);
+		factory = OutboxRecordIndexerFactory.usingIndexOutboxRelay(outboxRelay);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		outboxRelay.close();
+		Files.deleteIfExists(outboxPath);
+	}
+
+	@Test
+	public void testInit() {
+		assertSame(factory.getIndexOutboxRelay(), outboxRelay);
+	}
+
+	@Test
+	public void testIndexIsAddedToOutboxAndRelayed() {
+		RecordIndexer recordIndexer = factory.factor(new AmqpMessageRoutingInfo(
+				"messaging.alvin-portal.org", "5672", "alvin", "index", "alvin.updates.place"));
+		assertNotSame(recordIndexer, recordIndexerFactory.recordIndexerToReturn);
+
+		recordIndexer.index("place", "alvin-place:22");
+
+		waitUntil(() -> outboxRelay.getNumberOfRelayedMessages() == 1);
+		assertEquals(outboxRelay.getNumberOfAcceptedMessages(), 1);
+		assertEquals(recordIndexerFactory.recordIndexerToReturn.indexedPids, List.of("alvin-place:22"));
+	}
+
+	private void waitUntil(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Condition not met within timeout");
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	@Test
+	public void testOtherRoutingInfoIsNotSentThroughOutbox() {
+		MessageRoutingInfo otherRoutingInfo = new MessageRoutingInfo() {
+		};
+		RecordIndexer recordIndexer = factory.factor(otherRoutingInfo);
+
+		assertSame(recordIndexer, recordIndexerFactory.recordIndexerToReturn);
+		assertSame(recordIndexerFactory.messageRoutingInfos.get(0), otherRoutingInfo);
+	}
+}
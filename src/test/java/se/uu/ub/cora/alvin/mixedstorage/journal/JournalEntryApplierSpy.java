@@ -0,0 +1,47 @@
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class JournalEntryApplierSpy implements JournalEntryApplier {
+
+	public List<JournalEntry> appliedEntries = new ArrayList<>();
+	public int numberOfCalls = 0;
+	public int numberOfFailuresBeforeSuccess = 0;
+	public String failOnlyForId = null;
+	public CountDownLatch blockUntil = new CountDownLatch(0);
+
+	@Override
+	public void apply(JournalEntry entry) {
+		awaitUnblocked();
+		synchronized (this) {
+			if (failOnlyForId != null && !failOnlyForId.equals(entry.id)) {
+				appliedEntries.add(entry);
+				return;
+			}
+			numberOfCalls++;
+			if (numberOfCalls <= numberOfFailuresBeforeSuccess) {
+				throw new RuntimeException("error from JournalEntryApplierSpy");
+			}
+			appliedEntries.add(entry);
+		}
+	}
+
+	private void awaitUnblocked() {
+		try {
+			blockUntil.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public synchronized int getNumberOfAppliedEntries() {
+		return appliedEntries.size();
+	}
+
+	public synchronized JournalEntry getAppliedEntry(int index) {
+		return appliedEntries.get(index);
+	}
+}
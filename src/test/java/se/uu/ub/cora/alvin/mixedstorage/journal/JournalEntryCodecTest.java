@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry.Operation;
+import se.uu.ub.cora.data.DataAtomic;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+
+public class JournalEntryCodecTest {
+
+	@BeforeMethod
+	public void beforeMethod() {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+	}
+
+	@Test
+	public void testEncodeAndDecodeCreate() {
+		DataGroup place = createPlace();
+		DataGroup collectedTerms = new DataGroupSpy("collectedData");
+		collectedTerms.addChild(new DataAtomicSpy("type", "place"));
+		DataGroup linkList = new DataGroupSpy("collectedDataLinks");
+
+		JournalEntry decoded = JournalEntryCodec.decode(JournalEntryCodec.encode(JournalEntry
+				.forCreate("place", "alvin-place:22", place, collectedTerms, linkList, "alvin")));
+
+		assertEquals(decoded.operation, Operation.CREATE);
+		assertEquals(decoded.type, "place");
+		assertEquals(decoded.id, "alvin-place:22");
+		assertEquals(decoded.dataDivider, "alvin");
+		assertNotSame(decoded.dataRecord, place);
+		assertCorrectPlace(decoded.dataRecord);
+		assertEquals(decoded.collectedTerms.getNameInData(), "collectedData");
+		assertEquals(decoded.collectedTerms.getFirstAtomicValueWithNameInData("type"), "place");
+		assertEquals(decoded.linkList.getNameInData(), "collectedDataLinks");
+		assertEquals(decoded.linkList.getChildren().size(), 0);
+	}
+
+	private DataGroup createPlace() {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addAttributeByIdWithValue("type", "place");
+		DataGroup name = new DataGroupSpy("name");
+		name.setRepeatId("0");
+		DataAtomic value = new DataAtomicSpy("value", "Uppsala åäö");
+		value.setRepeatId("1");
+		name.addChild(value);
+		place.addChild(name);
+		place.addChild(new DataAtomicSpy("id", "alvin-place:22"));
+		return place;
+	}
+
+	private void assertCorrectPlace(DataGroup place) {
+		assertEquals(place.getNameInData(), "authority");
+		assertNull(place.getRepeatId());
+		assertEquals(place.getAttribute("type").getValue(), "place");
+		assertEquals(place.getChildren().size(), 2);
+		DataGroup name = place.getFirstGroupWithNameInData("name");
+		assertEquals(name.getRepeatId(), "0");
+		DataAtomic value = (DataAtomic) name.getChildren().get(0);
+		assertEquals(value.getValue(), "Uppsala åäö");
+		assertEquals(value.getRepeatId(), "1");
+		assertEquals(place.getFirstAtomicValueWithNameInData("id"), "alvin-place:22");
+	}
+
+	@Test
+	public void testEncodeAndDecodeUpdate() {
+		JournalEntry decoded = JournalEntryCodec.decode(JournalEntryCodec.encode(JournalEntry
+				.forUpdate("place", "alvin-place:22", createPlace(), null, null, null)));
+
+		assertEquals(decoded.operation, Operation.UPDATE);
+		assertCorrectPlace(decoded.dataRecord);
+		assertNull(decoded.collectedTerms);
+		assertNull(decoded.linkList);
+		assertNull(decoded.dataDivider);
+	}
+
+	@Test
+	public void testEncodeAndDecodeDelete() {
+		JournalEntry decoded = JournalEntryCodec.decode(
+				JournalEntryCodec.encode(JournalEntry.forDelete("place", "alvin-place:22")));
+
+		assertEquals(decoded.operation, Operation.DELETE);
+		assertEquals(decoded.type, "place");
+		assertEquals(decoded.id, "alvin-place:22");
+		assertNull(decoded.dataRecord);
+	}
+
+	@Test
+	public void testDecodeUnknownFormatVersion() {
+		byte[] payload = JournalEntryCodec.encode(JournalEntry.forDelete("place", "someId"));
+		payload[0] = 7;
+		try {
+			JournalEntryCodec.decode(payload);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertEquals(e.getMessage(),
+					"Error decoding journal entry: Unknown journal entry format version: 7");
+		}
+	}
+
+	@Test
+	public void testDecodeTruncatedEntry() {
+		byte[] payload = JournalEntryCodec.encode(JournalEntry.forDelete("place", "someId"));
+		byte[] truncated = new byte[payload.length - 3];
+		System.arraycopy(payload, 0, truncated, 0, truncated.length);
+		try {
+			JournalEntryCodec.decode(truncated);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertTrue(e.getMessage().startsWith("Error decoding journal entry"));
+		}
+	}
+}
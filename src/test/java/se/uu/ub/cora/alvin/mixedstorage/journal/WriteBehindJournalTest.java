@@ -0,0 +1,434 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.journal.WriteBehindJournal.JournalRecord;
+
+public class WriteBehindJournalTest {
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_HEADER_SIZE = 16;
+	private Path journalPath;
+	private WriteBehindJournal journal;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		journalPath = Files.createTempFile("writeBehindJournal", ".journal");
+		Files.delete(journalPath);
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 1024);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		journal.close();
+		Files.deleteIfExists(journalPath);
+	}
+
+	@Test
+	public void testNewJournalIsEmpty() {
+		assertEquals(journal.getPath(), journalPath);
+		assertEquals(journal.getSize(), 1024);
+		assertEquals(journal.getNumberOfUnappliedEntries(), 0);
+		assertEquals(journal.getNumberOfUsedBytes(), 0);
+		assertNull(journal.readFirstUnapplied());
+		assertTrue(Files.exists(journalPath));
+	}
+
+	@Test
+	public void testAppendedEntriesAreReadInOrder() {
+		long first = journal.append(toBytes("first"));
+		long second = journal.append(toBytes("second"));
+
+		assertEquals(second, first + 1);
+		assertEquals(journal.getNumberOfUnappliedEntries(), 2);
+		assertEquals(journal.getNumberOfUsedBytes(), 2 * ENTRY_HEADER_SIZE + 11);
+		JournalRecord journalRecord = journal.readFirstUnapplied();
+		assertEquals(journalRecord.sequence, first);
+		assertEquals(toString(journalRecord.payload), "first");
+	}
+
+	private byte[] toBytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private String toString(byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testMarkAppliedMovesToNextEntry() {
+		long first = journal.append(toBytes("first"));
+		long second = journal.append(toBytes("second"));
+
+		journal.markApplied(first);
+
+		assertTrue(journal.isApplied(first));
+		assertFalse(journal.isApplied(second));
+		assertEquals(journal.getNumberOfUnappliedEntries(), 1);
+		assertEquals(toString(journal.readFirstUnapplied().payload), "second");
+	}
+
+	@Test
+	public void testMarkAppliedOutOfOrderKeepsSpaceUntilEarlierEntryIsApplied() {
+		long first = journal.append(toBytes("first"));
+		long second = journal.append(toBytes("second"));
+
+		journal.markApplied(second);
+
+		assertTrue(journal.isApplied(second));
+		assertFalse(journal.isApplied(first));
+		assertEquals(journal.getNumberOfUnappliedEntries(), 1);
+		assertEquals(journal.getNumberOfUsedBytes(), 2 * ENTRY_HEADER_SIZE + 11);
+		assertEquals(journal.readAllUnapplied().size(), 1);
+		assertEquals(toString(journal.readAllUnapplied().get(0).payload), "first");
+
+		journal.markApplied(first);
+
+		assertEquals(journal.getNumberOfUnappliedEntries(), 0);
+		assertEquals(journal.getNumberOfUsedBytes(), 0);
+	}
+
+	@Test
+	public void testMarkAppliedTwiceThrowsError() {
+		long first = journal.append(toBytes("first"));
+		journal.markApplied(first);
+		try {
+			journal.markApplied(first);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertEquals(e.getMessage(), "Unable to mark entry 1 as applied, it is not an "
+					+ "unapplied entry in write-behind journal " + journalPath);
+		}
+	}
+
+	@Test
+	public void testMarkAppliedForNotAppendedEntryThrowsError() {
+		try {
+			journal.markApplied(1);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertEquals(e.getMessage(), "Unable to mark entry 1 as applied, it is not an "
+					+ "unapplied entry in write-behind journal " + journalPath);
+		}
+	}
+
+	@Test
+	public void testUsedBytesAreReclaimedWhenAllApplied() {
+		journal.markApplied(journal.append(toBytes("first")));
+
+		assertEquals(journal.getNumberOfUsedBytes(), 0);
+		assertNull(journal.readFirstUnapplied());
+	}
+
+	@Test
+	public void testReadEntryFollowing() {
+		journal.append(toBytes("first"));
+		journal.append(toBytes("second"));
+
+		JournalRecord first = journal.readEntryFollowing(null);
+		JournalRecord second = journal.readEntryFollowing(first);
+
+		assertEquals(toString(first.payload), "first");
+		assertEquals(toString(second.payload), "second");
+		assertNull(journal.readEntryFollowing(second));
+	}
+
+	@Test
+	public void testAppendWrapsAroundWhenEarlierEntriesAreApplied() {
+		long first = journal.append(new byte[400]);
+		journal.append(toBytes("second"));
+		journal.append(new byte[400]);
+		journal.markApplied(first);
+
+		long fourth = journal.append(new byte[300]);
+
+		assertEquals(journal.getNumberOfUnappliedEntries(), 3);
+		List<JournalRecord> records = journal.readAllUnapplied();
+		assertEquals(toString(records.get(0).payload), "second");
+		assertEquals(records.get(2).sequence, fourth);
+		assertEquals(records.get(2).payload.length, 300);
+	}
+
+	@Test
+	public void testReadAllUnapplied() {
+		journal.markApplied(journal.append(toBytes("first")));
+		journal.append(toBytes("second"));
+		journal.append(toBytes("third"));
+
+		List<JournalRecord> records = journal.readAllUnapplied();
+
+		assertEquals(records.size(), 2);
+		assertEquals(records.get(0).sequence, 2);
+		assertEquals(toString(records.get(0).payload), "second");
+		assertEquals(records.get(1).sequence, 3);
+		assertEquals(toString(records.get(1).payload), "third");
+	}
+
+	@Test
+	public void testReopenedJournalContainsUnappliedEntries() {
+		journal.markApplied(journal.append(toBytes("first")));
+		journal.append(toBytes("second"));
+		journal.append(toBytes("third"));
+		journal.close();
+
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 1024);
+
+		List<JournalRecord> records = journal.readAllUnapplied();
+		assertEquals(records.size(), 2);
+		assertEquals(toString(records.get(0).payload), "second");
+		assertEquals(toString(records.get(1).payload), "third");
+		assertEquals(journal.append(toBytes("fourth")), 4);
+	}
+
+	@Test
+	public void testReopenedJournalIgnoresAppliedEntries() {
+		journal.append(toBytes("old first"));
+		journal.append(toBytes("old second"));
+		journal.markApplied(1);
+		journal.markApplied(2);
+		journal.append(toBytes("new"));
+		journal.close();
+
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 1024);
+
+		List<JournalRecord> records = journal.readAllUnapplied();
+		assertEquals(records.size(), 1);
+		assertEquals(records.get(0).sequence, 3);
+		assertEquals(toString(records.get(0).payload), "new");
+	}
+
+	@Test
+	public void testReopenedJournalIgnoresTornEntry() throws Exception {
+		journal.append(toBytes("complete"));
+		journal.append(toBytes("torn"));
+		journal.close();
+		int tornPayloadPosition = HEADER_SIZE + ENTRY_HEADER_SIZE + 8 + ENTRY_HEADER_SIZE;
+		try (RandomAccessFile file = new RandomAccessFile(journalPath.toFile(), "rw")) {
+			file.seek(tornPayloadPosition);
+			file.write('X');
+		}
+
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 1024);
+
+		List<JournalRecord> records = journal.readAllUnapplied();
+		assertEquals(records.size(), 1);
+		assertEquals(toString(records.get(0).payload), "complete");
+	}
+
+	@Test
+	public void testReopenedJournalContainsEntriesAfterWrapAround() {
+		long first = journal.append(new byte[400]);
+		journal.append(toBytes("second"));
+		journal.append(new byte[400]);
+		journal.markApplied(first);
+		journal.append(new byte[300]);
+		journal.close();
+
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 1024);
+
+		List<JournalRecord> records = journal.readAllUnapplied();
+		assertEquals(records.size(), 3);
+		assertEquals(toString(records.get(0).payload), "second");
+		assertEquals(records.get(2).sequence, 4);
+		assertEquals(records.get(2).payload.length, 300);
+		assertEquals(journal.append(toBytes("fifth")), 5);
+	}
+
+	@Test
+	public void testReopenWithSmallerSizeKeepsExistingSize() {
+		journal.append(toBytes("first"));
+		journal.close();
+
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 100);
+
+		assertEquals(journal.getSize(), 1024);
+		assertEquals(journal.getNumberOfUnappliedEntries(), 1);
+	}
+
+	@Test
+	public void testSizeTooSmall() {
+		journal.close();
+		try {
+			WriteBehindJournal.openUsingPathAndSize(journalPath.resolveSibling("small.journal"),
+					32);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertTrue(e.getMessage().startsWith("Write-behind journal size 32 is too small"));
+		} finally {
+			deleteIfExists(journalPath.resolveSibling("small.journal"));
+		}
+	}
+
+	private void deleteIfExists(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	@Test
+	public void testOpenErrorIsWrapped() {
+		Path missingDirectory = journalPath.resolveSibling("missing").resolve("some.journal");
+		try {
+			WriteBehindJournal.openUsingPathAndSize(missingDirectory, 1024);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertTrue(e.getMessage().startsWith("Error opening write-behind journal"));
+		}
+	}
+
+	@Test
+	public void testEntryThatCanNeverFitThrowsError() {
+		try {
+			journal.append(new byte[1024]);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertEquals(e.getMessage(), "Journal entry of 1040 bytes does not fit in "
+					+ "write-behind journal " + journalPath);
+		}
+	}
+
+	@Test
+	public void testFullJournalThrowsErrorAfterTimeout() {
+		journal.setAppendTimeoutMillis(10);
+		journal.append(new byte[900]);
+		try {
+			journal.append(new byte[100]);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertEquals(e.getMessage(), "Write-behind journal " + journalPath
+					+ " is full, unable to append entry within 10 ms");
+		}
+	}
+
+	@Test
+	public void testFullJournalWaitsUntilEntriesAreApplied() throws Exception {
+		long first = journal.append(new byte[900]);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> second = executor.submit(() -> journal.append(new byte[100]));
+			Thread.sleep(50);
+			assertFalse(second.isDone());
+
+			journal.markApplied(first);
+
+			assertEquals(second.get(5, TimeUnit.SECONDS).longValue(), first + 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFullJournalWaitsUntilOldestEntryIsAppliedWhenWrappingAround()
+			throws Exception {
+		long first = journal.append(new byte[400]);
+		long second = journal.append(new byte[400]);
+		journal.markApplied(second);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> third = executor.submit(() -> journal.append(new byte[300]));
+			Thread.sleep(50);
+			assertFalse(third.isDone());
+
+			journal.markApplied(first);
+
+			assertEquals(third.get(5, TimeUnit.SECONDS).longValue(), second + 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAppendToClosedJournalThrowsError() {
+		journal.setAppendTimeoutMillis(10);
+		journal.append(new byte[900]);
+		journal.close();
+		try {
+			journal.append(new byte[100]);
+			fail("Exception should have been thrown");
+		} catch (JournalException e) {
+			assertEquals(e.getMessage(), "Write-behind journal " + journalPath + " is closed");
+		}
+	}
+
+	@Test
+	public void testSyncIsSkippedWhenAlreadySynced() {
+		long syncsAfterOpen = journal.getNumberOfSyncs();
+		long first = journal.append(toBytes("first"));
+		long second = journal.append(toBytes("second"));
+
+		journal.syncUpToSequence(first);
+		journal.syncUpToSequence(second);
+		journal.syncUpToSequence(first);
+
+		assertEquals(journal.getNumberOfSyncs(), syncsAfterOpen + 1);
+	}
+
+	@Test
+	public void testConcurrentWritersShareSyncs() throws Exception {
+		int numberOfWriters = 8;
+		int entriesPerWriter = 20;
+		journal.close();
+		journal = WriteBehindJournal.openUsingPathAndSize(journalPath, 64 * 1024);
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfWriters);
+		List<Future<?>> writers = new ArrayList<>();
+		for (int i = 0; i < numberOfWriters; i++) {
+			writers.add(executor.submit(() -> {
+				start.await();
+				for (int j = 0; j < entriesPerWriter; j++) {
+					journal.syncUpToSequence(journal.append(toBytes("entry")));
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> writer : writers) {
+			writer.get(10, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		assertEquals(journal.getNumberOfUnappliedEntries(), numberOfWriters * entriesPerWriter);
+		assertTrue(journal.getNumberOfSyncs() <= numberOfWriters * entriesPerWriter);
+		assertEquals(journal.readAllUnapplied().size(), numberOfWriters * entriesPerWriter);
+	}
+}
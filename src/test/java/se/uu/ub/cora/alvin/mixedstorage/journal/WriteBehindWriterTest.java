@@ -0,0 +1,338 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.journal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.alvin.mixedstorage.journal.JournalEntry.Operation;
+import se.uu.ub.cora.alvin.mixedstorage.log.LoggerFactorySpy;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.storage.RecordNotFoundException;
+
+public class WriteBehindWriterTest {
+	private static final String TESTED_CLASS_NAME = "WriteBehindWriter";
+	private LoggerFactorySpy loggerFactorySpy;
+	private Path journalPath;
+	private WriteBehindConfig config;
+	private JournalEntryApplierSpy applier;
+	private WriteBehindWriter writer;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		loggerFactorySpy = new LoggerFactorySpy();
+		LoggerProvider.setLoggerFactory(loggerFactorySpy);
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		journalPath = Files.createTempFile("writeBehindWriter", ".journal");
+		Files.delete(journalPath);
+		config = new WriteBehindConfig(journalPath.toString(), 64 * 1024, 1, 3);
+		applier = new JournalEntryApplierSpy();
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		if (writer != null) {
+			writer.close();
+		}
+		Files.deleteIfExists(journalPath);
+		Files.deleteIfExists(WriteBehindWriter.createDeadLetterPath(journalPath));
+	}
+
+	@Test
+	public void testStartUsingConfig() {
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		assertEquals(writer.getConfig(), config);
+		assertEquals(writer.getJournal().getPath(), journalPath);
+		assertEquals(writer.getJournal().getSize(), 64 * 1024);
+		assertEquals(writer.getDeadLetterJournal().getPath(),
+				journalPath.resolveSibling(journalPath.getFileName() + ".deadletter"));
+		assertEquals(writer.getDeadLetterJournal().getSize(), 64 * 1024);
+	}
+
+	@Test
+	public void testWrittenEntryIsApplied() {
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "Uppsala"));
+
+		waitUntil(() -> writer.getNumberOfPendingWrites() == 0);
+		JournalEntry appliedEntry = applier.getAppliedEntry(0);
+		assertEquals(appliedEntry.operation, Operation.UPDATE);
+		assertEquals(appliedEntry.type, "place");
+		assertEquals(appliedEntry.id, "alvin-place:22");
+		assertEquals(appliedEntry.dataRecord.getFirstAtomicValueWithNameInData("name"),
+				"Uppsala");
+		assertEquals(writer.getNumberOfAcceptedWrites(), 1);
+		assertEquals(writer.getNumberOfAppliedWrites(), 1);
+		assertTrue(writer.getJournal().getNumberOfSyncs() >= 1);
+	}
+
+	private JournalEntry createUpdateUsingIdAndName(String id, String name) {
+		return JournalEntry.forUpdate("place", id, createPlace(name),
+				new DataGroupSpy("collectedData"), null, "alvin");
+	}
+
+	private DataGroup createPlace(String name) {
+		DataGroup place = new DataGroupSpy("authority");
+		place.addChild(new DataAtomicSpy("name", name));
+		return place;
+	}
+
+	private void waitUntil(BooleanSupplier condition) {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Condition not met within timeout");
+			}
+			sleep(5);
+		}
+	}
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testEntriesAreAppliedInOrder() {
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		writer.write(createUpdateUsingIdAndName("alvin-place:23", "other"));
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "second"));
+		writer.write(JournalEntry.forDelete("place", "alvin-place:22"));
+
+		waitUntil(() -> applier.getNumberOfAppliedEntries() == 4);
+		assertEquals(applier.getAppliedEntry(0).dataRecord
+				.getFirstAtomicValueWithNameInData("name"), "first");
+		assertEquals(applier.getAppliedEntry(1).id, "alvin-place:23");
+		assertEquals(applier.getAppliedEntry(2).dataRecord
+				.getFirstAtomicValueWithNameInData("name"), "second");
+		assertEquals(applier.getAppliedEntry(3).operation, Operation.DELETE);
+	}
+
+	@Test
+	public void testPendingWriteIsReadUntilApplied() {
+		applier.blockUntil = new CountDownLatch(1);
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "second"));
+
+		DataGroup pendingPlace = writer.readPendingUsingTypeAndId("place", "alvin-place:22");
+
+		assertEquals(pendingPlace.getFirstAtomicValueWithNameInData("name"), "second");
+		assertNull(writer.readPendingUsingTypeAndId("place", "alvin-place:23"));
+		assertNull(writer.readPendingUsingTypeAndId("otherType", "alvin-place:22"));
+		assertEquals(writer.getNumberOfPendingWrites(), 2);
+
+		applier.blockUntil.countDown();
+		waitUntil(() -> writer.readPendingUsingTypeAndId("place", "alvin-place:22") == null);
+		assertEquals(applier.getNumberOfAppliedEntries(), 2);
+	}
+
+	@Test
+	public void testPendingWriteIsACopy() {
+		applier.blockUntil = new CountDownLatch(1);
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+		JournalEntry entry = createUpdateUsingIdAndName("alvin-place:22", "first");
+		writer.write(entry);
+		entry.dataRecord.addChild(new DataAtomicSpy("extra", "value"));
+
+		DataGroup pendingPlace = writer.readPendingUsingTypeAndId("place", "alvin-place:22");
+
+		assertEquals(pendingPlace.getChildren().size(), 1);
+		applier.blockUntil.countDown();
+	}
+
+	@Test
+	public void testPendingDeleteIsNotFound() {
+		applier.blockUntil = new CountDownLatch(1);
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		writer.write(JournalEntry.forDelete("place", "alvin-place:22"));
+		try {
+			writer.readPendingUsingTypeAndId("place", "alvin-place:22");
+			fail("Exception should have been thrown");
+		} catch (RecordNotFoundException e) {
+			assertEquals(e.getMessage(),
+					"Record not found for type: place and id: alvin-place:22");
+		} finally {
+			applier.blockUntil.countDown();
+		}
+	}
+
+	@Test
+	public void testFailedApplyIsRetried() {
+		applier.numberOfFailuresBeforeSuccess = 2;
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+
+		waitUntil(() -> writer.getNumberOfPendingWrites() == 0);
+		assertEquals(applier.getNumberOfAppliedEntries(), 1);
+		assertEquals(writer.getNumberOfRetries(), 2);
+		assertEquals(writer.getNumberOfAppliedWrites(), 1);
+		assertEquals(writer.getNumberOfFailedWrites(), 0);
+	}
+
+	@Test
+	public void testWriteIsMovedToDeadLettersAfterMaxAttempts() {
+		applier.numberOfFailuresBeforeSuccess = 3;
+		applier.failOnlyForId = "alvin-place:22";
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		writer.write(createUpdateUsingIdAndName("alvin-place:23", "other"));
+
+		waitUntil(() -> writer.readPendingUsingTypeAndId("place", "alvin-place:22") == null);
+		assertEquals(writer.getNumberOfPendingWrites(), 0);
+		assertEquals(applier.getNumberOfAppliedEntries(), 1);
+		assertEquals(applier.getAppliedEntry(0).id, "alvin-place:23");
+		assertEquals(writer.getNumberOfRetries(), 2);
+		assertEquals(writer.getNumberOfFailedWrites(), 1);
+		JournalEntry deadLetter = readOnlyDeadLetter();
+		assertEquals(deadLetter.id, "alvin-place:22");
+		assertEquals(deadLetter.dataRecord.getFirstAtomicValueWithNameInData("name"), "first");
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Moved write-behind UPDATE for type: place and id: alvin-place:22 to dead-letter "
+						+ "journal " + writer.getDeadLetterJournal().getPath() + " after 3 "
+						+ "attempts: error from JournalEntryApplierSpy");
+	}
+
+	private JournalEntry readOnlyDeadLetter() {
+		WriteBehindJournal deadLetterJournal = writer.getDeadLetterJournal();
+		assertEquals(deadLetterJournal.getNumberOfUnappliedEntries(), 1);
+		return JournalEntryCodec.decode(deadLetterJournal.readFirstUnapplied().payload);
+	}
+
+	@Test
+	public void testDeadLettersAreReportedAfterRestart() {
+		applier.numberOfFailuresBeforeSuccess = 3;
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		waitUntil(() -> writer.getNumberOfFailedWrites() == 1);
+		writer.close();
+
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		assertEquals(readOnlyDeadLetter().id, "alvin-place:22");
+		assertEquals(loggerFactorySpy.getWarnLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Write-behind dead-letter journal " + writer.getDeadLetterJournal().getPath()
+						+ " contains 1 entries that were never written to storage");
+	}
+
+	@Test
+	public void testFailingWriteDoesNotBlockWritesForOtherIds() {
+		applier.numberOfFailuresBeforeSuccess = Integer.MAX_VALUE;
+		applier.failOnlyForId = "alvin-place:22";
+		config = new WriteBehindConfig(journalPath.toString(), 64 * 1024, 10000, 100);
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "second"));
+		writer.write(createUpdateUsingIdAndName("alvin-place:23", "other"));
+
+		waitUntil(() -> writer.readPendingUsingTypeAndId("place", "alvin-place:23") == null);
+		assertEquals(writer.getNumberOfPendingWrites(), 2);
+		assertEquals(applier.getNumberOfAppliedEntries(), 1);
+		assertEquals(applier.getAppliedEntry(0).id, "alvin-place:23");
+		assertEquals(writer.readPendingUsingTypeAndId("place", "alvin-place:22")
+				.getFirstAtomicValueWithNameInData("name"), "second");
+		assertEquals(writer.getNumberOfRetries(), 1);
+	}
+
+	@Test
+	public void testUnappliedEntriesAreReplayedOnStart() {
+		WriteBehindJournal journal = WriteBehindJournal.openUsingPathAndSize(journalPath,
+				64 * 1024);
+		journal.append(JournalEntryCodec.encode(createUpdateUsingIdAndName("alvin-place:22", "first")));
+		journal.append(JournalEntryCodec.encode(JournalEntry.forDelete("place", "alvin-place:23")));
+		journal.close();
+		applier.blockUntil = new CountDownLatch(1);
+
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		assertEquals(writer.getNumberOfPendingWrites(), 2);
+		assertEquals(writer.readPendingUsingTypeAndId("place", "alvin-place:22")
+				.getFirstAtomicValueWithNameInData("name"), "first");
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 0),
+				"Replaying 2 unapplied entries from write-behind journal " + journalPath);
+		applier.blockUntil.countDown();
+		waitUntil(() -> writer.getNumberOfPendingWrites() == 0);
+		assertEquals(applier.getAppliedEntry(0).id, "alvin-place:22");
+		assertEquals(applier.getAppliedEntry(1).operation, Operation.DELETE);
+	}
+
+	@Test
+	public void testEntriesNotAppliedBeforeCloseAreReplayedAfterRestart() {
+		applier.numberOfFailuresBeforeSuccess = Integer.MAX_VALUE;
+		config = new WriteBehindConfig(journalPath.toString(), 64 * 1024, 10000, 100);
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+		writer.write(createUpdateUsingIdAndName("alvin-place:22", "first"));
+		waitUntil(() -> writer.getNumberOfRetries() == 1);
+		writer.close();
+
+		applier = new JournalEntryApplierSpy();
+		writer = WriteBehindWriter.startUsingConfigAndApplier(config, applier);
+
+		waitUntil(() -> writer.getNumberOfPendingWrites() == 0);
+		assertEquals(applier.getAppliedEntry(0).id, "alvin-place:22");
+	}
+
+	@Test
+	public void testUnreadableEntryIsMovedToDeadLetters() {
+		WriteBehindJournal journal = WriteBehindJournal.openUsingPathAndSize(journalPath,
+				64 * 1024);
+		long sequence = journal.append(new byte[] { 7 });
+		writer = WriteBehindWriter.startUsingJournalAndConfigAndApplier(journal, config, applier);
+
+		waitUntil(() -> journal.isApplied(sequence));
+		assertEquals(writer.getNumberOfFailedWrites(), 1);
+		assertEquals(applier.getNumberOfAppliedEntries(), 0);
+		assertEquals(writer.getDeadLetterJournal().readFirstUnapplied().payload,
+				new byte[] { 7 });
+		assertEquals(loggerFactorySpy.getErrorLogMessageUsingClassNameAndNo(TESTED_CLASS_NAME, 1),
+				"Moved unreadable write-behind journal entry 1 to dead-letter journal "
+						+ writer.getDeadLetterJournal().getPath());
+	}
+}
@@ -30,6 +30,7 @@ public class LoggerSpy implements Logger {
 	public List<String> fatalMessages = new ArrayList<>();
 	public List<String> errorMessages = new ArrayList<>();
 	public List<String> infoMessages = new ArrayList<>();
+	public List<String> warnMessages = new ArrayList<>();
 	public List<Exception> errorExceptions = new ArrayList<>();
 
 	@Override
@@ -56,8 +57,7 @@ public class LoggerSpy implements Logger {
 
 	@Override
 	public void logWarnUsingMessage(String message) {
-		// TODO Auto-generated method stub
-
+		warnMessages.add(message);
 	}
 
 	@Override
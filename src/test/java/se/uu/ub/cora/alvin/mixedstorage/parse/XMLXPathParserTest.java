@@ -21,6 +21,9 @@ package se.uu.ub.cora.alvin.mixedstorage.parse;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
 import javax.xml.XMLConstants;
 import javax.xml.transform.OutputKeys;
 
@@ -105,4 +108,20 @@ public class XMLXPathParserTest {
 		parser.getDocumentAsString("/broken/xpath/string not");
 	}
 
+
+	@Test
+	public void testForXMLFromStreamUsesDeclaredEncoding() {
+		byte[] xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><place>Linköping</place>"
+				.getBytes(StandardCharsets.ISO_8859_1);
+
+		XMLXPathParser parser = XMLXPathParser.forXML(new ByteArrayInputStream(xml));
+
+		assertEquals(parser.getStringFromDocumentUsingXPath("/place/text()"), "Linköping");
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Can not read xml: .*")
+	public void testForXMLFromStreamWithBrokenXML() {
+		XMLXPathParser.forXML(new ByteArrayInputStream("<pid>".getBytes(StandardCharsets.UTF_8)));
+	}
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.alvin.mixedstorage.util.MappedRingLog.LogRecord;
+
+public class MappedRingLogTest {
+	private static final int MAGIC = 0x54455354;
+	private static final int SIZE = 1024;
+	private Path path;
+	private MappedRingLog ringLog;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		path = Files.createTempFile("mappedRingLog", ".log");
+		Files.delete(path);
+		ringLog = MappedRingLog.openUsingPathAndSizeAndMagic(path, SIZE, MAGIC);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		if (ringLog != null) {
+			ringLog.close();
+		}
+		Files.deleteIfExists(path);
+	}
+
+	@Test
+	public void testNewLogIsEmpty() {
+		assertTrue(ringLog.isEmpty());
+		assertEquals(ringLog.getPath(), path);
+		assertEquals(ringLog.getSize(), SIZE);
+		assertEquals(ringLog.getNumberOfEntries(), 0);
+		assertEquals(ringLog.getNumberOfUsedBytes(), 0);
+		assertEquals(ringLog.getHeadSequence(), 1);
+		assertEquals(ringLog.getNextSequence(), 1);
+		assertNull(ringLog.readHead());
+	}
+
+	@Test
+	public void testCanEverFitPayload() {
+		int maxPayloadLength = SIZE - MappedRingLog.HEADER_SIZE - MappedRingLog.ENTRY_HEADER_SIZE;
+
+		assertTrue(ringLog.canEverFitPayloadOfLength(maxPayloadLength));
+		assertFalse(ringLog.canEverFitPayloadOfLength(maxPayloadLength + 1));
+	}
+
+	@Test
+	public void testAppendAndRemoveHead() {
+		long first = ringLog.append(new byte[] { 1 });
+		long second = ringLog.append(new byte[] { 2, 2 });
+
+		assertEquals(second, first + 1);
+		assertEquals(ringLog.getNumberOfEntries(), 2);
+		assertEquals(ringLog.getNumberOfUsedBytes(), 2 * MappedRingLog.ENTRY_HEADER_SIZE + 3);
+		LogRecord head = ringLog.readHead();
+		assertEquals(head.sequence, first);
+		assertEquals(head.payload, new byte[] { 1 });
+		assertEquals(ringLog.readFollowing(head).payload, new byte[] { 2, 2 });
+		assertNull(ringLog.readFollowing(ringLog.readFollowing(head)));
+
+		ringLog.removeHead();
+
+		assertEquals(ringLog.getHeadSequence(), second);
+		assertEquals(ringLog.readHead().payload, new byte[] { 2, 2 });
+	}
+
+	@Test
+	public void testAppendWrapsAroundToSpaceFreedAtBeginning() {
+		ringLog.append(new byte[400]);
+		ringLog.append(new byte[400]);
+		assertFalse(ringLog.hasRoomForPayloadOfLength(300));
+
+		ringLog.removeHead();
+
+		assertTrue(ringLog.hasRoomForPayloadOfLength(300));
+		assertFalse(ringLog.hasRoomForPayloadOfLength(401));
+		ringLog.append(createPayloadOfLengthAndValue(300, 3));
+		List<LogRecord> records = ringLog.readAll();
+		assertEquals(records.size(), 2);
+		assertEquals(records.get(1).payload, createPayloadOfLengthAndValue(300, 3));
+		assertEquals(ringLog.getNumberOfUsedBytes(),
+				SIZE - MappedRingLog.HEADER_SIZE - 416 + 316);
+	}
+
+	private byte[] createPayloadOfLengthAndValue(int length, int value) {
+		byte[] payload = new byte[length];
+		for (int i = 0; i < length; i++) {
+			payload[i] = (byte) value;
+		}
+		return payload;
+	}
+
+	@Test
+	public void testLogIsFullWhenWritePositionReachesHead() {
+		ringLog.append(new byte[400]);
+		ringLog.append(new byte[400]);
+		ringLog.removeHead();
+		ringLog.append(new byte[400]);
+
+		assertFalse(ringLog.hasRoomForPayloadOfLength(0));
+
+		ringLog.removeHead();
+		ringLog.removeHead();
+
+		assertTrue(ringLog.isEmpty());
+		assertEquals(ringLog.getNumberOfUsedBytes(), 0);
+		assertTrue(ringLog.hasRoomForPayloadOfLength(400));
+	}
+
+	@Test
+	public void testHeadMovesPastWrapMarker() {
+		ringLog.append(new byte[400]);
+		ringLog.append(new byte[400]);
+		ringLog.removeHead();
+		ringLog.append(createPayloadOfLengthAndValue(300, 3));
+
+		ringLog.removeHead();
+
+		assertEquals(ringLog.readHead().payload, createPayloadOfLengthAndValue(300, 3));
+		assertEquals(ringLog.getNumberOfUsedBytes(), 316);
+	}
+
+	@Test
+	public void testEmptyLogNearEndWrapsToBeginning() {
+		ringLog.append(new byte[400]);
+		ringLog.append(new byte[400]);
+		ringLog.removeHead();
+		ringLog.removeHead();
+
+		long sequence = ringLog.append(createPayloadOfLengthAndValue(600, 6));
+
+		assertEquals(ringLog.readHead().sequence, sequence);
+		assertEquals(ringLog.readHead().payload, createPayloadOfLengthAndValue(600, 6));
+		assertEquals(ringLog.getNumberOfUsedBytes(), 616);
+	}
+
+	@Test
+	public void testReopenedLogContainsEntriesAfterWrapAround() throws IOException {
+		ringLog.append(new byte[400]);
+		ringLog.append(createPayloadOfLengthAndValue(400, 2));
+		ringLog.removeHead();
+		ringLog.append(createPayloadOfLengthAndValue(300, 3));
+		ringLog.close();
+
+		ringLog = MappedRingLog.openUsingPathAndSizeAndMagic(path, SIZE, MAGIC);
+
+		List<LogRecord> records = ringLog.readAll();
+		assertEquals(records.size(), 2);
+		assertEquals(records.get(0).sequence, 2);
+		assertEquals(records.get(0).payload, createPayloadOfLengthAndValue(400, 2));
+		assertEquals(records.get(1).sequence, 3);
+		assertEquals(records.get(1).payload, createPayloadOfLengthAndValue(300, 3));
+		assertEquals(ringLog.append(new byte[] { 4 }), 4);
+	}
+
+	@Test
+	public void testReopenedLogIgnoresOldEntriesOverwrittenAfterWrapAround() throws IOException {
+		ringLog.append(new byte[400]);
+		ringLog.append(new byte[400]);
+		ringLog.removeHead();
+		ringLog.removeHead();
+		ringLog.append(createPayloadOfLengthAndValue(600, 6));
+		ringLog.close();
+
+		ringLog = MappedRingLog.openUsingPathAndSizeAndMagic(path, SIZE, MAGIC);
+
+		List<LogRecord> records = ringLog.readAll();
+		assertEquals(records.size(), 1);
+		assertEquals(records.get(0).sequence, 3);
+		assertEquals(records.get(0).payload, createPayloadOfLengthAndValue(600, 6));
+	}
+
+	@Test
+	public void testOpenWithInvalidHeadPositionThrowsError() throws IOException {
+		ringLog.close();
+		ringLog = null;
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.seek(4);
+			file.writeInt(SIZE + 1);
+		}
+		try {
+			ringLog = MappedRingLog.openUsingPathAndSizeAndMagic(path, SIZE, MAGIC);
+			fail("Exception should have been thrown");
+		} catch (IOException e) {
+			assertEquals(e.getMessage(), "invalid head position 1025");
+		}
+	}
+}
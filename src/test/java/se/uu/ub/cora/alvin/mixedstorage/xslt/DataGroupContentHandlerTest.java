@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.xslt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicSpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupSpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.DataRecordLinkFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.DataRecordLinkSpy;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.DataRecordLinkProvider;
+
+public class DataGroupContentHandlerTest {
+	private DataGroupFactorySpy dataGroupFactory;
+	private DataAtomicFactorySpy dataAtomicFactory;
+	private DataRecordLinkFactorySpy dataRecordLinkFactory;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		dataGroupFactory = new DataGroupFactorySpy();
+		DataGroupProvider.setDataGroupFactory(dataGroupFactory);
+		dataAtomicFactory = new DataAtomicFactorySpy();
+		DataAtomicProvider.setDataAtomicFactory(dataAtomicFactory);
+		dataRecordLinkFactory = new DataRecordLinkFactorySpy();
+		DataRecordLinkProvider.setDataRecordLinkFactory(dataRecordLinkFactory);
+	}
+
+	private DataGroup parse(String xml) throws Exception {
+		DataGroupContentHandler contentHandler = new DataGroupContentHandler();
+		SAXParserFactory.newInstance().newSAXParser()
+				.parse(new InputSource(new StringReader(xml)), contentHandler);
+		return contentHandler.getDataGroup();
+	}
+
+	@Test
+	public void testTopGroupWithAtomicChild() throws Exception {
+		DataGroup dataGroup = parse("<place><name>Uppsala</name></place>");
+
+		assertSame(dataGroup, dataGroupFactory.factoredDataGroup);
+		assertEquals(dataGroup.getNameInData(), "place");
+		assertEquals(dataGroup.getChildren().size(), 1);
+		DataAtomicSpy name = (DataAtomicSpy) dataGroup.getChildren().get(0);
+		assertEquals(name.nameInData, "name");
+		assertEquals(name.value, "Uppsala");
+		assertNull(name.repeatId);
+	}
+
+	@Test
+	public void testWhitespaceBetweenChildrenIsIgnored() throws Exception {
+		DataGroup dataGroup = parse("<place>\n  <name>Uppsala</name>\n</place>");
+
+		assertEquals(dataGroup.getChildren().size(), 1);
+		assertEquals(dataGroup.getFirstAtomicValueWithNameInData("name"), "Uppsala");
+	}
+
+	@Test
+	public void testEmptyElementBecomesAtomicWithEmptyValue() throws Exception {
+		DataGroup dataGroup = parse("<place><name/></place>");
+
+		assertEquals(dataGroup.getFirstAtomicValueWithNameInData("name"), "");
+	}
+
+	@Test
+	public void testRepeatIdOnAtomicAndGroup() throws Exception {
+		DataGroup dataGroup = parse("<place><localId repeatId=\"0\"><id>a</id></localId>"
+				+ "<code repeatId=\"1\">x</code></place>");
+
+		DataGroupSpy localId = (DataGroupSpy) dataGroup.getFirstGroupWithNameInData("localId");
+		assertEquals(localId.repeatId, "0");
+		assertTrue(localId.addedAttributes.isEmpty());
+		DataAtomicSpy code = (DataAtomicSpy) dataGroup.getFirstChildWithNameInData("code");
+		assertEquals(code.repeatId, "1");
+	}
+
+	@Test
+	public void testAttributesAreAddedToGroup() throws Exception {
+		DataGroup dataGroup = parse(
+				"<place><name type=\"alternative\" lang=\"sv\"><value>x</value></name></place>");
+
+		DataGroupSpy name = (DataGroupSpy) dataGroup.getFirstGroupWithNameInData("name");
+		assertEquals(name.addedAttributes.size(), 2);
+		assertEquals(name.getAttribute("type").getValue(), "alternative");
+		assertEquals(name.getAttribute("lang").getValue(), "sv");
+	}
+
+	@Test
+	public void testGroupWithLinkedRecordTypeAndIdBecomesLink() throws Exception {
+		DataGroup dataGroup = parse("<recordInfo><dataDivider>"
+				+ "<linkedRecordType>system</linkedRecordType>"
+				+ "<linkedRecordId>alvin</linkedRecordId></dataDivider></recordInfo>");
+
+		assertEquals(dataRecordLinkFactory.usedNameInDatas.get(0), "dataDivider");
+		assertEquals(dataRecordLinkFactory.usedRecordTypes.get(0), "system");
+		assertEquals(dataRecordLinkFactory.usedRecordIds.get(0), "alvin");
+		DataRecordLinkSpy link = (DataRecordLinkSpy) dataGroup
+				.getFirstChildWithNameInData("dataDivider");
+		assertTrue(link.children.isEmpty());
+		assertEquals(dataGroupFactory.factoredDataGroups.size(), 1);
+	}
+
+	@Test
+	public void testLinkKeepsOtherChildrenAndRepeatId() throws Exception {
+		DataGroup dataGroup = parse("<place><link repeatId=\"2\">"
+				+ "<linkedRecordType>user</linkedRecordType>"
+				+ "<linkedRecordId>12345</linkedRecordId>"
+				+ "<linkedPath>somePath</linkedPath></link></place>");
+
+		DataRecordLinkSpy link = (DataRecordLinkSpy) dataGroup
+				.getFirstChildWithNameInData("link");
+		assertEquals(link.getRepeatId(), "2");
+		assertEquals(link.children.size(), 1);
+		assertEquals(link.getFirstAtomicValueWithNameInData("linkedPath"), "somePath");
+	}
+
+	@Test
+	public void testGroupWithOnlyLinkedRecordTypeIsNotLink() throws Exception {
+		DataGroup dataGroup = parse(
+				"<place><type><linkedRecordType>recordType</linkedRecordType></type></place>");
+
+		assertTrue(dataRecordLinkFactory.usedNameInDatas.isEmpty());
+		DataGroup type = dataGroup.getFirstGroupWithNameInData("type");
+		assertEquals(type.getFirstAtomicValueWithNameInData("linkedRecordType"), "recordType");
+		assertFalse(type.containsChildWithNameInData("linkedRecordId"));
+	}
+}
@@ -1,14 +1,26 @@
 package se.uu.ub.cora.alvin.mixedstorage.xslt;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 
 import javax.xml.XMLConstants;
 
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import se.uu.ub.cora.alvin.mixedstorage.DataAtomicFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.DataGroupFactorySpy;
+import se.uu.ub.cora.alvin.mixedstorage.fedora.DataRecordLinkFactorySpy;
 import se.uu.ub.cora.alvin.mixedstorage.fedora.TransformerFactorySpy;
 import se.uu.ub.cora.alvin.mixedstorage.parse.ParseException;
 import se.uu.ub.cora.alvin.mixedstorage.resource.ResourceReader;
+import se.uu.ub.cora.data.DataAtomicProvider;
+import se.uu.ub.cora.data.DataGroup;
+import se.uu.ub.cora.data.DataGroupProvider;
+import se.uu.ub.cora.data.DataRecordLinkProvider;
 
 public class XslTransformationTest {
 
@@ -16,13 +28,27 @@ public class XslTransformationTest {
 	private static final String XML_FEDORA_PLACE = "place/xmlFedoraAlvinPlace_679.xml";
 	private static final String XML_CORA_PLACE = "place/xmlCoraAlvinPlace_679.xml";
 
+	@BeforeMethod
+	public void beforeMethod() {
+		XsltTemplatesRegistry.clear();
+	}
+
 	@Test
 	public void testInitWithPXslt() throws Exception {
 		XsltTransformation xsltTransformation = getXsltTransformation();
-		String usedXslt = xsltTransformation.getXslt();
-		String xsltFedoraToCoraPlace = ResourceReader
-				.readResourceAsString(XSLT_FEDORA_TO_CORA_PLACE);
-		assertEquals(usedXslt, xsltFedoraToCoraPlace);
+		assertEquals(xsltTransformation.getXsltPath(), XSLT_FEDORA_TO_CORA_PLACE);
+		assertSame(xsltTransformation.getTemplates(),
+				XsltTemplatesRegistry.getTemplatesUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE));
+	}
+
+	@Test
+	public void testXsltIsOnlyCompiledOnceForSeveralTransformations() throws Exception {
+		String inputXml = ResourceReader.readResourceAsString(XML_FEDORA_PLACE);
+		getXsltTransformation().transform(inputXml);
+		getXsltTransformation().transform(inputXml);
+		getXsltTransformation().transform(inputXml);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 1);
+		assertEquals(XsltTemplatesRegistry.getNumberOfHits(), 2);
 	}
 
 	private XsltTransformation getXsltTransformation() {
@@ -41,7 +67,9 @@ public class XslTransformationTest {
 		assertEquals(transformerFactorySpy.attributes.get(XMLConstants.ACCESS_EXTERNAL_DTD), "");
 		assertEquals(transformerFactorySpy.attributes.get(XMLConstants.ACCESS_EXTERNAL_STYLESHEET),
 				"");
+		assertEquals(transformerFactorySpy.templates.get(0).transformers.size(), 1);
 		System.clearProperty("javax.xml.transform.TransformerFactory");
+		XsltTemplatesRegistry.clear();
 	}
 
 	@Test
@@ -65,6 +93,59 @@ public class XslTransformationTest {
 		xsltTransformation.transform(inputXml);
 	}
 
+	@Test
+	public void testTransformToDataGroup() throws Exception {
+		DataGroupFactorySpy dataGroupFactory = new DataGroupFactorySpy();
+		DataGroupProvider.setDataGroupFactory(dataGroupFactory);
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataRecordLinkFactorySpy dataRecordLinkFactory = new DataRecordLinkFactorySpy();
+		DataRecordLinkProvider.setDataRecordLinkFactory(dataRecordLinkFactory);
+		String inputXml = ResourceReader.readResourceAsString(XML_FEDORA_PLACE);
+
+		DataGroup place = getXsltTransformation().transformToDataGroup(inputXml);
+
+		assertEquals(place.getNameInData(), "authority");
+		assertEquals(place.getAttribute("type").getValue(), "place");
+		DataGroup recordInfo = place.getFirstGroupWithNameInData("recordInfo");
+		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"), "alvin-place:679");
+		assertEquals(dataRecordLinkFactory.usedNameInDatas.get(0), "type");
+		assertEquals(dataRecordLinkFactory.usedRecordIds.get(0), "place");
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 1);
+	}
+
+	@Test
+	public void testTransformToDataGroupFromStream() throws Exception {
+		DataGroupProvider.setDataGroupFactory(new DataGroupFactorySpy());
+		DataAtomicProvider.setDataAtomicFactory(new DataAtomicFactorySpy());
+		DataRecordLinkProvider.setDataRecordLinkFactory(new DataRecordLinkFactorySpy());
+		String inputXml = ResourceReader.readResourceAsString(XML_FEDORA_PLACE);
+
+		DataGroup place = getXsltTransformation().transformToDataGroup(
+				new ByteArrayInputStream(inputXml.getBytes(StandardCharsets.UTF_8)));
+
+		DataGroup recordInfo = place.getFirstGroupWithNameInData("recordInfo");
+		assertEquals(recordInfo.getFirstAtomicValueWithNameInData("id"), "alvin-place:679");
+		DataGroup defaultName = place.getFirstGroupWithNameInData("name")
+				.getFirstGroupWithNameInData("namePart");
+		assertEquals(defaultName.getFirstAtomicValueWithNameInData("value"), "Uppsala");
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error converting place to Cora place: Can not read xml: .*")
+	public void parseExceptionShouldBeThrownOnMalformedXMLFromStream() throws Exception {
+		getXsltTransformation().transformToDataGroup(
+				new ByteArrayInputStream("<pid></notPid>".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ""
+			+ "Error converting place to Cora place: Can not read xml: "
+			+ "javax.xml.transform.TransformerException: "
+			+ "com.sun.org.apache.xml.internal.utils.WrappedRuntimeException: "
+			+ "The element type \"pid\" must be terminated by the matching end-tag \"</pid>\".")
+	public void parseExceptionShouldBeThrownOnMalformedXMLToDataGroup() throws Exception {
+		getXsltTransformation().transformToDataGroup("<pid></notPid>");
+	}
+
 	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ""
 			+ "Unable to read resource to string for file: path/not/found.xls")
 	public void testExceptionThrownCannotReadXsltFile() throws Exception {
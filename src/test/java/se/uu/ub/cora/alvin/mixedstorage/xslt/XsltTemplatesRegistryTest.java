@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.alvin.mixedstorage.xslt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class XsltTemplatesRegistryTest {
+	private static final String XSLT_FEDORA_TO_CORA_PLACE = "xslt/AlvinFedoraToCoraPlace.xsl";
+	private static final String XSLT_DATE_FORMATING = "xslt/DateFormating.xsl";
+
+	@BeforeMethod
+	public void beforeMethod() {
+		XsltTemplatesRegistry.clear();
+	}
+
+	@Test
+	public void testPrivateConstructor() throws Exception {
+		Constructor<XsltTemplatesRegistry> constructor = XsltTemplatesRegistry.class
+				.getDeclaredConstructor();
+		assertEquals(Modifier.isPrivate(constructor.getModifiers()), true);
+	}
+
+	@Test(expectedExceptions = InvocationTargetException.class)
+	public void testPrivateConstructorInvoke() throws Exception {
+		Constructor<XsltTemplatesRegistry> constructor = XsltTemplatesRegistry.class
+				.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructor.newInstance();
+	}
+
+	@Test
+	public void testSameTemplatesReturnedForSamePath() throws Exception {
+		Templates templates = XsltTemplatesRegistry
+				.getTemplatesUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE);
+		Templates templates2 = XsltTemplatesRegistry
+				.getTemplatesUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE);
+		assertSame(templates, templates2);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 1);
+		assertEquals(XsltTemplatesRegistry.getNumberOfHits(), 1);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiledTemplates(), 1);
+	}
+
+	@Test
+	public void testDifferentPathsAreCompiledSeparately() throws Exception {
+		Templates templates = XsltTemplatesRegistry
+				.getTemplatesUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE);
+		Templates templates2 = XsltTemplatesRegistry.getTemplatesUsingXsltPath(XSLT_DATE_FORMATING);
+		assertNotSame(templates, templates2);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 2);
+		assertEquals(XsltTemplatesRegistry.getNumberOfHits(), 0);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiledTemplates(), 2);
+	}
+
+	@Test
+	public void testNewTransformerForEachCall() throws Exception {
+		Transformer transformer = XsltTemplatesRegistry
+				.newTransformerUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE);
+		Transformer transformer2 = XsltTemplatesRegistry
+				.newTransformerUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE);
+		assertNotSame(transformer, transformer2);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 1);
+	}
+
+	@Test
+	public void testCompiledOnlyOnceWhenUsedFromManyThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Callable<Templates>> tasks = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			tasks.add(() -> XsltTemplatesRegistry
+					.getTemplatesUsingXsltPath(XSLT_FEDORA_TO_CORA_PLACE));
+		}
+		List<Future<Templates>> results = executor.invokeAll(tasks);
+		executor.shutdown();
+
+		Templates first = results.get(0).get();
+		for (Future<Templates> result : results) {
+			assertSame(result.get(), first);
+		}
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 1);
+	}
+
+	@Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unable to read resource to string for file: path/not/found.xls")
+	public void testExceptionThrownCannotReadXsltFile() throws Exception {
+		XsltTemplatesRegistry.getTemplatesUsingXsltPath("path/not/found.xls");
+	}
+
+	@Test
+	public void testFailedCompileIsNotRegistered() throws Exception {
+		try {
+			XsltTemplatesRegistry.getTemplatesUsingXsltPath("path/not/found.xls");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiledTemplates(), 0);
+		assertEquals(XsltTemplatesRegistry.getNumberOfCompiles(), 0);
+	}
+}